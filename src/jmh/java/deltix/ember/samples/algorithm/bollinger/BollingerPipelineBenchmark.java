@@ -0,0 +1,271 @@
+package deltix.ember.samples.algorithm.bollinger;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.AsciiStringBuilder;
+import deltix.efix.message.field.Tag;
+import deltix.ember.message.trade.CustomAttribute;
+import deltix.ember.message.trade.MutableCustomAttribute;
+import deltix.ember.message.trade.MutableOrderNewRequest;
+import deltix.ember.message.trade.OrderType;
+import deltix.ember.message.trade.Side;
+import deltix.util.collections.generated.ObjectArrayList;
+import deltix.util.finmath.SMAV;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-trade cost of Bollinger Band trade processing, every trade completes a bar. Orders are filled immediately at the signal price.
+ * <ul>
+ *     <li>BASELINE is a copy of v1 algorithm before {@link BollingerBandPipeline} (see {@link BaselineV1}): double SMAV,
+ *     order request and reason prepared on every evaluated trade, reason text formatted for every signal,
+ *     position message sent on every fill.</li>
+ *     <li>EAGER is the pipeline with all consumers present: request and reason text only for signals, position message on every fill.</li>
+ *     <li>LAZY is the pipeline with no consumers (INFO log off, no Text attribute, positions are not published).</li>
+ * </ul>
+ * Channel send is approximated by encoding position message into a buffer in all variants, transport itself is not included.
+ * <p>
+ * Figures below were measured without JMH: onTrade() called in a plain loop (5 x 2M warm-up, 5 x 10M measured, median taken),
+ * JDK 17, single CPU, Ember and DFP libraries replaced by minimal stand-ins (Decimal64Utils backed by double bits,
+ * StringBuilder-backed AsciiStringBuilder). In this setup the pipeline is slower than the double baseline: every decimal
+ * operation pays a conversion, while the baseline does plain double math. Re-measure with JMH and real DFP on target hardware.
+ * <pre>
+ *     numPeriods    BASELINE       EAGER        LAZY   (ns/trade, two runs)
+ *             20     82 / 85   154 / 161    102 / 97
+ *            300     40 / 36   104 / 107    106 / 97
+ *
+ *     ./gradlew jmh -Pjmh.includes=BollingerPipelineBenchmark   (results are written under build/results/jmh)
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BollingerPipelineBenchmark {
+
+    public enum Variant {
+        BASELINE,
+        EAGER,
+        LAZY
+    }
+
+    private static final int FEED_LENGTH = 64 * 1024;
+    private static final String SYMBOL = "BTCUSD";
+    private static final double TRADE_SIZE = 10;
+
+    @Param({"BASELINE", "EAGER", "LAZY"})
+    private Variant variant;
+
+    @Param({"20", "300"})
+    private int numPeriods;
+
+    private final AsciiStringBuilder reason = new AsciiStringBuilder(64);
+    private final ObjectArrayList<CustomAttribute> orderAttributes = new ObjectArrayList<>(1);
+    private final MutableOrderNewRequest orderRequest = new MutableOrderNewRequest();
+    private final ByteBuffer positionMessage = ByteBuffer.allocate(256);
+
+    private BollingerBandPipeline pipeline;
+    private BaselineV1 baseline;
+    @Decimal
+    private long[] prices;
+    private double[] doublePrices; // what classic trade message of v1 carries
+    @Decimal
+    private long size;
+    private int position;
+    private long time;
+
+    @Setup
+    public void setup() {
+        BollingerBandSettings settings = new BollingerBandSettings();
+        settings.setNumPeriods(numPeriods);
+        settings.setNumStdDevs(1); // frequent signals
+        settings.setProfitPercent(1);
+        settings.setStopLossPercent(1);
+        settings.setOpenOrderSizeCoefficient(1);
+
+        MutableCustomAttribute attr = new MutableCustomAttribute();
+        attr.setKey(Tag.Text);
+        attr.setValue(reason);
+        orderAttributes.clear();
+        orderAttributes.add(attr);
+
+        pipeline = new BollingerBandPipeline(settings);
+        baseline = new BaselineV1(settings);
+        size = Decimal64Utils.fromDouble(TRADE_SIZE);
+        prices = new long[FEED_LENGTH];
+        doublePrices = new double[FEED_LENGTH];
+        final Random random = new Random(152);
+        double price = 1000;
+        for (int i = 0; i < FEED_LENGTH; i++) {
+            price = Math.max(1, price + (random.nextInt(201) - 100) / 100.0);
+            doublePrices[i] = price;
+            prices[i] = Decimal64Utils.fromDouble(price);
+        }
+        position = 0;
+    }
+
+    @Benchmark
+    public long onTrade() {
+        if (++position == FEED_LENGTH)
+            position = 0;
+
+        if (variant == Variant.BASELINE)
+            return baseline.onTrade(doublePrices[position], TRADE_SIZE);
+
+        @Decimal final long price = prices[position];
+        @Decimal final long orderSize = pipeline.onMarketTrade(time++, price, size);
+        if (! Decimal64Utils.isZero(orderSize)) {
+            if (variant == Variant.EAGER) {
+                orderRequest.setAttributes(orderAttributes);
+                reason.clear();
+                pipeline.appendReason(reason);
+                prepareOrderRequest(orderRequest, Decimal64Utils.abs(orderSize), Decimal64Utils.isPositive(orderSize), price);
+            }
+
+            pipeline.onOrderTrade(Decimal64Utils.isPositive(orderSize), Decimal64Utils.abs(orderSize), price);
+            if (variant == Variant.EAGER) {
+                final BollingerPosition position = pipeline.getPosition();
+                encodePosition(positionMessage, time, Decimal64Utils.toLong(position.getSize()),
+                        Decimal64Utils.toDouble(position.getCost()), Decimal64Utils.toDouble(position.getCash()));
+            }
+        }
+        return orderSize;
+    }
+
+    private static void prepareOrderRequest(MutableOrderNewRequest orderRequest, @Decimal long quantity, boolean buy, @Decimal long price) {
+        orderRequest.setQuantity(quantity);
+        orderRequest.setSide(buy ? Side.BUY : Side.SELL);
+        orderRequest.setLimitPrice(price);
+        orderRequest.setSymbol(SYMBOL);
+        orderRequest.setOrderType(OrderType.LIMIT);
+    }
+
+    /** Stands for channel send of position message */
+    private static void encodePosition(ByteBuffer message, long time, long positionSize, double positionCost, double positionCash) {
+        message.clear();
+        for (int i = 0; i < SYMBOL.length(); i++)
+            message.put((byte) SYMBOL.charAt(i));
+        message.putLong(time);
+        message.putLong(positionSize);
+        message.putDouble(positionCost);
+        message.putDouble(positionCash);
+    }
+
+    /** Trade path of v1 BollingerBandAlgorithm and BollingerBandInstrumentData as they were before the pipeline (order fills immediately) */
+    static final class BaselineV1 {
+
+        private final BollingerBandSettings bandSettings;
+        private final SMAV smav;
+        private final AsciiStringBuilder orderReason = new AsciiStringBuilder(64);
+        private final ObjectArrayList<CustomAttribute> orderAttributes = new ObjectArrayList<>(1);
+        private final MutableOrderNewRequest orderRequest = new MutableOrderNewRequest();
+        private final ByteBuffer positionMessage = ByteBuffer.allocate(256);
+        private final double commissionPerShare;
+        private long time;
+
+        // BollingerBandInstrumentMessage
+        private long positionSize;
+        private double positionCash;
+        private double positionCost;
+        private long pendingSize;
+
+        BaselineV1(BollingerBandSettings bandSettings) {
+            this.bandSettings = bandSettings;
+            this.smav = new SMAV(bandSettings.getNumPeriods());
+            this.commissionPerShare = Decimal64Utils.toDouble(bandSettings.getCommissionPerShare());
+
+            MutableCustomAttribute attr = new MutableCustomAttribute();
+            attr.setKey(Tag.Text);
+            attr.setValue(orderReason);
+            orderAttributes.add(attr);
+        }
+
+        /** onMarketMessage() */
+        long onTrade(double price, double size) {
+            time++;
+            smav.register(price);
+            if (! smav.isFull() || pendingSize != 0) // only if we do not have active orders
+                return 0;
+
+            orderRequest.setAttributes(orderAttributes);
+            orderReason.clear();
+
+            final long tradeSize = checkBollingerBands(size, price, orderReason);
+            if (tradeSize != 0) {
+                prepareOrderRequest(orderRequest, Decimal64Utils.fromLong(Math.abs(tradeSize)), tradeSize > 0, Decimal64Utils.fromDouble(price));
+                pendingSize = tradeSize;
+                onFill(tradeSize > 0, Decimal64Utils.fromLong(Math.abs(tradeSize)), Decimal64Utils.fromDouble(price));
+            }
+            return tradeSize;
+        }
+
+        private long checkBollingerBands(double size, double price, AsciiStringBuilder reason) {
+            long tradeSize = 0;
+            final double mp = smav.getAverage();
+            final double sqrtVariance = smav.getStdDev();
+            final double upperBand = mp + bandSettings.getNumStdDevs() * sqrtVariance;
+            final double bottomBand = mp - bandSettings.getNumStdDevs() * sqrtVariance;
+
+            // rules for position opening
+            if (positionSize == 0) {
+                if (price > upperBand && bandSettings.isEnableShort()) {
+                    tradeSize = - Math.max(1, (int) (size * bandSettings.getOpenOrderSizeCoefficient()));
+                    reason.append("Above ").append(upperBand);
+                } else if (price < bottomBand && bandSettings.isEnableLong()) {
+                    tradeSize = Math.max(1, (int) (size * bandSettings.getOpenOrderSizeCoefficient()));
+                    reason.append("Below ").append(bottomBand);
+                }
+            } else {
+                // risk management - check for stop loss
+                double pnlPercent = getProfitRatio(price) * 100;
+
+                if (pnlPercent < -bandSettings.getStopLossPercent()) {
+                    reason.append("Stop Loss: ").append(pnlPercent).append("%");
+                    tradeSize = -positionSize;
+                } else if (pnlPercent > bandSettings.getProfitPercent()) { // check for profit taking
+                    reason.append("Profit Taking: ").append(pnlPercent).append("%");
+                    tradeSize = -positionSize;
+                } else if (positionSize < 0 && price < mp) {// rules for position closing
+                    reason.append("Close Short (MP = ").append(mp).append(")");
+                    tradeSize = -positionSize;
+                } else if (positionSize > 0 && price > mp) {
+                    reason.append("Close Long (MP = ").append(mp).append(")");
+                    tradeSize = -positionSize;
+                }
+            }
+            return tradeSize;
+        }
+
+        private double getProfitRatio(double price) {
+            final double basis = positionCost - positionCash;
+            return (positionSize * price / basis - 1);
+        }
+
+        /** handleTradeEvent() of final fill */
+        private void onFill(boolean buy, @Decimal long tradeQuantity, @Decimal long tradePrice) {
+            final double cost = Decimal64Utils.toDouble(tradeQuantity) * commissionPerShare;
+            if (buy) {
+                positionSize += Decimal64Utils.toLong(tradeQuantity);
+                positionCash -= Decimal64Utils.toDouble(Decimal64Utils.multiply(tradeQuantity, tradePrice));
+            } else {
+                positionSize -= Decimal64Utils.toLong(tradeQuantity);
+                positionCash += Decimal64Utils.toDouble(Decimal64Utils.multiply(tradeQuantity, tradePrice));
+            }
+            positionCost += cost;
+            if (positionSize == 0)
+                positionCash = 0;
+
+            pendingSize = 0;
+            encodePosition(positionMessage, time, positionSize, positionCost, positionCash);
+        }
+    }
+}
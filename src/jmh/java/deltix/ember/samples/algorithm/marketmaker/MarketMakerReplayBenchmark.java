@@ -0,0 +1,367 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.anvil.util.annotation.Alphanumeric;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.anvil.util.counter.CounterFactory;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.smd.MutableCurrencyUpdate;
+import deltix.ember.message.trade.MutableOrderCancelEvent;
+import deltix.ember.message.trade.MutableOrderNewEvent;
+import deltix.ember.message.trade.Side;
+import deltix.ember.samples.algorithm.ratelimit.RateLimiter;
+import deltix.ember.samples.algorithm.ratelimit.RateLimiterRegistry;
+import deltix.ember.service.algorithm.v2.order.OutboundOrder;
+import deltix.ember.service.data.OrderState;
+import deltix.timebase.api.messages.BookUpdateAction;
+import deltix.timebase.api.messages.QuoteSide;
+import deltix.timebase.api.messages.universal.BaseEntryInfo;
+import deltix.timebase.api.messages.universal.L2EntryNew;
+import deltix.timebase.api.messages.universal.L2EntryUpdate;
+import deltix.timebase.api.messages.universal.PackageHeader;
+import deltix.timebase.api.messages.universal.PackageType;
+import deltix.util.collections.generated.ObjectArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays deterministic synthetic Level2 feed (same shape as FakeFeedAlgorithm produces) through {@link MarketMakerHandler#onMarketMessage}.
+ * Orders go to a stub exchange that counts requests and acknowledges each of them right after the market message
+ * (new orders become open, replaced orders leave pending replace, canceled orders become final and are recycled),
+ * so the benchmark measures quoting hot path: book update, base price, layer evaluation, rate limiter, order event handling.
+ * <p>
+ * Throughput mode reports messages/sec, sample mode reports per-message latency percentiles,
+ * gc profiler (configured in build.gradle) reports allocation rate.
+ * <pre>
+ *     ./gradlew jmh -Pjmh.includes=MarketMakerReplayBenchmark   (results are written under build/results/jmh)
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarketMakerReplayBenchmark {
+
+    private static final String SYMBOL = "BTCUSD";
+    private static final @Alphanumeric long EXCHANGE = AlphanumericCodec.encode("JUMP");
+    private static final @Alphanumeric long SOURCE_EXCHANGE = AlphanumericCodec.encode("CME");
+    private static final int BOOK_DEPTH = 10;
+    private static final int FEED_LENGTH = 64 * 1024;
+    private static final int SNAPSHOT_INTERVAL = 1000; // every N-th message moves the whole book (vendor snapshot)
+    private static final long TICK_PRICE = Decimal64Utils.parse("0.5");
+
+    @Param({"false", "true"})
+    private boolean incrementalPricing;
+
+    @Param({"false", "true"})
+    private boolean replaceQuotes;
+
+    private MarketMakerHandler handler;
+    private StubContext context;
+    private PackageHeader[] feed;
+    private int position;
+
+    @Setup
+    public void setup() {
+        MarketMakerSettings settings = new MarketMakerSettings();
+        settings.setExchange(EXCHANGE);
+        settings.setSourceExchange(SOURCE_EXCHANGE);
+        settings.setSellQuoteSizes(new double[]{1, 2, 5});
+        settings.setBuyQuoteSizes(new double[]{1, 2, 5});
+        settings.setSellMargins(new double[]{5, 10, 20});
+        settings.setBuyMargins(new double[]{5, 10, 20});
+        settings.setMinSpread(10);
+        settings.setMinPriceChange(2);
+        settings.setPositionNormalSize(0);
+        settings.setPositionMaxSize(10);
+        settings.setMaxLongExposure(1000);
+        settings.setMaxShortExposure(1000);
+        settings.setRateLimit(1000);
+        settings.setIncrementalPricing(incrementalPricing);
+        settings.setReplaceQuotes(replaceQuotes);
+
+        context = new StubContext(settings);
+        handler = new MarketMakerHandler(SYMBOL, InstrumentType.FX, context, LogFactory.getLog(MarketMakerReplayBenchmark.class));
+
+        MutableCurrencyUpdate instrument = new MutableCurrencyUpdate();
+        instrument.setSymbol(SYMBOL);
+        instrument.setInstrumentType(InstrumentType.FX);
+        instrument.setPriceIncrement(Decimal64Utils.fromDouble(0.5));
+        handler.update(instrument);
+
+        feed = generateFeed(new Random(152));
+        position = 0;
+        handler.onMarketMessage(feed[0]); // initial snapshot places quotes
+        context.deliverEvents(handler);
+    }
+
+    @Benchmark
+    public int replay() {
+        context.time++; // one message per millisecond keeps rate limiter busy but not saturated
+        if (++position == feed.length)
+            position = 1; // feed ends with snapshot equal to the first one, so replay loops without gaps
+        handler.onMarketMessage(feed[position]);
+        context.deliverEvents(handler);
+        return context.requestCount;
+    }
+
+    /** Random walk of mid price: snapshots move whole book, incremental updates change sizes of random levels */
+    private static PackageHeader[] generateFeed(Random rnd) {
+        final PackageHeader[] result = new PackageHeader[FEED_LENGTH];
+        @Decimal long midPrice = Decimal64Utils.fromLong(10000);
+        @Decimal final long firstMidPrice = midPrice;
+        for (int i = 0; i < FEED_LENGTH; i++) {
+            if (i == FEED_LENGTH - 1) {
+                result[i] = makeSnapshot(firstMidPrice);
+            } else if (i % SNAPSHOT_INTERVAL == 0) {
+                if (i > 0)
+                    midPrice = Decimal64Utils.add(midPrice, Decimal64Utils.multiplyByInteger(TICK_PRICE, rnd.nextInt(9) - 4));
+                result[i] = makeSnapshot(midPrice);
+            } else {
+                result[i] = makeUpdate(rnd, midPrice);
+            }
+        }
+        return result;
+    }
+
+    private static PackageHeader makeSnapshot(@Decimal long midPrice) {
+        final ObjectArrayList<BaseEntryInfo> entries = new ObjectArrayList<>(2 * BOOK_DEPTH);
+        for (int side = 0; side < 2; side++) {
+            for (int level = 0; level < BOOK_DEPTH; level++) {
+                final L2EntryNew entry = new L2EntryNew();
+                entry.setSide(side == 0 ? QuoteSide.BID : QuoteSide.ASK);
+                entry.setPrice(levelPrice(midPrice, entry.getSide(), level));
+                entry.setSize(Decimal64Utils.ONE);
+                entry.setLevel((short) level);
+                entry.setExchangeId(SOURCE_EXCHANGE);
+                entries.add(entry);
+            }
+        }
+        return makePackage(PackageType.VENDOR_SNAPSHOT, entries);
+    }
+
+    private static PackageHeader makeUpdate(Random rnd, @Decimal long midPrice) {
+        final ObjectArrayList<BaseEntryInfo> entries = new ObjectArrayList<>(2);
+        for (int i = 0; i < 2; i++) {
+            final L2EntryUpdate entry = new L2EntryUpdate();
+            entry.setSide(rnd.nextBoolean() ? QuoteSide.BID : QuoteSide.ASK);
+            entry.setAction(BookUpdateAction.UPDATE);
+            entry.setLevel((short) rnd.nextInt(BOOK_DEPTH));
+            entry.setPrice(levelPrice(midPrice, entry.getSide(), entry.getLevel()));
+            entry.setSize(Decimal64Utils.fromInt(rnd.nextInt(10) + 1));
+            entry.setExchangeId(SOURCE_EXCHANGE);
+            entries.add(entry);
+        }
+        return makePackage(PackageType.INCREMENTAL_UPDATE, entries);
+    }
+
+    @Decimal
+    private static long levelPrice(@Decimal long midPrice, QuoteSide side, int level) {
+        @Decimal final long offset = Decimal64Utils.multiplyByInteger(TICK_PRICE, level + 1);
+        return (side == QuoteSide.BID) ? Decimal64Utils.subtract(midPrice, offset) : Decimal64Utils.add(midPrice, offset);
+    }
+
+    private static PackageHeader makePackage(PackageType type, ObjectArrayList<BaseEntryInfo> entries) {
+        final PackageHeader result = new PackageHeader();
+        result.setSymbol(SYMBOL);
+        result.setInstrumentType(deltix.qsrv.hf.pub.InstrumentType.FX);
+        result.setPackageType(type);
+        result.setEntries(entries);
+        return result;
+    }
+
+    /** Order of stub exchange, its state is changed by {@link StubContext#deliverEvents} */
+    private static final class StubOrder extends OutboundOrder {
+        private Side side;
+        @Decimal
+        private long quantity;
+        private OrderState state;
+        private boolean cancelPending;
+        private boolean replacePending;
+
+        @Override
+        public Side getSide() {
+            return side;
+        }
+
+        @Override
+        @Decimal
+        public long getWorkingQuantity() {
+            return quantity;
+        }
+
+        @Override
+        @Decimal
+        public long getTotalExecutedQuantity() {
+            return Decimal64Utils.ZERO; // replay does not produce fills
+        }
+
+        @Override
+        public OrderState getState() {
+            return state;
+        }
+
+        @Override
+        public boolean isFinal() {
+            return state.isFinal();
+        }
+
+        @Override
+        public boolean isCancelPending() {
+            return cancelPending;
+        }
+
+        @Override
+        public boolean isReplacePending() {
+            return replacePending;
+        }
+    }
+
+    /** Stub exchange that counts requests and acknowledges them on {@link #deliverEvents}. Canceled orders are recycled, so replay does not allocate. */
+    private static final class StubContext implements MarketMakerContext {
+        private final MarketMakerSettings settings;
+        private final RateLimiterRegistry rateLimiters;
+        private final PortfolioRiskAggregator riskAggregator = new PortfolioRiskAggregator(0, 0, false);
+        private final ObjectArrayList<StubOrder> pendingOrders = new ObjectArrayList<>(); // orders with requests to acknowledge
+        private final ObjectArrayList<StubOrder> orderPool = new ObjectArrayList<>();
+        private int reusableOrders; // orders canceled during previous delivery (pending requests may still refer to later ones)
+        private final MutableOrderNewEvent newEvent = new MutableOrderNewEvent();
+        private final MutableOrderCancelEvent cancelEvent = new MutableOrderCancelEvent();
+        @Timestamp
+        long time = 1_600_000_000_000L;
+        int requestCount;
+
+        StubContext(MarketMakerSettings settings) {
+            this.settings = settings;
+            this.rateLimiters = new RateLimiterRegistry(Collections.singletonList(settings.getRateLimit() + "/1s"), new int[]{1, 1, 1});
+        }
+
+        /** Acknowledges all pending requests, including requests that handler sends while processing these events */
+        void deliverEvents(MarketMakerHandler handler) {
+            for (int i = 0; i < pendingOrders.size(); i++) {
+                final StubOrder order = pendingOrders.get(i);
+                if (order.state.isFinal())
+                    continue; // e.g. order was canceled right after submission
+                if (order.cancelPending) {
+                    order.cancelPending = false;
+                    order.replacePending = false;
+                    order.state = OrderState.CANCELED;
+                    handler.onCanceled(order, cancelEvent);
+                    orderPool.add(order); // handler released the order, it is reused once all events are delivered
+                } else if (order.state == OrderState.UNACKNOWLEDGED) {
+                    order.state = OrderState.OPEN;
+                    handler.onNew(order, newEvent);
+                } else {
+                    order.replacePending = false;
+                }
+            }
+            pendingOrders.clear();
+            reusableOrders = orderPool.size();
+        }
+
+        @Override
+        public MarketMakerSettings getSettings() {
+            return settings;
+        }
+
+        @Override
+        public OutboundOrder submitQuotingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side) {
+            requestCount++;
+            final StubOrder order = newOrder(side, orderSize);
+            pendingOrders.add(order);
+            return order;
+        }
+
+        @Override
+        public void replaceQuotingOrder(OutboundOrder order, @Decimal long newPrice, @Decimal long newSize) {
+            requestCount++;
+            final StubOrder stubOrder = (StubOrder) order;
+            stubOrder.replacePending = true;
+            stubOrder.quantity = newSize;
+            pendingOrders.add(stubOrder);
+        }
+
+        @Override
+        public OutboundOrder submitHedgingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side) {
+            return newOrder(side, orderSize); // replay does not produce fills, hedging order is never acknowledged
+        }
+
+        @Override
+        public void cancelOrder(OutboundOrder order) {
+            requestCount++;
+            final StubOrder stubOrder = (StubOrder) order;
+            if (!stubOrder.cancelPending) {
+                stubOrder.cancelPending = true;
+                pendingOrders.add(stubOrder);
+            }
+        }
+
+        private StubOrder newOrder(Side side, @Decimal long quantity) {
+            final StubOrder order = (reusableOrders > 0) ? orderPool.remove(--reusableOrders) : new StubOrder();
+            order.side = side;
+            order.quantity = quantity;
+            order.state = OrderState.UNACKNOWLEDGED;
+            order.cancelPending = false;
+            order.replacePending = false;
+            return order;
+        }
+
+        @Override
+        public void submitPositionRequest() {
+        }
+
+        @Override
+        public boolean isIteratingActiveOrders() {
+            return false;
+        }
+
+        @Override
+        @Timestamp
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public boolean isLeaderNode() {
+            return true;
+        }
+
+        @Override
+        public boolean isSubscribed(String symbol) {
+            return true;
+        }
+
+        @Override
+        public RateLimiter getRateLimiter(@Alphanumeric long exchange) {
+            return rateLimiters.get(exchange);
+        }
+
+        @Override
+        public PortfolioRiskAggregator getRiskAggregator() {
+            return riskAggregator;
+        }
+
+        @Override
+        public CounterFactory getCounterFactory() {
+            return null;
+        }
+
+        @Override
+        public MarketMakerStateStore getStateStore() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares order ID encoders available to {@link CustomOrderIdSampleAlgorithm}.
+ * Identifiers are consecutive like the ones produced by high-low generators.
+ * <pre>
+ *     ./gradlew jmh   (results are written under build/results/jmh)
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderIdEncoderBenchmark {
+
+    @Param({"DECIMAL", "BASE32", "PREFIXED_COUNTER"})
+    private OrderIdEncoding encoding;
+
+    @Param({"", "ALGO1-"})
+    private String prefix;
+
+    private OrderIdEncoder encoder;
+    private long id;
+
+    @Setup
+    public void setup() {
+        encoder = encoding.createEncoder(prefix);
+        id = 1_000_000_000L;
+    }
+
+    @Benchmark
+    public CharSequence encode() {
+        return encoder.encode(id++);
+    }
+}
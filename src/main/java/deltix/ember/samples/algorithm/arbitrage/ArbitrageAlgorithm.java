@@ -23,10 +23,14 @@ import deltix.ember.service.oms.cache.OrdersCacheSettings;
  */
 public class ArbitrageAlgorithm extends AbstractL2TradingAlgorithm<ArbitrageHandler, OutboundOrder> {
     private final ArbitrageSettings settings;
+    private final ArbitragePairs pairs;
+    private final MarketEntryClassifier classifier; // classifies market message entries once, before per-instrument handler processes them
 
     public ArbitrageAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, ArbitrageSettings settings) {
         super(context, cacheSettings);
         this.settings = settings;
+        this.pairs = new ArbitragePairs(settings);
+        this.classifier = new MarketEntryClassifier(pairs);
     }
 
     /// region factory methods
@@ -64,7 +68,7 @@ public class ArbitrageAlgorithm extends AbstractL2TradingAlgorithm<ArbitrageHand
     private boolean onLeaderState(OutboundOrder order, Void cookie) {
         if (order.isActive()) {
             ArbitrageHandler handler = get(order.getSymbol());
-            if (handler != null && handler.isMonitoring()) {
+            if (handler != null && handler.canAdopt()) {
                 handler.onLeaderState(order);
             } else {
                 LOGGER.warn("Canceling unexpected active order %s for symbol %s").with(order).with(order.getSymbol());
@@ -166,6 +170,14 @@ public class ArbitrageAlgorithm extends AbstractL2TradingAlgorithm<ArbitrageHand
         return settings;
     }
 
+    ArbitragePairs getPairs() {
+        return pairs;
+    }
+
+    MarketEntryClassifier getClassifier() {
+        return classifier;
+    }
+
     @Timestamp
     long getTime() {
         return super.currentTime();
@@ -1,10 +1,13 @@
 package deltix.ember.samples.algorithm.arbitrage;
 
 import deltix.anvil.util.annotation.Alphanumeric;
+import deltix.anvil.util.annotation.Optional;
 import deltix.anvil.util.annotation.Required;
 import deltix.ember.service.algorithm.AbstractAlgorithmFactory;
 import deltix.ember.service.algorithm.AlgorithmContext;
 
+import java.util.List;
+
 /**
  * Arbitrage Algorithm Factory.
  * Here is an example of algorithm config in ember.conf file:
@@ -18,6 +21,11 @@ import deltix.ember.service.algorithm.AlgorithmContext;
  *     settings {
  *       entryExchange = "COINBASE"
  *       exitExchange = "BINANCE"
+ *       exchangePairs = ["OKEX:BINANCE", "COINBASE:OKEX"]
+ *       exchangeFees = ["COINBASE:0.0005", "BINANCE:0.001"]
+ *       maxEntrySize = 5
+ *       maxLegs = 4
+ *       maxExposure = 15
  *     }
  *   }
  * }
@@ -32,6 +40,21 @@ public class ArbitrageAlgorithmFactory extends AbstractAlgorithmFactory {
     @Alphanumeric
     private long exitExchange;
 
+    @Optional
+    private String[] exchangePairs = new String[0]; // Additional "ENTRY:EXIT" exchange pairs scanned along with entryExchange:exitExchange
+
+    @Optional
+    private String[] exchangeFees = new String[0]; // Taker fees, e.g. "BINANCE:0.001" (fraction of notional)
+
+    @Optional
+    private double maxEntrySize; // Limits size of entry order (unlimited if not set)
+
+    @Optional
+    private int maxLegs = 1; // Maximum number of concurrent positions per symbol (new position can be opened while previous ones are exiting)
+
+    @Optional
+    private double maxExposure; // Limits aggregate size of concurrent positions per symbol (unlimited if not set)
+
     public ArbitrageAlgorithmFactory() {
         setOrderCacheCapacity(1000);
         setMaxInactiveOrdersCacheSize(1000);
@@ -47,11 +70,36 @@ public class ArbitrageAlgorithmFactory extends AbstractAlgorithmFactory {
         this.exitExchange = exitExchange;
     }
 
+    public void setExchangePairs(List<String> exchangePairs) {
+        this.exchangePairs = exchangePairs.toArray(new String[0]);
+    }
+
+    public void setExchangeFees(List<String> exchangeFees) {
+        this.exchangeFees = exchangeFees.toArray(new String[0]);
+    }
+
+    public void setMaxEntrySize(double maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    public void setMaxLegs(int maxLegs) {
+        this.maxLegs = maxLegs;
+    }
+
+    public void setMaxExposure(double maxExposure) {
+        this.maxExposure = maxExposure;
+    }
+
     @Override
     public ArbitrageAlgorithm create(AlgorithmContext context) {
         ArbitrageSettings settings = new ArbitrageSettings();
         settings.setEntryExchange(entryExchange);
         settings.setExitExchange(exitExchange);
+        settings.setExchangePairs(exchangePairs);
+        settings.setExchangeFees(exchangeFees);
+        settings.setMaxEntrySize(maxEntrySize);
+        settings.setMaxLegs(maxLegs);
+        settings.setMaxExposure(maxExposure);
 
         return new ArbitrageAlgorithm(context, getCacheSettings(), settings);
     }
@@ -3,14 +3,11 @@ package deltix.ember.samples.algorithm.arbitrage;
 import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
 import deltix.anvil.util.CharSequenceUtil;
-import deltix.anvil.util.annotation.Alphanumeric;
-import deltix.anvil.util.annotation.Timestamp;
 import deltix.ember.message.smd.InstrumentType;
 import deltix.ember.message.trade.OrderCancelEvent;
 import deltix.ember.message.trade.OrderRejectEvent;
 import deltix.ember.message.trade.OrderTradeReportEvent;
 import deltix.ember.message.trade.Side;
-import deltix.ember.service.algorithm.util.OrderBookHelper;
 import deltix.ember.service.algorithm.v2.AbstractL2TradingAlgorithm;
 import deltix.ember.service.algorithm.v2.order.OutboundOrder;
 import com.epam.deltix.gflog.api.Log;
@@ -21,22 +18,16 @@ import deltix.orderbook.core.options.*;
 import deltix.qsrv.hf.pub.InstrumentMessage;
 
 import deltix.timebase.api.messages.DataModelType;
-import deltix.timebase.api.messages.QuoteSide;
-import deltix.timebase.api.messages.universal.BaseEntryInfo;
-import deltix.timebase.api.messages.universal.PackageHeaderInfo;
-import deltix.timebase.api.messages.universal.TradeEntryInfo;
-import deltix.util.collections.generated.ObjectList;
 
 /**
- * ArbitrageHandler monitors quotes from entry exchange and trades from exit exchange
- * On each trade if current best asking price > last trade price we enter position on entry exchange by targeting the quote
- * and then exit position on exit exchange by issuing a passive limit order
+ * ArbitrageHandler monitors quotes from entry exchanges and trades from exit exchanges (see {@link ArbitragePairs})
+ * Whenever top of book or trade of involved exchange changes we look for entry levels that are cheaper than exit exchange
+ * (after fees), enter position on entry exchange by sweeping these levels with IOC order,
+ * and then exit position on exit exchange of that pair by issuing a passive limit order
  *
- * For each instrument this handler can be in one of three states: { MONITORING, ENTERING, EXITING }.
- *
- * MONITORING - looking for opportunity to open position
- * ENTERING - opening position (entryOrder is not NULL)
- * EXITING - exiting (hedging) position (exitOrder is not NULL)
+ * Each position is tracked by {@link ArbitrageLeg}. Handler keeps a bounded pool of legs, so new opportunities
+ * are taken while previous positions are still exiting, as long as aggregate exposure of the symbol stays within limit.
+ * Only one leg can be entering at a time (market data does not reflect in-flight IOC order yet).
  */
 public class ArbitrageHandler extends AbstractL2TradingAlgorithm.OrderBookState {
 
@@ -45,15 +36,18 @@ public class ArbitrageHandler extends AbstractL2TradingAlgorithm.OrderBookState
     private final Log logger;
     private final ArbitrageAlgorithm algorithm;
     private final boolean arbitrageEnabled;
-    private final @Alphanumeric long entryExchangeId;
-    private final @Alphanumeric long exitExchangeId; // exit exchange
-
-    private @Timestamp long lastTradeTime = 0;
-    private @Decimal long lastTradePrice = Decimal64Utils.NULL;
-    private @Timestamp long lastReplaceTime = 0;
-
-    private OutboundOrder entryOrder; // Warning: don't forget to release all reference to the orders after they reach final state (orders are recycled to object pool)
-    private OutboundOrder exitOrder; // Warning: don't forget to release all reference to the orders after they reach final state (orders are recycled to object pool)
+    private final ArbitragePairs pairs;
+    private final MarketEntryClassifier classifier;
+    private final BestQuoteCache quotes;
+    private final ArbitrageScanner scanner;
+    private boolean scanPending; // involved market changed since the last scan
+
+    private final ArbitrageLeg[] legs; // active legs first
+    private int activeLegs;
+    @Decimal
+    private final long maxExposure; // NULL if unlimited
+    @Decimal
+    private long strandedExposure = Decimal64Utils.ZERO; // left by failed exit orders, counts against maxExposure until reset by operator
 
     public ArbitrageHandler(CharSequence symbol, InstrumentType instrumentType, ArbitrageAlgorithm algorithm, Log logger) {
         super(symbol, instrumentType);
@@ -62,9 +56,16 @@ public class ArbitrageHandler extends AbstractL2TradingAlgorithm.OrderBookState
 
         arbitrageEnabled = algorithm.isSubscribed(getSymbol());
 
-        ArbitrageSettings settings = algorithm.getSettings();
-        entryExchangeId = settings.getEntryExchange();
-        exitExchangeId = settings.getExitExchange();
+        pairs = algorithm.getPairs();
+        classifier = algorithm.getClassifier();
+        quotes = new BestQuoteCache(pairs);
+        scanner = new ArbitrageScanner(pairs, quotes);
+
+        final ArbitrageSettings settings = algorithm.getSettings();
+        legs = new ArbitrageLeg[Math.max(1, settings.getMaxLegs())];
+        for (int i = 0; i < legs.length; i++)
+            legs[i] = new ArbitrageLeg();
+        maxExposure = (settings.getMaxExposure() > 0) ? Decimal64Utils.fromDouble(settings.getMaxExposure()) : Decimal64Utils.NULL;
     }
 
 
@@ -94,55 +95,64 @@ public class ArbitrageHandler extends AbstractL2TradingAlgorithm.OrderBookState
         if (! arbitrageEnabled)
             return;
 
-        if (message instanceof PackageHeaderInfo) {
-            PackageHeaderInfo p = (PackageHeaderInfo) message;
-            if (p.hasEntries()) {
-                ObjectList<BaseEntryInfo> entries = p.getEntries();
-                for (int i = 0; i < entries.size(); i++) {
-                    BaseEntryInfo entry = entries.get(i);
-                    if (entry.getExchangeId() == exitExchangeId && entry instanceof TradeEntryInfo) {
-                        TradeEntryInfo tradeEntry = (TradeEntryInfo) entry;
-                        updateTrade(message.getTimeStampMs(), tradeEntry.getPrice());
-                    }
-                }
-            }
+        classifier.classify(message);
+        final long topChanged = classifier.getTopChanged();
+        if (topChanged != 0)
+            quotes.refresh(orderBook, topChanged);
+
+        final long exitTrades = classifier.getTraded() & pairs.getExitMask();
+        if (exitTrades != 0) {
+            for (int i = 0; i < pairs.getExchangeCount(); i++)
+                if ((exitTrades & (1L << i)) != 0)
+                    scanner.onTrade(i, classifier.getTime(), classifier.getTradePrice(i), classifier.getTradeSize(i));
         }
 
+        if (topChanged != 0 || exitTrades != 0)
+            scanPending = true;
+
         if (! algorithm.isLeaderNode())
             return;
 
-        if (isMonitoring()) {
-            // check if we need to enter position
-            // find the best ask on entry exchange order book
-            OrderBookQuote bestAsk = OrderBookHelper.getBestQuote(orderBook, entryExchangeId, QuoteSide.ASK);
-            // if the last trade price on exit exchange is grater than the ask quote and trade is more recent
-            if (bestAsk != null && Decimal64Utils.isGreater(lastTradePrice, bestAsk.getPrice()) && lastTradeTime > bestAsk.getTimestamp()) {
-                // try to enter position at best ask quote price
-                entryOrder = algorithm.submitEntryOrder(getSymbol(), bestAsk.getSize(), bestAsk.getPrice(), entryExchangeId);
-                logger.info("Submitted entry order: %s").with(entryOrder);
+        if (scanPending && canEnter()) {
+            scanPending = false;
+            // check if we need to enter position: entry levels that are cheaper than exit exchange value
+            @Decimal final long maxSize = getMaxEntrySize();
+            if ((maxSize == Decimal64Utils.NULL || Decimal64Utils.isPositive(maxSize)) && scanner.scan(orderBook, maxSize)) {
+                final int pair = scanner.getPair();
+                final ArbitrageLeg leg = acquireLeg();
+                leg.exitIndex = pairs.getExitIndex(pair);
+                leg.entryOrder = algorithm.submitEntryOrder(getSymbol(), scanner.getSize(), scanner.getLimitPrice(), pairs.getExchange(pairs.getEntryIndex(pair)));
+                logger.info("Submitted entry order: %s (entry VWAP %s, exit VWAP %s, expected profit %s)")
+                        .with(leg.entryOrder)
+                        .withDecimal64(scanner.getEntryVwap())
+                        .withDecimal64(scanner.getExitVwap())
+                        .withDecimal64(scanner.getProfit());
             }
+        }
 
-        } else if (isExiting() && !exitOrder.isFinal() && !exitOrder.isReplacePending() && algorithm.getTime() >= lastReplaceTime + MIN_REPLACE_INTERVAL) {
-            // chase the market if it moved away
-            OrderBookQuote bestAsk = OrderBookHelper.getBestQuote(orderBook, exitExchangeId, QuoteSide.ASK);
-            if (bestAsk != null && Decimal64Utils.isLess(bestAsk.getPrice(), exitOrder.getWorkingOrder().getLimitPrice())) {
-                @Decimal long limitPrice = bestAsk.getPrice();
-                algorithm.replaceExitOrder(exitOrder, limitPrice);
-                lastReplaceTime = algorithm.getTime();
-                logger.info("Updating exit order %s with new price: %s").with(exitOrder.getCorrelationOrderId()).withDecimal64(limitPrice);
-            }
+        for (int i = 0; i < activeLegs; i++) {
+            final ArbitrageLeg leg = legs[i];
+            if (leg.isExiting())
+                chaseMarket(leg);
         }
     }
 
-    private void updateTrade(@Timestamp long tradeTime, @Decimal long tradePrice) {
-        if (tradeTime >= lastTradeTime) {
-            lastTradeTime = tradeTime;
-            lastTradePrice = tradePrice;
+    /** Moves exit order to the best ask of exit exchange if market moved away */
+    private void chaseMarket(ArbitrageLeg leg) {
+        final OutboundOrder exitOrder = leg.exitOrder;
+        if (!exitOrder.isFinal() && !exitOrder.isReplacePending() && algorithm.getTime() >= leg.lastReplaceTime + MIN_REPLACE_INTERVAL) {
+            @Decimal long limitPrice = quotes.getAskPrice(leg.exitIndex);
+            if (limitPrice != Decimal64Utils.NULL && Decimal64Utils.isLess(limitPrice, exitOrder.getWorkingOrder().getLimitPrice())) {
+                algorithm.replaceExitOrder(exitOrder, limitPrice);
+                leg.lastReplaceTime = algorithm.getTime();
+                logger.info("Updating exit order %s with new price: %s").with(exitOrder.getCorrelationOrderId()).withDecimal64(limitPrice);
+            }
         }
     }
 
     public void onFilled(OutboundOrder order, OrderTradeReportEvent event) {
-        if (isEntering() && order == entryOrder) {
+        final ArbitrageLeg leg = findLeg(order);
+        if (leg != null && leg.isEntering() && order == leg.entryOrder) {
             // ignore partial fills
             if (! order.isFinal()) {
                 logger.info("Received partial fill %s for %s").withDecimal64(event.getTradeQuantity()).with(order);
@@ -150,22 +160,22 @@ public class ArbitrageHandler extends AbstractL2TradingAlgorithm.OrderBookState
             }
 
             // if order is entry order that was filled issue passive order at best ask on exit exchange to exit position
-            OrderBookQuote bestAsk = OrderBookHelper.getBestQuote(orderBook, exitExchangeId, QuoteSide.ASK);
-            if (bestAsk == null) {
-                logger.warn("No %s market on exchange %s").with(getSymbol()).withAlphanumeric(exitExchangeId);
+            @Decimal long limitPrice = quotes.getAskPrice(leg.exitIndex);
+            if (limitPrice == Decimal64Utils.NULL) {
+                logger.warn("No %s market on exchange %s").with(getSymbol()).withAlphanumeric(pairs.getExchange(leg.exitIndex));
+                limitPrice = scanner.getLastTradePrice(leg.exitIndex);
             }
-            @Decimal long limitPrice = (bestAsk != null) ? bestAsk.getPrice() : lastTradePrice;
-            exitOrder = algorithm.submitExitOrder(entryOrder, limitPrice, exitExchangeId);
-            logger.info("Submitted exit order: %s").with(exitOrder);
+            leg.exitOrder = algorithm.submitExitOrder(leg.entryOrder, limitPrice, pairs.getExchange(leg.exitIndex));
+            logger.info("Submitted exit order: %s").with(leg.exitOrder);
 
-        } else if (isExiting() && order == exitOrder) {
+        } else if (leg != null && leg.isExiting() && order == leg.exitOrder) {
             // ignore partial fills
             if (! order.isFinal()) {
                 logger.info("Received partial fill %s for %s").withDecimal64(event.getTradeQuantity()).with(order);
                 return;
             }
-            // just exited position so reset to start monitoring again
-            reset();
+            // just exited position so release the leg
+            releaseLeg(leg);
             logger.info("Exited position: %s").with(order);
         } else {
             logger.warn("Unexpected trade received for %s").with(order);
@@ -173,86 +183,158 @@ public class ArbitrageHandler extends AbstractL2TradingAlgorithm.OrderBookState
     }
 
     public void onCanceled(OutboundOrder order, OrderCancelEvent event) {
-        if (isEntering() && order == entryOrder) {
+        final ArbitrageLeg leg = findLeg(order);
+        if (leg != null && leg.isEntering() && order == leg.entryOrder) {
             // if partially filled exit position for partial quantity
             if (Decimal64Utils.isPositive(order.getTotalExecutedQuantity())) {
                 // find best ask on taker order book
-                OrderBookQuote bestAsk = OrderBookHelper.getBestQuote(orderBook, exitExchangeId, QuoteSide.ASK);
-                if (bestAsk == null) {
-                    logger.warn("No %s market on exchange %s").with(getSymbol()).withAlphanumeric(exitExchangeId);
+                @Decimal long limitPrice = quotes.getAskPrice(leg.exitIndex);
+                if (limitPrice == Decimal64Utils.NULL) {
+                    logger.warn("No %s market on exchange %s").with(getSymbol()).withAlphanumeric(pairs.getExchange(leg.exitIndex));
+                    limitPrice = leg.entryOrder.getAvgExecutedPrice();
                 }
-                @Decimal long limitPrice = (bestAsk != null) ? bestAsk.getPrice() : entryOrder.getAvgExecutedPrice();
-                exitOrder = algorithm.submitExitOrder(entryOrder, limitPrice, exitExchangeId);
-                logger.info("Submitted exit order: %s").with(exitOrder);
+                leg.exitOrder = algorithm.submitExitOrder(leg.entryOrder, limitPrice, pairs.getExchange(leg.exitIndex));
+                logger.info("Submitted exit order: %s").with(leg.exitOrder);
 
             } else {
-                // IOC entry order was fully canceled - start monitoring again
-                logger.info("Entry order was canceled: %s").with(entryOrder);
-                reset();
+                // IOC entry order was fully canceled - release the leg
+                logger.info("Entry order was canceled: %s").with(leg.entryOrder);
+                releaseLeg(leg);
             }
 
-        } else if (isExiting() && order == exitOrder) {
+        } else if (leg != null && leg.isExiting() && order == leg.exitOrder) {
             logger.warn("Exit order %s canceled: %s").with(order.getCorrelationOrderId()).with(event);
-            @Decimal long remainingQuantity = Decimal64Utils.subtract(order.getWorkingQuantity(), order.getTotalExecutedQuantity());
-            if (Decimal64Utils.isPositive(remainingQuantity)) {
-                logger.warn("Failed to exit position: %s %s remaining").withDecimal64(remainingQuantity).with(getSymbol());
-            } else {
-                reset();
-            }
+            onExitOrderFinal(leg);
         } else {
             logger.warn("Unexpected cancel received for %s").with(order);
         }
     }
 
     public void onRejected(OutboundOrder order, OrderRejectEvent event) {
-        if (isEntering() && order == entryOrder) {
-            logger.info("Entry order was rejected: %s").with(entryOrder);
-            reset();
-        } else if (isExiting() && order == exitOrder) {
+        final ArbitrageLeg leg = findLeg(order);
+        if (leg != null && leg.isEntering() && order == leg.entryOrder) {
+            logger.info("Entry order was rejected: %s").with(leg.entryOrder);
+            releaseLeg(leg);
+        } else if (leg != null && leg.isExiting() && order == leg.exitOrder) {
             logger.warn("Exit order %s rejected: %s").with(order.getCorrelationOrderId()).with(event);
-            @Decimal long remainingQuantity = Decimal64Utils.subtract(order.getWorkingQuantity(), order.getTotalExecutedQuantity());
-            if (Decimal64Utils.isPositive(remainingQuantity)) {
-                logger.warn("Failed to exit position: %s %s remaining").withDecimal64(remainingQuantity).with(getSymbol());
-            } else {
-                reset();
-            }
+            onExitOrderFinal(leg);
         } else {
             logger.warn("Unexpected reject received for %s").with(order);
         }
     }
 
+    /**
+     * Exit order was canceled or rejected: leg is released (order is about to be recycled), remaining position is left to operator
+     * and keeps counting against exposure limit (see {@link #resetStrandedExposure()})
+     */
+    private void onExitOrderFinal(ArbitrageLeg leg) {
+        @Decimal long remainingQuantity = leg.getExposure();
+        if (Decimal64Utils.isPositive(remainingQuantity)) {
+            strandedExposure = Decimal64Utils.add(strandedExposure, remainingQuantity);
+            logger.error("Failed to exit position: %s %s remaining (stranded %s)").withDecimal64(remainingQuantity).with(getSymbol()).withDecimal64(strandedExposure);
+        }
+        releaseLeg(leg);
+    }
+
+    /** @return position left by failed exit orders */
+    @Decimal
+    public long getStrandedExposure() {
+        return strandedExposure;
+    }
+
+    /** Called once operator has flattened position left by failed exit orders */
+    public void resetStrandedExposure() {
+        logger.info("Stranded %s exposure %s is reset").with(getSymbol()).withDecimal64(strandedExposure);
+        strandedExposure = Decimal64Utils.ZERO;
+    }
+
     public void onLeaderState(OutboundOrder order) {
         assert order.isActive();
-        assert isMonitoring();
+        assert canAdopt();
         assert CharSequenceUtil.equals(order.getSymbol(), getSymbol());
 
-        if (order.getSide() == Side.BUY)
-            entryOrder = order;
-        else
-            exitOrder = order;
+        final ArbitrageLeg leg = acquireLeg();
+        if (order.getSide() == Side.BUY) {
+            leg.entryOrder = order;
+            leg.exitIndex = findExitIndex(pairs.indexOf(order.getWorkingOrder().getDestinationId()));
+        } else {
+            leg.exitOrder = order;
+            final int index = pairs.indexOf(order.getWorkingOrder().getDestinationId());
+            leg.exitIndex = (index >= 0) ? index : pairs.getExitIndex(0);
+        }
     }
 
-    // reset back to Monitoring state
-    private void reset() {
-        assert (entryOrder == null || entryOrder.isFinal());
-        assert (exitOrder == null || exitOrder.isFinal());
+    /** @return exit exchange of the pair that enters on given exchange (the first pair if there is no such pair) */
+    private int findExitIndex(int entryIndex) {
+        for (int pair = 0; pair < pairs.getPairCount(); pair++)
+            if (pairs.getEntryIndex(pair) == entryIndex)
+                return pairs.getExitIndex(pair);
+        return pairs.getExitIndex(0);
+    }
 
-        entryOrder = null;
-        exitOrder = null;
-        lastTradeTime = 0;
-        lastTradePrice = Decimal64Utils.NULL;
-        lastReplaceTime = 0;
+    /// region legs
+
+    /** @return true if there is a free leg for active order found on restart */
+    public boolean canAdopt() {
+        return activeLegs < legs.length;
     }
 
-    public boolean isMonitoring() {
-        return entryOrder == null && exitOrder == null;
+    /** @return true if new position can be opened: there is a free leg and no other leg is entering */
+    private boolean canEnter() {
+        if (activeLegs == legs.length)
+            return false;
+        for (int i = 0; i < activeLegs; i++)
+            if (legs[i].isEntering())
+                return false;
+        return true;
+    }
+
+    /** @return size limit of the next entry order (NULL if unlimited) */
+    @Decimal
+    private long getMaxEntrySize() {
+        @Decimal long result = pairs.getMaxEntrySize();
+        if (maxExposure != Decimal64Utils.NULL) {
+            @Decimal long available = Decimal64Utils.subtract(maxExposure, strandedExposure);
+            for (int i = 0; i < activeLegs; i++)
+                available = Decimal64Utils.subtract(available, legs[i].getExposure());
+            result = (result == Decimal64Utils.NULL) ? available : Decimal64Utils.min(result, available);
+        }
+        return result;
     }
 
-    public boolean isEntering() {
-        return entryOrder != null && exitOrder == null;
+    private ArbitrageLeg acquireLeg() {
+        assert activeLegs < legs.length;
+        return legs[activeLegs++];
     }
 
-    public boolean isExiting() {
-        return exitOrder != null;
+    private ArbitrageLeg findLeg(OutboundOrder order) {
+        for (int i = 0; i < activeLegs; i++)
+            if (legs[i].owns(order))
+                return legs[i];
+        return null;
     }
+
+    /** Returns leg to the pool (swaps it with the last active leg) */
+    private void releaseLeg(ArbitrageLeg leg) {
+        scanner.resetTrade(leg.exitIndex);
+        leg.clear();
+
+        for (int i = 0; i < activeLegs; i++) {
+            if (legs[i] == leg) {
+                legs[i] = legs[--activeLegs];
+                legs[activeLegs] = leg;
+                break;
+            }
+        }
+    }
+
+    public int getActiveLegs() {
+        return activeLegs;
+    }
+
+    public boolean isMonitoring() {
+        return activeLegs == 0;
+    }
+
+    /// endregion
 }
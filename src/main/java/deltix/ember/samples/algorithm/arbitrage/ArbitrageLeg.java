@@ -0,0 +1,54 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.ember.service.algorithm.v2.order.OutboundOrder;
+
+/**
+ * Single arbitrage position: entry order and exit order that closes it.
+ * Legs are pre-allocated by {@link ArbitrageHandler} and reused after position is closed.
+ * <p>
+ * ENTERING - opening position (entryOrder is not NULL)
+ * EXITING - exiting (hedging) position (exitOrder is not NULL)
+ */
+final class ArbitrageLeg {
+
+    OutboundOrder entryOrder; // Warning: don't forget to release all reference to the orders after they reach final state (orders are recycled to object pool)
+    OutboundOrder exitOrder; // Warning: don't forget to release all reference to the orders after they reach final state (orders are recycled to object pool)
+
+    int exitIndex; // exit exchange of this position
+    @Timestamp
+    long lastReplaceTime;
+
+    boolean isEntering() {
+        return entryOrder != null && exitOrder == null;
+    }
+
+    boolean isExiting() {
+        return exitOrder != null;
+    }
+
+    boolean owns(OutboundOrder order) {
+        return order == entryOrder || order == exitOrder;
+    }
+
+    /** @return position size this leg may hold: entry order size while entering, remaining size of exit order after that */
+    @Decimal
+    long getExposure() {
+        if (exitOrder != null)
+            return Decimal64Utils.subtract(exitOrder.getWorkingQuantity(), exitOrder.getTotalExecutedQuantity());
+        if (entryOrder != null)
+            return entryOrder.getWorkingQuantity();
+        return Decimal64Utils.ZERO;
+    }
+
+    void clear() {
+        assert (entryOrder == null || entryOrder.isFinal());
+        assert (exitOrder == null || exitOrder.isFinal());
+
+        entryOrder = null;
+        exitOrder = null;
+        lastReplaceTime = 0;
+    }
+}
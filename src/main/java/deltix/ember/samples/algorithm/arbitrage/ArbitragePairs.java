@@ -0,0 +1,153 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Alphanumeric;
+import deltix.anvil.util.codec.AlphanumericCodec;
+
+import java.util.Arrays;
+
+/**
+ * Entry/exit exchange pairs parsed from {@link ArbitrageSettings}, shared by all instruments.
+ * Pairs are configured as "ENTRY:EXIT", fees as "EXCHANGE:rate" where rate is a fraction of notional (0.001 = 10 bps).
+ * <p>
+ * Every exchange involved in some pair gets a dense index (at most {@link #MAX_EXCHANGES}),
+ * which lets per-exchange state live in arrays and sets of exchanges in a bit mask.
+ */
+final class ArbitragePairs {
+
+    static final int MAX_EXCHANGES = Long.SIZE;
+
+    private final @Alphanumeric long[] exchanges; // distinct involved exchanges, position is exchange index
+    private final int[] entryIndexes;
+    private final int[] exitIndexes;
+    @Decimal
+    private final long[] entryCostFactors; // 1 + entry fee
+    @Decimal
+    private final long[] exitValueFactors; // 1 - exit fee
+    private final long exitMask; // exchanges that are exit exchange of some pair
+    @Decimal
+    private final long maxEntrySize; // NULL if unlimited
+
+    ArbitragePairs(ArbitrageSettings settings) {
+        final String[] pairs = settings.getExchangePairs();
+        final int count = 1 + ((pairs != null) ? pairs.length : 0);
+        final long[] entryExchanges = new long[count];
+        final long[] exitExchanges = new long[count];
+        entryExchanges[0] = settings.getEntryExchange();
+        exitExchanges[0] = settings.getExitExchange();
+        for (int i = 1; i < count; i++) {
+            final String pair = pairs[i - 1];
+            final int separator = pair.indexOf(':');
+            if (separator <= 0 || separator == pair.length() - 1)
+                throw new IllegalArgumentException("Expected exchange pair in ENTRY:EXIT format: \"" + pair + '"');
+            entryExchanges[i] = AlphanumericCodec.encode(pair.substring(0, separator).trim());
+            exitExchanges[i] = AlphanumericCodec.encode(pair.substring(separator + 1).trim());
+        }
+
+        long[] distinct = new long[2 * count];
+        int exchangeCount = 0;
+        entryIndexes = new int[count];
+        exitIndexes = new int[count];
+        entryCostFactors = new long[count];
+        exitValueFactors = new long[count];
+        long exits = 0;
+        for (int i = 0; i < count; i++) {
+            entryIndexes[i] = find(distinct, exchangeCount, entryExchanges[i]);
+            if (entryIndexes[i] < 0)
+                distinct[entryIndexes[i] = exchangeCount++] = entryExchanges[i];
+            exitIndexes[i] = find(distinct, exchangeCount, exitExchanges[i]);
+            if (exitIndexes[i] < 0)
+                distinct[exitIndexes[i] = exchangeCount++] = exitExchanges[i];
+            if (exchangeCount > MAX_EXCHANGES)
+                throw new IllegalArgumentException("Too many exchanges in arbitrage pairs (max " + MAX_EXCHANGES + ')');
+
+            exits |= 1L << exitIndexes[i];
+            entryCostFactors[i] = Decimal64Utils.add(Decimal64Utils.ONE, getFee(settings.getExchangeFees(), entryExchanges[i]));
+            exitValueFactors[i] = Decimal64Utils.subtract(Decimal64Utils.ONE, getFee(settings.getExchangeFees(), exitExchanges[i]));
+        }
+        exchanges = Arrays.copyOf(distinct, exchangeCount);
+        exitMask = exits;
+        maxEntrySize = (settings.getMaxEntrySize() > 0) ? Decimal64Utils.fromDouble(settings.getMaxEntrySize()) : Decimal64Utils.NULL;
+    }
+
+    @Decimal
+    private static long getFee(String[] fees, @Alphanumeric long exchange) {
+        if (fees != null) {
+            for (String fee : fees) {
+                final int separator = fee.indexOf(':');
+                if (separator <= 0)
+                    throw new IllegalArgumentException("Expected exchange fee in EXCHANGE:rate format: \"" + fee + '"');
+                if (AlphanumericCodec.encode(fee.substring(0, separator).trim()) == exchange)
+                    return Decimal64Utils.parse(fee.substring(separator + 1).trim());
+            }
+        }
+        return Decimal64Utils.ZERO;
+    }
+
+    private static int find(long[] exchanges, int count, @Alphanumeric long exchange) {
+        for (int i = 0; i < count; i++)
+            if (exchanges[i] == exchange)
+                return i;
+        return -1;
+    }
+
+    /// region pairs
+
+    int getPairCount() {
+        return entryIndexes.length;
+    }
+
+    int getEntryIndex(int pair) {
+        return entryIndexes[pair];
+    }
+
+    int getExitIndex(int pair) {
+        return exitIndexes[pair];
+    }
+
+    @Decimal
+    long getEntryCostFactor(int pair) {
+        return entryCostFactors[pair];
+    }
+
+    @Decimal
+    long getExitValueFactor(int pair) {
+        return exitValueFactors[pair];
+    }
+
+    @Decimal
+    long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /// endregion
+
+    /// region exchanges
+
+    int getExchangeCount() {
+        return exchanges.length;
+    }
+
+    @Alphanumeric
+    long getExchange(int index) {
+        return exchanges[index];
+    }
+
+    /** @return index of given exchange, or -1 if it is not involved in any pair (a few comparisons: number of exchanges is small) */
+    int indexOf(@Alphanumeric long exchange) {
+        return find(exchanges, exchanges.length, exchange);
+    }
+
+    /** @return bit mask of all involved exchanges */
+    long getAllMask() {
+        return (exchanges.length == MAX_EXCHANGES) ? -1L : (1L << exchanges.length) - 1;
+    }
+
+    /** @return bit mask of exchanges that are exit exchange of some pair */
+    long getExitMask() {
+        return exitMask;
+    }
+
+    /// endregion
+}
@@ -0,0 +1,246 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Alphanumeric;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.orderbook.core.api.MarketSide;
+import deltix.orderbook.core.api.OrderBook;
+import deltix.orderbook.core.api.OrderBookQuote;
+import deltix.timebase.api.messages.QuoteSide;
+
+/**
+ * Finds the most profitable entry/exit exchange pair of single instrument and the size that can be executed profitably.
+ * <p>
+ * For each pair scanner walks entry exchange asks (levels we buy by IOC order) against exit exchange value of each unit:
+ * exit exchange bids, and the last exit exchange trade price if the trade is more recent than entry exchange best ask
+ * (we expect to exit passively around that price, the level holds as much as was traded).
+ * Levels are consumed while entry price plus entry fee is below exit price minus exit fee, which gives VWAP of both legs.
+ * <p>
+ * Pairs whose top of book is not crossed (checked on {@link BestQuoteCache}) are skipped without walking the book.
+ * Instance belongs to single instrument handler, results of the last {@link #scan(OrderBook, long)} are kept in fields (no allocations).
+ */
+final class ArbitrageScanner {
+
+    private final ArbitragePairs pairs;
+    private final BestQuoteCache quotes;
+
+    // last trade of each exchange (indexed by exchange)
+    private final @Timestamp long[] lastTradeTimes;
+    @Decimal
+    private final long[] lastTradePrices;
+    @Decimal
+    private final long[] lastTradeSizes;
+
+    // result of the last scan
+    private int pair = -1;
+    @Decimal
+    private long size;
+    @Decimal
+    private long limitPrice;
+    @Decimal
+    private long entryVwap;
+    @Decimal
+    private long exitVwap;
+    @Decimal
+    private long profit;
+
+    ArbitrageScanner(ArbitragePairs pairs, BestQuoteCache quotes) {
+        this.pairs = pairs;
+        this.quotes = quotes;
+        lastTradeTimes = new long[pairs.getExchangeCount()];
+        lastTradePrices = new long[pairs.getExchangeCount()];
+        lastTradeSizes = new long[pairs.getExchangeCount()];
+        resetTrades();
+    }
+
+    /// region exit exchange trades
+
+    void onTrade(int exchangeIndex, @Timestamp long tradeTime, @Decimal long tradePrice, @Decimal long tradeSize) {
+        if (tradeTime >= lastTradeTimes[exchangeIndex]) {
+            lastTradeTimes[exchangeIndex] = tradeTime;
+            lastTradePrices[exchangeIndex] = tradePrice;
+            lastTradeSizes[exchangeIndex] = tradeSize;
+        }
+    }
+
+    /** @return last trade price of given exchange or NULL */
+    @Decimal
+    long getLastTradePrice(int exchangeIndex) {
+        return lastTradePrices[exchangeIndex];
+    }
+
+    void resetTrades() {
+        for (int i = 0; i < lastTradePrices.length; i++)
+            resetTrade(i);
+    }
+
+    /** Forgets last trade of given exchange (it was consumed by the leg that just completed) */
+    void resetTrade(int exchangeIndex) {
+        lastTradeTimes[exchangeIndex] = 0;
+        lastTradePrices[exchangeIndex] = Decimal64Utils.NULL;
+        lastTradeSizes[exchangeIndex] = Decimal64Utils.ZERO;
+    }
+
+    /// endregion
+
+    /** @return true if some pair has profitable opportunity of at most given size (NULL if unlimited), see getters for the best one */
+    boolean scan(OrderBook<OrderBookQuote> orderBook, @Decimal long maxEntrySize) {
+        pair = -1;
+        profit = Decimal64Utils.ZERO;
+
+        final MarketSide<OrderBookQuote> asks = orderBook.getMarketSide(QuoteSide.ASK);
+        final MarketSide<OrderBookQuote> bids = orderBook.getMarketSide(QuoteSide.BID);
+        for (int i = 0; i < pairs.getPairCount(); i++)
+            if (isCrossed(i))
+                scanPair(i, asks, bids, maxEntrySize);
+
+        return pair >= 0;
+    }
+
+    /** @return true if best entry ask is cheaper than the best exit level (checked using cached best quotes) */
+    private boolean isCrossed(int index) {
+        @Decimal final long bestAsk = quotes.getAskPrice(pairs.getEntryIndex(index));
+        if (bestAsk == Decimal64Utils.NULL)
+            return false;
+
+        @Decimal final long tradePrice = getExitTradePrice(index);
+        @Decimal final long bestBid = quotes.getBidPrice(pairs.getExitIndex(index));
+        @Decimal final long bestExit = (bestBid == Decimal64Utils.NULL || (tradePrice != Decimal64Utils.NULL && Decimal64Utils.isGreater(tradePrice, bestBid))) ? tradePrice : bestBid;
+        return bestExit != Decimal64Utils.NULL &&
+                Decimal64Utils.isLess(Decimal64Utils.multiply(bestAsk, pairs.getEntryCostFactor(index)), Decimal64Utils.multiply(bestExit, pairs.getExitValueFactor(index)));
+    }
+
+    /** Trade price is a valid exit level only if it is newer than entry quote, @return NULL otherwise */
+    @Decimal
+    private long getExitTradePrice(int index) {
+        final int exitIndex = pairs.getExitIndex(index);
+        @Decimal final long tradePrice = lastTradePrices[exitIndex];
+        return (tradePrice != Decimal64Utils.NULL && lastTradeTimes[exitIndex] > quotes.getAskTime(pairs.getEntryIndex(index))) ? tradePrice : Decimal64Utils.NULL;
+    }
+
+    private void scanPair(int index, MarketSide<OrderBookQuote> asks, MarketSide<OrderBookQuote> bids, @Decimal long maxEntrySize) {
+        final @Alphanumeric long entryExchange = pairs.getExchange(pairs.getEntryIndex(index));
+        final @Alphanumeric long exitExchange = pairs.getExchange(pairs.getExitIndex(index));
+        @Decimal final long costFactor = pairs.getEntryCostFactor(index);
+        @Decimal final long valueFactor = pairs.getExitValueFactor(index);
+        @Decimal long tradePrice = getExitTradePrice(index); // becomes NULL once traded size is consumed
+        @Decimal long tradeRemaining = lastTradeSizes[pairs.getExitIndex(index)];
+
+        int askIndex = nextLevel(asks, entryExchange, 0);
+        if (askIndex < 0)
+            return;
+
+        int bidIndex = nextLevel(bids, exitExchange, 0);
+        @Decimal long askRemaining = asks.getQuote(askIndex).getSize();
+        @Decimal long bidRemaining = (bidIndex >= 0) ? bids.getQuote(bidIndex).getSize() : Decimal64Utils.ZERO;
+
+        @Decimal long totalSize = Decimal64Utils.ZERO;
+        @Decimal long totalCost = Decimal64Utils.ZERO;
+        @Decimal long totalValue = Decimal64Utils.ZERO;
+        @Decimal long worstAsk = Decimal64Utils.NULL;
+
+        while (askIndex >= 0) {
+            @Decimal final long askPrice = asks.getQuote(askIndex).getPrice();
+
+            // the better of exit bid and trade level
+            final boolean useBid = bidIndex >= 0 && (tradePrice == Decimal64Utils.NULL || Decimal64Utils.isGreater(bids.getQuote(bidIndex).getPrice(), tradePrice));
+            if (!useBid && tradePrice == Decimal64Utils.NULL)
+                break; // exit liquidity is exhausted
+            @Decimal final long exitPrice = useBid ? bids.getQuote(bidIndex).getPrice() : tradePrice;
+
+            if (!Decimal64Utils.isLess(Decimal64Utils.multiply(askPrice, costFactor), Decimal64Utils.multiply(exitPrice, valueFactor)))
+                break; // levels only get worse from here
+
+            @Decimal long quantity = Decimal64Utils.min(askRemaining, useBid ? bidRemaining : tradeRemaining);
+            if (maxEntrySize != Decimal64Utils.NULL)
+                quantity = Decimal64Utils.min(quantity, Decimal64Utils.subtract(maxEntrySize, totalSize));
+
+            totalSize = Decimal64Utils.add(totalSize, quantity);
+            totalCost = Decimal64Utils.add(totalCost, Decimal64Utils.multiply(quantity, askPrice));
+            totalValue = Decimal64Utils.add(totalValue, Decimal64Utils.multiply(quantity, exitPrice));
+            worstAsk = askPrice;
+
+            if (maxEntrySize != Decimal64Utils.NULL && !Decimal64Utils.isLess(totalSize, maxEntrySize))
+                break;
+
+            askRemaining = Decimal64Utils.subtract(askRemaining, quantity);
+            if (!Decimal64Utils.isPositive(askRemaining)) {
+                askIndex = nextLevel(asks, entryExchange, askIndex + 1);
+                if (askIndex >= 0)
+                    askRemaining = asks.getQuote(askIndex).getSize();
+            }
+            if (useBid) {
+                bidRemaining = Decimal64Utils.subtract(bidRemaining, quantity);
+                if (!Decimal64Utils.isPositive(bidRemaining)) {
+                    bidIndex = nextLevel(bids, exitExchange, bidIndex + 1);
+                    if (bidIndex >= 0)
+                        bidRemaining = bids.getQuote(bidIndex).getSize();
+                }
+            } else {
+                tradeRemaining = Decimal64Utils.subtract(tradeRemaining, quantity);
+                if (!Decimal64Utils.isPositive(tradeRemaining))
+                    tradePrice = Decimal64Utils.NULL;
+            }
+        }
+
+        if (!Decimal64Utils.isPositive(totalSize))
+            return;
+
+        @Decimal final long pairProfit = Decimal64Utils.subtract(Decimal64Utils.multiply(totalValue, valueFactor), Decimal64Utils.multiply(totalCost, costFactor));
+        if (pair < 0 || Decimal64Utils.isGreater(pairProfit, profit)) {
+            pair = index;
+            size = totalSize;
+            limitPrice = worstAsk;
+            entryVwap = Decimal64Utils.divide(totalCost, totalSize);
+            exitVwap = Decimal64Utils.divide(totalValue, totalSize);
+            profit = pairProfit;
+        }
+    }
+
+    /** @return index of the next level of given exchange within consolidated book side, or -1 */
+    private static int nextLevel(MarketSide<OrderBookQuote> side, @Alphanumeric long exchange, int from) {
+        final int depth = side.depth();
+        for (int i = from; i < depth; i++)
+            if (side.getQuote(i).getExchangeId() == exchange)
+                return i;
+        return -1;
+    }
+
+    /// region result of the last scan
+
+    /** @return index of the most profitable pair */
+    int getPair() {
+        return pair;
+    }
+
+    /** @return total entry size that can be executed profitably */
+    @Decimal
+    long getSize() {
+        return size;
+    }
+
+    /** @return price of the worst entry level (limit price of entry IOC order) */
+    @Decimal
+    long getLimitPrice() {
+        return limitPrice;
+    }
+
+    @Decimal
+    long getEntryVwap() {
+        return entryVwap;
+    }
+
+    @Decimal
+    long getExitVwap() {
+        return exitVwap;
+    }
+
+    /** @return expected profit net of fees */
+    @Decimal
+    long getProfit() {
+        return profit;
+    }
+
+    /// endregion
+}
@@ -5,6 +5,11 @@ import deltix.anvil.util.annotation.Alphanumeric;
 public class ArbitrageSettings {
     private long entryExchange;
     private long exitExchange;
+    private String[] exchangePairs;
+    private String[] exchangeFees;
+    private double maxEntrySize;
+    private int maxLegs = 1;
+    private double maxExposure;
 
     public @Alphanumeric long getEntryExchange() {
         return entryExchange;
@@ -21,4 +26,48 @@ public class ArbitrageSettings {
     public void setExitExchange(@Alphanumeric long exitExchange) {
         this.exitExchange = exitExchange;
     }
+
+    /** @return additional "ENTRY:EXIT" exchange pairs */
+    public String[] getExchangePairs() {
+        return exchangePairs;
+    }
+
+    public void setExchangePairs(String[] exchangePairs) {
+        this.exchangePairs = exchangePairs;
+    }
+
+    /** @return taker fees as "EXCHANGE:rate" where rate is a fraction of notional */
+    public String[] getExchangeFees() {
+        return exchangeFees;
+    }
+
+    public void setExchangeFees(String[] exchangeFees) {
+        this.exchangeFees = exchangeFees;
+    }
+
+    public double getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(double maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /** @return maximum number of concurrent positions of each symbol */
+    public int getMaxLegs() {
+        return maxLegs;
+    }
+
+    public void setMaxLegs(int maxLegs) {
+        this.maxLegs = maxLegs;
+    }
+
+    /** @return limit of aggregate position size of all concurrent positions of each symbol (unlimited if not positive) */
+    public double getMaxExposure() {
+        return maxExposure;
+    }
+
+    public void setMaxExposure(double maxExposure) {
+        this.maxExposure = maxExposure;
+    }
 }
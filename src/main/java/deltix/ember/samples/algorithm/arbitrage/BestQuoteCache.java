@@ -0,0 +1,99 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.orderbook.core.api.MarketSide;
+import deltix.orderbook.core.api.OrderBook;
+import deltix.orderbook.core.api.OrderBookQuote;
+import deltix.timebase.api.messages.QuoteSide;
+
+/**
+ * Best bid and ask of each involved exchange (see {@link ArbitragePairs}) within consolidated order book of single instrument.
+ * Exchanges whose top of book changed are refreshed together by a single walk of consolidated book,
+ * all other lookups are array reads.
+ */
+final class BestQuoteCache {
+
+    private final ArbitragePairs pairs;
+    @Decimal
+    private final long[] askPrices;
+    @Decimal
+    private final long[] askSizes;
+    @Timestamp
+    private final long[] askTimes;
+    @Decimal
+    private final long[] bidPrices;
+
+    BestQuoteCache(ArbitragePairs pairs) {
+        this.pairs = pairs;
+        final int count = pairs.getExchangeCount();
+        askPrices = new long[count];
+        askSizes = new long[count];
+        askTimes = new long[count];
+        bidPrices = new long[count];
+        clear(pairs.getAllMask());
+    }
+
+    /** Re-reads best quotes of exchanges set in given bit mask */
+    void refresh(OrderBook<OrderBookQuote> orderBook, long exchangeMask) {
+        clear(exchangeMask);
+
+        final MarketSide<OrderBookQuote> asks = orderBook.getMarketSide(QuoteSide.ASK);
+        long pending = exchangeMask;
+        for (int i = 0, depth = asks.depth(); i < depth && pending != 0; i++) {
+            final OrderBookQuote quote = asks.getQuote(i);
+            final int index = pairs.indexOf(quote.getExchangeId());
+            if (index >= 0 && (pending & (1L << index)) != 0) {
+                pending &= ~(1L << index);
+                askPrices[index] = quote.getPrice();
+                askSizes[index] = quote.getSize();
+                askTimes[index] = quote.getTimestamp();
+            }
+        }
+
+        final MarketSide<OrderBookQuote> bids = orderBook.getMarketSide(QuoteSide.BID);
+        pending = exchangeMask;
+        for (int i = 0, depth = bids.depth(); i < depth && pending != 0; i++) {
+            final OrderBookQuote quote = bids.getQuote(i);
+            final int index = pairs.indexOf(quote.getExchangeId());
+            if (index >= 0 && (pending & (1L << index)) != 0) {
+                pending &= ~(1L << index);
+                bidPrices[index] = quote.getPrice();
+            }
+        }
+    }
+
+    private void clear(long exchangeMask) {
+        for (int i = 0; i < askPrices.length; i++) {
+            if ((exchangeMask & (1L << i)) != 0) {
+                askPrices[i] = Decimal64Utils.NULL;
+                askSizes[i] = Decimal64Utils.NULL;
+                askTimes[i] = Long.MAX_VALUE;
+                bidPrices[i] = Decimal64Utils.NULL;
+            }
+        }
+    }
+
+    /** @return best ask price of given exchange or NULL if there is no market */
+    @Decimal
+    long getAskPrice(int exchangeIndex) {
+        return askPrices[exchangeIndex];
+    }
+
+    @Decimal
+    long getAskSize(int exchangeIndex) {
+        return askSizes[exchangeIndex];
+    }
+
+    @Timestamp
+    long getAskTime(int exchangeIndex) {
+        return askTimes[exchangeIndex];
+    }
+
+    /** @return best bid price of given exchange or NULL if there is no market */
+    @Decimal
+    long getBidPrice(int exchangeIndex) {
+        return bidPrices[exchangeIndex];
+    }
+}
@@ -0,0 +1,114 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import com.epam.deltix.dfp.Decimal;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.qsrv.hf.pub.InstrumentMessage;
+import deltix.timebase.api.messages.universal.BaseEntryInfo;
+import deltix.timebase.api.messages.universal.BookResetEntryInfo;
+import deltix.timebase.api.messages.universal.L1EntryInfo;
+import deltix.timebase.api.messages.universal.L2EntryNewInfo;
+import deltix.timebase.api.messages.universal.L2EntryUpdateInfo;
+import deltix.timebase.api.messages.universal.PackageHeaderInfo;
+import deltix.timebase.api.messages.universal.PackageType;
+import deltix.timebase.api.messages.universal.TradeEntryInfo;
+import deltix.util.collections.generated.ObjectList;
+
+/**
+ * Pre-dispatch stage of {@link ArbitrageAlgorithm}: classifies entries of market message once, in a single pass,
+ * into per-exchange bit masks of top of book changes and trades (exchange index is defined by {@link ArbitragePairs}).
+ * Entries of exchanges that are not involved in any pair are skipped.
+ * <p>
+ * One instance is shared by all instruments (algorithm is single-threaded), results are valid until the next call.
+ */
+final class MarketEntryClassifier {
+
+    private final ArbitragePairs pairs;
+    @Decimal
+    private final long[] tradePrices; // last trade price of each exchange within the message
+    @Decimal
+    private final long[] tradeSizes;
+
+    private long topChanged;
+    private long traded;
+    @Timestamp
+    private long time;
+
+    MarketEntryClassifier(ArbitragePairs pairs) {
+        this.pairs = pairs;
+        this.tradePrices = new long[pairs.getExchangeCount()];
+        this.tradeSizes = new long[pairs.getExchangeCount()];
+    }
+
+    void classify(InstrumentMessage message) {
+        time = message.getTimeStampMs();
+        traded = 0;
+
+        if (!(message instanceof PackageHeaderInfo)) {
+            topChanged = pairs.getAllMask();
+            return;
+        }
+
+        final PackageHeaderInfo packageHeader = (PackageHeaderInfo) message;
+        if (!packageHeader.hasEntries()) {
+            topChanged = 0;
+            return;
+        }
+
+        final boolean snapshot = packageHeader.getPackageType() != PackageType.INCREMENTAL_UPDATE;
+        topChanged = snapshot ? pairs.getAllMask() : 0; // snapshots replace the whole book
+
+        final ObjectList<BaseEntryInfo> entries = packageHeader.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            final BaseEntryInfo entry = entries.get(i);
+            final int index = pairs.indexOf(entry.getExchangeId());
+            if (index < 0)
+                continue;
+
+            final long bit = 1L << index;
+            if (entry instanceof TradeEntryInfo) {
+                traded |= bit;
+                tradePrices[index] = ((TradeEntryInfo) entry).getPrice();
+                tradeSizes[index] = ((TradeEntryInfo) entry).getSize();
+            } else if (snapshot || (topChanged & bit) != 0) {
+                continue; // already known
+            } else if (entry instanceof L2EntryUpdateInfo) {
+                if (((L2EntryUpdateInfo) entry).getLevel() == 0) // insert, update or delete of the best level
+                    topChanged |= bit;
+            } else if (entry instanceof L2EntryNewInfo) {
+                if (((L2EntryNewInfo) entry).getLevel() == 0)
+                    topChanged |= bit;
+            } else if (entry instanceof L1EntryInfo || entry instanceof BookResetEntryInfo) {
+                topChanged |= bit;
+            }
+        }
+    }
+
+    /** @return bit mask of exchanges whose best bid or ask may have changed */
+    long getTopChanged() {
+        return topChanged;
+    }
+
+    /** @return bit mask of exchanges that reported trades */
+    long getTraded() {
+        return traded;
+    }
+
+    /** @return price of the last trade of given exchange, valid only if exchange bit is set in {@link #getTraded()} */
+    @Decimal
+    long getTradePrice(int exchangeIndex) {
+        assert (traded & (1L << exchangeIndex)) != 0;
+        return tradePrices[exchangeIndex];
+    }
+
+    /** @return size of the last trade of given exchange, valid only if exchange bit is set in {@link #getTraded()} */
+    @Decimal
+    long getTradeSize(int exchangeIndex) {
+        assert (traded & (1L << exchangeIndex)) != 0;
+        return tradeSizes[exchangeIndex];
+    }
+
+    @Timestamp
+    long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,99 @@
+package deltix.ember.samples.algorithm.bollinger;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.AsciiStringBuilder;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.ember.samples.algorithm.signal.BarAggregator;
+import deltix.ember.samples.algorithm.signal.RollingStatistics;
+
+/**
+ * Per-instrument Bollinger Band pipeline shared by both versions of the algorithm and back test:
+ * feature update (bars and rolling statistics) -> signal ({@link BollingerBandSignal}) -> sizing (one order at a time).
+ * Sending the order is left to the caller.
+ * <p>
+ * Nothing is allocated or formatted per trade: reason text is produced by {@link #appendReason} and position changes
+ * are only flagged (see {@link #isPositionChanged()}), so callers materialize them only when somebody consumes them.
+ */
+public final class BollingerBandPipeline {
+
+    private final BarAggregator bars;
+    private final RollingStatistics statistics; // of bar close prices
+    private final BollingerBandSignal signal;
+    private final BollingerPosition position = new BollingerPosition();
+    @Decimal
+    private final long commissionPerShare;
+
+    /** Size of pending order (can be negative for sell) */
+    @Decimal
+    private long pendingSize = Decimal64Utils.ZERO;
+    private boolean positionChanged;
+
+    public BollingerBandPipeline(BollingerBandSettings settings) {
+        this.bars = new BarAggregator(settings.getBarType(), settings.getBarSize(), settings.getNumPeriods());
+        this.statistics = new RollingStatistics(settings.getNumPeriods());
+        this.signal = new BollingerBandSignal(settings);
+        this.commissionPerShare = settings.getCommissionPerShare();
+    }
+
+    /**
+     * Processes market trade
+     * @return size of order to send (negative for SELL), or zero
+     */
+    @Decimal
+    public long onMarketTrade(@Timestamp long time, @Decimal long price, @Decimal long size) {
+        if (! bars.onTrade(time, price, size))
+            return Decimal64Utils.ZERO; // bands are evaluated once per bar
+
+        @Decimal final long close = bars.getClose(0);
+        statistics.add(close);
+
+        if (! statistics.isFull() || ! Decimal64Utils.isZero(pendingSize)) // only if we do not have active orders
+            return Decimal64Utils.ZERO;
+
+        return signal.evaluate(statistics, close, size, position);
+    }
+
+    /** Remembers order sent for the last signal */
+    public void onOrderSent(@Decimal long orderSize) {
+        pendingSize = orderSize;
+    }
+
+    /** Order is complete (filled, canceled or rejected), next signal may be traded. Callers must report every final state, otherwise pipeline stops trading */
+    public void onOrderFinal() {
+        pendingSize = Decimal64Utils.ZERO;
+    }
+
+    /** Processes fill of our order */
+    public void onOrderTrade(boolean buy, @Decimal long quantity, @Decimal long price) {
+        position.onTrade(buy, quantity, price, commissionPerShare);
+        positionChanged = true;
+    }
+
+    /** @return true if position changed since the last {@link #clearPositionChanged()} */
+    public boolean isPositionChanged() {
+        return positionChanged;
+    }
+
+    public void clearPositionChanged() {
+        positionChanged = false;
+    }
+
+    /** Appends text describing the last signal */
+    public AsciiStringBuilder appendReason(AsciiStringBuilder builder) {
+        return signal.appendReason(builder);
+    }
+
+    public BollingerPosition getPosition() {
+        return position;
+    }
+
+    @Decimal
+    public long getPendingSize() {
+        return pendingSize;
+    }
+
+    public RollingStatistics getStatistics() {
+        return statistics;
+    }
+}
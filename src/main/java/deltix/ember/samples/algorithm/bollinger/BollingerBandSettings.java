@@ -1,6 +1,7 @@
 package deltix.ember.samples.algorithm.bollinger;
 
 import com.epam.deltix.dfp.Decimal;
+import deltix.ember.samples.algorithm.signal.BarType;
 
 
 /**
@@ -27,6 +28,14 @@ public class BollingerBandSettings {
 
     private boolean enableLong = true;
 
+    private BarType barType = BarType.TICK;
+
+    private double barSize = 1;
+
+    private boolean orderReasonText = true;
+
+    private boolean publishPositions = true;
+
     public double getNumStdDevs() {
         return numStdDevs;
     }
@@ -100,4 +109,40 @@ public class BollingerBandSettings {
     public void setEnableLong(boolean enableLong) {
         this.enableLong = enableLong;
     }
+
+    /** @return type of bars trades are aggregated into, bands are evaluated once per bar */
+    public BarType getBarType() {
+        return barType;
+    }
+
+    public void setBarType(BarType barType) {
+        this.barType = barType;
+    }
+
+    /** @return number of trades (TICK), interval in milliseconds (TIME) or traded volume (VOLUME) of each bar */
+    public double getBarSize() {
+        return barSize;
+    }
+
+    public void setBarSize(double barSize) {
+        this.barSize = barSize;
+    }
+
+    /** @return true to attach signal reason to each order as Text attribute (reason is also logged at INFO level) */
+    public boolean isOrderReasonText() {
+        return orderReasonText;
+    }
+
+    public void setOrderReasonText(boolean orderReasonText) {
+        this.orderReasonText = orderReasonText;
+    }
+
+    /** @return true to publish changed positions into "bollinger-positions" channel (v1 algorithm) */
+    public boolean isPublishPositions() {
+        return publishPositions;
+    }
+
+    public void setPublishPositions(boolean publishPositions) {
+        this.publishPositions = publishPositions;
+    }
 }
@@ -0,0 +1,126 @@
+package deltix.ember.samples.algorithm.bollinger;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.AsciiStringBuilder;
+import deltix.ember.samples.algorithm.signal.RollingStatistics;
+
+/**
+ * Bollinger Band trading rules: opens position when price leaves the band, closes it on stop loss, profit taking or
+ * when price crosses the middle band. Shared by live algorithm and back test, does not allocate.
+ * <p>
+ * Reason of the last signal is kept as a {@link Reason} and a number, text is produced only on demand (see {@link #appendReason}).
+ */
+public final class BollingerBandSignal {
+    @Decimal
+    private static final long HUNDRED = Decimal64Utils.fromLong(100);
+
+    public enum Reason {
+        NONE("", ""),
+        ABOVE_UPPER_BAND("Above ", ""),
+        BELOW_BOTTOM_BAND("Below ", ""),
+        STOP_LOSS("Stop Loss: ", "%"),
+        PROFIT_TAKING("Profit Taking: ", "%"),
+        CLOSE_SHORT("Close Short (MP = ", ")"),
+        CLOSE_LONG("Close Long (MP = ", ")");
+
+        private final String prefix;
+        private final String suffix;
+
+        Reason(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+    @Decimal
+    private final long numStdDevs;
+    @Decimal
+    private final long openOrderSizeCoefficient;
+    @Decimal
+    private final long stopLossPercent;
+    @Decimal
+    private final long profitPercent;
+    private final boolean enableShort;
+    private final boolean enableLong;
+
+    private Reason reason = Reason.NONE;
+    @Decimal
+    private long reasonValue = Decimal64Utils.ZERO; // band, PnL percent or middle band price
+
+    public BollingerBandSignal(BollingerBandSettings settings) {
+        this.numStdDevs = Decimal64Utils.fromDouble(settings.getNumStdDevs());
+        this.openOrderSizeCoefficient = Decimal64Utils.fromDouble(settings.getOpenOrderSizeCoefficient());
+        this.stopLossPercent = Decimal64Utils.fromDouble(settings.getStopLossPercent());
+        this.profitPercent = Decimal64Utils.fromDouble(settings.getProfitPercent());
+        this.enableShort = settings.isEnableShort();
+        this.enableLong = settings.isEnableLong();
+    }
+
+    /**
+     * @param statistics statistics of bar close prices (must be full)
+     * @param price current price
+     * @param tradeSize size of the last trade, defines size of opening order
+     * @return order size (negative for SELL) signaled by given price, or zero
+     */
+    @Decimal
+    public long evaluate(RollingStatistics statistics, @Decimal long price, @Decimal long tradeSize, BollingerPosition position) {
+        @Decimal final long mp = statistics.getMean();
+        @Decimal final long positionSize = position.getSize();
+
+        reason = Reason.NONE;
+
+        // rules for position opening
+        @Decimal long result = Decimal64Utils.ZERO;
+        if (Decimal64Utils.isZero(positionSize)) {
+            @Decimal final long bandWidth = Decimal64Utils.multiply(numStdDevs, statistics.getStdDev());
+            @Decimal final long upperBand = Decimal64Utils.add(mp, bandWidth);
+            @Decimal final long bottomBand = Decimal64Utils.subtract(mp, bandWidth);
+            @Decimal final long openSize = Decimal64Utils.max(Decimal64Utils.ONE,
+                    Decimal64Utils.fromLong(Decimal64Utils.toLong(Decimal64Utils.multiply(tradeSize, openOrderSizeCoefficient))));
+
+            if (Decimal64Utils.isGreater(price, upperBand) && enableShort) {
+                result = Decimal64Utils.negate(openSize);
+                setReason(Reason.ABOVE_UPPER_BAND, upperBand);
+            } else if (Decimal64Utils.isLess(price, bottomBand) && enableLong) {
+                result = openSize;
+                setReason(Reason.BELOW_BOTTOM_BAND, bottomBand);
+            }
+        } else {
+            // risk management - check for stop loss
+            @Decimal final long pnlPercent = Decimal64Utils.multiply(position.getProfitRatio(price), HUNDRED);
+
+            if (Decimal64Utils.isLess(pnlPercent, Decimal64Utils.negate(stopLossPercent))) {
+                setReason(Reason.STOP_LOSS, pnlPercent);
+                result = Decimal64Utils.negate(positionSize);
+            } else if (Decimal64Utils.isGreater(pnlPercent, profitPercent)) { // check for profit taking
+                setReason(Reason.PROFIT_TAKING, pnlPercent);
+                result = Decimal64Utils.negate(positionSize);
+            } else if (Decimal64Utils.isNegative(positionSize) && Decimal64Utils.isLess(price, mp)) {// rules for position closing
+                setReason(Reason.CLOSE_SHORT, mp);
+                result = Decimal64Utils.negate(positionSize);
+            } else if (Decimal64Utils.isPositive(positionSize) && Decimal64Utils.isGreater(price, mp)) {
+                setReason(Reason.CLOSE_LONG, mp);
+                result = Decimal64Utils.negate(positionSize);
+            }
+        }
+        return result;
+    }
+
+    private void setReason(Reason reason, @Decimal long value) {
+        this.reason = reason;
+        this.reasonValue = value;
+    }
+
+    /** @return reason of the last signal, NONE if the last evaluation did not signal */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /** Appends text describing reason of the last signal */
+    public AsciiStringBuilder appendReason(AsciiStringBuilder builder) {
+        if (reason != Reason.NONE)
+            builder.append(reason.prefix).append(Decimal64Utils.toDouble(reasonValue)).append(reason.suffix);
+        return builder;
+    }
+}
@@ -0,0 +1,84 @@
+package deltix.ember.samples.algorithm.bollinger;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+
+/**
+ * Position of Bollinger Band strategy in a single instrument. Shared by live algorithm and back test.
+ */
+public final class BollingerPosition {
+
+    /** Actual position (negative if short) */
+    @Decimal
+    private long size = Decimal64Utils.ZERO;
+
+    /** Accumulated commissions */
+    @Decimal
+    private long cost = Decimal64Utils.ZERO;
+
+    /** Cash of open position (negative for long) */
+    @Decimal
+    private long cash = Decimal64Utils.ZERO;
+
+    /** Cash of closed positions */
+    @Decimal
+    private long realizedCash = Decimal64Utils.ZERO;
+
+    public void onTrade(boolean buy, @Decimal long quantity, @Decimal long price, @Decimal long commissionPerShare) {
+        @Decimal final long tradeCash = Decimal64Utils.multiply(quantity, price);
+        if (buy) {
+            size = Decimal64Utils.add(size, quantity);
+            cash = Decimal64Utils.subtract(cash, tradeCash);
+        } else {
+            size = Decimal64Utils.subtract(size, quantity);
+            cash = Decimal64Utils.add(cash, tradeCash);
+        }
+        cost = Decimal64Utils.add(cost, Decimal64Utils.multiply(quantity, commissionPerShare));
+
+        if (Decimal64Utils.isZero(size)) {
+            realizedCash = Decimal64Utils.add(realizedCash, cash);
+            cash = Decimal64Utils.ZERO;
+        }
+    }
+
+    /** @return profit of open position at given price relative to its basis (0.1 means +10%) */
+    @Decimal
+    public long getProfitRatio(@Decimal long price) {
+        @Decimal final long basis = Decimal64Utils.subtract(cost, cash);
+        return Decimal64Utils.subtract(Decimal64Utils.divide(Decimal64Utils.multiply(size, price), basis), Decimal64Utils.ONE);
+    }
+
+    /** @return realized cash plus open position marked at given price, minus commissions */
+    @Decimal
+    public long getProfitAndLoss(@Decimal long price) {
+        @Decimal final long unrealized = Decimal64Utils.add(cash, Decimal64Utils.multiply(size, price));
+        return Decimal64Utils.subtract(Decimal64Utils.add(realizedCash, unrealized), cost);
+    }
+
+    @Decimal
+    public long getSize() {
+        return size;
+    }
+
+    @Decimal
+    public long getCost() {
+        return cost;
+    }
+
+    @Decimal
+    public long getCash() {
+        return cash;
+    }
+
+    @Decimal
+    public long getRealizedCash() {
+        return realizedCash;
+    }
+
+    public void clear() {
+        size = Decimal64Utils.ZERO;
+        cost = Decimal64Utils.ZERO;
+        cash = Decimal64Utils.ZERO;
+        realizedCash = Decimal64Utils.ZERO;
+    }
+}
@@ -0,0 +1,62 @@
+package deltix.ember.samples.algorithm.bollinger.backtest;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
+
+/** Outcome of back test of a single settings combination */
+public final class BacktestResult {
+
+    private final BollingerBandSettings settings;
+    @Decimal
+    private final long profitAndLoss;
+    @Decimal
+    private final long commission;
+    @Decimal
+    private final long finalPosition;
+    private final int orderCount;
+
+    BacktestResult(BollingerBandSettings settings, @Decimal long profitAndLoss, @Decimal long commission, @Decimal long finalPosition, int orderCount) {
+        this.settings = settings;
+        this.profitAndLoss = profitAndLoss;
+        this.commission = commission;
+        this.finalPosition = finalPosition;
+        this.orderCount = orderCount;
+    }
+
+    public BollingerBandSettings getSettings() {
+        return settings;
+    }
+
+    /** @return net profit (after commissions), open position is marked at the last trade price */
+    @Decimal
+    public long getProfitAndLoss() {
+        return profitAndLoss;
+    }
+
+    @Decimal
+    public long getCommission() {
+        return commission;
+    }
+
+    @Decimal
+    public long getFinalPosition() {
+        return finalPosition;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    @Override
+    public String toString() {
+        return "numPeriods=" + settings.getNumPeriods() +
+                " numStdDevs=" + settings.getNumStdDevs() +
+                " stopLossPercent=" + settings.getStopLossPercent() +
+                " profitPercent=" + settings.getProfitPercent() +
+                " PnL=" + Decimal64Utils.toString(profitAndLoss) +
+                " commission=" + Decimal64Utils.toString(commission) +
+                " position=" + Decimal64Utils.toString(finalPosition) +
+                " orders=" + orderCount;
+    }
+}
@@ -0,0 +1,120 @@
+package deltix.ember.samples.algorithm.bollinger.backtest;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandPipeline;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
+import deltix.ember.samples.algorithm.bollinger.BollingerPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline parameter sweep of Bollinger Band strategy: evaluates many {@link BollingerBandSettings} combinations over
+ * the same {@link TradeHistory} in parallel (fork/join, one combination per task) and reports PnL of each one.
+ * <p>
+ * Uses the same {@link BollingerBandPipeline} as live algorithms. Simplified execution:
+ * order is filled immediately and completely at the price of the trade that produced the signal.
+ */
+public final class BollingerBacktest {
+
+    private final TradeHistory history;
+
+    public BollingerBacktest(TradeHistory history) {
+        this.history = history;
+    }
+
+    /** Back tests given combinations using given pool, results are in the same order as combinations */
+    public BacktestResult[] run(List<BollingerBandSettings> combinations, ForkJoinPool pool) {
+        final BacktestResult[] results = new BacktestResult[combinations.size()];
+        pool.invoke(new SweepTask(combinations, results, 0, results.length));
+        return results;
+    }
+
+    /** Back tests single combination in the calling thread */
+    public BacktestResult run(BollingerBandSettings settings) {
+        final BollingerBandPipeline pipeline = new BollingerBandPipeline(settings);
+        int orderCount = 0;
+
+        final int size = history.size();
+        for (int i = 0; i < size; i++) {
+            @Decimal final long price = history.getPrice(i);
+            @Decimal final long orderSize = pipeline.onMarketTrade(history.getTime(i), price, history.getSize(i));
+            if (! Decimal64Utils.isZero(orderSize)) {
+                pipeline.onOrderTrade(Decimal64Utils.isPositive(orderSize), Decimal64Utils.abs(orderSize), price);
+                orderCount++;
+            }
+        }
+
+        final BollingerPosition position = pipeline.getPosition();
+        @Decimal final long lastPrice = (size > 0) ? history.getPrice(size - 1) : Decimal64Utils.ZERO;
+        return new BacktestResult(settings, position.getProfitAndLoss(lastPrice), position.getCost(), position.getSize(), orderCount);
+    }
+
+    /** @return all combinations of given parameter values, other settings are copied from base settings */
+    public static List<BollingerBandSettings> combine(BollingerBandSettings base, int[] numPeriods, double[] numStdDevs, double[] stopLossPercents, double[] profitPercents) {
+        final List<BollingerBandSettings> result = new ArrayList<>(numPeriods.length * numStdDevs.length * stopLossPercents.length * profitPercents.length);
+        for (int periods : numPeriods) {
+            for (double stdDevs : numStdDevs) {
+                for (double stopLoss : stopLossPercents) {
+                    for (double profit : profitPercents) {
+                        final BollingerBandSettings settings = copy(base);
+                        settings.setNumPeriods(periods);
+                        settings.setNumStdDevs(stdDevs);
+                        settings.setStopLossPercent(stopLoss);
+                        settings.setProfitPercent(profit);
+                        result.add(settings);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BollingerBandSettings copy(BollingerBandSettings source) {
+        final BollingerBandSettings result = new BollingerBandSettings();
+        result.setNumStdDevs(source.getNumStdDevs());
+        result.setConstantCommission(source.getConstantCommission());
+        result.setCommissionPerShare(source.getCommissionPerShare());
+        result.setOpenOrderSizeCoefficient(source.getOpenOrderSizeCoefficient());
+        result.setProfitPercent(source.getProfitPercent());
+        result.setStopLossPercent(source.getStopLossPercent());
+        result.setNumPeriods(source.getNumPeriods());
+        result.setEnableShort(source.isEnableShort());
+        result.setEnableLong(source.isEnableLong());
+        result.setBarType(source.getBarType());
+        result.setBarSize(source.getBarSize());
+        result.setOrderReasonText(source.isOrderReasonText());
+        result.setPublishPositions(source.isPublishPositions());
+        return result;
+    }
+
+    /** Splits range of combinations in halves until a single combination is left */
+    private final class SweepTask extends RecursiveAction {
+
+        private final List<BollingerBandSettings> combinations;
+        private final BacktestResult[] results;
+        private final int from;
+        private final int to;
+
+        SweepTask(List<BollingerBandSettings> combinations, BacktestResult[] results, int from, int to) {
+            this.combinations = combinations;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to)
+                    results[from] = run(combinations.get(from));
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(combinations, results, from, middle), new SweepTask(combinations, results, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package deltix.ember.samples.algorithm.bollinger.backtest;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.CloseHelper;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.qsrv.hf.pub.InstrumentMessage;
+import deltix.qsrv.hf.tickdb.pub.TickCursor;
+import deltix.timebase.api.messages.TradeMessageInfo;
+import deltix.timebase.api.messages.universal.BaseEntryInfo;
+import deltix.timebase.api.messages.universal.PackageHeaderInfo;
+import deltix.timebase.api.messages.universal.TradeEntryInfo;
+import deltix.util.collections.generated.ObjectList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only trade history of a single instrument stored column by column: timestamps, prices and sizes (DFP).
+ * Columns are either heap arrays or memory mapped file (see {@link #write(Path)} and {@link #map(Path)}), so that
+ * history can be shared by all back test threads without copying. History that does not fit into heap is streamed
+ * straight into the file by {@link Writer} (see {@link #load(TickCursor, Path)}).
+ * <p>
+ * File layout (native byte order): magic, number of trades, then each column as a block of longs.
+ * Mapped column is limited to 2^28 trades.
+ */
+public final class TradeHistory {
+
+    private static final long MAGIC = 0x4842545248495354L;
+    private static final int HEADER_SIZE = 2 * Long.BYTES;
+    private static final int MAX_MAPPED_SIZE = Integer.MAX_VALUE / Long.BYTES;
+
+    private final int size;
+    private final LongBuffer times;
+    private final LongBuffer prices;
+    private final LongBuffer sizes;
+
+    private TradeHistory(int size, LongBuffer times, LongBuffer prices, LongBuffer sizes) {
+        this.size = size;
+        this.times = times;
+        this.prices = prices;
+        this.sizes = sizes;
+    }
+
+    /** @return number of trades */
+    public int size() {
+        return size;
+    }
+
+    @Timestamp
+    public long getTime(int index) {
+        return times.get(index);
+    }
+
+    @Decimal
+    public long getPrice(int index) {
+        return prices.get(index);
+    }
+
+    @Decimal
+    public long getSize(int index) {
+        return sizes.get(index);
+    }
+
+    /** Wraps given columns (not copied) */
+    public static TradeHistory wrap(@Timestamp long[] times, @Decimal long[] prices, @Decimal long[] sizes, int size) {
+        if (size > times.length || size > prices.length || size > sizes.length)
+            throw new IllegalArgumentException("Columns are shorter than " + size);
+        return new TradeHistory(size, LongBuffer.wrap(times), LongBuffer.wrap(prices), LongBuffer.wrap(sizes));
+    }
+
+    /** Saves history into given file, see {@link #map(Path)} */
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+            buffer.putLong(MAGIC).putLong(size);
+            write(channel, buffer, times);
+            write(channel, buffer, prices);
+            write(channel, buffer, sizes);
+            flush(channel, buffer);
+        }
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer, LongBuffer column) throws IOException {
+        for (int i = 0; i < size; i++) {
+            if (buffer.remaining() < Long.BYTES)
+                flush(channel, buffer);
+            buffer.putLong(column.get(i));
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /** Maps history saved by {@link #write(Path)} into memory (read-only) */
+    public static TradeHistory map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("Truncated trade history: " + file);
+            header.flip();
+
+            if (header.getLong() != MAGIC)
+                throw new IOException("Not a trade history: " + file);
+            final long size = header.getLong();
+            if (size < 0 || size > MAX_MAPPED_SIZE)
+                throw new IOException("Unsupported number of trades " + size + ": " + file);
+            if (channel.size() < HEADER_SIZE + 3 * size * Long.BYTES)
+                throw new IOException("Truncated trade history: " + file);
+
+            final int count = (int) size;
+            return new TradeHistory(count, map(channel, 0, count), map(channel, 1, count), map(channel, 2, count));
+        } // mapping stays valid after channel is closed
+    }
+
+    private static LongBuffer map(FileChannel channel, int column, int size) throws IOException {
+        final long offset = HEADER_SIZE + (long) column * size * Long.BYTES;
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /** Reads all trades of given TimeBase cursor (select single symbol) into heap columns */
+    public static TradeHistory load(TickCursor cursor) {
+        final Builder builder = new Builder(64 * 1024);
+        while (cursor.next())
+            builder.add(cursor.getMessage());
+        return builder.build();
+    }
+
+    /** Reads all trades of given TimeBase cursor (select single symbol) into given file and maps it: history is never held in heap */
+    public static TradeHistory load(TickCursor cursor, Path file) throws IOException {
+        try (Writer writer = new Writer(file)) {
+            while (cursor.next())
+                writer.add(cursor.getMessage());
+            return writer.finish();
+        }
+    }
+
+    /** Receives trades decoded from market messages */
+    interface TradeSink<E extends Exception> {
+        void onTrade(@Timestamp long time, @Decimal long price, @Decimal long size) throws E;
+    }
+
+    /** Decodes trades of given market message: trade entries of universal package or classic trade message (double price and size) */
+    static <E extends Exception> void decode(InstrumentMessage message, TradeSink<E> sink) throws E {
+        if (message instanceof PackageHeaderInfo) {
+            final PackageHeaderInfo packageHeader = (PackageHeaderInfo) message;
+            if (packageHeader.hasEntries()) {
+                final ObjectList<BaseEntryInfo> entries = packageHeader.getEntries();
+                for (int i = 0; i < entries.size(); i++) {
+                    final BaseEntryInfo entry = entries.get(i);
+                    if (entry instanceof TradeEntryInfo)
+                        sink.onTrade(message.getTimeStampMs(), ((TradeEntryInfo) entry).getPrice(), ((TradeEntryInfo) entry).getSize());
+                }
+            }
+        } else if (message instanceof TradeMessageInfo) {
+            final TradeMessageInfo trade = (TradeMessageInfo) message;
+            sink.onTrade(message.getTimeStampMs(), Decimal64Utils.fromDouble(trade.getPrice()), Decimal64Utils.fromDouble(trade.getSize()));
+        }
+    }
+
+    /** Collects trades into growing heap columns */
+    public static final class Builder implements TradeSink<RuntimeException> {
+
+        private long[] times;
+        private long[] prices;
+        private long[] sizes;
+        private int size;
+
+        public Builder(int initialCapacity) {
+            times = new long[initialCapacity];
+            prices = new long[initialCapacity];
+            sizes = new long[initialCapacity];
+        }
+
+        public Builder add(@Timestamp long time, @Decimal long price, @Decimal long size) {
+            if (this.size == times.length) {
+                final int capacity = Math.max(16, 2 * times.length);
+                times = Arrays.copyOf(times, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            times[this.size] = time;
+            prices[this.size] = price;
+            sizes[this.size] = size;
+            this.size++;
+            return this;
+        }
+
+        /** Adds trades of given market message, see {@link TradeHistory#decode} */
+        public Builder add(InstrumentMessage message) {
+            decode(message, this);
+            return this;
+        }
+
+        @Override
+        public void onTrade(@Timestamp long time, @Decimal long price, @Decimal long size) {
+            add(time, price, size);
+        }
+
+        public TradeHistory build() {
+            return wrap(times, prices, sizes, size);
+        }
+    }
+
+    /**
+     * Streams trades into file of {@link #write(Path)} format using fixed size buffers. Time column is written in place,
+     * price and size columns go to temporary sibling files and are appended by {@link #finish()}.
+     */
+    public static final class Writer implements TradeSink<IOException>, AutoCloseable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final FileChannel priceChannel;
+        private final FileChannel sizeChannel;
+        private final ByteBuffer timeBuffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+        private final ByteBuffer priceBuffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+        private final ByteBuffer sizeBuffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+        private long size;
+
+        public Writer(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.priceChannel = openColumn(file, ".prices");
+            this.sizeChannel = openColumn(file, ".sizes");
+            channel.position(HEADER_SIZE); // header is written once number of trades is known
+        }
+
+        private static FileChannel openColumn(Path file, String suffix) throws IOException {
+            return FileChannel.open(file.resolveSibling(file.getFileName() + suffix),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        public void add(@Timestamp long time, @Decimal long price, @Decimal long size) throws IOException {
+            if (this.size == MAX_MAPPED_SIZE)
+                throw new IOException("Trade history exceeds " + MAX_MAPPED_SIZE + " trades: " + file);
+
+            if (timeBuffer.remaining() < Long.BYTES) { // all buffers fill up together
+                flush(channel, timeBuffer);
+                flush(priceChannel, priceBuffer);
+                flush(sizeChannel, sizeBuffer);
+            }
+            timeBuffer.putLong(time);
+            priceBuffer.putLong(price);
+            sizeBuffer.putLong(size);
+            this.size++;
+        }
+
+        /** Adds trades of given market message, see {@link TradeHistory#decode} */
+        public void add(InstrumentMessage message) throws IOException {
+            decode(message, this);
+        }
+
+        @Override
+        public void onTrade(@Timestamp long time, @Decimal long price, @Decimal long size) throws IOException {
+            add(time, price, size);
+        }
+
+        /** Completes the file and maps it, see {@link TradeHistory#map(Path)} */
+        public TradeHistory finish() throws IOException {
+            flush(channel, timeBuffer);
+            flush(priceChannel, priceBuffer);
+            flush(sizeChannel, sizeBuffer);
+            append(priceChannel);
+            append(sizeChannel);
+
+            timeBuffer.putLong(MAGIC).putLong(size).flip();
+            long position = 0;
+            while (timeBuffer.hasRemaining())
+                position += channel.write(timeBuffer, position);
+            timeBuffer.clear();
+
+            return map(file);
+        }
+
+        private void append(FileChannel column) throws IOException {
+            final long length = column.size();
+            long position = 0;
+            while (position < length)
+                position += column.transferTo(position, length - position, channel);
+        }
+
+        /** Closes the file (mapping returned by {@link #finish()} stays valid) and deletes temporary column files */
+        @Override
+        public void close() {
+            CloseHelper.close(channel);
+            CloseHelper.close(priceChannel);
+            CloseHelper.close(sizeChannel);
+        }
+    }
+}
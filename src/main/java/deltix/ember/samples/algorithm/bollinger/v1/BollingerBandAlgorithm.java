@@ -1,5 +1,6 @@
 package deltix.ember.samples.algorithm.bollinger.v1;
 
+import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
 import deltix.anvil.util.AsciiStringBuilder;
 import deltix.anvil.util.Factory;
@@ -7,6 +8,7 @@ import deltix.anvil.util.codec.AlphanumericCodec;
 import deltix.data.stream.MessageChannel;
 import deltix.efix.message.field.Tag;
 import deltix.ember.message.trade.*;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandPipeline;
 import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
 import deltix.ember.service.algorithm.AbstractAlgorithm;
 import deltix.ember.service.algorithm.AlgoOrder;
@@ -33,7 +35,8 @@ class BollingerBandAlgorithm extends AbstractAlgorithm<AlgoOrder, BollingerBandI
     private final long destinationId;
     private final BollingerBandSettings bandSettings;
 
-    private final MessageChannel positionsChannel;
+    private final MessageChannel positionsChannel; // null if positions are not published
+    private final ObjectArrayList<BollingerBandInstrumentData> changedPositions = new ObjectArrayList<>();
 
     BollingerBandAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, BollingerBandSettings bandSettings) {
         super(context, cacheSettings);
@@ -45,14 +48,31 @@ class BollingerBandAlgorithm extends AbstractAlgorithm<AlgoOrder, BollingerBandI
         attr.setValue(orderReason);
         orderAttributes.add(attr);
 
-        positionsChannel = context.createOutputChannel("bollinger-positions", BollingerBandInstrumentMessage.class);
+        positionsChannel = bandSettings.isPublishPositions() ? context.createOutputChannel("bollinger-positions", BollingerBandInstrumentMessage.class) : null;
 
         destinationId = AlphanumericCodec.encode("SIM");
     }
 
     @Override
     public void close() {
-        positionsChannel.close();
+        if (positionsChannel != null)
+            positionsChannel.close();
+    }
+
+    /** Publishes positions changed during this cycle, one message per instrument however many fills it had */
+    @Override
+    public int doLast(int workDone) {
+        int result = super.doLast(workDone);
+        if (! changedPositions.isEmpty()) {
+            for (int i = 0; i < changedPositions.size(); i++) {
+                final BollingerBandInstrumentData instrumentInfo = changedPositions.get(i);
+                instrumentInfo.pipeline.clearPositionChanged();
+                positionsChannel.send(instrumentInfo.getPositionMessage());
+            }
+            result += changedPositions.size();
+            changedPositions.clear();
+        }
+        return result;
     }
 
     @Override
@@ -67,114 +87,77 @@ class BollingerBandAlgorithm extends AbstractAlgorithm<AlgoOrder, BollingerBandI
 
     /** Process fill events of our orders */
     @Override
-    @SuppressWarnings("unchecked")
     protected void handleTradeEvent(ChildOrder<AlgoOrder> order, OrderTradeReportEvent event) {
         BollingerBandInstrumentData instrumentInfo = get(order.getSymbol());
         if (instrumentInfo != null) {
-            final double cost = Decimal64Utils.toDouble(event.getTradeQuantity()) * bandSettings.getCommissionPerShare();
-
-            if (order.getSide() == Side.BUY) {
-                instrumentInfo.data.positionSize += Decimal64Utils.toLong(event.getTradeQuantity());
-                instrumentInfo.data.positionCash -= Decimal64Utils.toDouble(Decimal64Utils.multiply(event.getTradeQuantity(), event.getTradePrice()));
-            } else {
-                instrumentInfo.data.positionSize -= Decimal64Utils.toLong(event.getTradeQuantity());
-                instrumentInfo.data.positionCash += Decimal64Utils.toDouble(Decimal64Utils.multiply(event.getTradeQuantity(), event.getTradePrice()));
-            }
-            instrumentInfo.data.positionCost += cost;
+            final BollingerBandPipeline pipeline = instrumentInfo.pipeline;
+            if (positionsChannel != null && ! pipeline.isPositionChanged())
+                changedPositions.add(instrumentInfo); // published at the end of this cycle
 
-
-            if (instrumentInfo.data.positionSize == 0) {
-                //outputMessage.totalProfit += instrumentInfo.positionCash;
-                instrumentInfo.data.positionCash = 0;
-            }
+            pipeline.onOrderTrade(order.getSide() == Side.BUY, event.getTradeQuantity(), event.getTradePrice());
 
             LOGGER.info("Size of %s position changed to %s (position cash %s)")
                     .with(instrumentInfo.getSymbol())
-                    .with(instrumentInfo.data.positionSize)
-                    .with(instrumentInfo.data.positionCash);
+                    .withDecimal64(pipeline.getPosition().getSize())
+                    .withDecimal64(pipeline.getPosition().getCash());
 
             if (order.isFinal())
-                instrumentInfo.data.pendingSize = 0;
-
-            positionsChannel.send(instrumentInfo);
+                pipeline.onOrderFinal();
         }
     }
 
+    @Override
+    protected void handleOrderRejectEvent(ChildOrder<AlgoOrder> order, OrderRejectEvent event) {
+        LOGGER.warn("Order %s rejected: %s").with(order.getOrderId()).with(event.getReason());
+        onOrderFinal(order);
+    }
+
+    @Override
+    protected void handleOrderCancelEvent(ChildOrder<AlgoOrder> order, OrderCancelEvent event) {
+        onOrderFinal(order);
+    }
+
+    /** Pending order is done without being completely filled (fills, if any, are already counted): next signal may be traded */
+    private void onOrderFinal(ChildOrder<AlgoOrder> order) {
+        BollingerBandInstrumentData instrumentInfo = get(order.getSymbol());
+        if (instrumentInfo != null)
+            instrumentInfo.pipeline.onOrderFinal();
+    }
+
     /** Process market data: trade events */
     @Override
     protected InstrumentDataFactory<BollingerBandInstrumentData> createInstrumentDataFactory() {
-        return (symbol, instrumentType) -> new BollingerBandInstrumentData(symbol, instrumentType, bandSettings.getNumPeriods()) {
+        return (symbol, instrumentType) -> new BollingerBandInstrumentData(symbol, instrumentType, bandSettings) {
 
             @Override
             public void onMarketMessage(InstrumentMessage message) {
                 if (isLeader() && (message instanceof TradeMessageInfo)) {
                     TradeMessageInfo trade = (TradeMessageInfo) message;
-                    final double price = trade.getPrice();
-                    if (addToSMA(price)) {
-                        if (this.data.pendingSize == 0) { // only if we do not have active orders
-                            MutableOrderNewRequest orderRequest = tradingMessages.getNewOrderRequest();
-                            AsciiStringBuilder reason = prepareOrderReason(orderRequest);
-
-                            long tradeSize = checkBollingerBands(trade, price, reason);
-                            if (tradeSize != 0) {
-                                prepareNewOrderRequest(orderRequest, tradeSize, price, trade.getExchangeId());
-                                submit(orderRequest);
-                                LOGGER.info("Sent %s %s %s @ %s Reason:%s")
-                                        .with(orderRequest.getSide())
-                                        .with(orderRequest.getSymbol())
-                                        .with(Decimal64Utils.toLong(orderRequest.getQuantity()))
-                                        .withDecimal64(orderRequest.getLimitPrice())
-                                        .with(reason);
-
-                                this.data.pendingSize = tradeSize;
-                            }
-                        }
-                    }
-                }
-            }
-
-            private long checkBollingerBands(TradeMessageInfo trade, double price, AsciiStringBuilder reason) {
-                long tradeSize = 0;
-                final double mp = smav.getAverage();
-                final double sqrtVariance = smav.getStdDev();
-                final double upperBand = mp + bandSettings.getNumStdDevs() * sqrtVariance;
-                final double bottomBand = mp - bandSettings.getNumStdDevs() * sqrtVariance;
-
-                // rules for position opening
-                if (data.positionSize == 0) {
-                    if (price > upperBand && bandSettings.isEnableShort()) {
-                        tradeSize = - Math.max(1, (int) (trade.getSize() * bandSettings.getOpenOrderSizeCoefficient()));
-                        reason.append("Above ").append(upperBand);
-                    } else if (price < bottomBand && bandSettings.isEnableLong()) {
-                        tradeSize = Math.max(1, (int) (trade.getSize() * bandSettings.getOpenOrderSizeCoefficient()));
-                        reason.append("Below ").append(bottomBand);
-                    }
-                } else {
-                    // risk management - check for stop loss
-                    double pnlPercent = getProfitRatio(price) * 100;
-
-                    if (pnlPercent < -bandSettings.getStopLossPercent()) {
-                        reason.append("Stop Loss: ").append(pnlPercent).append("%");
-                        tradeSize = -data.positionSize;
-                    } else if (pnlPercent > bandSettings.getProfitPercent()) { // check for profit taking
-                        reason.append("Profit Taking: ").append(pnlPercent).append("%");
-                        tradeSize = -data.positionSize;
-                    } else if (data.positionSize < 0 && price < mp) {// rules for position closing
-                        reason.append("Close Short (MP = ").append(mp).append(")");
-                        tradeSize = -data.positionSize;
-                    } else if (data.positionSize > 0 && price > mp) {
-                        reason.append("Close Long (MP = ").append(mp).append(")");
-                        tradeSize = -data.positionSize;
+                    @Decimal final long price = Decimal64Utils.fromDouble(trade.getPrice());
+                    @Decimal final long orderSize = pipeline.onMarketTrade(getClock().time(), price, Decimal64Utils.fromDouble(trade.getSize()));
+                    if (! Decimal64Utils.isZero(orderSize)) {
+                        MutableOrderNewRequest orderRequest = tradingMessages.getNewOrderRequest();
+                        prepareNewOrderRequest(orderRequest, orderSize, price, trade.getExchangeId());
+                        AsciiStringBuilder reason = prepareOrderReason(orderRequest, pipeline);
+                        submit(orderRequest);
+                        if (reason != null)
+                            LOGGER.info("Sent %s %s %s @ %s Reason:%s")
+                                    .with(orderRequest.getSide())
+                                    .with(orderRequest.getSymbol())
+                                    .withDecimal64(orderRequest.getQuantity())
+                                    .withDecimal64(orderRequest.getLimitPrice())
+                                    .with(reason);
+
+                        pipeline.onOrderSent(orderSize);
                     }
                 }
-                return tradeSize;
             }
 
-            private void prepareNewOrderRequest (MutableOrderNewRequest orderRequest, long tradeSize, double price, long exchangeCode) {
+            private void prepareNewOrderRequest (MutableOrderNewRequest orderRequest, @Decimal long orderSize, @Decimal long price, long exchangeCode) {
                 orderRequest.setOrderId(generateOrderId());
-                orderRequest.setQuantity(Decimal64Utils.fromLong(Math.abs(tradeSize)));
-                orderRequest.setSide(tradeSize > 0 ? Side.BUY : Side.SELL);
-                orderRequest.setLimitPrice(Decimal64Utils.fromDouble(price));
+                orderRequest.setQuantity(Decimal64Utils.abs(orderSize));
+                orderRequest.setSide(Decimal64Utils.isPositive(orderSize) ? Side.BUY : Side.SELL);
+                orderRequest.setLimitPrice(price);
                 orderRequest.setSymbol(symbol);
                 orderRequest.setOrderType(OrderType.LIMIT);
                 orderRequest.setSourceId(getId());
@@ -185,11 +168,15 @@ class BollingerBandAlgorithm extends AbstractAlgorithm<AlgoOrder, BollingerBandI
         };
     }
 
-    private AsciiStringBuilder prepareOrderReason(MutableOrderNewRequest orderRequest) {
-        orderRequest.setAttributes(orderAttributes);
+    /** @return reason of the signal if anybody needs it (order attribute or log), null otherwise */
+    private AsciiStringBuilder prepareOrderReason(MutableOrderNewRequest orderRequest, BollingerBandPipeline pipeline) {
+        final boolean attached = bandSettings.isOrderReasonText();
+        orderRequest.setAttributes(attached ? orderAttributes : null);
+        if (! attached && ! LOGGER.isInfoEnabled())
+            return null; // nobody will read it
+
         orderReason.clear();
-        return orderReason; // don't leave it empty
+        return pipeline.appendReason(orderReason);
     }
 
 }
-
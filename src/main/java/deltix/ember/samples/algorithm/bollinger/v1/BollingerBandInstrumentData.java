@@ -1,23 +1,26 @@
 package deltix.ember.samples.algorithm.bollinger.v1;
 
+import com.epam.deltix.dfp.Decimal64Utils;
 import deltix.anvil.util.CharSequenceUtil;
 import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandPipeline;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
+import deltix.ember.samples.algorithm.bollinger.BollingerPosition;
 import deltix.ember.service.algorithm.md.AbstractInstrumentData;
 import deltix.qsrv.hf.pub.InstrumentMessage;
-import deltix.util.finmath.SMAV;
 
 /**
  * Keeps Bollinger Band Algorithm position for each instrument
  */
 class BollingerBandInstrumentData extends AbstractInstrumentData {
 
-    final BollingerBandInstrumentMessage data = new BollingerBandInstrumentMessage();
-    SMAV smav;
+    final BollingerBandPipeline pipeline;
+    final BollingerBandInstrumentMessage data = new BollingerBandInstrumentMessage(); // filled only when published
 
-    BollingerBandInstrumentData(CharSequence symbol, InstrumentType instrumentType, int period) {
+    BollingerBandInstrumentData(CharSequence symbol, InstrumentType instrumentType, BollingerBandSettings settings) {
         super(symbol, instrumentType);
         data.setSymbol(CharSequenceUtil.toString(symbol.toString())); // make symbol immutable
-        smav = new SMAV(period);
+        pipeline = new BollingerBandPipeline(settings);
     }
 
     @Override
@@ -25,16 +28,14 @@ class BollingerBandInstrumentData extends AbstractInstrumentData {
         // by default we do nothing here (we don't need to remember prices in this algo)
     }
 
-
-    double getProfitRatio(double price) {
-        final double basis = data.positionCost - data.positionCash;
-        return (data.positionSize * price / basis - 1);
-    }
-
-    boolean addToSMA(double price) {
-        smav.register(price);
-        return smav.isFull();
+    /** @return position message with the current state */
+    BollingerBandInstrumentMessage getPositionMessage() {
+        final BollingerPosition position = pipeline.getPosition();
+        data.positionSize = Decimal64Utils.toLong(position.getSize());
+        data.pendingSize = Decimal64Utils.toLong(pipeline.getPendingSize());
+        data.positionCost = Decimal64Utils.toDouble(position.getCost());
+        data.positionCash = Decimal64Utils.toDouble(position.getCash());
+        return data;
     }
 
 }
-
@@ -6,8 +6,10 @@ import com.epam.deltix.dfp.Decimal64Utils;
 import deltix.anvil.util.AsciiStringBuilder;
 import deltix.anvil.util.Factory;
 import deltix.anvil.util.annotation.Alphanumeric;
+import deltix.efix.message.field.Tag;
 import deltix.ember.message.trade.*;
 import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandPipeline;
 import deltix.ember.service.algorithm.AlgorithmContext;
 import deltix.ember.service.algorithm.md.InstrumentDataFactory;
 import deltix.ember.service.algorithm.v2.AbstractL1TradingAlgorithm;
@@ -31,89 +33,52 @@ public class BollingerBandAlgorithm extends AbstractL1TradingAlgorithm<Bollinger
     public BollingerBandAlgorithm(AlgorithmContext context, BollingerBandSettings bandSettings) {
         super(context);
         this.bandSettings = bandSettings;
+
+        MutableCustomAttribute attr = new MutableCustomAttribute();
+        attr.setKey(Tag.Text);
+        attr.setValue(orderReason);
+        orderAttributes.add(attr);
     }
 
     /// region Market data
 
     @Override
     protected InstrumentDataFactory<BollingerL1InstrumentState> createInstrumentDataFactory() {
-        return (symbol, instrumentType) -> new BollingerL1InstrumentState(symbol, instrumentType, bandSettings.getNumPeriods()) {
+        return (symbol, instrumentType) -> new BollingerL1InstrumentState(symbol, instrumentType, bandSettings) {
 
             @Override
             protected void onTradeMessage(TradeEntry message) {
                 super.onTradeMessage(message);
 
-                smav.register(message.getPrice());
-
-                if (smav.isFull()) {
-                    if (pendingSize == 0) { // only if we do not have active orders
-
-                        MutableOrderNewRequest orderRequest = orderProcessor.makeSubmitRequest();
-                        AsciiStringBuilder reason = prepareOrderReason(orderRequest);
-
-                        double orderSize = checkBollingerBands(message, reason);
-                        if (orderSize != 0) {
-                            prepareNewOrderRequest(orderRequest, getSymbol(), Decimal64Utils.fromDouble(orderSize), message.getPrice(), message.getExchangeId());
-                            submit(orderRequest);
-                            LOGGER.info("Sent %s %s %s @ %s Reason:%s")
-                                    .with(orderRequest.getSide())
-                                    .with(orderRequest.getSymbol())
-                                    .withDecimal64(orderRequest.getQuantity())
-                                    .withDecimal64(orderRequest.getLimitPrice())
-                                    .with(reason);
-
-                            this.pendingSize = orderSize;
-                        }
-                    }
-                }
-            }
-
-            private double checkBollingerBands(TradeEntry trade, AsciiStringBuilder reason) {
-                final double mp = smav.getAverage();
-                final double sqrtVariance = smav.getStdDev();
-                final double upperBand = mp + bandSettings.getNumStdDevs() * sqrtVariance;
-                final double bottomBand = mp - bandSettings.getNumStdDevs() * sqrtVariance;
-
-                // rules for position opening
-                double price = Decimal64Utils.toDouble(trade.getPrice());
-                double result = 0;
-                if (positionSize == 0) {
-                    double tradeSize = Decimal64Utils.toDouble(trade.getSize());
-                    if (price > upperBand && bandSettings.isEnableShort()) {
-                        result = - Math.max(1, (int) (tradeSize * bandSettings.getOpenOrderSizeCoefficient()));
-                        reason.append("Above ").append(upperBand);
-                    } else if (price < bottomBand && bandSettings.isEnableLong()) {
-                        result = Math.max(1, (int) (tradeSize * bandSettings.getOpenOrderSizeCoefficient()));
-                        reason.append("Below ").append(bottomBand);
-                    }
-                } else {
-                    // risk management - check for stop loss
-                    double pnlPercent = getProfitRatio(price) * 100;
-
-                    if (pnlPercent < -bandSettings.getStopLossPercent()) {
-                        reason.append("Stop Loss: ").append(pnlPercent).append("%");
-                        result = -positionSize;
-                    } else if (pnlPercent > bandSettings.getProfitPercent()) { // check for profit taking
-                        reason.append("Profit Taking: ").append(pnlPercent).append("%");
-                        result = -positionSize;
-                    } else if (positionSize < 0 && price < mp) {// rules for position closing
-                        reason.append("Close Short (MP = ").append(mp).append(")");
-                        result = -positionSize;
-                    } else if (positionSize > 0 && price > mp) {
-                        reason.append("Close Long (MP = ").append(mp).append(")");
-                        result = -positionSize;
-                    }
+                @Decimal final long orderSize = pipeline.onMarketTrade(currentTime(), message.getPrice(), message.getSize());
+                if (! Decimal64Utils.isZero(orderSize)) {
+                    MutableOrderNewRequest orderRequest = orderProcessor.makeSubmitRequest();
+                    prepareNewOrderRequest(orderRequest, getSymbol(), orderSize, message.getPrice(), message.getExchangeId());
+                    AsciiStringBuilder reason = prepareOrderReason(orderRequest, pipeline);
+                    submit(orderRequest);
+                    if (reason != null)
+                        LOGGER.info("Sent %s %s %s @ %s Reason:%s")
+                                .with(orderRequest.getSide())
+                                .with(orderRequest.getSymbol())
+                                .withDecimal64(orderRequest.getQuantity())
+                                .withDecimal64(orderRequest.getLimitPrice())
+                                .with(reason);
+
+                    pipeline.onOrderSent(orderSize);
                 }
-                return result;
             }
-
         };
     }
 
-    private AsciiStringBuilder prepareOrderReason(MutableOrderNewRequest orderRequest) {
-        orderRequest.setAttributes(orderAttributes);
+    /** @return reason of the signal if anybody needs it (order attribute or log), null otherwise */
+    private AsciiStringBuilder prepareOrderReason(MutableOrderNewRequest orderRequest, BollingerBandPipeline pipeline) {
+        final boolean attached = bandSettings.isOrderReasonText();
+        orderRequest.setAttributes(attached ? orderAttributes : null);
+        if (! attached && ! LOGGER.isInfoEnabled())
+            return null; // nobody will read it
+
         orderReason.clear();
-        return orderReason; // don't leave it empty
+        return pipeline.appendReason(orderReason);
     }
 
     /// endregion
@@ -143,34 +108,42 @@ public class BollingerBandAlgorithm extends AbstractL1TradingAlgorithm<Bollinger
 
             BollingerL1InstrumentState instrumentInfo = get(order.getSymbol());
             if (instrumentInfo != null) {
-                final double cost = Decimal64Utils.toDouble(event.getTradeQuantity()) * bandSettings.getCommissionPerShare();
-
-                if (order.getSide() == Side.BUY) {
-                    instrumentInfo.positionSize += Decimal64Utils.toDouble(event.getTradeQuantity());
-                    instrumentInfo.positionCash -= Decimal64Utils.toDouble(Decimal64Utils.multiply(event.getTradeQuantity(), event.getTradePrice()));
-                } else {
-                    instrumentInfo.positionSize -= Decimal64Utils.toDouble(event.getTradeQuantity());
-                    instrumentInfo.positionCash += Decimal64Utils.toDouble(Decimal64Utils.multiply(event.getTradeQuantity(), event.getTradePrice()));
-                }
-                instrumentInfo.positionCost += cost;
-
-
-                if (instrumentInfo.positionSize == 0) {
-                    //outputMessage.totalProfit += instrumentInfo.positionCash;
-                    instrumentInfo.positionCash = 0;
-                }
+                final BollingerBandPipeline pipeline = instrumentInfo.pipeline;
+                pipeline.onOrderTrade(order.getSide() == Side.BUY, event.getTradeQuantity(), event.getTradePrice());
 
                 LOGGER.info("Size of %s position changed to %s (position cash %s)")
                         .with(instrumentInfo.getSymbol())
-                        .with(instrumentInfo.positionSize)
-                        .with(instrumentInfo.positionCash);
+                        .withDecimal64(pipeline.getPosition().getSize())
+                        .withDecimal64(pipeline.getPosition().getCash());
 
                 if (order.isFinal())
-                    instrumentInfo.pendingSize = 0;
+                    pipeline.onOrderFinal();
 
                 //TODO: positionsChannel.send(instrumentInfo);
             }
         }
+
+        @Override
+        public void onOrderReject(OutboundOrder order, OrderRejectEvent event) {
+            super.onOrderReject(order, event);
+
+            LOGGER.warn("Order %s rejected: %s").with(order).with(event.getReason());
+            onOrderFinal(order);
+        }
+
+        @Override
+        public void onOrderCancel(OutboundOrder order, OrderCancelEvent event) {
+            super.onOrderCancel(order, event);
+
+            onOrderFinal(order);
+        }
+    }
+
+    /** Pending order is done without being completely filled (fills, if any, are already counted): next signal may be traded */
+    private void onOrderFinal(OutboundOrder order) {
+        BollingerL1InstrumentState instrumentInfo = get(order.getSymbol());
+        if (instrumentInfo != null)
+            instrumentInfo.pipeline.onOrderFinal();
     }
 
     private void prepareNewOrderRequest (MutableOrderNewRequest orderRequest, CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeCode) {
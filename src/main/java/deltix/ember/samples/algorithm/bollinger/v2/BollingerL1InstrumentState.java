@@ -1,36 +1,17 @@
 package deltix.ember.samples.algorithm.bollinger.v2;
 
 import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandPipeline;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
 import deltix.ember.service.algorithm.v2.AbstractL1TradingAlgorithm;
-import deltix.util.finmath.SMAV;
 
 class BollingerL1InstrumentState extends AbstractL1TradingAlgorithm.L1InstrumentState {
 
-    final SMAV smav;
+    final BollingerBandPipeline pipeline;
 
-    /**
-     * Actual position (negative if short)
-     */
-    double positionSize = 0;
-
-    /**
-     * Size of pending order (can be negative for sell)
-     */
-    double pendingSize = 0;
-
-    double positionCost = 0;
-
-    double positionCash = 0;
-
-
-    BollingerL1InstrumentState(CharSequence symbol, InstrumentType instrumentType, int period) {
+    BollingerL1InstrumentState(CharSequence symbol, InstrumentType instrumentType, BollingerBandSettings settings) {
         super(symbol, instrumentType);
-        smav = new SMAV(period);
-    }
-
-    double getProfitRatio(double price) {
-        final double basis = positionCost - positionCash;
-        return (positionSize * price / basis - 1);
+        pipeline = new BollingerBandPipeline(settings);
     }
 
 }
@@ -1,5 +1,6 @@
 package deltix.ember.samples.algorithm.latency;
 
+import deltix.anvil.util.CloseHelper;
 import deltix.ember.message.trade.OrderTradeReportEvent;
 import deltix.ember.service.algorithm.AlgoOrder;
 import deltix.ember.service.algorithm.AlgorithmContext;
@@ -11,8 +12,19 @@ import java.time.Duration;
 public class CustomLatencyTracerAlgorithm extends SimpleAlgorithm {
 
     private final SimpleLatencyTracer fillLatencyTracer;
+    private final LatencyHistogramStreamWriter histogramWriter;
 
     CustomLatencyTracerAlgorithm(AlgorithmContext context, Duration latencyStatPeriod) {
+        this(context, latencyStatPeriod, null);
+    }
+
+    /** @param histogramStreamKey optional TimeBase stream that will keep histogram of each stat interval */
+    CustomLatencyTracerAlgorithm(AlgorithmContext context, Duration latencyStatPeriod, String histogramStreamKey) {
+        this(context, latencyStatPeriod, Duration.ZERO, histogramStreamKey);
+    }
+
+    /** @param expectedFillInterval expected interval between fills used to correct coordinated omission (ZERO to disable) */
+    CustomLatencyTracerAlgorithm(AlgorithmContext context, Duration latencyStatPeriod, Duration expectedFillInterval, String histogramStreamKey) {
         super(context);
 
         fillLatencyTracer = new SimpleLatencyTracer (
@@ -21,14 +33,36 @@ public class CustomLatencyTracerAlgorithm extends SimpleAlgorithm {
                 context.getCounterFactory(),
                 latencyStatPeriod,
                 Duration.ofMillis(50), // unreasonable max
+                expectedFillInterval,
                 10, // skip first N evens for warmup
                 100 // stop logging errors after first 100
                 );
 
+        if (histogramStreamKey != null) {
+            histogramWriter = new LatencyHistogramStreamWriter(context, histogramStreamKey);
+            fillLatencyTracer.setSnapshotWriter(histogramWriter);
+        } else {
+            histogramWriter = null;
+        }
+
         // tracer wills start publishing latency histogram as ember metric at configurable interval
         fillLatencyTracer.schedule(getTimer());
     }
 
+    @Override
+    public int doLast(int workDone) {
+        int result = super.doLast(workDone);
+        if (result == 0 && histogramWriter != null) {
+            histogramWriter.recreateOutputChannelIfNecessary();
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        CloseHelper.close(histogramWriter); // free up timebase resources
+    }
+
 
     @Override
     protected void handleTradeEvent(ChildOrder<AlgoOrder> order, OrderTradeReportEvent event) {
@@ -0,0 +1,51 @@
+package deltix.ember.samples.algorithm.latency;
+
+import deltix.anvil.util.annotation.Optional;
+import deltix.ember.service.algorithm.AbstractAlgorithmFactory;
+import deltix.ember.service.algorithm.AlgorithmContext;
+
+import java.time.Duration;
+
+public class CustomLatencyTracerAlgorithmFactory extends AbstractAlgorithmFactory {
+
+    /** Interval between publications of latency percentiles */
+    @Optional
+    private Duration latencyStatPeriod = Duration.ofSeconds(10);
+
+    /** Expected interval between fills, enables correction of coordinated omission when positive */
+    @Optional
+    private Duration expectedFillInterval = Duration.ZERO;
+
+    /** TimeBase stream that will keep histogram of each stat interval (see {@link LatencyHistogramMessage}), no export when undefined */
+    @Optional
+    private String histogramStreamKey;
+
+    public Duration getLatencyStatPeriod() {
+        return latencyStatPeriod;
+    }
+
+    public void setLatencyStatPeriod(Duration latencyStatPeriod) {
+        this.latencyStatPeriod = latencyStatPeriod;
+    }
+
+    public Duration getExpectedFillInterval() {
+        return expectedFillInterval;
+    }
+
+    public void setExpectedFillInterval(Duration expectedFillInterval) {
+        this.expectedFillInterval = expectedFillInterval;
+    }
+
+    public String getHistogramStreamKey() {
+        return histogramStreamKey;
+    }
+
+    public void setHistogramStreamKey(String histogramStreamKey) {
+        this.histogramStreamKey = histogramStreamKey;
+    }
+
+    @Override
+    public CustomLatencyTracerAlgorithm create(AlgorithmContext context) {
+        return new CustomLatencyTracerAlgorithm(context, latencyStatPeriod, expectedFillInterval, histogramStreamKey);
+    }
+}
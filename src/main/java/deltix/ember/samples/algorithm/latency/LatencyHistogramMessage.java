@@ -0,0 +1,62 @@
+package deltix.ember.samples.algorithm.latency;
+
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.qsrv.hf.pub.InstrumentMessage;
+import deltix.timebase.api.SchemaElement;
+import deltix.util.collections.generated.ByteArrayList;
+
+/**
+ * Latency histogram of single stat interval. Symbol identifies latency tracer, message timestamp marks end of the interval.
+ * Histogram is stored in HdrHistogram compressed encoding, intervals can be merged later using {@code Histogram.decodeFromCompressedByteBuffer()} and {@code Histogram.add()}.
+ */
+@SuppressWarnings("unused")
+public class LatencyHistogramMessage extends InstrumentMessage {
+
+    @Timestamp
+    private long intervalStartTime;
+
+    private long totalCount;
+
+    private long maxValue;
+
+    private ByteArrayList histogram = new ByteArrayList(1024);
+
+    /** Make TimeBase Introspector happy */
+    public LatencyHistogramMessage() {}
+
+    @SchemaElement(title="Interval Start Time")
+    public long getIntervalStartTime() {
+        return intervalStartTime;
+    }
+
+    public void setIntervalStartTime(long intervalStartTime) {
+        this.intervalStartTime = intervalStartTime;
+    }
+
+    @SchemaElement(title="Total Count")
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    @SchemaElement(title="Max Value (ns)")
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public void setMaxValue(long maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    @SchemaElement(title="Compressed Histogram")
+    public ByteArrayList getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(ByteArrayList histogram) {
+        this.histogram = histogram;
+    }
+}
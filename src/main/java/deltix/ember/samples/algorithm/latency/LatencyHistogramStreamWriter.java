@@ -0,0 +1,121 @@
+package deltix.ember.samples.algorithm.latency;
+
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.anvil.util.CloseHelper;
+import deltix.anvil.util.ReconnectDelay;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.anvil.util.delay.LinearDelay;
+import deltix.data.stream.MessageChannel;
+import deltix.ember.service.algorithm.AlgorithmContext;
+import deltix.qsrv.hf.pub.md.Introspector;
+import deltix.qsrv.hf.tickdb.pub.DXTickDB;
+import deltix.qsrv.hf.tickdb.pub.StreamOptions;
+import deltix.qsrv.hf.tickdb.pub.StreamScope;
+import deltix.util.collections.generated.ByteArrayList;
+import deltix.util.io.aeron.PublicationClosedException;
+import deltix.util.lang.Util;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes histogram of each latency tracer stat interval into dedicated TimeBase stream (see {@link LatencyHistogramMessage}).
+ * Owner algorithm should call {@link #recreateOutputChannelIfNecessary()} from its idle cycle to re-connect after TimeBase failures.
+ */
+public class LatencyHistogramStreamWriter implements AutoCloseable {
+    private static final Log LOG = LogFactory.getLog(LatencyHistogramStreamWriter.class);
+
+    private final AlgorithmContext context;
+    private final String outputStreamKey;
+    private final ReconnectDelay reconnectDelay;
+    private final LatencyHistogramMessage message = new LatencyHistogramMessage();
+    private ByteBuffer encodingBuffer = ByteBuffer.allocate(1024);
+
+    @SuppressWarnings({"rawtypes"})
+    private MessageChannel outputChannel;
+
+    public LatencyHistogramStreamWriter(AlgorithmContext context, String outputStreamKey) {
+        this.context = context;
+        this.outputStreamKey = outputStreamKey;
+        this.reconnectDelay = new ReconnectDelay(context.getClock(), new LinearDelay(1000, 100000, 1000));
+
+        createOutputStreamIfNecessary((DXTickDB) context._getTimeBase(), outputStreamKey);
+
+        recreateOutputChannelIfNecessary();
+    }
+
+    /** Writes given interval histogram. Interval is skipped when TimeBase is not available. */
+    @SuppressWarnings("unchecked")
+    void write(CharSequence tracerId, @Timestamp long intervalStartTime, @Timestamp long intervalEndTime, Histogram histogram) {
+        if (outputChannel == null)
+            return;
+
+        encodingBuffer = encode(histogram, encodingBuffer, message.getHistogram());
+
+        message.setSymbol(tracerId);
+        message.setTimeStampMs(intervalEndTime);
+        message.setIntervalStartTime(intervalStartTime);
+        message.setTotalCount(histogram.getTotalCount());
+        message.setMaxValue(histogram.getMaxValue());
+
+        try {
+            outputChannel.send(message);
+        } catch (PublicationClosedException e) {
+            LOG.warn("Error writing latency histogram stream (will try to re-connect): %s").with(e);
+            outputChannel = null;
+        }
+    }
+
+    /**
+     * Encodes histogram in compressed form into given list (replacing its content)
+     * @return encoding buffer to reuse next time (given one, or a bigger one if given is too small)
+     */
+    static ByteBuffer encode(Histogram histogram, ByteBuffer encodingBuffer, ByteArrayList encoded) {
+        final int capacity = histogram.getNeededByteBufferCapacity();
+        if (encodingBuffer.capacity() < capacity)
+            encodingBuffer = ByteBuffer.allocate(capacity);
+
+        encodingBuffer.clear();
+        final int length = histogram.encodeIntoCompressedByteBuffer(encodingBuffer);
+
+        encoded.clear();
+        encoded.addAll(encodingBuffer.array(), 0, length);
+        return encodingBuffer;
+    }
+
+    public void recreateOutputChannelIfNecessary() {
+        if (outputChannel == null) {
+            if (reconnectDelay.expired()) {
+                try {
+                    reconnectDelay.onTry();
+                    outputChannel = context.createOutputChannel(outputStreamKey);
+                    reconnectDelay.onSuccess();
+                } catch (Exception e) {
+                    Util.close(outputChannel);
+                    outputChannel = null;
+                    reconnectDelay.onFail();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        CloseHelper.close(outputChannel);
+        outputChannel = null;
+    }
+
+    private static void createOutputStreamIfNecessary(DXTickDB timebase, String outputStreamKey) {
+        if (timebase.getStream(outputStreamKey) == null) {
+            try {
+                StreamOptions options = new StreamOptions(StreamScope.DURABLE, outputStreamKey, "Auto-created by Ember", 1);
+                options.setFixedType(Introspector.createEmptyMessageIntrospector().introspectRecordClass("<Ember introspector>", LatencyHistogramMessage.class));
+                timebase.createStream(outputStreamKey, options);
+            } catch (Introspector.IntrospectionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package deltix.ember.samples.algorithm.latency;
+
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.anvil.util.TypeConstants;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.anvil.util.clock.EpochClock;
+import deltix.anvil.util.counter.Counter;
+import deltix.anvil.util.counter.CounterFactory;
+import deltix.anvil.util.counter.ParentCounterFactory;
+import deltix.anvil.util.timer.Timer;
+import deltix.anvil.util.timer.TimerCallback;
+import deltix.anvil.util.timer.TimerJob;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency tracer for several named stages of order processing (for example tick-in, decision, submit, ack, fill).
+ * <p>
+ * Unlike {@link SimpleLatencyTracer} each stage records into HdrHistogram recorder that swaps active and inactive
+ * histograms on publication (double buffering). Recording thread only does {@link #addRecord(int, long, long)};
+ * percentile computation and histogram reset are done by publishing side, which may run in a different thread
+ * (see {@link #schedule(ScheduledExecutorService)}).
+ * <p>
+ * Each stage is published as separate set of counters named "{id}{stage}Lat{counter}".
+ * Recording is expected from a single thread (algorithm thread).
+ */
+public class MultiStageLatencyTracer {
+    private static final Log LOG = LogFactory.getLog(MultiStageLatencyTracer.class);
+
+    private final Stage[] stages;
+    private final long maxDelayNs;
+    private final int maxErrorLog;
+    private final long statIntervalMillis;
+    @Timestamp
+    private final long firstStatTime;
+    private int errorLogCount;
+
+    public MultiStageLatencyTracer(String id, EpochClock clock, CounterFactory counterFactory, Duration intervalBetweenStatDumps, Duration maxExpectedLatency, int maxErrorLog, int warmupCount, String... stageNames) {
+        assert intervalBetweenStatDumps != null && intervalBetweenStatDumps.toMillis() > 0;
+        assert maxExpectedLatency != null && maxExpectedLatency.toNanos() > 0;
+        if (stageNames.length == 0)
+            throw new IllegalArgumentException("At least one stage is required");
+
+        this.maxDelayNs = maxExpectedLatency.toNanos();
+        this.maxErrorLog = maxErrorLog;
+        this.stages = new Stage[stageNames.length];
+        for (int i = 0; i < stageNames.length; i++)
+            stages[i] = new Stage(stageNames[i], new ParentCounterFactory(id + stageNames[i] + "Lat", counterFactory), maxDelayNs, warmupCount);
+
+        this.statIntervalMillis = intervalBetweenStatDumps.toMillis();
+        this.firstStatTime = clock.time() + 5 * statIntervalMillis;
+    }
+
+    /** @return index of given stage to be used in {@link #addRecord(int, long, long)} (lookup once during initialization) */
+    public int getStageIndex(String stageName) {
+        for (int i = 0; i < stages.length; i++)
+            if (stages[i].name.equals(stageName))
+                return i;
+        throw new IllegalArgumentException("Unknown stage: " + stageName);
+    }
+
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    public void addRecord(int stageIndex, long signalOriginTimeNs, long signalTimeNs) {
+        final Stage stage = stages[stageIndex];
+        long differenceNs = signalTimeNs - signalOriginTimeNs;
+        if (differenceNs < 0) {
+            if (errorLogCount < maxErrorLog) {
+                errorLogCount++;
+                LOG.error("Negative %s processing time: %s ns").with(stage.name).with(differenceNs);
+            }
+            stage.errorCount++;
+        } else {
+            if (differenceNs > maxDelayNs) {
+                if (stage.warmupCount > 0) {
+                    stage.warmupCount--;
+                } else if (errorLogCount < maxErrorLog) {
+                    errorLogCount++;
+                    LOG.error("%s processing time exceeds configured maximum: %s ns").with(stage.name).with(differenceNs);
+                }
+                stage.errorCount++;
+                differenceNs = maxDelayNs;
+            }
+            stage.recorder.recordValue(differenceNs);
+        }
+    }
+
+    /** Must not be called concurrently by more than one thread */
+    void publishStats(@Timestamp long now) {
+        for (Stage stage : stages)
+            stage.publishStats(now);
+    }
+
+    /** @return histogram of the last interval published for given stage, null before the first publication */
+    Histogram getPublishedHistogram(int stageIndex) {
+        return stages[stageIndex].intervalHistogram;
+    }
+
+    int getErrorCount(int stageIndex) {
+        return stages[stageIndex].errorCount;
+    }
+
+    /**
+     * Timer's processing routine.
+     *
+     * @param currentTime    current time (maybe slightly in the past)
+     * @param tracer pass-through parameter passed to {@link Timer#schedule(long, TimerCallback, Object)}
+     * @return Next invocation timestamp or {@link TimerCallback#DO_NOT_RESCHEDULE} to prevent task to be rescheduled.
+     */
+    @Timestamp
+    private static long onTimer(@Timestamp long currentTime, MultiStageLatencyTracer tracer) {
+        assert tracer != null;
+        tracer.publishStats(currentTime);
+        return currentTime + tracer.statIntervalMillis;
+    }
+
+    /** Publishes stats from algorithm thread (cheap histogram swap, but percentiles are still computed there) */
+    public TimerJob schedule(@Nonnull Timer timer) {
+        return timer.schedule(firstStatTime, MultiStageLatencyTracer::onTimer, this);
+    }
+
+    /** Publishes stats from given executor, keeping percentile computation and histogram reset away from algorithm thread */
+    public ScheduledFuture<?> schedule(@Nonnull ScheduledExecutorService executor) {
+        final long initialDelay = Math.max(0, firstStatTime - System.currentTimeMillis());
+        return executor.scheduleAtFixedRate(() -> publishStats(System.currentTimeMillis()), initialDelay, statIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Stage {
+        final String name;
+        final SingleWriterRecorder recorder;
+        private Histogram intervalHistogram; // recycled between intervals, owned by publisher
+
+        private final Counter totalCounter;
+        private final Counter minCounter;
+        private final Counter pStatTimestamp;
+        private final Counter p50Counter;
+        private final Counter p99Counter;
+        private final Counter p999Counter;
+        private final Counter p9999Counter;
+        private final Counter p99999Counter;
+        private final Counter p100Counter;
+        private final Counter errorCounter;
+
+        int warmupCount;
+        volatile int errorCount; // single writer (recording thread)
+        private int prevErrorCount;
+
+        Stage(String name, CounterFactory counterFactory, long maxDelayNs, int warmupCount) {
+            this.name = name;
+            this.warmupCount = warmupCount;
+            this.recorder = new SingleWriterRecorder(1, maxDelayNs, 3);
+
+            this.totalCounter = counterFactory.newCounter("Total");
+            this.minCounter = counterFactory.newCounter("Min");
+            this.p50Counter = counterFactory.newCounter("P50");
+            this.p99Counter = counterFactory.newCounter("P99");
+            this.p999Counter = counterFactory.newCounter("P999");
+            this.p9999Counter = counterFactory.newCounter("P9999");
+            this.p99999Counter = counterFactory.newCounter("P99999");
+            this.p100Counter = counterFactory.newCounter("P100");
+            this.errorCounter = counterFactory.newCounter("Errors");
+            this.pStatTimestamp = counterFactory.newCounter("Timestamp");
+        }
+
+        void publishStats(@Timestamp long now) {
+            final Histogram histogram = recorder.getIntervalHistogram(intervalHistogram); // swap, histogram is reset by recorder
+            intervalHistogram = histogram;
+
+            pStatTimestamp.setWeak(now);
+            final long totalCount = histogram.getTotalCount();
+            totalCounter.setWeak(totalCount);
+            if (totalCount > 0) {
+                minCounter.setWeak(histogram.getValueAtPercentile(0));
+                p50Counter.setWeak(histogram.getValueAtPercentile(50));
+                p99Counter.setWeak(histogram.getValueAtPercentile(99));
+                p999Counter.setWeak(histogram.getValueAtPercentile(99.9));
+                p9999Counter.setWeak(histogram.getValueAtPercentile(99.99));
+                p99999Counter.setWeak(histogram.getValueAtPercentile(99.999));
+                p100Counter.setWeak(histogram.getValueAtPercentile(100));
+            } else {
+                minCounter.setWeak(TypeConstants.LONG_NULL);
+                p50Counter.setWeak(TypeConstants.LONG_NULL);
+                p99Counter.setWeak(TypeConstants.LONG_NULL);
+                p999Counter.setWeak(TypeConstants.LONG_NULL);
+                p9999Counter.setWeak(TypeConstants.LONG_NULL);
+                p99999Counter.setWeak(TypeConstants.LONG_NULL);
+                p100Counter.setWeak(TypeConstants.LONG_NULL);
+            }
+            final int errors = errorCount;
+            errorCounter.setWeak(errors - prevErrorCount);
+            prevErrorCount = errors;
+        }
+    }
+}
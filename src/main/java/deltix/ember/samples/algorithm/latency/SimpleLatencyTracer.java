@@ -29,21 +29,43 @@ public class SimpleLatencyTracer {
     private final Counter p99999Counter;
     private final Counter p100Counter;
     private final Counter errorCounter;
+    private final Counter clampedCounter;
     private final Histogram histogram; // in nanos
+    private final long expectedIntervalNs;
     private final long statIntervalMillis;
     @Timestamp
     private long nextStatTime;
+    @Timestamp
+    private long intervalStartTime;
+    private final String id;
+    private LatencyHistogramStreamWriter snapshotWriter;
     private final int maxErrorLog;
     private int warmupCount;
     private int errorCount;
     private int prevErrorCount;
+    private long clampedCount;
+    private long prevClampedCount;
 
 
     public SimpleLatencyTracer(String id, EpochClock clock, CounterFactory counterFactory, Duration intervalBetweenStatDumps, Duration maxExpectedLatency, int maxErrorLog, int warmupCount) {
+        this(id, clock, counterFactory, intervalBetweenStatDumps, maxExpectedLatency, Duration.ZERO, maxErrorLog, warmupCount);
+    }
+
+    /**
+     * @param expectedInterval expected interval between records. When positive, tracer corrects coordinated omission:
+     *                         a record that took longer than this interval also back-fills samples that were not taken
+     *                         while processing stalled (like HdrHistogram's {@link Histogram#recordValueWithExpectedInterval(long, long)},
+     *                         but back-filled samples are derived from unclamped latency, only each sample is clamped to maxExpectedLatency).
+     *                         Use {@link Duration#ZERO} to record exactly one sample per event.
+     */
+    public SimpleLatencyTracer(String id, EpochClock clock, CounterFactory counterFactory, Duration intervalBetweenStatDumps, Duration maxExpectedLatency, Duration expectedInterval, int maxErrorLog, int warmupCount) {
         assert intervalBetweenStatDumps != null && intervalBetweenStatDumps.toMillis() > 0;
         assert maxExpectedLatency != null && maxExpectedLatency.toNanos() > 0; // should we throw here instead of assert?
+        assert expectedInterval != null && !expectedInterval.isNegative();
 
+        this.id = id;
         this.maxDelayNs = maxExpectedLatency.toNanos();
+        this.expectedIntervalNs = expectedInterval.toNanos();
         this.errorCount = 0;
         this.warmupCount = warmupCount;
         this.maxErrorLog = maxErrorLog;
@@ -59,10 +81,17 @@ public class SimpleLatencyTracer {
         this.p99999Counter = counterFactory.newCounter("P99999");
         this.p100Counter = counterFactory.newCounter("P100");
         this.errorCounter = counterFactory.newCounter("Errors");
+        this.clampedCounter = counterFactory.newCounter("Clamped");
         this.pStatTimestamp = counterFactory.newCounter("Timestamp");
 
         this.statIntervalMillis = intervalBetweenStatDumps.toMillis();
         this.nextStatTime = clock.time() + 5 * statIntervalMillis;
+        this.intervalStartTime = nextStatTime;
+    }
+
+    /** Enables export of each interval histogram into TimeBase (before histogram is reset) */
+    public void setSnapshotWriter(LatencyHistogramStreamWriter snapshotWriter) {
+        this.snapshotWriter = snapshotWriter;
     }
 
 
@@ -81,10 +110,42 @@ public class SimpleLatencyTracer {
                         LOG.error("Signal processing time exceeds configured maximum: %s ns").with(differenceNs);
                 }
                 errorCount++;
-                differenceNs = maxDelayNs;
             }
-            histogram.recordValue(differenceNs);
+            record(differenceNs);
+        }
+    }
+
+    /** Records given latency and (with expected interval) samples missed while it lasted, each clamped to maximum */
+    private void record(long latencyNs) {
+        recordClamped(latencyNs, 1);
+        if (expectedIntervalNs > 0) {
+            long missingNs = latencyNs - expectedIntervalNs;
+            if (missingNs > maxDelayNs) {
+                final long aboveMaximum = (missingNs - maxDelayNs + expectedIntervalNs - 1) / expectedIntervalNs;
+                recordClamped(missingNs, aboveMaximum); // all of them are clamped, no need to iterate
+                missingNs -= aboveMaximum * expectedIntervalNs;
+            }
+            for (; missingNs >= expectedIntervalNs; missingNs -= expectedIntervalNs)
+                histogram.recordValue(missingNs);
+        }
+    }
+
+    private void recordClamped(long latencyNs, long count) {
+        if (latencyNs > maxDelayNs) {
+            clampedCount += count;
+            latencyNs = maxDelayNs;
         }
+        histogram.recordValueWithCount(latencyNs, count);
+    }
+
+    /** Histogram of the current interval */
+    Histogram getHistogram() {
+        return histogram;
+    }
+
+    /** Number of samples clamped to maximum expected latency since start */
+    long getClampedCount() {
+        return clampedCount;
     }
 
 
@@ -100,6 +161,8 @@ public class SimpleLatencyTracer {
             p9999Counter.setWeak(histogram.getValueAtPercentile(99.99));
             p99999Counter.setWeak(histogram.getValueAtPercentile(99.999));
             p100Counter.setWeak(histogram.getValueAtPercentile(100));
+            if (snapshotWriter != null)
+                snapshotWriter.write(id, intervalStartTime, now, histogram);
             histogram.reset();
         } else {
             minCounter.setWeak(TypeConstants.LONG_NULL);
@@ -112,6 +175,9 @@ public class SimpleLatencyTracer {
         }
         errorCounter.setWeak(errorCount - prevErrorCount);
         prevErrorCount = errorCount;
+        clampedCounter.setWeak(clampedCount - prevClampedCount);
+        prevClampedCount = clampedCount;
+        intervalStartTime = now;
     }
 
     /**
@@ -0,0 +1,32 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.counter.Counter;
+import deltix.anvil.util.counter.CounterFactory;
+import deltix.anvil.util.counter.ParentCounterFactory;
+
+/**
+ * Live telemetry of hedger state: number of active hedging orders and their open quantity,
+ * published as "{prefix}Orders", "{prefix}BuyQty" and "{prefix}SellQty" counters.
+ * Quantities are truncated to whole units since counters are integer.
+ */
+final class HedgeExposureCounters {
+
+    private final Counter ordersCounter;
+    private final Counter buyQtyCounter;
+    private final Counter sellQtyCounter;
+
+    HedgeExposureCounters(String prefix, CounterFactory counterFactory) {
+        final CounterFactory factory = new ParentCounterFactory(prefix, counterFactory);
+        this.ordersCounter = factory.newCounter("Orders");
+        this.buyQtyCounter = factory.newCounter("BuyQty");
+        this.sellQtyCounter = factory.newCounter("SellQty");
+    }
+
+    void update(int orders, @Decimal long openBuyQty, @Decimal long openSellQty) {
+        ordersCounter.setWeak(orders);
+        buyQtyCounter.setWeak(Decimal64Utils.toLong(openBuyQty));
+        sellQtyCounter.setWeak(Decimal64Utils.toLong(openSellQty));
+    }
+}
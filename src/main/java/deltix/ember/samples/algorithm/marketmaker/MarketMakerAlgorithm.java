@@ -2,12 +2,17 @@ package deltix.ember.samples.algorithm.marketmaker;
 
 import com.epam.deltix.dfp.Decimal;
 import deltix.anvil.message.NodeStatusEvent;
+import deltix.anvil.util.CloseHelper;
 import deltix.anvil.util.Factory;
 import deltix.anvil.util.annotation.Alphanumeric;
 import deltix.anvil.util.annotation.Timestamp;
+import deltix.anvil.util.counter.CounterFactory;
 import deltix.ember.message.trade.*;
 import deltix.ember.message.trade.oms.MutablePositionRequest;
 import deltix.ember.message.trade.oms.PositionReport;
+import deltix.ember.samples.algorithm.ratelimit.RateLimiter;
+import deltix.ember.samples.algorithm.ratelimit.RateLimiterRegistry;
+import deltix.ember.samples.algorithm.ratelimit.RequestType;
 import deltix.ember.service.EmberConstants;
 import deltix.ember.service.PositionRequestHandler;
 import deltix.ember.service.algorithm.AlgorithmContext;
@@ -18,13 +23,62 @@ import deltix.ember.service.algorithm.v2.OutboundOrderProcessorImpl;
 import deltix.ember.service.algorithm.v2.order.OutboundOrder;
 import deltix.ember.service.oms.cache.OrdersCacheSettings;
 
-public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMakerHandler, OutboundOrder> {
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMakerHandler, OutboundOrder> implements MarketMakerContext {
+    static final String QUOTER_USER_DATA = "Quoter";
+    static final String HEDGER_USER_DATA = "Hedger";
+    private static final int STATE_SNAPSHOT_CAPACITY = 1024; // instruments
+
     private final MarketMakerSettings settings;
+    private final RateLimiterRegistry rateLimiters;
+    private final PortfolioRiskAggregator riskAggregator;
+    private final MarketMakerStateStore stateStore;
     private boolean isIteratingActiveOrders;
 
     public MarketMakerAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, MarketMakerSettings settings) {
         super(context, cacheSettings);
         this.settings = settings;
+        this.rateLimiters = createRateLimiters(settings);
+        this.riskAggregator = new PortfolioRiskAggregator(settings.getMaxPortfolioNetExposure(), settings.getMaxPortfolioGrossExposure(), settings.isPortfolioRiskInQuoteCurrency());
+        this.stateStore = createStateStore(settings);
+    }
+
+    /** Per-second limit followed by optional longer windows, applied to each destination exchange */
+    private static RateLimiterRegistry createRateLimiters(MarketMakerSettings settings) {
+        final List<String> windows = new ArrayList<>();
+        windows.add(settings.getRateLimit() + "/1s");
+        if (settings.getRateLimitWindows() != null)
+            Collections.addAll(windows, settings.getRateLimitWindows());
+
+        final int[] weights = new int[RequestType.values().length];
+        weights[RequestType.NEW.ordinal()] = Math.max(1, settings.getNewRequestWeight());
+        weights[RequestType.REPLACE.ordinal()] = Math.max(1, settings.getReplaceRequestWeight());
+        weights[RequestType.CANCEL.ordinal()] = Math.max(1, settings.getCancelRequestWeight());
+        return new RateLimiterRegistry(windows, weights);
+    }
+
+    /** @return null if snapshots are disabled or file is unavailable (handlers cancel orders left by previous run) */
+    private MarketMakerStateStore createStateStore(MarketMakerSettings settings) {
+        if (settings.getStateSnapshotFile() == null)
+            return null;
+
+        final int maxLayers = Math.max(settings.getBuyQuoteSizes().length, settings.getSellQuoteSizes().length);
+        try {
+            return new MarketMakerStateStore(new File(settings.getStateSnapshotFile()), maxLayers, STATE_SNAPSHOT_CAPACITY);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Quote state snapshots are disabled: %s").with(e);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        CloseHelper.close(stateStore);
     }
 
     /// region factory methods
@@ -60,6 +114,7 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
         }
     }
 
+    @Override
     public void submitPositionRequest() {
         MutablePositionRequest request = new MutablePositionRequest();
         request.setRequestId(context.getRequestSequence().next());
@@ -71,6 +126,7 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
         ((PositionRequestHandler)getOMS()).onPositionRequest(request);
     }
 
+    @Override
     public boolean isIteratingActiveOrders() {
         return isIteratingActiveOrders;
     }
@@ -100,7 +156,8 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
     }
 
     /** Submits OrderNewRequest as quoting order */
-    OutboundOrder submitQuotingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side) {
+    @Override
+    public OutboundOrder submitQuotingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side) {
         MutableOrderNewRequest result = orderProcessor.makeSubmitRequest();
         result.setSide(side);
         result.setSymbol(symbol);
@@ -109,12 +166,13 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
         result.setOrderType(OrderType.LIMIT);
         result.setDestinationId(exchangeId);
         result.setTimeInForce(TimeInForce.GOOD_TILL_CANCEL);
-        result.setUserData("Quoter");
+        result.setUserData(QUOTER_USER_DATA);
         return submit(result);
     }
 
     /** Submits OrderReplaceRequest to adjust price or size of quoting order */
-    void replaceQuotingOrder(OutboundOrder order, @Decimal long newPrice, @Decimal long newSize) {
+    @Override
+    public void replaceQuotingOrder(OutboundOrder order, @Decimal long newPrice, @Decimal long newSize) {
         MutableOrderReplaceRequest result = orderProcessor.makeReplaceRequest(order);
         result.setLimitPrice(newPrice);
         result.setQuantity(newSize);
@@ -122,7 +180,8 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
     }
 
     /** Submits OrderNewRequest as hedging order */
-    OutboundOrder submitHedgingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side) {
+    @Override
+    public OutboundOrder submitHedgingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side) {
         MutableOrderNewRequest result = orderProcessor.makeSubmitRequest();
         result.setSide(side);
         result.setSymbol(symbol);
@@ -131,11 +190,12 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
         result.setOrderType(OrderType.LIMIT);
         result.setDestinationId(exchangeId);
         result.setTimeInForce(TimeInForce.IMMEDIATE_OR_CANCEL);
-        result.setUserData("Hedger");
+        result.setUserData(HEDGER_USER_DATA);
         return submit(result);
     }
 
-    void cancelOrder(OutboundOrder order) {
+    @Override
+    public void cancelOrder(OutboundOrder order) {
         MutableOrderCancelRequest result = orderProcessor.makeCancelRequest(order, null);
         cancel(order, result);
     }
@@ -202,25 +262,66 @@ public class MarketMakerAlgorithm extends AbstractL2TradingAlgorithm<MarketMaker
                 }
             }
         }
+
+        @Override
+        public void onOrderReplaceReject(OutboundOrder order, OrderReplaceRejectEvent event) {
+            super.onOrderReplaceReject(order, event);
+
+            if (isLeader()) {
+                MarketMakerHandler handler = get(order.getSymbol());
+                if (handler != null) {
+                    handler.onReplaceRejected(order, event);
+                } else {
+                    LOGGER.warn("Replace reject %s for unknown symbol %s").with(order).with(order.getSymbol());
+                }
+            }
+        }
     }
 
     /// Helpers
 
-    MarketMakerSettings getSettings() {
+    @Override
+    public MarketMakerSettings getSettings() {
         return settings;
     }
 
+    /** @return exposure aggregated across all instruments */
+    @Override
+    public PortfolioRiskAggregator getRiskAggregator() {
+        return riskAggregator;
+    }
+
+    /** @return factory of telemetry counters, may be null if telemetry is not available */
+    @Override
+    public CounterFactory getCounterFactory() {
+        return context.getCounterFactory();
+    }
+
+    /** @return rate limiter shared by all instruments sending orders to given exchange */
+    @Override
+    public RateLimiter getRateLimiter(@Alphanumeric long exchange) {
+        return rateLimiters.get(exchange);
+    }
+
+    @Override
+    public MarketMakerStateStore getStateStore() {
+        return stateStore;
+    }
+
+    @Override
     @Timestamp
-    long getTime() {
+    public long getTime() {
         return super.currentTime();
     }
 
     /** @return true if algorithm is running live (as cluster leader or standalone) */
-    boolean isLeaderNode() {
+    @Override
+    public boolean isLeaderNode() {
         return isLeader();
     }
 
-    boolean isSubscribed(String symbol) {
+    @Override
+    public boolean isSubscribed(String symbol) {
         MarketSubscription subscription = context.getMarketSubscription();
         return (subscription != null && (subscription.isSubscribedToAll() || subscription.getSymbols().contains(symbol)));
     }
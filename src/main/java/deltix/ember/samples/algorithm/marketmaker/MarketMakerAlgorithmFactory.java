@@ -31,6 +31,9 @@ import java.util.List;
  *       positionMaxNormalSize = [10, 5]
  *       maxLongExposure = 10
  *       maxShortExposure = 10
+ *       rateLimit = 1000
+ *       rateLimitWindows = ["5000/10s", "100000/1d"]
+ *       cancelRequestWeight = 1
  *     }
  *   }
  * }
@@ -62,6 +65,18 @@ public class MarketMakerAlgorithmFactory extends AbstractAlgorithmFactory {
     private double minPriceChange; // Minimal distance of quote price from a corresponding order limit price
     @Optional
     private double minSizeChange; // Minimal distance of quote size from a corresponding order size
+    @Optional
+    private boolean replaceQuotes; // Move quotes using cancel/replace requests instead of cancel followed by a new order
+    @Optional
+    private boolean incrementalPricing; // Re-evaluate quotes only when market message touches top of source exchange book and can move a quote beyond minPriceChange
+    @Optional
+    private QuotePricingModelType pricingModel = QuotePricingModelType.STATIC; // How quote prices are derived from base price and margins
+    @Optional
+    private double inventorySkew; // SKEWED_VOLATILITY: shift of all quotes per unit of position (long position lowers quotes)
+    @Optional
+    private double volatilityMultiplier; // SKEWED_VOLATILITY: widening of margins per unit of short-horizon volatility (standard deviation of mid price changes)
+    @Optional
+    private long volatilityHalfLifeMs = 1000; // SKEWED_VOLATILITY: time after which idle market halves volatility estimate
 
     // Hedger
     @Required
@@ -92,10 +107,26 @@ public class MarketMakerAlgorithmFactory extends AbstractAlgorithmFactory {
     private double maxQuoterPositionSize; // The upper limit (by absolute value) of the QuoterNetQty of the trading bot
     @Optional
     private double maxHedgerPositionSize; // The upper limit of the HedgerNetQty of the trading bot
+    @Optional
+    private double maxPortfolioNetExposure; // The upper limit (by absolute value) of net exposure summed across all quoted instruments (0 - unlimited)
+    @Optional
+    private double maxPortfolioGrossExposure; // The upper limit of sum of absolute exposures of all quoted instruments (0 - unlimited)
+    @Optional
+    private boolean portfolioRiskInQuoteCurrency; // Measure portfolio exposure as notional (size * price) rather than in instrument units
 
     // Misc
     @Optional
-    private int rateLimit = 1000; // Messages per second
+    private int rateLimit = 1000; // Messages per second (shared by all instruments quoting on the same exchange)
+    @Optional
+    private String[] rateLimitWindows = new String[0]; // Additional exchange limits, e.g. "5000/10s", "100000/1d" (see RateLimitWindow.parse)
+    @Optional
+    private int newRequestWeight = 1; // Share of the rate limit consumed by order submission
+    @Optional
+    private int replaceRequestWeight = 1;
+    @Optional
+    private int cancelRequestWeight = 1;
+    @Optional
+    private String stateSnapshotFile; // Memory-mapped file that keeps quote ladder and position across restarts: working quotes are re-adopted instead of cancelled
 
     public MarketMakerAlgorithmFactory() {
         setOrderCacheCapacity(1000);
@@ -140,6 +171,30 @@ public class MarketMakerAlgorithmFactory extends AbstractAlgorithmFactory {
         this.minSizeChange = minSizeChange;
     }
 
+    public void setReplaceQuotes(boolean replaceQuotes) {
+        this.replaceQuotes = replaceQuotes;
+    }
+
+    public void setIncrementalPricing(boolean incrementalPricing) {
+        this.incrementalPricing = incrementalPricing;
+    }
+
+    public void setPricingModel(QuotePricingModelType pricingModel) {
+        this.pricingModel = pricingModel;
+    }
+
+    public void setInventorySkew(double inventorySkew) {
+        this.inventorySkew = inventorySkew;
+    }
+
+    public void setVolatilityMultiplier(double volatilityMultiplier) {
+        this.volatilityMultiplier = volatilityMultiplier;
+    }
+
+    public void setVolatilityHalfLifeMs(long volatilityHalfLifeMs) {
+        this.volatilityHalfLifeMs = volatilityHalfLifeMs;
+    }
+
     public void setPositionNormalSize(double positionNormalSize) {
         this.positionNormalSize = positionNormalSize;
     }
@@ -192,10 +247,42 @@ public class MarketMakerAlgorithmFactory extends AbstractAlgorithmFactory {
         this.maxHedgerPositionSize = maxHedgerPositionSize;
     }
 
+    public void setMaxPortfolioNetExposure(double maxPortfolioNetExposure) {
+        this.maxPortfolioNetExposure = maxPortfolioNetExposure;
+    }
+
+    public void setMaxPortfolioGrossExposure(double maxPortfolioGrossExposure) {
+        this.maxPortfolioGrossExposure = maxPortfolioGrossExposure;
+    }
+
+    public void setPortfolioRiskInQuoteCurrency(boolean portfolioRiskInQuoteCurrency) {
+        this.portfolioRiskInQuoteCurrency = portfolioRiskInQuoteCurrency;
+    }
+
     public void setRateLimit(int rateLimit) {
         this.rateLimit = rateLimit;
     }
 
+    public void setRateLimitWindows(List<String> rateLimitWindows) {
+        this.rateLimitWindows = rateLimitWindows.toArray(new String[0]);
+    }
+
+    public void setNewRequestWeight(int newRequestWeight) {
+        this.newRequestWeight = newRequestWeight;
+    }
+
+    public void setReplaceRequestWeight(int replaceRequestWeight) {
+        this.replaceRequestWeight = replaceRequestWeight;
+    }
+
+    public void setCancelRequestWeight(int cancelRequestWeight) {
+        this.cancelRequestWeight = cancelRequestWeight;
+    }
+
+    public void setStateSnapshotFile(String stateSnapshotFile) {
+        this.stateSnapshotFile = stateSnapshotFile;
+    }
+
     @Override
     public MarketMakerAlgorithm create(AlgorithmContext context) {
         MarketMakerSettings settings = new MarketMakerSettings();
@@ -208,6 +295,12 @@ public class MarketMakerAlgorithmFactory extends AbstractAlgorithmFactory {
         settings.setMinSpread(minSpread);
         settings.setMinPriceChange(minPriceChange);
         settings.setMinSizeChange(minSizeChange);
+        settings.setIncrementalPricing(incrementalPricing);
+        settings.setReplaceQuotes(replaceQuotes);
+        settings.setPricingModel(pricingModel);
+        settings.setInventorySkew(inventorySkew);
+        settings.setVolatilityMultiplier(volatilityMultiplier);
+        settings.setVolatilityHalfLife(volatilityHalfLifeMs);
         settings.setPositionNormalSize(positionNormalSize);
         settings.setPositionMaxSize(positionMaxSize);
         settings.setMaxOrderSize(maxOrderSize);
@@ -221,7 +314,15 @@ public class MarketMakerAlgorithmFactory extends AbstractAlgorithmFactory {
         settings.setMinSellQuoteActiveTime(minSellQuoteActiveTime);
         settings.setMaxQuoterPositionSize(maxQuoterPositionSize);
         settings.setMaxHedgerPositionSize(maxHedgerPositionSize);
+        settings.setMaxPortfolioNetExposure(maxPortfolioNetExposure);
+        settings.setMaxPortfolioGrossExposure(maxPortfolioGrossExposure);
+        settings.setPortfolioRiskInQuoteCurrency(portfolioRiskInQuoteCurrency);
         settings.setRateLimit(rateLimit);
+        settings.setRateLimitWindows(rateLimitWindows);
+        settings.setNewRequestWeight(newRequestWeight);
+        settings.setReplaceRequestWeight(replaceRequestWeight);
+        settings.setCancelRequestWeight(cancelRequestWeight);
+        settings.setStateSnapshotFile(stateSnapshotFile);
 
         return new MarketMakerAlgorithm(context, getCacheSettings(), settings);
     }
@@ -0,0 +1,54 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import deltix.anvil.util.annotation.Alphanumeric;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.anvil.util.counter.CounterFactory;
+import deltix.ember.message.trade.Side;
+import deltix.ember.samples.algorithm.ratelimit.RateLimiter;
+import deltix.ember.service.algorithm.v2.order.OutboundOrder;
+
+/**
+ * Services that {@link MarketMakerHandler} needs from its algorithm: order entry, clock, shared limits.
+ * Implemented by {@link MarketMakerAlgorithm}; replay benchmark uses a stub that does not send orders anywhere.
+ */
+interface MarketMakerContext {
+
+    MarketMakerSettings getSettings();
+
+    /** Submits OrderNewRequest as quoting order */
+    OutboundOrder submitQuotingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side);
+
+    /** Submits OrderReplaceRequest to adjust price or size of quoting order */
+    void replaceQuotingOrder(OutboundOrder order, @Decimal long newPrice, @Decimal long newSize);
+
+    /** Submits OrderNewRequest as hedging order */
+    OutboundOrder submitHedgingOrder(CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeId, Side side);
+
+    void cancelOrder(OutboundOrder order);
+
+    void submitPositionRequest();
+
+    /** @return true while orders that survived restart are being classified */
+    boolean isIteratingActiveOrders();
+
+    @Timestamp
+    long getTime();
+
+    /** @return true if algorithm is running live (as cluster leader or standalone) */
+    boolean isLeaderNode();
+
+    boolean isSubscribed(String symbol);
+
+    /** @return rate limiter shared by all instruments sending orders to given exchange */
+    RateLimiter getRateLimiter(@Alphanumeric long exchange);
+
+    /** @return exposure aggregated across all instruments */
+    PortfolioRiskAggregator getRiskAggregator();
+
+    /** @return factory of telemetry counters, may be null if telemetry is not available */
+    CounterFactory getCounterFactory();
+
+    /** @return store of quote ladder and position that survives restart, null if snapshots are disabled */
+    MarketMakerStateStore getStateStore();
+}
@@ -3,13 +3,13 @@ package deltix.ember.samples.algorithm.marketmaker;
 import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
 import com.epam.deltix.gflog.api.Log;
-import deltix.anvil.util.CharSequenceUtil;
 import deltix.anvil.util.annotation.Alphanumeric;
-import deltix.anvil.util.annotation.Timestamp;
 import deltix.ember.message.smd.InstrumentType;
 import deltix.ember.message.smd.InstrumentUpdate;
 import deltix.ember.message.trade.*;
 import deltix.ember.message.trade.oms.PositionReport;
+import deltix.ember.samples.algorithm.ratelimit.RateLimiter;
+import deltix.ember.samples.algorithm.ratelimit.RequestType;
 import deltix.ember.service.algorithm.util.OrderBookHelper;
 import deltix.ember.service.algorithm.util.RoundingTools;
 import deltix.ember.service.algorithm.v2.AbstractL2TradingAlgorithm;
@@ -21,14 +21,26 @@ import deltix.orderbook.core.options.*;
 import deltix.qsrv.hf.pub.InstrumentMessage;
 import deltix.timebase.api.messages.DataModelType;
 import deltix.timebase.api.messages.QuoteSide;
+import deltix.timebase.api.messages.universal.BaseEntryInfo;
+import deltix.timebase.api.messages.universal.BookResetEntryInfo;
+import deltix.timebase.api.messages.universal.L1EntryInfo;
+import deltix.timebase.api.messages.universal.L2EntryNewInfo;
+import deltix.timebase.api.messages.universal.L2EntryUpdateInfo;
+import deltix.timebase.api.messages.universal.PackageHeaderInfo;
+import deltix.timebase.api.messages.universal.PackageType;
+import deltix.util.collections.generated.ObjectList;
 
-import java.util.ArrayList;
 
 public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookState {
-    private final RateLimiter rateLimiter;
+    private static final int ASK_CHANGED = 1;
+    private static final int BID_CHANGED = 2;
+    private static final int BOTH_SIDES_CHANGED = ASK_CHANGED | BID_CHANGED;
+
+    private final RateLimiter quotingRateLimiter; // shared by all instruments quoting on the same exchange
+    private final RateLimiter hedgingRateLimiter;
 
     private final Log logger;
-    private final MarketMakerAlgorithm algorithm;
+    private final MarketMakerContext algorithm;
     private final boolean isSubscribed;
     private boolean waitingForPositionResponse;
     private long toBeCanceled;
@@ -54,9 +66,38 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
     @Decimal
     private long currentBidBasePrice = Decimal64Utils.NULL;
 
+    private final QuotePricingModel pricingModel;
+    private final boolean replaceQuotes; // move quote layers using cancel/replace rather than cancel-then-new
+
+    // incremental pricing mode
+    private final boolean incrementalPricing;
+    @Decimal
+    private long sourceAskPrice = Decimal64Utils.NULL; // best ask of source exchange (before min spread adjustment)
+    @Decimal
+    private long sourceBidPrice = Decimal64Utils.NULL;
+    @Decimal
+    private long quotedAskBasePrice = Decimal64Utils.NULL; // base price used for the last complete evaluation of sell layers
+    @Decimal
+    private long quotedBidBasePrice = Decimal64Utils.NULL;
+    private int quotedPricingRevision; // pricing model revision used for the last complete evaluation of both sides
+
     private final OutboundOrder[] activeSellOrders; // Warning: don't forget to release all references to the orders after they reach final state (orders are recycled to object pool)
     private final OutboundOrder[] activeBuyOrders; // Warning: don't forget to release all references to the orders after they reach final state (orders are recycled to object pool)
-    private final ArrayList<OutboundOrder> activeHedgingOrders;
+    @Decimal
+    private final long[] activeSellPrices; // last requested price of each layer (saves dereference of working order on every tick)
+    @Decimal
+    private final long[] activeBuyPrices;
+    private final OrderRoleRegistry orderRoles; // all active orders (quoting and hedging) with their roles
+    private final HedgeExposureCounters hedgeCounters; // null when telemetry is not available
+    private final PortfolioRiskAggregator riskAggregator;
+    private final MarketMakerStateStore.Snapshot snapshot; // null if snapshots are disabled
+    private final boolean snapshotRestored; // snapshot of previous run was found, its quoting orders may be re-adopted
+    @Decimal
+    private long riskContribution = Decimal64Utils.ZERO; // last exposure of this instrument reported to risk aggregator
+    @Decimal
+    private long openBuyRiskContribution = Decimal64Utils.ZERO; // last open order exposure of this instrument reported to risk aggregator
+    @Decimal
+    private long openSellRiskContribution = Decimal64Utils.ZERO;
 
     private final @Alphanumeric long exchange;
     private final @Alphanumeric long sourceExchange;
@@ -84,7 +125,7 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
     @Decimal
     private final long positionNormalSize;
 
-    public MarketMakerHandler(CharSequence symbol, InstrumentType instrumentType, MarketMakerAlgorithm algorithm, Log logger) {
+    public MarketMakerHandler(CharSequence symbol, InstrumentType instrumentType, MarketMakerContext algorithm, Log logger) {
         super(symbol, instrumentType);
 
         MarketMakerSettings settings = algorithm.getSettings();
@@ -99,6 +140,9 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         buyMargins = convertArrayFromDouble(settings.getBuyMargins());
         minSpread = Decimal64Utils.fromDouble(settings.getMinSpread());
         minPriceChange = Decimal64Utils.fromDouble(settings.getMinPriceChange());
+        incrementalPricing = settings.isIncrementalPricing();
+        replaceQuotes = settings.isReplaceQuotes();
+        pricingModel = settings.getPricingModel().create(settings);
 
         // risk limits
         maxShortExposure = Decimal64Utils.fromDouble(settings.getMaxShortExposure());
@@ -117,11 +161,27 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         this.openHedgeBuyQty = Decimal64Utils.ZERO;
         this.activeSellOrders = new OutboundOrder[sellQuoteSizes.length];
         this.activeBuyOrders = new OutboundOrder[buyQuoteSizes.length];
-        this.activeHedgingOrders = new ArrayList<>();
-        this.rateLimiter = new RateLimiter(settings.getRateLimit());
+        this.activeSellPrices = new long[sellQuoteSizes.length];
+        this.activeBuyPrices = new long[buyQuoteSizes.length];
+        this.riskAggregator = algorithm.getRiskAggregator();
+        this.orderRoles = new OrderRoleRegistry(buyQuoteSizes.length, sellQuoteSizes.length, 16);
+        this.hedgeCounters = (algorithm.getCounterFactory() != null) ? new HedgeExposureCounters(symbol + "Hedge", algorithm.getCounterFactory()) : null;
+        this.quotingRateLimiter = algorithm.getRateLimiter(exchange);
+        this.hedgingRateLimiter = algorithm.getRateLimiter(sourceExchange);
         isSubscribed = algorithm.isSubscribed(getSymbol());
         toBeCanceled = 0;
         waitingForPositionResponse = false;
+
+        final MarketMakerStateStore stateStore = algorithm.getStateStore();
+        snapshot = (stateStore != null) ? stateStore.open(symbol) : null;
+        snapshotRestored = (snapshot != null && snapshot.isValid());
+        if (snapshotRestored) {
+            // snapshot only seeds quote layers: position and PnL are requested from OMS once orders are re-adopted
+            avgPositionPrice = snapshot.getAvgPositionPrice(); // not reported by OMS
+            logger.info("Found %s quote snapshot, quoting orders of previous run will be re-adopted").with(symbol);
+        } else if (snapshot != null) {
+            snapshot.reset();
+        }
     }
 
     @Override
@@ -152,29 +212,126 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
     public void onMarketMessage(InstrumentMessage message) {
         super.onMarketMessage(message);
 
-        if (!isSubscribed || !algorithm.isLeaderNode())
+        if (!isSubscribed || !algorithm.isLeaderNode()) {
+            sourceAskPrice = sourceBidPrice = Decimal64Utils.NULL; // recompute everything once we are leader
             return;
+        }
+
+        if (incrementalPricing) {
+            onMarketMessageIncremental(message);
+            return;
+        }
 
         currentAskBasePrice = calculateBasePrice(QuoteSide.ASK);
         currentBidBasePrice = calculateBasePrice(QuoteSide.BID);
         if (currentBidBasePrice != Decimal64Utils.NULL && currentAskBasePrice != Decimal64Utils.NULL) {
-            assert Decimal64Utils.isGreater(currentAskBasePrice, currentBidBasePrice);
-            @Decimal long adjustment = Decimal64Utils.subtract(minSpread, Decimal64Utils.subtract(currentAskBasePrice, currentBidBasePrice));
-            if (Decimal64Utils.isPositive(adjustment)) {
-                // one more extra parameter being added overrides the default % attribution (50/50 to buy and sell quote arrays) for spread increase
-                // see https://kb.marketmaker.cloud/market-maker-application/trading/bot-configuration#min-spread-examples
-                @Decimal long halfAdjustment = Decimal64Utils.divide(adjustment, Decimal64Utils.TWO);
-                currentAskBasePrice = Decimal64Utils.add(currentAskBasePrice, halfAdjustment);
-                currentBidBasePrice = Decimal64Utils.subtract(currentBidBasePrice, halfAdjustment);
-            }
+            applyMinSpread();
+            pricingModel.onBasePrice(algorithm.getTime(), currentBidBasePrice, currentAskBasePrice, currentPosition);
             processOrders(Side.SELL);
             processOrders(Side.BUY);
         } // todo: else shutdown algo?
     }
 
+    /**
+     * Recomputes base price only for the side whose top of source exchange book was touched by the message,
+     * and re-evaluates quote layers only when base price moved far enough to shift some quote beyond minPriceChange.
+     */
+    private void onMarketMessageIncremental(InstrumentMessage message) {
+        int changedSides = getChangedSides(message);
+        if (sourceAskPrice == Decimal64Utils.NULL || sourceBidPrice == Decimal64Utils.NULL)
+            changedSides = BOTH_SIDES_CHANGED;
+        if (changedSides == 0)
+            return;
+
+        if ((changedSides & ASK_CHANGED) != 0)
+            sourceAskPrice = calculateBasePrice(QuoteSide.ASK);
+        if ((changedSides & BID_CHANGED) != 0)
+            sourceBidPrice = calculateBasePrice(QuoteSide.BID);
+
+        currentAskBasePrice = sourceAskPrice;
+        currentBidBasePrice = sourceBidPrice;
+        if (currentBidBasePrice != Decimal64Utils.NULL && currentAskBasePrice != Decimal64Utils.NULL) {
+            applyMinSpread(); // spread adjustment links both sides, so we still compare both base prices below
+            pricingModel.onBasePrice(algorithm.getTime(), currentBidBasePrice, currentAskBasePrice, currentPosition);
+            final int pricingRevision = pricingModel.getRevision();
+            if (pricingRevision != quotedPricingRevision) { // model shifted all quotes
+                quotedPricingRevision = pricingRevision;
+                quotedAskBasePrice = quotedBidBasePrice = Decimal64Utils.NULL;
+            }
+            if (isQuoteMoved(currentAskBasePrice, quotedAskBasePrice)) {
+                quotedAskBasePrice = currentAskBasePrice;
+                processOrders(Side.SELL);
+            }
+            if (isQuoteMoved(currentBidBasePrice, quotedBidBasePrice)) {
+                quotedBidBasePrice = currentBidBasePrice;
+                processOrders(Side.BUY);
+            }
+        }
+    }
+
+    /** @return bit mask of sides whose best price on source exchange may be affected by given message */
+    private int getChangedSides(InstrumentMessage message) {
+        if (!(message instanceof PackageHeaderInfo))
+            return BOTH_SIDES_CHANGED;
+
+        final PackageHeaderInfo packageHeader = (PackageHeaderInfo) message;
+        if (packageHeader.getPackageType() != PackageType.INCREMENTAL_UPDATE || !packageHeader.hasEntries())
+            return BOTH_SIDES_CHANGED; // snapshots replace the whole book
+
+        int result = 0;
+        final ObjectList<BaseEntryInfo> entries = packageHeader.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            final BaseEntryInfo entry = entries.get(i);
+            if (entry.getExchangeId() != sourceExchange)
+                continue; // base price depends on source exchange only
+
+            if (entry instanceof L2EntryUpdateInfo) {
+                final L2EntryUpdateInfo update = (L2EntryUpdateInfo) entry;
+                if (update.getLevel() == 0) // insert, update or delete of the best level
+                    result |= getSideMask(update.getSide());
+            } else if (entry instanceof L2EntryNewInfo) {
+                final L2EntryNewInfo insert = (L2EntryNewInfo) entry;
+                if (insert.getLevel() == 0)
+                    result |= getSideMask(insert.getSide());
+            } else if (entry instanceof L1EntryInfo) {
+                result |= getSideMask(((L1EntryInfo) entry).getSide());
+            } else if (entry instanceof BookResetEntryInfo) {
+                return BOTH_SIDES_CHANGED;
+            } // trades and statistics do not affect order book
+        }
+        return result;
+    }
+
+    private static int getSideMask(QuoteSide side) {
+        return (side == QuoteSide.ASK) ? ASK_CHANGED : BID_CHANGED;
+    }
+
+    /** Quote price is base price plus constant margin rounded to price increment, so it may move by one more tick than base price */
+    private boolean isQuoteMoved(@Decimal long basePrice, @Decimal long quotedBasePrice) {
+        if (quotedBasePrice == Decimal64Utils.NULL)
+            return true;
+
+        @Decimal long move = Decimal64Utils.abs(Decimal64Utils.subtract(basePrice, quotedBasePrice));
+        if (Decimal64Utils.isPositive(priceIncrement))
+            move = Decimal64Utils.add(move, priceIncrement);
+        return Decimal64Utils.isGreater(move, minPriceChange);
+    }
+
+    private void applyMinSpread() {
+        assert Decimal64Utils.isGreater(currentAskBasePrice, currentBidBasePrice);
+        @Decimal long adjustment = Decimal64Utils.subtract(minSpread, Decimal64Utils.subtract(currentAskBasePrice, currentBidBasePrice));
+        if (Decimal64Utils.isPositive(adjustment)) {
+            // one more extra parameter being added overrides the default % attribution (50/50 to buy and sell quote arrays) for spread increase
+            // see https://kb.marketmaker.cloud/market-maker-application/trading/bot-configuration#min-spread-examples
+            @Decimal long halfAdjustment = Decimal64Utils.divide(adjustment, Decimal64Utils.TWO);
+            currentAskBasePrice = Decimal64Utils.add(currentAskBasePrice, halfAdjustment);
+            currentBidBasePrice = Decimal64Utils.subtract(currentBidBasePrice, halfAdjustment);
+        }
+    }
+
     public void onFilled(OutboundOrder order, OrderTradeReportEvent event) {
         boolean isBuy = order.getSide() == Side.BUY;
-        final boolean isHedger = CharSequenceUtil.equals(order.getUserData(), "Hedger");
+        final boolean isHedger = orderRoles.getRole(order) == OrderRoleRegistry.HEDGER;
         @Decimal final long tradeQty = event.getTradeQuantity();
 
         if (isBuy) {
@@ -189,19 +346,40 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
             }
         }
         updateAllTimePosition(event, isBuy);
+        final boolean pricingShifted = updatePricingPosition();
+        riskContribution = riskAggregator.update(riskContribution, currentPosition, event.getTradePrice());
+        updateOpenRisk();
+        savePosition();
+        if (isHedger)
+            publishHedgeExposure();
 
         if (order.isFinal())
             removeFromActive(order);
 
-        if (!isHedger) {
+        if (!isHedger)
             hedgerAction(); // hedging has higher priority
-            if (order.isFinal()) {
-                processOrders(Side.BUY); // we should call this, because we may need to place better orders
-                processOrders(Side.SELL);
-            }
+
+        if (pricingShifted || (!isHedger && order.isFinal())) {
+            processOrders(Side.BUY); // we should call this, because we may need to place better orders
+            processOrders(Side.SELL);
         }
     }
 
+    /**
+     * Pricing model sees position on every base price update, this keeps it current between market messages.
+     * @return true if model shifted quotes (both sides must be re-evaluated)
+     */
+    private boolean updatePricingPosition() {
+        pricingModel.onPosition(currentPosition);
+        final int pricingRevision = pricingModel.getRevision();
+        if (pricingRevision == quotedPricingRevision)
+            return false;
+
+        quotedPricingRevision = pricingRevision;
+        quotedAskBasePrice = quotedBidBasePrice = Decimal64Utils.NULL;
+        return true;
+    }
+
     public void onRejected(OutboundOrder order, OrderRejectEvent event) {
         // now it assumes SAFE REJECT
         // because we trust our RateLimiter
@@ -217,8 +395,10 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
 
         // canceled all active orders existed before reboot
         if (toBeCanceled == 0) {
-            waitingForPositionResponse = true;
-            algorithm.submitPositionRequest();
+            if (!waitingForPositionResponse) { // re-adopted quoting order may have requested position already
+                waitingForPositionResponse = true;
+                algorithm.submitPositionRequest();
+            }
             return;
         }
 
@@ -229,9 +409,26 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
     public void onNew(OutboundOrder order, OrderNewEvent event) {
     }
 
-    public void onLeaderState(OutboundOrder order) {
-        toBeCanceled++;
+    /** Quote layer keeps its previous price (e.g. exchange does not support replace or order is being filled), re-evaluate it */
+    public void onReplaceRejected(OutboundOrder order, OrderReplaceRejectEvent event) {
+        if (order.isFinal())
+            return; // cancel or fill handlers take care of this layer
+
+        final Side side = order.getSide();
+        final OutboundOrder[] orders = (side == Side.BUY) ? activeBuyOrders : activeSellOrders;
+        @Decimal final long[] prices = (side == Side.BUY) ? activeBuyPrices : activeSellPrices;
+        for (int i = 0; i < orders.length; i++)
+            if (orders[i] == order) {
+                prices[i] = order.getWorkingOrder().getLimitPrice();
+                if (snapshot != null)
+                    snapshot.setLayerPrice(side, i, prices[i]);
+            }
 
+        invalidateQuotedBasePrice(side);
+        processOrders(side);
+    }
+
+    public void onLeaderState(OutboundOrder order) {
         @Decimal final long remainingQty = Decimal64Utils.subtract(order.getWorkingQuantity(), order.getTotalExecutedQuantity());
         final boolean isBuy = (order.getSide() == Side.BUY);
 
@@ -240,8 +437,11 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         } else {
             openSellQty = Decimal64Utils.add(openSellQty, remainingQty);
         }
+        updateOpenRisk();
 
-        if (CharSequenceUtil.equals(order.getUserData(), "Hedger")) {
+        // the only place where we have to look at order text: orders sent before restart are classified once
+        final byte role = OrderRoleRegistry.fromUserData(order.getUserData());
+        if (role == OrderRoleRegistry.HEDGER) {
             if (isBuy) {
                 openHedgeBuyQty = Decimal64Utils.add(openHedgeBuyQty, remainingQty);
             } else {
@@ -249,8 +449,39 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
             }
         }
 
-        // we don't have to save this orders in containers, they should be removed
+        if (role == OrderRoleRegistry.QUOTER && adoptQuotingOrder(order)) {
+            logger.info("Re-adopted %s quoting order %s").with(order.getSide()).with(order.getOrderId());
+            if (!waitingForPositionResponse) { // position may have changed after snapshot was written
+                waitingForPositionResponse = true;
+                algorithm.submitPositionRequest();
+            }
+            return;
+        }
+
+        // we don't keep these orders in quote layers, they should be removed (registry remembers their role until cancel)
+        toBeCanceled++;
+        orderRoles.add(order, role);
         algorithm.cancelOrder(order);
+        publishHedgeExposure();
+    }
+
+    /** Puts quoting order that survived restart back into its quote layer if snapshot says it still belongs there */
+    private boolean adoptQuotingOrder(OutboundOrder order) {
+        if (!snapshotRestored || order.isCancelPending() || order.isReplacePending())
+            return false;
+
+        final Side side = order.getSide();
+        final int layer = snapshot.findLayer(side, order.getOrderId());
+        final OutboundOrder[] orders = (side == Side.BUY) ? activeBuyOrders : activeSellOrders;
+        if (layer < 0 || layer >= orders.length || orders[layer] != null)
+            return false;
+        if (!Decimal64Utils.isEqual(order.getWorkingQuantity(), getSize(layer, side)))
+            return false; // ladder was reconfigured
+
+        orders[layer] = order;
+        ((side == Side.BUY) ? activeBuyPrices : activeSellPrices)[layer] = order.getWorkingOrder().getLimitPrice();
+        orderRoles.setLayer(side, layer, order);
+        return true; // layer is re-evaluated against current base price on the next market message
     }
 
     public void updatePosition(PositionReport response) {
@@ -260,7 +491,10 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         assert response.isFound();
 
         currentPosition = response.getSize();
+        updatePricingPosition(); // quotes are re-evaluated once handler resumes processing
         realizedPnL = response.getRealizedPnL();
+        riskContribution = riskAggregator.update(riskContribution, currentPosition, getMarkPrice());
+        savePosition();
         logger.info("Position: %s").withDecimal64(currentPosition);
         logger.info("PnL: %s").withDecimal64(realizedPnL);
         logger.info("OpenBuyQty: %s").withDecimal64(response.getOpenBuySize());
@@ -268,14 +502,18 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
     }
 
     private void processOrders(Side side) {
-        if (algorithm.isIteratingActiveOrders() || toBeCanceled > 0 || waitingForPositionResponse)
+        if (algorithm.isIteratingActiveOrders() || toBeCanceled > 0 || waitingForPositionResponse) {
+            invalidateQuotedBasePrice(side);
             return;
+        }
 
         if (currentAskBasePrice == Decimal64Utils.NULL || currentBidBasePrice == Decimal64Utils.NULL)
             return;
 
         OutboundOrder[] orders = (side == Side.BUY) ? activeBuyOrders : activeSellOrders;
+        @Decimal long[] prices = (side == Side.BUY) ? activeBuyPrices : activeSellPrices;
         final int len = ((side == Side.BUY) ? buyQuoteSizes : sellQuoteSizes).length;
+        boolean settled = true; // all layers are either up to date or wait for order events that will call us again
 
         for (int i = 0; i < len; i++) {
             @Decimal final long size = getSize(i, side);
@@ -285,31 +523,83 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
             if (order != null) {
                 if (order.isCancelPending())
                     continue;
+                if (order.isReplacePending()) {
+                    settled = false; // market may move further before replace is acknowledged
+                    continue;
+                }
                 // check if we really need to replace via min price/size change
-                boolean priceThreshold = Decimal64Utils.isGreater(Decimal64Utils.abs(Decimal64Utils.subtract(order.getWorkingOrder().getLimitPrice(), price)), minPriceChange);
+                boolean priceThreshold = Decimal64Utils.isGreater(Decimal64Utils.abs(Decimal64Utils.subtract(prices[i], price)), minPriceChange);
                 // size is probably only useful in REPLICATION source aggregation method
                 boolean sizeThreshold = false;
-                if ((priceThreshold || sizeThreshold) && rateLimiter.isRequestAllowed()) {
+                if (priceThreshold || sizeThreshold) {
+                    // moved layer passes the same portfolio check as a new one, otherwise it leaves the market
+                    final boolean replace = replaceQuotes && (!riskAggregator.isEnabled() || riskAggregator.canReplace(riskContribution,
+                            (side == Side.BUY) ? openBuyRiskContribution : openSellRiskContribution, side,
+                            Decimal64Utils.subtract(order.getWorkingQuantity(), order.getTotalExecutedQuantity()), price, getMarkPrice()));
+                    if (!isRequestAllowed(quotingRateLimiter, replace ? RequestType.REPLACE : RequestType.CANCEL)) {
+                        settled = false;
+                        continue;
+                    }
                     // if size changed, check maxLong/ShortExposure
-                    algorithm.cancelOrder(order);
-                    logger.info("Canceled %s quoting order").with(side);
+                    if (replace) {
+                        // layer stays on the market, order quantity (and therefore open quantity) is unchanged
+                        algorithm.replaceQuotingOrder(order, price, order.getWorkingQuantity());
+                        prices[i] = price;
+                        if (snapshot != null)
+                            snapshot.setLayerPrice(side, i, price);
+                        logger.info("Replaced %s quoting order: %s").with(side).withDecimal64(price);
+                    } else {
+                        algorithm.cancelOrder(order);
+                        if (replaceQuotes)
+                            logger.info("Canceled %s quoting order: portfolio limit does not allow %s").with(side).withDecimal64(price);
+                        else
+                            logger.info("Canceled %s quoting order").with(side);
+                    }
                 }
             } else {
+                if (riskAggregator.isEnabled() && !riskAggregator.canIncrease(riskContribution, (side == Side.BUY) ? openBuyRiskContribution : openSellRiskContribution, side, size, price)) {
+                    settled = false; // fills of other instruments may release portfolio limit
+                    continue;
+                }
                 if (side == Side.BUY) {
-                    if (Decimal64Utils.isGreater(Decimal64Utils.add(currentPosition, openBuyQty, size), maxLongExposure) || !rateLimiter.isRequestAllowed())
+                    if (Decimal64Utils.isGreater(Decimal64Utils.add(currentPosition, openBuyQty, size), maxLongExposure))
                         continue;
+                    if (!isRequestAllowed(quotingRateLimiter, RequestType.NEW)) {
+                        settled = false;
+                        continue;
+                    }
 
                     openBuyQty = Decimal64Utils.add(openBuyQty, size);
                 } else {
-                    if (Decimal64Utils.isGreater(Decimal64Utils.add(Decimal64Utils.subtract(openSellQty, currentPosition), size), maxShortExposure) || !rateLimiter.isRequestAllowed())
+                    if (Decimal64Utils.isGreater(Decimal64Utils.add(Decimal64Utils.subtract(openSellQty, currentPosition), size), maxShortExposure))
                         continue;
+                    if (!isRequestAllowed(quotingRateLimiter, RequestType.NEW)) {
+                        settled = false;
+                        continue;
+                    }
 
                     openSellQty = Decimal64Utils.add(openSellQty, size);
                 }
+                updateOpenRisk(); // next layers are checked against this one
                 orders[i] = algorithm.submitQuotingOrder(getSymbol(), size, price, exchange, side);
+                prices[i] = price;
+                orderRoles.setLayer(side, i, orders[i]);
+                if (snapshot != null)
+                    snapshot.setLayer(side, i, orders[i].getOrderId(), price);
                 logger.info("Submitted %s quoting order: %s @ %s").with(side).withDecimal64(size).withDecimal64(price);
             }
         }
+
+        if (!settled)
+            invalidateQuotedBasePrice(side);
+    }
+
+    /** Makes incremental pricing re-evaluate layers of given side on the next market message */
+    private void invalidateQuotedBasePrice(Side side) {
+        if (side == Side.BUY)
+            quotedBidBasePrice = Decimal64Utils.NULL;
+        else
+            quotedAskBasePrice = Decimal64Utils.NULL;
     }
 
     private void removeFromActive(OutboundOrder order) {
@@ -331,32 +621,33 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         } else {
             openSellQty = Decimal64Utils.subtract(openSellQty, remainingQty);
         }
+        updateOpenRisk();
 
-        if (CharSequenceUtil.equals(order.getUserData(), "Hedger")) {
-            activeHedgingOrders.remove(order);
+        final int slot = orderRoles.indexOf(order);
+        final int layer = orderRoles.getLayer(slot);
+        if (orderRoles.remove(slot) == OrderRoleRegistry.HEDGER) {
             if (isBuy) {
                 openHedgeBuyQty = Decimal64Utils.subtract(openHedgeBuyQty, remainingQty);
             } else {
                 openHedgeSellQty = Decimal64Utils.subtract(openHedgeSellQty, remainingQty);
             }
+            publishHedgeExposure();
             hedgerAction();
-        } else {
-            if (isBuy) {
-                for (int i = 0; i < activeBuyOrders.length; i++) {
-                    if (order.equals(activeBuyOrders[i])) {
-                        activeBuyOrders[i] = null;
-                    }
-                }
-            } else {
-                for (int i = 0; i < activeSellOrders.length; i++) {
-                    if (order.equals(activeSellOrders[i])) {
-                        activeSellOrders[i] = null;
-                    }
-                }
-            }
+        } else if (layer >= 0) {
+            final Side side = order.getSide();
+            final OutboundOrder[] orders = isBuy ? activeBuyOrders : activeSellOrders;
+            assert orders[layer] == order;
+            orders[layer] = null;
+            if (snapshot != null)
+                snapshot.clearLayer(side, layer);
         }
     }
 
+    private void savePosition() {
+        if (snapshot != null)
+            snapshot.setPosition(currentPosition, avgPositionPrice, realizedPnL);
+    }
+
     private void hedgerAction() {
         logger.info("PnL before removal: %s").withDecimal64(realizedPnL);
         logger.info("Position before hedging: %s").withDecimal64(currentPosition);
@@ -365,7 +656,7 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         logger.info("OpenHedgeBuyQty before hedging: %s").withDecimal64(openHedgeBuyQty);
         logger.info("OpenHedgeSellQty before hedging: %s").withDecimal64(openHedgeSellQty);
 
-        if (currentPosition == Decimal64Utils.ZERO && !activeHedgingOrders.isEmpty()) {
+        if (currentPosition == Decimal64Utils.ZERO && orderRoles.getHedgerCount() > 0) {
             // can be skipped if kept some variable of total pending cancel qty of hedging orders
             cancelHedgingOrders();
             return;
@@ -384,8 +675,8 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
             // e.g. cancel as precise total qty as possible
             // or cancel multiple orders at once)
             if (Decimal64Utils.isGreater(openHedgeSellQty, currentPosition)) {
-                OutboundOrder o = activeHedgingOrders.get(0);
-                if (!o.isCancelPending() && rateLimiter.isRequestAllowed())
+                OutboundOrder o = orderRoles.first(OrderRoleRegistry.HEDGER);
+                if (o != null && !o.isCancelPending() && isRequestAllowed(hedgingRateLimiter, RequestType.CANCEL))
                     algorithm.cancelOrder(o);
                 return;
             }
@@ -398,12 +689,14 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
             // can specify threshold in order to reduce rate
             // and max order size for some other reason
             @Decimal final long size = Decimal64Utils.subtract(Decimal64Utils.subtract(currentPosition, openHedgeSellQty), positionNormalSize);
-            if (Decimal64Utils.isGreater(size, Decimal64Utils.ZERO) && rateLimiter.isRequestAllowed()) {
+            if (Decimal64Utils.isGreater(size, Decimal64Utils.ZERO) && isRequestAllowed(hedgingRateLimiter, RequestType.NEW)) {
                 @Decimal final long leanPrice = orderBook.getMarketSide(QuoteSide.BID).getBestQuote().getPrice();
                 openHedgeSellQty = Decimal64Utils.add(openHedgeSellQty, size);
                 openSellQty = Decimal64Utils.add(openSellQty, size);
+                updateOpenRisk();
                 OutboundOrder hedgingOrder = algorithm.submitHedgingOrder(getSymbol(), size, leanPrice, sourceExchange, Side.SELL);
-                activeHedgingOrders.add(hedgingOrder);
+                orderRoles.add(hedgingOrder, OrderRoleRegistry.HEDGER);
+                publishHedgeExposure();
                 logger.info("Submitted SELL hedging order: %s @ %s").withDecimal64(size).withDecimal64(leanPrice);
             }
         } else {
@@ -414,8 +707,8 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
 
             @Decimal final long absCurrentPosition = Decimal64Utils.negate(currentPosition);
             if (Decimal64Utils.isGreater(openHedgeBuyQty, absCurrentPosition)) {
-                OutboundOrder o = activeHedgingOrders.get(0);
-                if (!o.isCancelPending() && rateLimiter.isRequestAllowed())
+                OutboundOrder o = orderRoles.first(OrderRoleRegistry.HEDGER);
+                if (o != null && !o.isCancelPending() && isRequestAllowed(hedgingRateLimiter, RequestType.CANCEL))
                     algorithm.cancelOrder(o);
                 return;
             }
@@ -425,25 +718,43 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
             }
 
             @Decimal final long size = Decimal64Utils.subtract(Decimal64Utils.subtract(absCurrentPosition, openHedgeBuyQty), positionNormalSize);
-            if (Decimal64Utils.isGreater(size, Decimal64Utils.ZERO) && rateLimiter.isRequestAllowed()) {
+            if (Decimal64Utils.isGreater(size, Decimal64Utils.ZERO) && isRequestAllowed(hedgingRateLimiter, RequestType.NEW)) {
                 @Decimal final long leanPrice = orderBook.getMarketSide(QuoteSide.ASK).getBestQuote().getPrice();
                 openHedgeBuyQty = Decimal64Utils.add(openHedgeBuyQty, size);
                 openBuyQty = Decimal64Utils.add(openBuyQty, size);
+                updateOpenRisk();
                 OutboundOrder hedgingOrder = algorithm.submitHedgingOrder(getSymbol(), size, leanPrice, sourceExchange, Side.BUY);
-                activeHedgingOrders.add(hedgingOrder);
+                orderRoles.add(hedgingOrder, OrderRoleRegistry.HEDGER);
+                publishHedgeExposure();
                 logger.info("Submitted BUY hedging order: %s @ %s").withDecimal64(size).withDecimal64(leanPrice);
             }
         }
     }
 
     private void cancelHedgingOrders() {
-        for (int i = 0; i < activeHedgingOrders.size(); i++) {
-            OutboundOrder o = activeHedgingOrders.get(i);
-            if (!o.isCancelPending() && rateLimiter.isRequestAllowed())
+        for (int slot = 0; slot < orderRoles.capacity(); slot++) {
+            if (orderRoles.getRoleAt(slot) != OrderRoleRegistry.HEDGER)
+                continue;
+            OutboundOrder o = orderRoles.getOrder(slot);
+            if (!o.isCancelPending() && isRequestAllowed(hedgingRateLimiter, RequestType.CANCEL))
                 algorithm.cancelOrder(o);
         }
     }
 
+    /** Reports remaining quantity of open orders to portfolio risk aggregator (other instruments take them into account) */
+    private void updateOpenRisk() {
+        if (riskAggregator.isEnabled()) {
+            @Decimal final long markPrice = getMarkPrice();
+            openBuyRiskContribution = riskAggregator.updateOpen(Side.BUY, openBuyRiskContribution, openBuyQty, markPrice);
+            openSellRiskContribution = riskAggregator.updateOpen(Side.SELL, openSellRiskContribution, openSellQty, markPrice);
+        }
+    }
+
+    private void publishHedgeExposure() {
+        if (hedgeCounters != null)
+            hedgeCounters.update(orderRoles.getHedgerCount(), openHedgeBuyQty, openHedgeSellQty);
+    }
+
     @Decimal
     private long getSize(int idx, Side side) {
         if (side == Side.BUY)
@@ -456,9 +767,17 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
     private long getPrice(int idx, Side side) {
         // validate that margins are ok with base price
         if (side == Side.BUY)
-            return roundOrderPrice(Decimal64Utils.subtract(currentBidBasePrice, buyMargins[idx]), Side.BUY);
+            return roundOrderPrice(pricingModel.getQuotePrice(Side.BUY, currentBidBasePrice, buyMargins[idx]), Side.BUY);
         else
-            return roundOrderPrice(Decimal64Utils.add(currentAskBasePrice, sellMargins[idx]), Side.SELL);
+            return roundOrderPrice(pricingModel.getQuotePrice(Side.SELL, currentAskBasePrice, sellMargins[idx]), Side.SELL);
+    }
+
+    /** @return price used to value position restored from position report (mid of base prices when known) */
+    @Decimal
+    private long getMarkPrice() {
+        if (currentAskBasePrice != Decimal64Utils.NULL && currentBidBasePrice != Decimal64Utils.NULL)
+            return Decimal64Utils.divide(Decimal64Utils.add(currentAskBasePrice, currentBidBasePrice), Decimal64Utils.TWO);
+        return avgPositionPrice;
     }
 
     @Decimal
@@ -532,32 +851,8 @@ public class MarketMakerHandler extends AbstractL2TradingAlgorithm.OrderBookStat
         return Decimal64Utils.multiply(positionSize, Decimal64Utils.subtract(exitPrice, entryPrice));
     }
 
-    private class RateLimiter {
-        private static final long ONE_SECOND = 1000;
-        private final int maxOrdersPerSecond;
-        private final long[] orderTimestamps;
-        private int head;
-
-        RateLimiter(int maxOrdersPerSecond) {
-            this.maxOrdersPerSecond = maxOrdersPerSecond;
-            this.orderTimestamps = new long[this.maxOrdersPerSecond];
-            this.head = 0;
-        }
-
-        /** this call modifies the state,
-         * so this check should be the last one before submission
-         *
-         * @return true when we can submit an order
-         */
-        private boolean isRequestAllowed() {
-            @Timestamp final long currentTime = algorithm.getTime(); // in ms
-            if (orderTimestamps[head] != 0 && currentTime - orderTimestamps[head] < ONE_SECOND)
-                return false; // can adapt to such limits, by means like resizing max number of quotes
-
-            orderTimestamps[head] = currentTime;
-            head = head + 1 == maxOrdersPerSecond ? 0 : head + 1;
-
-            return true;
-        }
+    /** this call modifies the state of shared rate limiter, so this check should be the last one before submission */
+    private boolean isRequestAllowed(RateLimiter rateLimiter, RequestType type) {
+        return rateLimiter.tryAcquire(algorithm.getTime(), type);
     }
-}
\ No newline at end of file
+}
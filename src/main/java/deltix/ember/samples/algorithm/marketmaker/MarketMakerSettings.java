@@ -18,6 +18,12 @@ public class MarketMakerSettings {
     private double minSpread;
     private double minPriceChange;
     private double minSizeChange;
+    private boolean incrementalPricing;
+    private boolean replaceQuotes;
+    private QuotePricingModelType pricingModel = QuotePricingModelType.STATIC;
+    private double inventorySkew;
+    private double volatilityMultiplier;
+    private long volatilityHalfLife = 1000;
 
     // Hedger
     private double positionNormalSize;
@@ -35,9 +41,17 @@ public class MarketMakerSettings {
     private long minSellQuoteActiveTime;
     private double maxQuoterPositionSize;
     private double maxHedgerPositionSize;
+    private double maxPortfolioNetExposure;
+    private double maxPortfolioGrossExposure;
+    private boolean portfolioRiskInQuoteCurrency;
 
     // Misc
     private int rateLimit;
+    private String[] rateLimitWindows;
+    private int newRequestWeight;
+    private int replaceRequestWeight;
+    private int cancelRequestWeight;
+    private String stateSnapshotFile;
 
     public @Alphanumeric long getExchange() {
         return exchange;
@@ -103,6 +117,54 @@ public class MarketMakerSettings {
         this.minPriceChange = minPriceChange;
     }
 
+    public boolean isIncrementalPricing() {
+        return incrementalPricing;
+    }
+
+    public void setIncrementalPricing(boolean incrementalPricing) {
+        this.incrementalPricing = incrementalPricing;
+    }
+
+    public boolean isReplaceQuotes() {
+        return replaceQuotes;
+    }
+
+    public void setReplaceQuotes(boolean replaceQuotes) {
+        this.replaceQuotes = replaceQuotes;
+    }
+
+    public QuotePricingModelType getPricingModel() {
+        return pricingModel;
+    }
+
+    public void setPricingModel(QuotePricingModelType pricingModel) {
+        this.pricingModel = pricingModel;
+    }
+
+    public double getInventorySkew() {
+        return inventorySkew;
+    }
+
+    public void setInventorySkew(double inventorySkew) {
+        this.inventorySkew = inventorySkew;
+    }
+
+    public double getVolatilityMultiplier() {
+        return volatilityMultiplier;
+    }
+
+    public void setVolatilityMultiplier(double volatilityMultiplier) {
+        this.volatilityMultiplier = volatilityMultiplier;
+    }
+
+    public long getVolatilityHalfLife() {
+        return volatilityHalfLife;
+    }
+
+    public void setVolatilityHalfLife(long volatilityHalfLife) {
+        this.volatilityHalfLife = volatilityHalfLife;
+    }
+
     public double getMinSizeChange() {
         return minSizeChange;
     }
@@ -215,6 +277,30 @@ public class MarketMakerSettings {
         this.maxHedgerPositionSize = maxHedgerPositionSize;
     }
 
+    public double getMaxPortfolioNetExposure() {
+        return maxPortfolioNetExposure;
+    }
+
+    public void setMaxPortfolioNetExposure(double maxPortfolioNetExposure) {
+        this.maxPortfolioNetExposure = maxPortfolioNetExposure;
+    }
+
+    public double getMaxPortfolioGrossExposure() {
+        return maxPortfolioGrossExposure;
+    }
+
+    public void setMaxPortfolioGrossExposure(double maxPortfolioGrossExposure) {
+        this.maxPortfolioGrossExposure = maxPortfolioGrossExposure;
+    }
+
+    public boolean isPortfolioRiskInQuoteCurrency() {
+        return portfolioRiskInQuoteCurrency;
+    }
+
+    public void setPortfolioRiskInQuoteCurrency(boolean portfolioRiskInQuoteCurrency) {
+        this.portfolioRiskInQuoteCurrency = portfolioRiskInQuoteCurrency;
+    }
+
     public int getRateLimit() {
         return rateLimit;
     }
@@ -222,4 +308,44 @@ public class MarketMakerSettings {
     public void setRateLimit(int rateLimit) {
         this.rateLimit = rateLimit;
     }
-}
\ No newline at end of file
+
+    public String[] getRateLimitWindows() {
+        return rateLimitWindows;
+    }
+
+    public void setRateLimitWindows(String[] rateLimitWindows) {
+        this.rateLimitWindows = rateLimitWindows;
+    }
+
+    public int getNewRequestWeight() {
+        return newRequestWeight;
+    }
+
+    public void setNewRequestWeight(int newRequestWeight) {
+        this.newRequestWeight = newRequestWeight;
+    }
+
+    public int getReplaceRequestWeight() {
+        return replaceRequestWeight;
+    }
+
+    public void setReplaceRequestWeight(int replaceRequestWeight) {
+        this.replaceRequestWeight = replaceRequestWeight;
+    }
+
+    public int getCancelRequestWeight() {
+        return cancelRequestWeight;
+    }
+
+    public void setCancelRequestWeight(int cancelRequestWeight) {
+        this.cancelRequestWeight = cancelRequestWeight;
+    }
+
+    public String getStateSnapshotFile() {
+        return stateSnapshotFile;
+    }
+
+    public void setStateSnapshotFile(String stateSnapshotFile) {
+        this.stateSnapshotFile = stateSnapshotFile;
+    }
+}
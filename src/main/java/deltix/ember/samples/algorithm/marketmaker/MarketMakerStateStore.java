@@ -0,0 +1,273 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.ember.message.trade.Side;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps quote ladder and position of each {@link MarketMakerHandler} in a memory-mapped file, so that restarted market maker
+ * can re-adopt its working quoting orders instead of cancelling them all.
+ * <p>
+ * File starts with a header followed by fixed table of slots, one per instrument. Slot contains symbol, position,
+ * average position price, realized PnL and order id with last requested price of each quote layer.
+ * Every update is bracketed by increments of slot sequence number: odd sequence means that process died in the middle
+ * of update and the slot is ignored on recovery (handler falls back to cancelling all orders).
+ * Updates are plain memory writes (no system calls), file content survives process crash but not OS crash.
+ * <p>
+ * File written for different ladder or capacity is copied to {@code <file>.bak} before it is re-initialized.
+ * <p>
+ * Slots are looked up once during handler initialization. Single-threaded (algorithm thread).
+ */
+final class MarketMakerStateStore implements Closeable {
+    private static final Log LOG = LogFactory.getLog(MarketMakerStateStore.class);
+
+    static final int MAX_SYMBOL_LENGTH = 31;
+    static final int MAX_ORDER_ID_LENGTH = 31;
+
+    private static final long MAGIC = 0x4D4D_5354_4154_4531L;
+    private static final int HEADER_SIZE = 64;
+    private static final int LAYERS_OFFSET = Long.BYTES;
+    private static final int SLOT_SIZE_OFFSET = LAYERS_OFFSET + Integer.BYTES;
+
+    // slot layout
+    private static final int SYMBOL_LENGTH_OFFSET = 0;
+    private static final int SYMBOL_OFFSET = 1;
+    private static final int SEQUENCE_OFFSET = 32;
+    private static final int POSITION_OFFSET = SEQUENCE_OFFSET + Long.BYTES;
+    private static final int AVG_PRICE_OFFSET = POSITION_OFFSET + Long.BYTES;
+    private static final int PNL_OFFSET = AVG_PRICE_OFFSET + Long.BYTES;
+    private static final int FIRST_LAYER_OFFSET = 64;
+
+    // layer layout
+    private static final int ORDER_ID_LENGTH_OFFSET = 0;
+    private static final int ORDER_ID_OFFSET = 1;
+    private static final int PRICE_OFFSET = 32;
+    private static final int LAYER_SIZE = PRICE_OFFSET + Long.BYTES;
+
+    private final File file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int maxLayers;
+    private final int slotSize;
+    private final int capacity;
+    private int usedSlots;
+
+    /**
+     * @param maxLayers maximum number of quote layers per side. File produced for different ladder is discarded.
+     * @param capacity maximum number of instruments
+     */
+    MarketMakerStateStore(File file, int maxLayers, int capacity) throws IOException {
+        this.file = file;
+        this.maxLayers = maxLayers;
+        this.slotSize = align(FIRST_LAYER_OFFSET + 2 * maxLayers * LAYER_SIZE);
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null)
+                throw new RuntimeException("Another program holds lock for file " + file.getAbsolutePath());
+
+            final long fileSize = HEADER_SIZE + (long) capacity * slotSize;
+            final long existingSize = channel.size();
+            if (existingSize != 0 && (existingSize != fileSize || !hasHeader(channel, maxLayers, slotSize))) {
+                final File backup = new File(file.getPath() + ".bak");
+                LOG.warn("Quote state snapshot %s was written for different ladder or capacity, nothing can be re-adopted (previous content is kept in %s)")
+                        .with(file.getAbsolutePath()).with(backup.getAbsolutePath());
+                Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (existingSize != fileSize)
+                channel.truncate(0);
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            if (buffer.getLong(0) != MAGIC || buffer.getInt(LAYERS_OFFSET) != maxLayers || buffer.getInt(SLOT_SIZE_OFFSET) != slotSize) {
+                for (int i = 0; i < fileSize; i += Long.BYTES)
+                    buffer.putLong(i, 0);
+                buffer.putInt(LAYERS_OFFSET, maxLayers);
+                buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+                buffer.putLong(0, MAGIC);
+                buffer.force();
+            }
+
+            while (usedSlots < capacity && buffer.get(slotOffset(usedSlots) + SYMBOL_LENGTH_OFFSET) != 0)
+                usedSlots++; // slots are allocated sequentially
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** @return snapshot slot of given symbol (registers new slot on first use), or null if store is full or symbol is too long */
+    Snapshot open(CharSequence symbol) {
+        if (symbol.length() == 0 || symbol.length() > MAX_SYMBOL_LENGTH)
+            return null;
+
+        for (int i = 0; i < usedSlots; i++) {
+            final int offset = slotOffset(i);
+            if (equals(offset + SYMBOL_LENGTH_OFFSET, symbol))
+                return new Snapshot(offset);
+        }
+
+        if (usedSlots == capacity)
+            return null;
+
+        final int offset = slotOffset(usedSlots++);
+        for (int i = 0; i < symbol.length(); i++)
+            buffer.put(offset + SYMBOL_OFFSET + i, (byte) symbol.charAt(i));
+        buffer.put(offset + SYMBOL_LENGTH_OFFSET, (byte) symbol.length()); // slot becomes visible after crash only when symbol is fully written
+        return new Snapshot(offset);
+    }
+
+    int getMaxLayers() {
+        return maxLayers;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            lock.release();
+            channel.close();
+        }
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    /** Compares length-prefixed ASCII text stored at given offset with given text */
+    private boolean equals(int offset, CharSequence text) {
+        final int length = buffer.get(offset);
+        if (length != text.length())
+            return false;
+        for (int i = 0; i < length; i++)
+            if (buffer.get(offset + 1 + i) != (byte) text.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static boolean hasHeader(FileChannel channel, int maxLayers, int slotSize) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0); // file shorter than header leaves zeros, which do not match
+        return header.getLong(0) == MAGIC && header.getInt(LAYERS_OFFSET) == maxLayers && header.getInt(SLOT_SIZE_OFFSET) == slotSize;
+    }
+
+    private static int align(int size) {
+        return (size + 63) & ~63; // cache line
+    }
+
+    /** State of single instrument */
+    final class Snapshot {
+        private final int offset;
+
+        private Snapshot(int offset) {
+            this.offset = offset;
+        }
+
+        /** @return true if slot contains complete state written by previous run */
+        boolean isValid() {
+            final long sequence = buffer.getLong(offset + SEQUENCE_OFFSET);
+            return sequence > 0 && (sequence & 1) == 0;
+        }
+
+        @Decimal
+        long getPosition() {
+            return buffer.getLong(offset + POSITION_OFFSET);
+        }
+
+        @Decimal
+        long getAvgPositionPrice() {
+            return buffer.getLong(offset + AVG_PRICE_OFFSET);
+        }
+
+        @Decimal
+        long getRealizedPnL() {
+            return buffer.getLong(offset + PNL_OFFSET);
+        }
+
+        /** @return quote layer index of given order, or -1 if it was not a quoting order in the snapshot */
+        int findLayer(Side side, CharSequence orderId) {
+            for (int i = 0; i < maxLayers; i++)
+                if (MarketMakerStateStore.this.equals(layerOffset(side, i) + ORDER_ID_LENGTH_OFFSET, orderId))
+                    return i;
+            return -1;
+        }
+
+        /** Clears state left by previous run (flat position, no quote layers) */
+        void reset() {
+            begin();
+            buffer.putLong(offset + POSITION_OFFSET, Decimal64Utils.ZERO);
+            buffer.putLong(offset + AVG_PRICE_OFFSET, Decimal64Utils.ZERO);
+            buffer.putLong(offset + PNL_OFFSET, Decimal64Utils.ZERO);
+            for (int i = 0; i < maxLayers; i++) {
+                buffer.put(layerOffset(Side.BUY, i) + ORDER_ID_LENGTH_OFFSET, (byte) 0);
+                buffer.put(layerOffset(Side.SELL, i) + ORDER_ID_LENGTH_OFFSET, (byte) 0);
+            }
+            end();
+        }
+
+        void setPosition(@Decimal long position, @Decimal long avgPositionPrice, @Decimal long realizedPnL) {
+            begin();
+            buffer.putLong(offset + POSITION_OFFSET, position);
+            buffer.putLong(offset + AVG_PRICE_OFFSET, avgPositionPrice);
+            buffer.putLong(offset + PNL_OFFSET, realizedPnL);
+            end();
+        }
+
+        /** Order ids longer than {@link #MAX_ORDER_ID_LENGTH} are not stored (such layer will be cancelled on restart) */
+        void setLayer(Side side, int layer, CharSequence orderId, @Decimal long price) {
+            final int layerOffset = layerOffset(side, layer);
+            final int length = (orderId.length() <= MAX_ORDER_ID_LENGTH) ? orderId.length() : 0;
+            begin();
+            for (int i = 0; i < length; i++)
+                buffer.put(layerOffset + ORDER_ID_OFFSET + i, (byte) orderId.charAt(i));
+            buffer.put(layerOffset + ORDER_ID_LENGTH_OFFSET, (byte) length);
+            buffer.putLong(layerOffset + PRICE_OFFSET, price);
+            end();
+        }
+
+        void setLayerPrice(Side side, int layer, @Decimal long price) {
+            begin();
+            buffer.putLong(layerOffset(side, layer) + PRICE_OFFSET, price);
+            end();
+        }
+
+        void clearLayer(Side side, int layer) {
+            final int layerOffset = layerOffset(side, layer);
+            begin();
+            buffer.put(layerOffset + ORDER_ID_LENGTH_OFFSET, (byte) 0);
+            buffer.putLong(layerOffset + PRICE_OFFSET, Decimal64Utils.NULL);
+            end();
+        }
+
+        private int layerOffset(Side side, int layer) {
+            assert layer < maxLayers;
+            final int sideOffset = (side == Side.BUY) ? 0 : maxLayers * LAYER_SIZE;
+            return offset + FIRST_LAYER_OFFSET + sideOffset + layer * LAYER_SIZE;
+        }
+
+        private void begin() {
+            final int sequenceOffset = offset + SEQUENCE_OFFSET;
+            final long sequence = buffer.getLong(sequenceOffset);
+            buffer.putLong(sequenceOffset, sequence | 1); // odd: update in progress
+        }
+
+        private void end() {
+            final int sequenceOffset = offset + SEQUENCE_OFFSET;
+            buffer.putLong(sequenceOffset, buffer.getLong(sequenceOffset) + 1);
+        }
+    }
+}
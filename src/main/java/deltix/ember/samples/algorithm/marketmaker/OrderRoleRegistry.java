@@ -0,0 +1,129 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.algorithm.v2.order.OutboundOrder;
+
+import java.util.Arrays;
+
+/**
+ * Active orders of single instrument with their roles (quoter or hedger): one order and one role byte per slot.
+ * Slot layout mirrors quote layers of {@link MarketMakerHandler}: slot of BUY layer i is i, slot of SELL layer i is
+ * (number of BUY layers + i), remaining slots hold hedging orders and orders left from previous run that are being canceled.
+ * Role lookup is an identity scan over a handful of slots: no string comparisons, no allocations, no shifting on removal.
+ * <p>
+ * Warning: orders are recycled to object pool after they reach final state, they must be removed once final.
+ */
+final class OrderRoleRegistry {
+
+    static final byte UNKNOWN = 0;
+    static final byte QUOTER = 1;
+    static final byte HEDGER = 2;
+
+    private final int buyLayers;
+    private final int layerSlots;
+    private OutboundOrder[] orders;
+    private byte[] roles;
+    private int hedgerCount;
+
+    /** @param otherCapacity expected number of simultaneously active orders that do not belong to quote layers (hedging orders) */
+    OrderRoleRegistry(int buyLayers, int sellLayers, int otherCapacity) {
+        this.buyLayers = buyLayers;
+        this.layerSlots = buyLayers + sellLayers;
+        this.orders = new OutboundOrder[layerSlots + otherCapacity];
+        this.roles = new byte[orders.length];
+    }
+
+    /** Puts quoting order into slot of given quote layer */
+    void setLayer(Side side, int layer, OutboundOrder order) {
+        final int slot = (side == Side.BUY) ? layer : buyLayers + layer;
+        assert orders[slot] == null : "layer is occupied";
+        orders[slot] = order;
+        roles[slot] = QUOTER;
+    }
+
+    /** Puts order that does not belong to quote layers (hedging order, or order left from previous run) into a free slot */
+    void add(OutboundOrder order, byte role) {
+        int slot = layerSlots;
+        while (slot < orders.length && orders[slot] != null)
+            slot++;
+
+        if (slot == orders.length) { // may happen only if more orders than expected survived restart
+            orders = Arrays.copyOf(orders, 2 * orders.length);
+            roles = Arrays.copyOf(roles, orders.length);
+        }
+        orders[slot] = order;
+        roles[slot] = role;
+        if (role == HEDGER)
+            hedgerCount++;
+    }
+
+    /** @return slot of given order, or -1 if order is not registered */
+    int indexOf(OutboundOrder order) {
+        for (int slot = 0; slot < orders.length; slot++)
+            if (orders[slot] == order)
+                return slot;
+        return -1;
+    }
+
+    /** @return role of given order, or {@link #UNKNOWN} if order is not registered */
+    byte getRole(OutboundOrder order) {
+        final int slot = indexOf(order);
+        return (slot >= 0) ? roles[slot] : UNKNOWN;
+    }
+
+    /** Frees given slot (does nothing for -1) @return role of removed order, or {@link #UNKNOWN} */
+    byte remove(int slot) {
+        if (slot < 0 || orders[slot] == null)
+            return UNKNOWN;
+
+        final byte role = roles[slot];
+        orders[slot] = null; // release reference to pooled order
+        roles[slot] = UNKNOWN;
+        if (role == HEDGER)
+            hedgerCount--;
+        return role;
+    }
+
+    /** @return quote layer of given slot (of BUY or SELL side, see class comment), or -1 if slot does not belong to quote layers */
+    int getLayer(int slot) {
+        if (slot < 0 || slot >= layerSlots)
+            return -1;
+        return (slot < buyLayers) ? slot : slot - buyLayers;
+    }
+
+    /** @return active order of given role in the lowest slot, or null */
+    OutboundOrder first(byte role) {
+        for (int slot = 0; slot < orders.length; slot++)
+            if (roles[slot] == role)
+                return orders[slot];
+        return null;
+    }
+
+    int getHedgerCount() {
+        return hedgerCount;
+    }
+
+    /** @return number of slots, some of them may be empty */
+    int capacity() {
+        return orders.length;
+    }
+
+    /** @return order in given slot, or null */
+    OutboundOrder getOrder(int slot) {
+        return orders[slot];
+    }
+
+    byte getRoleAt(int slot) {
+        return roles[slot];
+    }
+
+    /** Used to classify orders that were sent before restart (see {@link MarketMakerAlgorithm} submit methods) */
+    static byte fromUserData(CharSequence userData) {
+        if (CharSequenceUtil.equals(userData, MarketMakerAlgorithm.HEDGER_USER_DATA))
+            return HEDGER;
+        if (CharSequenceUtil.equals(userData, MarketMakerAlgorithm.QUOTER_USER_DATA))
+            return QUOTER;
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,147 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.Side;
+
+/**
+ * Portfolio level exposure of all instruments quoted by {@link MarketMakerAlgorithm}.
+ * <p>
+ * Each {@link MarketMakerHandler} keeps its last contribution (signed position, or position notional when exposure is measured
+ * in quote currency) and reports changes as deltas, so that net and gross exposure are maintained in O(1) per fill.
+ * Resting open orders of all instruments are tracked the same way (as unsigned BUY and SELL exposure), so that
+ * new quote layers are admitted only if complete fill of all open orders on the same side could not push aggregate exposure
+ * over configured limits (unless they reduce it).
+ */
+final class PortfolioRiskAggregator {
+
+    private final boolean inQuoteCurrency;
+    @Decimal
+    private final long maxNetExposure; // NULL means unlimited
+    @Decimal
+    private final long maxGrossExposure;
+
+    @Decimal
+    private long netExposure = Decimal64Utils.ZERO;
+    @Decimal
+    private long grossExposure = Decimal64Utils.ZERO;
+    @Decimal
+    private long openBuyExposure = Decimal64Utils.ZERO; // remaining quantity (or notional) of open BUY orders of all instruments
+    @Decimal
+    private long openSellExposure = Decimal64Utils.ZERO;
+
+    /**
+     * @param maxNetExposure maximum absolute value of net exposure, zero or negative value disables the check
+     * @param maxGrossExposure maximum gross exposure, zero or negative value disables the check
+     * @param inQuoteCurrency measure exposure as position notional (size * price) rather than in instrument units
+     */
+    PortfolioRiskAggregator(double maxNetExposure, double maxGrossExposure, boolean inQuoteCurrency) {
+        this.maxNetExposure = (maxNetExposure > 0) ? Decimal64Utils.fromDouble(maxNetExposure) : Decimal64Utils.NULL;
+        this.maxGrossExposure = (maxGrossExposure > 0) ? Decimal64Utils.fromDouble(maxGrossExposure) : Decimal64Utils.NULL;
+        this.inQuoteCurrency = inQuoteCurrency;
+    }
+
+    boolean isEnabled() {
+        return maxNetExposure != Decimal64Utils.NULL || maxGrossExposure != Decimal64Utils.NULL;
+    }
+
+    /**
+     * Replaces previous contribution of some instrument by the one computed from its current position.
+     *
+     * @param previousContribution value returned by previous call for the same instrument (zero initially)
+     * @param markPrice price used to value position in quote currency (e.g. last trade price)
+     * @return new contribution of the instrument, to be passed to the next call
+     */
+    @Decimal
+    long update(@Decimal long previousContribution, @Decimal long position, @Decimal long markPrice) {
+        @Decimal final long contribution = toExposure(position, markPrice);
+        netExposure = Decimal64Utils.add(Decimal64Utils.subtract(netExposure, previousContribution), contribution);
+        grossExposure = Decimal64Utils.add(Decimal64Utils.subtract(grossExposure, Decimal64Utils.abs(previousContribution)), Decimal64Utils.abs(contribution));
+        return contribution;
+    }
+
+    /**
+     * Replaces previous open order exposure of some instrument by the one computed from remaining quantity of its open orders.
+     *
+     * @param previousContribution value returned by previous call for the same instrument and side (zero initially)
+     * @param openQty remaining quantity of open orders of given side
+     * @return new contribution of the instrument, to be passed to the next call
+     */
+    @Decimal
+    long updateOpen(Side side, @Decimal long previousContribution, @Decimal long openQty, @Decimal long markPrice) {
+        @Decimal final long contribution = toExposure(openQty, markPrice);
+        if (side == Side.BUY)
+            openBuyExposure = Decimal64Utils.add(Decimal64Utils.subtract(openBuyExposure, previousContribution), contribution);
+        else
+            openSellExposure = Decimal64Utils.add(Decimal64Utils.subtract(openSellExposure, previousContribution), contribution);
+        return contribution;
+    }
+
+    /**
+     * @param contribution current position contribution of the instrument (see {@link #update})
+     * @param openContribution current open order contribution of the instrument on the side of new order (see {@link #updateOpen})
+     * @return true if complete fill of new order together with all open orders of the same side would keep portfolio exposure
+     * within limits (or reduce it). Gross check conservatively assumes that all open orders of both sides increase exposure.
+     */
+    boolean canIncrease(@Decimal long contribution, @Decimal long openContribution, Side side, @Decimal long size, @Decimal long price) {
+        return canIncrease(contribution, openContribution, side, toExposure(size, price));
+    }
+
+    /**
+     * Same check as {@link #canIncrease} for order moved to a new price. Open order contribution already includes
+     * remaining quantity of this order at mark price, only the difference is added.
+     * @param size remaining quantity of the order
+     */
+    boolean canReplace(@Decimal long contribution, @Decimal long openContribution, Side side, @Decimal long size, @Decimal long newPrice, @Decimal long markPrice) {
+        return canIncrease(contribution, openContribution, side, Decimal64Utils.subtract(toExposure(size, newPrice), toExposure(size, markPrice)));
+    }
+
+    private boolean canIncrease(@Decimal long contribution, @Decimal long openContribution, Side side, @Decimal long delta) {
+        final boolean isBuy = (side == Side.BUY);
+        if (!isBuy) {
+            delta = Decimal64Utils.negate(delta);
+            openContribution = Decimal64Utils.negate(openContribution);
+        }
+
+        if (maxNetExposure != Decimal64Utils.NULL) {
+            @Decimal final long worstNet = isBuy ? Decimal64Utils.add(netExposure, openBuyExposure) : Decimal64Utils.subtract(netExposure, openSellExposure);
+            @Decimal final long newNet = Decimal64Utils.abs(Decimal64Utils.add(worstNet, delta));
+            if (Decimal64Utils.isGreater(newNet, maxNetExposure) && Decimal64Utils.isGreater(newNet, Decimal64Utils.abs(worstNet)))
+                return false;
+        }
+
+        if (maxGrossExposure != Decimal64Utils.NULL) {
+            @Decimal final long worstContribution = Decimal64Utils.add(contribution, openContribution);
+            @Decimal final long grossDelta = Decimal64Utils.subtract(Decimal64Utils.abs(Decimal64Utils.add(worstContribution, delta)), Decimal64Utils.abs(worstContribution));
+            @Decimal final long worstGross = Decimal64Utils.add(grossExposure, openBuyExposure, openSellExposure);
+            if (Decimal64Utils.isPositive(grossDelta) && Decimal64Utils.isGreater(Decimal64Utils.add(worstGross, grossDelta), maxGrossExposure))
+                return false;
+        }
+        return true;
+    }
+
+    @Decimal
+    long getNetExposure() {
+        return netExposure;
+    }
+
+    @Decimal
+    long getGrossExposure() {
+        return grossExposure;
+    }
+
+    @Decimal
+    long getOpenBuyExposure() {
+        return openBuyExposure;
+    }
+
+    @Decimal
+    long getOpenSellExposure() {
+        return openSellExposure;
+    }
+
+    @Decimal
+    private long toExposure(@Decimal long size, @Decimal long price) {
+        return inQuoteCurrency ? Decimal64Utils.multiply(size, price) : size;
+    }
+}
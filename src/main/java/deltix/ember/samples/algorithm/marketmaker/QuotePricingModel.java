@@ -0,0 +1,38 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.ember.message.trade.Side;
+
+/**
+ * Turns base price of {@link MarketMakerHandler} into quote layer prices. One instance per instrument.
+ * Implementations must be incremental: they are called on every market update of the hot path.
+ */
+public interface QuotePricingModel {
+
+    /**
+     * Called each time base prices are recomputed (both prices are defined)
+     * @param position current position of the instrument (negative for short)
+     */
+    void onBasePrice(@Timestamp long time, @Decimal long bidBasePrice, @Decimal long askBasePrice, @Decimal long position);
+
+    /**
+     * Called when position changes between base price updates (fills of our orders, position response)
+     * @param position current position of the instrument (negative for short)
+     */
+    void onPosition(@Decimal long position);
+
+    /**
+     * @param basePrice base price of given side
+     * @param margin configured margin of the layer (positive number, distance from base price)
+     * @return quote price (rounding to price increment is done by caller)
+     */
+    @Decimal
+    long getQuotePrice(Side side, @Decimal long basePrice, @Decimal long margin);
+
+    /**
+     * @return number that changes each time model shifts quotes independently of base price
+     * (lets incremental pricing know that quote layers must be re-evaluated)
+     */
+    int getRevision();
+}
@@ -0,0 +1,20 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+/** Quote pricing models supported by {@link MarketMakerHandler} */
+public enum QuotePricingModelType {
+    /** Fixed margins from base price (original behavior) */
+    STATIC,
+    /** Margins widened by short-horizon volatility and skewed by inventory, see {@link SkewedVolatilityPricingModel} */
+    SKEWED_VOLATILITY;
+
+    public QuotePricingModel create(MarketMakerSettings settings) {
+        switch (this) {
+            case STATIC:
+                return new StaticMarginPricingModel();
+            case SKEWED_VOLATILITY:
+                return new SkewedVolatilityPricingModel(settings.getInventorySkew(), settings.getVolatilityMultiplier(), settings.getVolatilityHalfLife(), settings.getMinPriceChange());
+            default:
+                throw new IllegalArgumentException("Unsupported pricing model: " + this);
+        }
+    }
+}
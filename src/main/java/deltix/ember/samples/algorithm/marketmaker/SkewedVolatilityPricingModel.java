@@ -0,0 +1,119 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.ember.message.trade.Side;
+
+/**
+ * Static margins widened by short-horizon volatility and shifted against inventory.
+ * <ul>
+ *     <li>Volatility is exponentially weighted moving average of squared mid price changes, updated each time mid price changes
+ *     (no history is kept; base price updates that keep the mid do not dilute the estimate). Elapsed time decays it with given half-life.
+ *     Both sides are widened by {@code volatilityMultiplier * sigma}.</li>
+ *     <li>Inventory skew moves all quotes by {@code -inventorySkew * position}: long position makes us sell cheaper and buy lower.
+ *     Skewed quotes never cross base price of the opposite side (bid stays below ask base price and vice versa).</li>
+ * </ul>
+ * Both adjustments are quantized to steps of {@code 2 * minPriceChange}, so that small fluctuations of the estimate
+ * do not push every quote layer across re-quoting threshold at once (quotes widen in steps during bursts instead of
+ * producing a cancel storm on each tick), while a single step is still greater than re-quoting threshold of the handler.
+ */
+final class SkewedVolatilityPricingModel implements QuotePricingModel {
+
+    private static final double ALPHA = 0.1; // weight of the latest mid price change
+    private static final double LN_2 = Math.log(2);
+
+    private final double inventorySkew;
+    private final double volatilityMultiplier;
+    private final double decayRate; // per millisecond of idle time
+    private final double step;
+    @Decimal
+    private final long minPriceChange;
+
+    private double lastMidPrice = Double.NaN;
+    @Timestamp
+    private long lastTime;
+    private double variance;
+    @Decimal
+    private long bidBasePrice = Decimal64Utils.NULL;
+    @Decimal
+    private long askBasePrice = Decimal64Utils.NULL;
+
+    private long wideningSteps;
+    private long skewSteps;
+    @Decimal
+    private long widening = Decimal64Utils.ZERO;
+    @Decimal
+    private long skew = Decimal64Utils.ZERO;
+    private int revision;
+
+    SkewedVolatilityPricingModel(double inventorySkew, double volatilityMultiplier, long volatilityHalfLifeMillis, double minPriceChange) {
+        if (volatilityHalfLifeMillis <= 0)
+            throw new IllegalArgumentException("Volatility half-life must be positive: " + volatilityHalfLifeMillis);
+        if (!(minPriceChange > 0))
+            throw new IllegalArgumentException("Skewed volatility pricing requires positive minPriceChange: " + minPriceChange);
+
+        this.inventorySkew = inventorySkew;
+        this.volatilityMultiplier = volatilityMultiplier;
+        this.decayRate = LN_2 / volatilityHalfLifeMillis;
+        this.step = 2 * minPriceChange; // handler re-quotes only if price moves by more than minPriceChange
+        this.minPriceChange = Decimal64Utils.fromDouble(minPriceChange);
+    }
+
+    @Override
+    public void onBasePrice(@Timestamp long time, @Decimal long bidBasePrice, @Decimal long askBasePrice, @Decimal long position) {
+        final double midPrice = (Decimal64Utils.toDouble(bidBasePrice) + Decimal64Utils.toDouble(askBasePrice)) / 2;
+        if (!Double.isNaN(lastMidPrice)) {
+            if (time > lastTime)
+                variance *= Math.exp(-decayRate * (time - lastTime));
+
+            final double change = midPrice - lastMidPrice;
+            if (change != 0)
+                variance += ALPHA * (change * change - variance);
+        }
+        lastMidPrice = midPrice;
+        lastTime = time;
+        this.bidBasePrice = bidBasePrice;
+        this.askBasePrice = askBasePrice;
+        updateSteps(position);
+    }
+
+    @Override
+    public void onPosition(@Decimal long position) {
+        updateSteps(position);
+    }
+
+    private void updateSteps(@Decimal long position) {
+        final long newWideningSteps = (long) (volatilityMultiplier * Math.sqrt(variance) / step);
+        final long newSkewSteps = (long) (inventorySkew * Decimal64Utils.toDouble(position) / step); // towards zero: small inventory is not skewed
+        if (newWideningSteps != wideningSteps || newSkewSteps != skewSteps) {
+            wideningSteps = newWideningSteps;
+            skewSteps = newSkewSteps;
+            widening = Decimal64Utils.fromDouble(newWideningSteps * step);
+            skew = Decimal64Utils.fromDouble(newSkewSteps * step);
+            revision++;
+        }
+    }
+
+    @Decimal
+    @Override
+    public long getQuotePrice(Side side, @Decimal long basePrice, @Decimal long margin) {
+        @Decimal final long offset = Decimal64Utils.add(margin, widening);
+        if (side == Side.BUY) {
+            @Decimal final long price = Decimal64Utils.subtract(Decimal64Utils.subtract(basePrice, offset), skew);
+            return (askBasePrice != Decimal64Utils.NULL) ? Decimal64Utils.min(price, Decimal64Utils.subtract(askBasePrice, minPriceChange)) : price;
+        } else {
+            @Decimal final long price = Decimal64Utils.subtract(Decimal64Utils.add(basePrice, offset), skew);
+            return (bidBasePrice != Decimal64Utils.NULL) ? Decimal64Utils.max(price, Decimal64Utils.add(bidBasePrice, minPriceChange)) : price;
+        }
+    }
+
+    @Override
+    public int getRevision() {
+        return revision;
+    }
+
+    double getVolatility() {
+        return Math.sqrt(variance);
+    }
+}
@@ -0,0 +1,29 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Timestamp;
+import deltix.ember.message.trade.Side;
+
+/** Quotes at fixed margins from base price: buy layers below bid base price, sell layers above ask base price */
+final class StaticMarginPricingModel implements QuotePricingModel {
+
+    @Override
+    public void onBasePrice(@Timestamp long time, @Decimal long bidBasePrice, @Decimal long askBasePrice, @Decimal long position) {
+    }
+
+    @Override
+    public void onPosition(@Decimal long position) {
+    }
+
+    @Decimal
+    @Override
+    public long getQuotePrice(Side side, @Decimal long basePrice, @Decimal long margin) {
+        return (side == Side.BUY) ? Decimal64Utils.subtract(basePrice, margin) : Decimal64Utils.add(basePrice, margin);
+    }
+
+    @Override
+    public int getRevision() {
+        return 0;
+    }
+}
@@ -0,0 +1,52 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import java.nio.charset.StandardCharsets;
+
+/** Fixed-capacity ASCII text that can be modified in place. Used by order ID encoders to avoid allocations. */
+final class AsciiText implements CharSequence {
+
+    final byte[] bytes;
+    int length;
+
+    AsciiText(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    /** Copies given prefix into the beginning of the text */
+    int setPrefix(CharSequence prefix) {
+        final int prefixLength = prefix.length();
+        if (prefixLength > bytes.length)
+            throw new IllegalArgumentException("Prefix is too long: " + prefix);
+
+        for (int i = 0; i < prefixLength; i++) {
+            final char ch = prefix.charAt(i);
+            if (ch > 127)
+                throw new IllegalArgumentException("Prefix must be ASCII text: " + prefix);
+            bytes[i] = (byte) ch;
+        }
+        length = prefixLength;
+        return prefixLength;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length)
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range [0, " + length + ")");
+        return (char) bytes[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,34 @@
+package deltix.ember.samples.algorithm.orderid;
+
+/**
+ * Fixed-width (13 characters) base-32 text of identifier using Crockford alphabet.
+ * Uses shifts instead of divisions and keeps lexicographical order of identifiers.
+ */
+public final class Base32OrderIdEncoder implements OrderIdEncoder {
+
+    private static final byte[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".getBytes();
+    private static final int WIDTH = (Long.SIZE + 4) / 5;
+
+    private final AsciiText text;
+    private final int prefixLength;
+
+    public Base32OrderIdEncoder() {
+        this("");
+    }
+
+    public Base32OrderIdEncoder(String prefix) {
+        text = new AsciiText(prefix.length() + WIDTH);
+        prefixLength = text.setPrefix(prefix);
+        text.length = prefixLength + WIDTH;
+    }
+
+    @Override
+    public CharSequence encode(long id) {
+        final byte[] bytes = text.bytes;
+        for (int i = prefixLength + WIDTH - 1; i >= prefixLength; i--) {
+            bytes[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return text;
+    }
+}
@@ -1,6 +1,6 @@
 package deltix.ember.samples.algorithm.orderid;
 
-import deltix.anvil.util.AsciiStringBuilder;
+import deltix.anvil.message.NodeStatusEvent;
 import deltix.anvil.util.Factory;
 import deltix.ember.service.algorithm.AbstractAlgorithm;
 import deltix.ember.service.algorithm.AlgoOrder;
@@ -13,17 +13,40 @@ import deltix.ember.service.oms.cache.OrdersCacheSettings;
 /** Sample that demonstrates how to use custom order IDs that algorithm uses for child orders */
 public class CustomOrderIdSampleAlgorithm extends AbstractAlgorithm<AlgoOrder, SimpleInstrumentPrices> {
 
-    private final AsciiStringBuilder buffer = new AsciiStringBuilder();
-
+    private final IdentifierGenerator idGenerator;
+    private final OrderIdEncoder encoder;
 
     public CustomOrderIdSampleAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings) {
+        this(context, cacheSettings, GlobalIdGenerator.INSTANCE, new DecimalOrderIdEncoder());
+    }
+
+    public CustomOrderIdSampleAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, IdentifierGenerator idGenerator, OrderIdEncoder encoder) {
         super(context, cacheSettings);
+        this.idGenerator = idGenerator;
+        this.encoder = encoder;
     }
 
     @Override
     protected CharSequence generateOrderId() {
         // convert INT64 to text used by ember
-        return buffer.clear().append(GlobalIdGenerator.INSTANCE.next()); // thread safe
+        return encoder.encode(idGenerator.next()); // generator is thread safe, encoder is owned by this algorithm
+    }
+
+    /**
+     * On failover skip whatever remains of blocks reserved before (possibly by previous leader) and pre-warm
+     * a fresh block, so that the first order after failover does not wait for sequence storage.
+     * Generator is shared by all algorithms of this process, so it is reset once (see {@link FailoverIdentifierReset}).
+     */
+    @Override
+    public void onNodeStatusEvent(NodeStatusEvent event) {
+        super.onNodeStatusEvent(event);
+
+        try {
+            if (FailoverIdentifierReset.onNodeStatus(idGenerator, isLeader()))
+                LOGGER.info("Order ID generator is reset after failover");
+        } catch (UnsupportedOperationException e) {
+            LOGGER.warn("Order ID generator does not support failover: %s").with(e.getMessage());
+        }
     }
 
     /// region Boilerplate code
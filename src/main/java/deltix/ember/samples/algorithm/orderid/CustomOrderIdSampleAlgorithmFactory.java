@@ -0,0 +1,50 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import deltix.anvil.util.annotation.Optional;
+import deltix.ember.service.algorithm.AbstractAlgorithmFactory;
+import deltix.ember.service.algorithm.AlgorithmContext;
+
+public class CustomOrderIdSampleAlgorithmFactory extends AbstractAlgorithmFactory {
+
+    /** Text format of child order IDs */
+    @Optional
+    private OrderIdEncoding orderIdEncoding = OrderIdEncoding.DECIMAL;
+
+    /** Text that precedes each child order ID */
+    @Optional
+    private String orderIdPrefix = "";
+
+    /** When defined algorithm uses its own ID space (see {@link GlobalIdGenerator#forKey(String)}) instead of global one */
+    @Optional
+    private String orderIdSequenceKey;
+
+    public OrderIdEncoding getOrderIdEncoding() {
+        return orderIdEncoding;
+    }
+
+    public void setOrderIdEncoding(OrderIdEncoding orderIdEncoding) {
+        this.orderIdEncoding = orderIdEncoding;
+    }
+
+    public String getOrderIdPrefix() {
+        return orderIdPrefix;
+    }
+
+    public void setOrderIdPrefix(String orderIdPrefix) {
+        this.orderIdPrefix = orderIdPrefix;
+    }
+
+    public String getOrderIdSequenceKey() {
+        return orderIdSequenceKey;
+    }
+
+    public void setOrderIdSequenceKey(String orderIdSequenceKey) {
+        this.orderIdSequenceKey = orderIdSequenceKey;
+    }
+
+    @Override
+    public CustomOrderIdSampleAlgorithm create(AlgorithmContext context) {
+        IdentifierGenerator idGenerator = (orderIdSequenceKey != null) ? GlobalIdGenerator.forKey(orderIdSequenceKey) : GlobalIdGenerator.INSTANCE;
+        return new CustomOrderIdSampleAlgorithm(context, getCacheSettings(), idGenerator, orderIdEncoding.createEncoder(orderIdPrefix));
+    }
+}
@@ -0,0 +1,23 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import deltix.anvil.util.AsciiStringBuilder;
+
+/** Plain decimal text of identifier (formats every digit on each call) */
+public final class DecimalOrderIdEncoder implements OrderIdEncoder {
+
+    private final AsciiStringBuilder buffer = new AsciiStringBuilder();
+    private final String prefix;
+
+    public DecimalOrderIdEncoder() {
+        this("");
+    }
+
+    public DecimalOrderIdEncoder(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public CharSequence encode(long id) {
+        return buffer.clear().append(prefix).append(id);
+    }
+}
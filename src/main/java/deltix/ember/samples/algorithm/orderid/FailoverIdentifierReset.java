@@ -0,0 +1,38 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Resets shared {@link IdentifierGenerator} once per real failover of this process, no matter how many algorithms use it.
+ * <p>
+ * Failover is promotion to leader after this process has been observed in non-leader state. Initial promotion of a process
+ * that starts as leader is not a failover: generator has just loaded its storage and needs no reset.
+ * Algorithms report every node status change of their own via {@link #onNodeStatus(IdentifierGenerator, boolean)}.
+ */
+public final class FailoverIdentifierReset {
+
+    /** Generator -> true if this process was not a leader since the last reset (or start) */
+    private static final Map<IdentifierGenerator, Boolean> FOLLOWING = new IdentityHashMap<>();
+
+    private FailoverIdentifierReset() {
+    }
+
+    /**
+     * @param leader true if this process is leader now
+     * @return true if generator was reset by this call (first report of promotion after being follower)
+     * @throws UnsupportedOperationException if generator does not support failover
+     */
+    public static boolean onNodeStatus(IdentifierGenerator generator, boolean leader) throws UnsupportedOperationException {
+        synchronized (FOLLOWING) {
+            if (!leader) {
+                FOLLOWING.put(generator, Boolean.TRUE);
+                return false;
+            }
+            if (FOLLOWING.remove(generator) == null)
+                return false; // first start as leader, or other algorithm already reset shared generator
+        }
+        generator.reset(); // other reports of this promotion do not wait for storage
+        return true;
+    }
+}
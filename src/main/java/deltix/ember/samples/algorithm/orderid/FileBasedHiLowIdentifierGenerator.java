@@ -13,12 +13,16 @@ public abstract class FileBasedHiLowIdentifierGenerator extends HiLowIdentifierG
 	}
 
     static final File getSequenceFile (String key) {
+        return new File (getTraderDirectory(), "sequence-"+key+".id");
+    }
+
+    static final File getTraderDirectory () {
 	    String emberWorkDirName = System.getProperty("ember.work");
 	    if (emberWorkDirName == null)
 	        throw new IllegalArgumentException("Ember work directory is not defined");
         File traderDir = new File (emberWorkDirName, "trader");
         traderDir.getAbsoluteFile().mkdirs();
-        return new File (traderDir, "sequence-"+key+".id");
+        return traderDir;
     }
 
 }
@@ -1,5 +1,7 @@
 package deltix.ember.samples.algorithm.orderid;
 
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
 import deltix.ember.util.IdGenerator;
 
 import java.io.Closeable;
@@ -7,30 +9,85 @@ import java.io.IOException;
 
 /**
  * UHF 4.3 code: INT64 identifiers backed by file (high-low algorithm)
+ * <p>
+ * Configured by system properties:
+ * <ul>
+ *     <li>deltix.util.id.blockSize - number of identifiers acquired from storage at once (default 1000), also used by {@link #forKey(String)} registry</li>
+ *     <li>deltix.util.id.startId - first identifier of new sequence (default 1), also used by {@link #forKey(String)} registry</li>
+ *     <li>deltix.util.id.prefetchWatermark - index within current block (0..blockSize-1) that triggers background prefetch of the next one (default blockSize/2)</li>
+ *     <li>deltix.util.id.storage - "file" (text, default) or "mapped" (memory-mapped binary) sequence file</li>
+ *     <li>deltix.util.id.registryCapacity - maximum number of keys in {@link #forKey(String)} registry (default 256)</li>
+ * </ul>
  */
-public class GlobalIdGenerator implements IdGenerator, Closeable {
+public class GlobalIdGenerator implements IdGenerator, IdentifierGenerator, Closeable {
+    private static final Log LOG = LogFactory.getLog(GlobalIdGenerator.class);
+
     public static final GlobalIdGenerator INSTANCE = new GlobalIdGenerator();
 
-    private final FileHiLowIdentifierGenerator identifierGenerator;
+    private final PrefetchingHiLowIdentifierGenerator identifierGenerator;
 
     private GlobalIdGenerator() {
         try {
             int blockSize = Integer.parseInt(System.getProperty("deltix.util.id.blockSize", "1000"));
             int startId = Integer.parseInt(System.getProperty("deltix.util.id.startId", "1"));
-            identifierGenerator = new FileHiLowIdentifierGenerator("child-orders", blockSize, startId, true, "rwd");
+            int prefetchWatermark = Integer.parseInt(System.getProperty("deltix.util.id.prefetchWatermark", Integer.toString(blockSize / 2)));
+            identifierGenerator = new PrefetchingHiLowIdentifierGenerator(createStorage("child-orders", blockSize, startId), prefetchWatermark);
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("Can't initialize UHF Order Id Generator", e);
         }
     }
 
+    /** System property "deltix.util.id.storage" selects between text ("file", default) and memory-mapped binary ("mapped") sequence file */
+    private static HiLowIdentifierGenerator createStorage(String key, int blockSize, long startId) throws IOException {
+        String storage = System.getProperty("deltix.util.id.storage", "file");
+        switch (storage) {
+            case "file":
+                return new FileHiLowIdentifierGenerator(key, blockSize, startId, false, "rwd"); // prefetcher owns the blocks: close must not acquire another one
+            case "mapped":
+                return new MappedFileHiLowIdentifierGenerator(key, blockSize, startId, MappedFileHiLowIdentifierGenerator.ForcePolicy.EVERY_BLOCK);
+            default:
+                throw new IllegalArgumentException("Unknown order id storage: " + storage);
+        }
+    }
+
+    /**
+     * @return generator of separate ID space identified by given key. All such keys are hosted in single memory-mapped file
+     * (see {@link MappedIdentifierGeneratorRegistry}). Call once during initialization and keep the result.
+     */
+    public static IdentifierGenerator forKey(String key) {
+        return RegistryHolder.REGISTRY.get(key);
+    }
+
     @Override
     public long next() {
-        return identifierGenerator.next();
+        return identifierGenerator.next(); // lock-free, block storage is accessed by background thread
+    }
+
+    @Override
+    public void reset() throws UnsupportedOperationException {
+        identifierGenerator.reset();
     }
 
     @Override
     public void close() throws IOException {
         identifierGenerator.close(); //TODO: Make sure some ember service (algo, etc) calls this on shutdown!
     }
+
+    /** Lazily opens registry on first use of {@link #forKey(String)} */
+    private static final class RegistryHolder {
+        static final MappedIdentifierGeneratorRegistry REGISTRY;
+
+        static {
+            try {
+                int capacity = Integer.parseInt(System.getProperty("deltix.util.id.registryCapacity", "256"));
+                int blockSize = Integer.parseInt(System.getProperty("deltix.util.id.blockSize", "1000"));
+                int startId = Integer.parseInt(System.getProperty("deltix.util.id.startId", "1"));
+                REGISTRY = new MappedIdentifierGeneratorRegistry(capacity, blockSize, startId, MappedFileHiLowIdentifierGenerator.ForcePolicy.EVERY_BLOCK);
+            } catch (Exception e) {
+                LOG.error("Can't initialize UHF Order Id Generator registry: %s").with(e); // later lookups would only see NoClassDefFoundError
+                throw new RuntimeException("Can't initialize UHF Order Id Generator registry", e);
+            }
+        }
+    }
 }
@@ -38,9 +38,28 @@ public abstract class HiLowIdentifierGenerator implements IdentifierGenerator {
     /** @return new base */
     protected abstract long acquireNextBlock(long resetNextBlock);
 
+    /** Re-reads persisted state from original media (for implementations that cache it in memory) */
+    protected void reload() {
+        // do nothing
+    }
 
+    /**
+     * Drops remainder of current block (it may have been used by previous leader) and eagerly acquires fresh block
+     * from persisted high watermark. Subsequent {@link #next()} does not touch storage until that block is exhausted.
+     */
     @Override
-    public void reset() throws UnsupportedOperationException {
-        // do nothing
+    public synchronized void reset() throws UnsupportedOperationException {
+        reload();
+        base = acquireNextBlock(0);
+        id = -1;
+    }
+
+    /** Same as {@link #reset()} but continues from given value rather than from persisted high watermark */
+    public synchronized void reset(long nextBlock) {
+        if (nextBlock == 0)
+            throw new IllegalArgumentException("Block must be non-zero");
+
+        base = acquireNextBlock(nextBlock);
+        id = -1;
     }
 }
@@ -0,0 +1,185 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * HiLowIdentifierGenerator that persists last allocated block in memory-mapped file.
+ * Block is stored as fixed-width binary long followed by checksum. File contains two such slots that are written in turns,
+ * so that torn write (crash in the middle of block acquisition) always leaves one valid slot. When only one slot is valid
+ * the damaged one may have held a block that was already issued, so recovery skips one block (gaps are fine, duplicates are not).
+ * Block acquisition does not allocate and does not perform system calls unless {@link ForcePolicy#EVERY_BLOCK} is used.
+ * <p>
+ * File is locked during application up time, disallowing access from another process (just like {@link FileHiLowIdentifierGenerator}).
+ * Sequence file in legacy text format (produced by {@link FileHiLowIdentifierGenerator}) is converted on open: binary slots
+ * are written and forced to a temporary file which then atomically replaces legacy file, so a crash never loses the high watermark.
+ */
+public final class MappedFileHiLowIdentifierGenerator extends FileBasedHiLowIdentifierGenerator implements Closeable {
+
+    public enum ForcePolicy {
+        /** Flush file content to storage device after each block acquisition. Survives OS crash / power loss. */
+        EVERY_BLOCK,
+        /** Leave flushing to OS. Survives process crash. */
+        NEVER
+    }
+
+    private static final int SLOT_SIZE = 2 * Long.BYTES; // value + checksum
+    private static final int FILE_SIZE = 2 * SLOT_SIZE;
+    private static final long CHECKSUM_SEED = 0x484C_4F53_4551_4944L;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final ForcePolicy forcePolicy;
+
+    private long nextBlock;
+    private int lastSlot;
+
+    public MappedFileHiLowIdentifierGenerator(String key, int blockSize) throws IOException {
+        this(key, blockSize, 1, ForcePolicy.EVERY_BLOCK);
+    }
+
+    public MappedFileHiLowIdentifierGenerator(String key, int blockSize, long startId, ForcePolicy forcePolicy) throws IOException {
+        super(key, blockSize, startId);
+
+        this.forcePolicy = forcePolicy;
+        convertLegacyFile();
+
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null)
+                throw new RuntimeException("Another program holds lock for file " + file.getAbsolutePath());
+
+            final long fileSize = channel.size();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+
+            if (fileSize == FILE_SIZE) {
+                load();
+            } else {
+                lastSlot = 0;
+                store(startId); // new file: first block is persisted in the second slot, first slot gets the next one
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected long acquireNextBlock(long resetNextBlock) {
+        final long currentBlock = (resetNextBlock != 0) ? resetNextBlock : nextBlock;
+        store(currentBlock + blockSize);
+        return currentBlock;
+    }
+
+    @Override
+    protected void reload() {
+        if (isValidSlot(0) || isValidSlot(1))
+            load(); // otherwise nothing was persisted yet
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            lock.release();
+            channel.close();
+        }
+    }
+
+    private void load() {
+        final boolean valid0 = isValidSlot(0);
+        final boolean valid1 = isValidSlot(1);
+        if (!valid0 && !valid1)
+            throw new IllegalStateException("Sequence storage file is corrupted: " + file.getAbsolutePath());
+
+        if (valid0 && (!valid1 || readSlot(0) >= readSlot(1)))
+            lastSlot = 0;
+        else
+            lastSlot = 1;
+
+        nextBlock = readSlot(lastSlot);
+        if (!valid0 || !valid1)
+            nextBlock += blockSize; // damaged slot may have been the latest one: its block may be in use
+    }
+
+    private void store(long value) {
+        final int slot = 1 - lastSlot;
+        final int offset = slot * SLOT_SIZE;
+        buffer.putLong(offset, value);
+        buffer.putLong(offset + Long.BYTES, checksum(value));
+        if (forcePolicy == ForcePolicy.EVERY_BLOCK)
+            buffer.force(offset, SLOT_SIZE);
+
+        lastSlot = slot;
+        nextBlock = value;
+    }
+
+    private boolean isValidSlot(int slot) {
+        final int offset = slot * SLOT_SIZE;
+        return buffer.getLong(offset + Long.BYTES) == checksum(buffer.getLong(offset));
+    }
+
+    private long readSlot(int slot) {
+        return buffer.getLong(slot * SLOT_SIZE);
+    }
+
+    /**
+     * Replaces sequence file in legacy text format by binary one (both slots hold legacy block).
+     * New content is forced to a temporary file first and then atomically renamed over legacy file.
+     */
+    private void convertLegacyFile() throws IOException {
+        final Path path = file.toPath();
+        if (!Files.exists(path))
+            return;
+
+        try (FileChannel legacy = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final FileLock legacyLock = legacy.tryLock();
+            if (legacyLock == null)
+                throw new RuntimeException("Another program holds lock for file " + file.getAbsolutePath());
+
+            final long fileSize = legacy.size();
+            if (fileSize == 0 || fileSize == FILE_SIZE)
+                return;
+
+            final long legacyBlock = readLegacyBlock(legacy, fileSize);
+            final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel converted = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final ByteBuffer slots = ByteBuffer.allocate(FILE_SIZE);
+                for (int slot = 0; slot < 2; slot++)
+                    slots.putLong(legacyBlock).putLong(checksum(legacyBlock));
+                slots.flip();
+                while (slots.hasRemaining())
+                    converted.write(slots);
+                converted.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } // releases lock of legacy file
+    }
+
+    /** Reads decimal text written by {@link FileHiLowIdentifierGenerator} (called once on startup) */
+    private long readLegacyBlock(FileChannel legacy, long fileSize) throws IOException {
+        final ByteBuffer text = ByteBuffer.allocate((int) Math.min(fileSize, 64));
+        legacy.read(text, 0);
+        try {
+            return Long.parseLong(new String(text.array(), 0, text.position(), StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Sequence storage file is corrupted: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static long checksum(long value) {
+        return Long.rotateLeft(value ^ CHECKSUM_SEED, 23) * 0x9E37_79B9_7F4A_7C15L;
+    }
+
+}
@@ -0,0 +1,224 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hosts many keyed high-low sequences in a single memory-mapped file (one file, one lock, one file descriptor).
+ * <p>
+ * File starts with a header followed by fixed table of cache-line-sized slots, one per key.
+ * Each slot keeps two (value, checksum) pairs written in turns (see {@link MappedFileHiLowIdentifierGenerator}) and the key itself.
+ * Generators for distinct keys never touch the same cache line.
+ * <p>
+ * Lookup is meant to be done once during algorithm initialization: {@link #get(String)} returns cached generator for given key.
+ */
+public final class MappedIdentifierGeneratorRegistry implements Closeable {
+
+    public static final int MAX_KEY_LENGTH = 31;
+
+    private static final int SLOT_SIZE = 64; // cache line
+    private static final int HEADER_SIZE = SLOT_SIZE;
+    private static final long MAGIC = 0x4845_4C4F_5245_4731L;
+
+    // slot layout
+    private static final int VALUE_PAIR_SIZE = 2 * Long.BYTES;
+    private static final int KEY_LENGTH_OFFSET = 2 * VALUE_PAIR_SIZE;
+    private static final int KEY_OFFSET = KEY_LENGTH_OFFSET + 1;
+
+    private final File file;
+    private final int blockSize;
+    private final long startId;
+    private final MappedFileHiLowIdentifierGenerator.ForcePolicy forcePolicy;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private final Map<String, KeyedGenerator> generators = new HashMap<>();
+    private int usedSlots;
+
+    /** Opens registry stored in Ember work directory */
+    public MappedIdentifierGeneratorRegistry(int capacity, int blockSize, long startId, MappedFileHiLowIdentifierGenerator.ForcePolicy forcePolicy) throws IOException {
+        this(new File(FileBasedHiLowIdentifierGenerator.getTraderDirectory(), "sequences.id"), capacity, blockSize, startId, forcePolicy);
+    }
+
+    /**
+     * @param capacity maximum number of keys. Existing file with bigger capacity is opened as is.
+     */
+    public MappedIdentifierGeneratorRegistry(File file, int capacity, int blockSize, long startId, MappedFileHiLowIdentifierGenerator.ForcePolicy forcePolicy) throws IOException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        this.file = file;
+        this.blockSize = blockSize;
+        this.startId = startId;
+        this.forcePolicy = forcePolicy;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null)
+                throw new RuntimeException("Another program holds lock for file " + file.getAbsolutePath());
+
+            final long fileSize = channel.size();
+            final int storedCapacity = (fileSize >= HEADER_SIZE) ? (int) ((fileSize - HEADER_SIZE) / SLOT_SIZE) : 0;
+            this.capacity = Math.max(capacity, storedCapacity);
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity * SLOT_SIZE);
+            if (fileSize == 0) {
+                buffer.putLong(0, MAGIC);
+                buffer.force();
+            } else if (buffer.getLong(0) != MAGIC) {
+                throw new IllegalStateException("Not a sequence registry file: " + file.getAbsolutePath());
+            }
+
+            loadKeys();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** @return generator for given key (registers new key on first use). Repeated calls return the same instance. */
+    public synchronized IdentifierGenerator get(String key) {
+        KeyedGenerator result = generators.get(key);
+        if (result == null) {
+            if (!channel.isOpen())
+                throw new IllegalStateException("Registry is closed");
+            if (usedSlots == capacity)
+                throw new IllegalStateException("Sequence registry is full (" + capacity + " keys): " + file.getAbsolutePath());
+
+            result = new KeyedGenerator(key, usedSlots);
+            result.writeKey();
+            usedSlots++;
+            generators.put(key, result);
+        }
+        return result;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            lock.release();
+            channel.close();
+        }
+    }
+
+    private void loadKeys() {
+        while (usedSlots < capacity) {
+            final int offset = slotOffset(usedSlots);
+            final int keyLength = buffer.get(offset + KEY_LENGTH_OFFSET);
+            if (keyLength == 0)
+                break; // slots are allocated sequentially
+
+            final StringBuilder key = new StringBuilder(keyLength);
+            for (int i = 0; i < keyLength; i++)
+                key.append((char) buffer.get(offset + KEY_OFFSET + i));
+
+            final KeyedGenerator generator = new KeyedGenerator(key.toString(), usedSlots++);
+            generator.load();
+            generators.put(generator.key, generator);
+        }
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long checksum(long value) {
+        return Long.rotateLeft(value ^ MAGIC, 23) * 0x9E37_79B9_7F4A_7C15L;
+    }
+
+    /** HiLowIdentifierGenerator that keeps its block in registry slot */
+    private final class KeyedGenerator extends HiLowIdentifierGenerator {
+        private final int offset;
+        private long nextBlock;
+        private int lastPair;
+
+        KeyedGenerator(String key, int slot) {
+            super(key, MappedIdentifierGeneratorRegistry.this.blockSize, MappedIdentifierGeneratorRegistry.this.startId);
+
+            if (key.isEmpty() || key.length() > MAX_KEY_LENGTH)
+                throw new IllegalArgumentException("Key length must be within [1, " + MAX_KEY_LENGTH + "]: \"" + key + '"');
+            for (int i = 0; i < key.length(); i++)
+                if (key.charAt(i) == 0 || key.charAt(i) > 127)
+                    throw new IllegalArgumentException("Key must be ASCII text: \"" + key + '"');
+
+            this.offset = slotOffset(slot);
+            this.nextBlock = startId;
+            this.lastPair = 1;
+        }
+
+        /** Called under registry lock, happens-before any next() call on this generator */
+        void writeKey() {
+            for (int i = 0; i < key.length(); i++)
+                buffer.put(offset + KEY_OFFSET + i, (byte) key.charAt(i));
+            buffer.put(offset + KEY_LENGTH_OFFSET, (byte) key.length()); // key becomes visible after crash only when fully written
+            buffer.force(offset, SLOT_SIZE);
+        }
+
+        void load() {
+            final boolean valid0 = isValidPair(0);
+            final boolean valid1 = isValidPair(1);
+            if (valid0 || valid1) {
+                lastPair = (valid0 && (!valid1 || readPair(0) >= readPair(1))) ? 0 : 1;
+                nextBlock = readPair(lastPair);
+            }
+            // else: key was registered but has not acquired any block yet
+
+            if ((!valid0 && isWrittenPair(0)) || (!valid1 && isWrittenPair(1)))
+                nextBlock += blockSize; // damaged pair may have been the latest one: its block may be in use
+        }
+
+        @Override
+        protected void reload() {
+            load();
+        }
+
+        @Override
+        protected long acquireNextBlock(long resetNextBlock) {
+            final long currentBlock = (resetNextBlock != 0) ? resetNextBlock : nextBlock;
+            store(currentBlock + blockSize);
+            return currentBlock;
+        }
+
+        private void store(long value) {
+            final int pair = 1 - lastPair;
+            final int pairOffset = offset + pair * VALUE_PAIR_SIZE;
+            buffer.putLong(pairOffset, value);
+            buffer.putLong(pairOffset + Long.BYTES, checksum(value));
+            if (forcePolicy == MappedFileHiLowIdentifierGenerator.ForcePolicy.EVERY_BLOCK)
+                buffer.force(pairOffset, VALUE_PAIR_SIZE);
+
+            lastPair = pair;
+            nextBlock = value;
+        }
+
+        private boolean isValidPair(int pair) {
+            final int pairOffset = offset + pair * VALUE_PAIR_SIZE;
+            return buffer.getLong(pairOffset + Long.BYTES) == checksum(buffer.getLong(pairOffset));
+        }
+
+        /** @return false if pair was never written (new key has only one of them) */
+        private boolean isWrittenPair(int pair) {
+            final int pairOffset = offset + pair * VALUE_PAIR_SIZE;
+            return buffer.getLong(pairOffset) != 0 || buffer.getLong(pairOffset + Long.BYTES) != 0;
+        }
+
+        private long readPair(int pair) {
+            return buffer.getLong(offset + pair * VALUE_PAIR_SIZE);
+        }
+    }
+}
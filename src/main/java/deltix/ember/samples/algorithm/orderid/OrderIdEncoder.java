@@ -0,0 +1,11 @@
+package deltix.ember.samples.algorithm.orderid;
+
+/** Converts INT64 identifier into order ID text used by Ember */
+public interface OrderIdEncoder {
+
+    /**
+     * @return text representation of given (non-negative) identifier.
+     * Returned instance is owned by encoder and is reused by subsequent calls (encoders are not thread safe).
+     */
+    CharSequence encode(long id);
+}
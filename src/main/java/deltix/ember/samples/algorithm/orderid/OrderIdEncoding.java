@@ -0,0 +1,24 @@
+package deltix.ember.samples.algorithm.orderid;
+
+/** Order ID text formats supported by {@link CustomOrderIdSampleAlgorithm} */
+public enum OrderIdEncoding {
+    /** Decimal text formatted on each call (original behavior) */
+    DECIMAL,
+    /** Fixed-width base-32 text, see {@link Base32OrderIdEncoder} */
+    BASE32,
+    /** Decimal text updated in place for consecutive identifiers, see {@link PrefixedCounterOrderIdEncoder} */
+    PREFIXED_COUNTER;
+
+    public OrderIdEncoder createEncoder(String prefix) {
+        switch (this) {
+            case DECIMAL:
+                return new DecimalOrderIdEncoder(prefix);
+            case BASE32:
+                return new Base32OrderIdEncoder(prefix);
+            case PREFIXED_COUNTER:
+                return new PrefixedCounterOrderIdEncoder(prefix);
+            default:
+                throw new IllegalArgumentException("Unsupported encoding: " + this);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free variant of high-low algorithm. Identifiers are claimed from the current block using CAS,
+ * while next block is reserved by background thread once current block passes given watermark.
+ * Block storage is provided by wrapped {@link HiLowIdentifierGenerator} (for example {@link FileHiLowIdentifierGenerator}).
+ * <p>
+ * As long as background thread keeps up with consumption {@link #next()} never touches block storage.
+ * When it does not (e.g. watermark is too close to block end) caller thread acquires next block inline.
+ * Block storage is accessed under a monitor: caller that needs storage while prefetch is in progress blocks rather than spins.
+ */
+public final class PrefetchingHiLowIdentifierGenerator implements IdentifierGenerator, Closeable {
+    private static final Log LOG = LogFactory.getLog(PrefetchingHiLowIdentifierGenerator.class);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final HiLowIdentifierGenerator source;
+    private final int blockSize;
+    private final int watermark;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+
+    private final AtomicReference<Block> current = new AtomicReference<>();
+    private final AtomicReference<Block> reserved = new AtomicReference<>();
+    /** Guards access to block storage: only one thread (background or caller) may acquire block at a time */
+    private final Object storageLock = new Object();
+    /** Prevents scheduling of more than one prefetch task */
+    private final AtomicBoolean prefetchScheduled = new AtomicBoolean();
+    private volatile boolean closed; // guarded by storageLock for writes
+    private final Runnable prefetchTask = this::prefetch;
+
+    /**
+     * @param source block storage. Must not be used directly by anybody else.
+     * @param watermark index within current block (0..blockSize-1) that triggers reservation of the next block
+     */
+    public PrefetchingHiLowIdentifierGenerator(HiLowIdentifierGenerator source, int watermark) {
+        this(source, watermark, Executors.newSingleThreadExecutor(PrefetchingHiLowIdentifierGenerator::newPrefetchThread), true);
+    }
+
+    /**
+     * @param source block storage. Must not be used directly by anybody else.
+     * @param watermark index within current block (0..blockSize-1) that triggers reservation of the next block
+     * @param executor executor that will run block reservation. Caller remains responsible for its shutdown.
+     */
+    public PrefetchingHiLowIdentifierGenerator(HiLowIdentifierGenerator source, int watermark, ExecutorService executor) {
+        this(source, watermark, executor, false);
+    }
+
+    private PrefetchingHiLowIdentifierGenerator(HiLowIdentifierGenerator source, int watermark, ExecutorService executor, boolean ownExecutor) {
+        if (watermark < 0 || watermark >= source.blockSize)
+            throw new IllegalArgumentException("Watermark " + watermark + " is outside of block [0, " + source.blockSize + ")");
+
+        this.source = source;
+        this.blockSize = source.blockSize;
+        this.watermark = watermark;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+
+        schedulePrefetch(); // have first block ready by the time first order is sent
+    }
+
+    @Override
+    public long next() {
+        while (true) {
+            final Block block = current.get();
+            if (block != null) {
+                final int index = block.cursor.getAndIncrement();
+                if (index < blockSize) {
+                    if (index == watermark)
+                        schedulePrefetch();
+                    return block.base + index;
+                }
+            }
+            advance(block);
+        }
+    }
+
+    /** Replaces exhausted (or missing) current block by reserved one, or acquires next block inline if nothing is reserved yet */
+    private void advance(Block exhausted) {
+        if (current.get() != exhausted)
+            return; // another thread already advanced
+
+        final Block next = reserved.getAndSet(null);
+        if (next != null) {
+            // If we lost the race reserved block is simply skipped: gaps are fine for high-low algorithm, duplicates are not
+            current.compareAndSet(exhausted, next);
+            return;
+        }
+
+        synchronized (storageLock) { // waits for in-flight prefetch, if any
+            if (current.get() != exhausted)
+                return;
+
+            final Block prefetched = reserved.getAndSet(null);
+            current.set((prefetched != null) ? prefetched : new Block(acquireNextBlock()));
+        }
+    }
+
+    private void schedulePrefetch() {
+        if (reserved.get() == null && ! closed && prefetchScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(prefetchTask);
+            } catch (RejectedExecutionException e) {
+                prefetchScheduled.set(false); // next() will fall back to inline acquisition
+            }
+        }
+    }
+
+    private void prefetch() {
+        try {
+            synchronized (storageLock) {
+                if (! closed && reserved.get() == null)
+                    reserved.set(new Block(source.acquireNextBlock(0)));
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error reserving next block of identifiers (will retry inline): %s").with(e);
+        } finally {
+            prefetchScheduled.set(false);
+        }
+    }
+
+    /** Must be called under storageLock */
+    private long acquireNextBlock() {
+        if (closed)
+            throw new IllegalStateException("Identifier generator is closed");
+        return source.acquireNextBlock(0);
+    }
+
+    /**
+     * Drops current and reserved blocks (they may have been used by previous leader) and eagerly acquires fresh block
+     * from persisted high watermark, so that first identifier after failover is issued without touching storage.
+     * Waits (without spinning) for in-flight prefetch. Identifiers issued concurrently with reset remain unique.
+     */
+    @Override
+    public void reset() throws UnsupportedOperationException {
+        synchronized (storageLock) {
+            reserved.set(null);
+            source.reload();
+            current.set(new Block(acquireNextBlock()));
+        }
+    }
+
+    /** Stops prefetching, waits for in-flight block reservation and closes block storage */
+    @Override
+    public void close() throws IOException {
+        synchronized (storageLock) {
+            closed = true; // prefetch that has not started yet will not touch storage
+        }
+
+        if (ownExecutor) {
+            executor.shutdown();
+            try {
+                if (! executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                    LOG.warn("Block prefetch did not complete in %s ms").with(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (storageLock) { // in-flight prefetch of shared executor holds the lock until it is done
+            if (source instanceof Closeable)
+                ((Closeable) source).close();
+        }
+    }
+
+    private static Thread newPrefetchThread(Runnable runnable) {
+        Thread result = new Thread(runnable, "id-block-prefetch");
+        result.setDaemon(true);
+        return result;
+    }
+
+    private static final class Block {
+        final long base;
+        final AtomicInteger cursor = new AtomicInteger();
+
+        Block(long base) {
+            this.base = base;
+        }
+    }
+}
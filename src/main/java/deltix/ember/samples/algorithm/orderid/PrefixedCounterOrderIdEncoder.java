@@ -0,0 +1,70 @@
+package deltix.ember.samples.algorithm.orderid;
+
+/**
+ * Decimal text of identifier after precomputed prefix.
+ * Identifiers issued by high-low generators are mostly consecutive, so instead of formatting every digit
+ * this encoder increments previous text in place (typically touching only the last digit).
+ * Any other identifier is formatted from scratch.
+ */
+public final class PrefixedCounterOrderIdEncoder implements OrderIdEncoder {
+
+    private static final int MAX_DIGITS = 19;
+
+    private final AsciiText text;
+    private final int prefixLength;
+    private long lastId = Long.MIN_VALUE;
+
+    public PrefixedCounterOrderIdEncoder() {
+        this("");
+    }
+
+    public PrefixedCounterOrderIdEncoder(String prefix) {
+        text = new AsciiText(prefix.length() + MAX_DIGITS);
+        prefixLength = text.setPrefix(prefix);
+    }
+
+    @Override
+    public CharSequence encode(long id) {
+        if (id < 0)
+            throw new IllegalArgumentException("Negative identifier: " + id);
+
+        if (id != lastId + 1 || !increment())
+            format(id);
+
+        lastId = id;
+        return text;
+    }
+
+    /** @return false if increment requires extra digit (e.g. 999 -> 1000) */
+    private boolean increment() {
+        final byte[] bytes = text.bytes;
+        for (int i = text.length - 1; i >= prefixLength; i--) {
+            if (bytes[i] != '9') {
+                bytes[i]++;
+                return true;
+            }
+            bytes[i] = '0';
+        }
+        return false;
+    }
+
+    private void format(long id) {
+        final byte[] bytes = text.bytes;
+        final int numDigits = numDigits(id);
+        int index = prefixLength + numDigits;
+        text.length = index;
+        do {
+            bytes[--index] = (byte) ('0' + (id % 10));
+            id /= 10;
+        } while (id != 0);
+    }
+
+    private static int numDigits(long id) {
+        int result = 1;
+        while (id >= 10) {
+            id /= 10;
+            result++;
+        }
+        return result;
+    }
+}
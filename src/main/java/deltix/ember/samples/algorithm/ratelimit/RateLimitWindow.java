@@ -0,0 +1,90 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import deltix.anvil.util.annotation.Timestamp;
+
+/**
+ * Single layer of exchange rate limit (for example "1000 requests per second" or "100000 requests per day").
+ * Admission is done in two phases ({@link #canAcquire(long, int)} and then {@link #acquire(long, int)}) so that
+ * {@link RateLimiter} consumes budget of all its windows or none of them.
+ */
+public abstract class RateLimitWindow {
+
+    /** Windows with limit up to this value keep exact timestamp of each request (see {@link SlidingLogWindow}) */
+    static final int MAX_EXACT_LIMIT = 16 * 1024;
+
+    /** Number of buckets used by approximate sliding window (see {@link SlidingCounterWindow}) */
+    static final int NUMBER_OF_BUCKETS = 100;
+
+    protected final int limit;
+    protected final long durationMillis;
+
+    protected RateLimitWindow(int limit, long durationMillis) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("Rate limit must be positive: " + limit);
+        if (durationMillis <= 0)
+            throw new IllegalArgumentException("Rate limit window must be positive: " + durationMillis);
+
+        this.limit = limit;
+        this.durationMillis = durationMillis;
+    }
+
+    /** @return true if request of given weight fits into this window at given time. Does not change the state. */
+    public abstract boolean canAcquire(@Timestamp long now, int weight);
+
+    /** Consumes budget for request of given weight. Must follow successful {@link #canAcquire(long, int)} call. */
+    public abstract void acquire(@Timestamp long now, int weight);
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /** @return sliding window that allows given number of requests within given period of time */
+    public static RateLimitWindow slidingWindow(int limit, long durationMillis) {
+        if (limit <= MAX_EXACT_LIMIT)
+            return new SlidingLogWindow(limit, durationMillis);
+        return new SlidingCounterWindow(limit, durationMillis, NUMBER_OF_BUCKETS);
+    }
+
+    /**
+     * Parses window definition in format "{limit}/{duration}[ token]", where duration is a number followed by
+     * one of "ms", "s", "m", "h", "d" units. For example: "1000/1s", "5000/10s", "100000/1d", "50/1s token".
+     * Optional "token" suffix selects token bucket (permits bursts after idle periods) instead of sliding window.
+     */
+    public static RateLimitWindow parse(String text) {
+        String definition = text.trim();
+        final boolean tokenBucket = definition.endsWith(" token");
+        if (tokenBucket)
+            definition = definition.substring(0, definition.length() - " token".length()).trim();
+
+        final int slash = definition.indexOf('/');
+        if (slash <= 0)
+            throw new IllegalArgumentException("Expecting rate limit in format \"{limit}/{duration}\": " + text);
+
+        final int limit = Integer.parseInt(definition.substring(0, slash).trim());
+        final long durationMillis = parseDurationMillis(definition.substring(slash + 1).trim(), text);
+        return tokenBucket ? new TokenBucketWindow(limit, durationMillis) : slidingWindow(limit, durationMillis);
+    }
+
+    private static long parseDurationMillis(String duration, String text) {
+        int unitStart = 0;
+        while (unitStart < duration.length() && Character.isDigit(duration.charAt(unitStart)))
+            unitStart++;
+        if (unitStart == 0)
+            throw new IllegalArgumentException("Rate limit duration is missing: " + text);
+
+        final long value = Long.parseLong(duration.substring(0, unitStart));
+        switch (duration.substring(unitStart)) {
+            case "ms": return value;
+            case "s":  return value * 1000;
+            case "m":  return value * 60 * 1000;
+            case "h":  return value * 60 * 60 * 1000;
+            case "d":  return value * 24 * 60 * 60 * 1000;
+            default:
+                throw new IllegalArgumentException("Unknown rate limit duration unit (expecting ms, s, m, h, or d): " + text);
+        }
+    }
+}
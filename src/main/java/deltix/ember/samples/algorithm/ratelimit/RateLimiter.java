@@ -0,0 +1,45 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import deltix.anvil.util.annotation.Timestamp;
+
+/**
+ * Layered rate limiter: request is admitted only if it fits into every window (per-second, per-10-seconds, per-day, etc.).
+ * Different request types may have different weights. Admission check is O(1) (does not depend on the number of recorded requests) and does not allocate.
+ * <p>
+ * Single instance may be shared by many instruments to enforce per-exchange (or per-account) budget. Not thread safe.
+ */
+public final class RateLimiter {
+
+    private final RateLimitWindow[] windows;
+    private final int[] weights;
+
+    /** @param weights request weight for each {@link RequestType} (indexed by ordinal) */
+    public RateLimiter(RateLimitWindow[] windows, int[] weights) {
+        if (windows.length == 0)
+            throw new IllegalArgumentException("At least one rate limit window is required");
+        if (weights.length != RequestType.values().length)
+            throw new IllegalArgumentException("Expecting weight for each request type");
+        for (int weight : weights)
+            if (weight <= 0)
+                throw new IllegalArgumentException("Request weight must be positive: " + weight);
+
+        this.windows = windows.clone();
+        this.weights = weights.clone();
+    }
+
+    /**
+     * This call modifies the state, so this check should be the last one before submission.
+     *
+     * @return true when we can submit a request of given type
+     */
+    public boolean tryAcquire(@Timestamp long now, RequestType type) {
+        final int weight = weights[type.ordinal()];
+        for (RateLimitWindow window : windows)
+            if (!window.canAcquire(now, weight))
+                return false; // can adapt to such limits, by means like resizing max number of quotes
+
+        for (RateLimitWindow window : windows)
+            window.acquire(now, weight);
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import deltix.anvil.util.annotation.Alphanumeric;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one shared {@link RateLimiter} per destination exchange, so that all instruments trading on given exchange
+ * draw from the same budget. Lookup is meant to be done once per instrument (during initialization).
+ */
+public final class RateLimiterRegistry {
+
+    private final List<String> windows;
+    private final int[] weights;
+    private final Map<Long, RateLimiter> limiters = new HashMap<>();
+
+    /**
+     * @param windows definitions of rate limit windows applied to each exchange (see {@link RateLimitWindow#parse(String)})
+     * @param weights request weight for each {@link RequestType} (indexed by ordinal)
+     */
+    public RateLimiterRegistry(List<String> windows, int[] weights) {
+        this.windows = windows;
+        this.weights = weights;
+    }
+
+    public RateLimiter get(@Alphanumeric long exchange) {
+        return limiters.computeIfAbsent(exchange, e -> create());
+    }
+
+    private RateLimiter create() {
+        final RateLimitWindow[] result = new RateLimitWindow[windows.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = RateLimitWindow.parse(windows.get(i));
+        return new RateLimiter(result, weights);
+    }
+}
@@ -0,0 +1,8 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+/** Kinds of trading requests that may consume different share of exchange rate limit */
+public enum RequestType {
+    NEW,
+    REPLACE,
+    CANCEL
+}
@@ -0,0 +1,51 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import deltix.anvil.util.annotation.Timestamp;
+
+/**
+ * Approximate sliding window for large limits (e.g. daily): window is split into fixed number of buckets,
+ * each bucket counts units consumed during its time slice. Request is allowed if sum of all buckets plus request weight
+ * does not exceed the limit. Current (partially elapsed) bucket is kept in addition to buckets that cover the whole window,
+ * so approximation is conservative: a unit never expires earlier than in exact window, and at most one bucket later.
+ */
+final class SlidingCounterWindow extends RateLimitWindow {
+
+    private final int[] buckets;
+    private final long bucketMillis;
+    private long lastBucket; // absolute index of the most recent bucket (time / bucketMillis)
+    private long total;
+
+    SlidingCounterWindow(int limit, long durationMillis, int numberOfBuckets) {
+        super(limit, durationMillis);
+        this.bucketMillis = Math.max(1, durationMillis / numberOfBuckets);
+        this.buckets = new int[(int) ((durationMillis + bucketMillis - 1) / bucketMillis) + 1]; // + current bucket
+    }
+
+    @Override
+    public boolean canAcquire(@Timestamp long now, int weight) {
+        advance(now);
+        return total + weight <= limit;
+    }
+
+    @Override
+    public void acquire(@Timestamp long now, int weight) {
+        advance(now);
+        buckets[(int) (lastBucket % buckets.length)] += weight;
+        total += weight;
+    }
+
+    /** Expires buckets that fell out of the window. Amortized O(1): each bucket is cleared at most once per window. */
+    private void advance(@Timestamp long now) {
+        final long bucket = now / bucketMillis;
+        if (bucket <= lastBucket)
+            return;
+
+        final long expired = Math.min(bucket - lastBucket, buckets.length);
+        for (long i = 1; i <= expired; i++) {
+            final int index = (int) ((lastBucket + i) % buckets.length);
+            total -= buckets[index];
+            buckets[index] = 0;
+        }
+        lastBucket = bucket;
+    }
+}
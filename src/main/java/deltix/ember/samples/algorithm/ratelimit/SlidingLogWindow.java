@@ -0,0 +1,40 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import deltix.anvil.util.annotation.Timestamp;
+
+import java.util.Arrays;
+
+/**
+ * Exact sliding window: ring buffer keeps timestamp of each consumed unit of the limit.
+ * Request of weight W is allowed if the W-th oldest unit is outside of the window. Memory is proportional to the limit.
+ */
+final class SlidingLogWindow extends RateLimitWindow {
+
+    private static final long NEVER = Long.MIN_VALUE / 2; // far enough in the past, yet (now - NEVER) does not overflow
+
+    private final long[] timestamps; // ordered by time starting from head
+    private int head;
+
+    SlidingLogWindow(int limit, long durationMillis) {
+        super(limit, durationMillis);
+        this.timestamps = new long[limit];
+        Arrays.fill(timestamps, NEVER);
+    }
+
+    @Override
+    public boolean canAcquire(@Timestamp long now, int weight) {
+        if (weight > limit)
+            return false;
+
+        final int index = (head + weight - 1) % limit;
+        return now - timestamps[index] >= durationMillis;
+    }
+
+    @Override
+    public void acquire(@Timestamp long now, int weight) {
+        for (int i = 0; i < weight; i++) {
+            timestamps[head] = now;
+            head = (head + 1 == limit) ? 0 : head + 1;
+        }
+    }
+}
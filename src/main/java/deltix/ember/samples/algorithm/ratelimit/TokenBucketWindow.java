@@ -0,0 +1,44 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import deltix.anvil.util.annotation.Timestamp;
+
+/**
+ * Token bucket: up to {@code limit} tokens, refilled at rate of {@code limit} tokens per window duration.
+ * Unlike sliding windows allows to spend full limit as a burst after idle period.
+ * Tokens are kept in fixed point (scaled by window duration) to avoid floating point arithmetic.
+ */
+final class TokenBucketWindow extends RateLimitWindow {
+
+    private final long capacity; // limit * durationMillis
+    private long tokens;         // scaled by durationMillis
+    @Timestamp
+    private long lastRefillTime = Long.MIN_VALUE;
+
+    TokenBucketWindow(int limit, long durationMillis) {
+        super(limit, durationMillis);
+        this.capacity = limit * durationMillis;
+        this.tokens = capacity;
+    }
+
+    @Override
+    public boolean canAcquire(@Timestamp long now, int weight) {
+        refill(now);
+        return tokens >= weight * durationMillis;
+    }
+
+    @Override
+    public void acquire(@Timestamp long now, int weight) {
+        refill(now);
+        tokens -= weight * durationMillis;
+    }
+
+    private void refill(@Timestamp long now) {
+        if (lastRefillTime == Long.MIN_VALUE) {
+            lastRefillTime = now;
+        } else if (now > lastRefillTime) {
+            final long elapsed = now - lastRefillTime;
+            tokens = (elapsed >= durationMillis) ? capacity : Math.min(capacity, tokens + elapsed * limit);
+            lastRefillTime = now;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package deltix.ember.samples.algorithm.signal;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.annotation.Timestamp;
+
+/**
+ * Aggregates trades into OHLCV bars (see {@link BarType}) so that signals are evaluated once per bar instead of once per trade.
+ * Each trade only updates a few fields of the current bar. Completed bars are kept in preallocated arrays (ring of given capacity).
+ * <p>
+ * There is no timer: time bar is closed by the first trade of the next interval.
+ * Volume bar is not split: trade that crosses the threshold belongs to the closing bar.
+ */
+public final class BarAggregator {
+
+    private final BarType type;
+    private final long barTicks; // TICK
+    private final long barInterval; // TIME
+    @Decimal
+    private final long barVolume; // VOLUME
+
+    // current bar
+    private int tickCount;
+    @Timestamp
+    private long startTime;
+    @Decimal
+    private long open;
+    @Decimal
+    private long high;
+    @Decimal
+    private long low;
+    @Decimal
+    private long close;
+    @Decimal
+    private long volume;
+
+    // completed bars
+    private final long[] startTimes;
+    @Decimal
+    private final long[] opens;
+    @Decimal
+    private final long[] highs;
+    @Decimal
+    private final long[] lows;
+    @Decimal
+    private final long[] closes;
+    @Decimal
+    private final long[] volumes;
+    private long barCount;
+
+    /**
+     * @param barSize number of trades (TICK), interval in milliseconds (TIME), or traded volume (VOLUME)
+     * @param capacity number of completed bars to keep
+     */
+    public BarAggregator(BarType type, double barSize, int capacity) {
+        if (barSize <= 0)
+            throw new IllegalArgumentException("Bar size must be positive: " + barSize);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        this.type = type;
+        this.barTicks = Math.max(1, (long) barSize);
+        this.barInterval = Math.max(1, (long) barSize);
+        this.barVolume = Decimal64Utils.fromDouble(barSize);
+
+        startTimes = new long[capacity];
+        opens = new long[capacity];
+        highs = new long[capacity];
+        lows = new long[capacity];
+        closes = new long[capacity];
+        volumes = new long[capacity];
+    }
+
+    /** @return true if this trade completed a bar (see getters for completed bars) */
+    public boolean onTrade(@Timestamp long time, @Decimal long price, @Decimal long size) {
+        boolean completed = false;
+        switch (type) {
+            case TIME:
+                final long barStart = time - Math.floorMod(time, barInterval);
+                if (tickCount > 0 && barStart != startTime) {
+                    completeBar();
+                    completed = true;
+                }
+                update(barStart, price, size);
+                break;
+
+            case TICK:
+                update(time, price, size);
+                if (tickCount >= barTicks) {
+                    completeBar();
+                    completed = true;
+                }
+                break;
+
+            case VOLUME:
+                update(time, price, size);
+                if (Decimal64Utils.isGreaterOrEqual(volume, barVolume)) {
+                    completeBar();
+                    completed = true;
+                }
+                break;
+
+            default:
+                throw new IllegalStateException("Unsupported bar type: " + type);
+        }
+        return completed;
+    }
+
+    private void update(@Timestamp long time, @Decimal long price, @Decimal long size) {
+        if (tickCount++ == 0) {
+            startTime = time;
+            open = high = low = price;
+            volume = size;
+        } else {
+            if (Decimal64Utils.isGreater(price, high))
+                high = price;
+            if (Decimal64Utils.isLess(price, low))
+                low = price;
+            volume = Decimal64Utils.add(volume, size);
+        }
+        close = price;
+    }
+
+    private void completeBar() {
+        final int index = (int) (barCount++ % closes.length);
+        startTimes[index] = startTime;
+        opens[index] = open;
+        highs[index] = high;
+        lows[index] = low;
+        closes[index] = close;
+        volumes[index] = volume;
+        tickCount = 0;
+    }
+
+    public void clear() {
+        tickCount = 0;
+        barCount = 0;
+    }
+
+    /** @return number of bars completed so far */
+    public long getBarCount() {
+        return barCount;
+    }
+
+    /** @return index of given completed bar in arrays: 0 is the last completed bar, 1 is the one before it, etc. */
+    private int index(int barsAgo) {
+        if (barsAgo < 0 || barsAgo >= Math.min(barCount, closes.length))
+            throw new IndexOutOfBoundsException("No bar " + barsAgo + " bars ago");
+        return (int) ((barCount - 1 - barsAgo) % closes.length);
+    }
+
+    @Timestamp
+    public long getStartTime(int barsAgo) {
+        return startTimes[index(barsAgo)];
+    }
+
+    @Decimal
+    public long getOpen(int barsAgo) {
+        return opens[index(barsAgo)];
+    }
+
+    @Decimal
+    public long getHigh(int barsAgo) {
+        return highs[index(barsAgo)];
+    }
+
+    @Decimal
+    public long getLow(int barsAgo) {
+        return lows[index(barsAgo)];
+    }
+
+    @Decimal
+    public long getClose(int barsAgo) {
+        return closes[index(barsAgo)];
+    }
+
+    @Decimal
+    public long getVolume(int barsAgo) {
+        return volumes[index(barsAgo)];
+    }
+}
@@ -0,0 +1,11 @@
+package deltix.ember.samples.algorithm.signal;
+
+/** How {@link BarAggregator} decides that the current bar is complete */
+public enum BarType {
+    /** Bar closes after given number of trades (bar size 1 evaluates signal on every trade) */
+    TICK,
+    /** Bar closes when a trade arrives after the end of given time interval (milliseconds, aligned to epoch) */
+    TIME,
+    /** Bar closes once traded volume reaches given size */
+    VOLUME
+}
@@ -0,0 +1,186 @@
+package deltix.ember.samples.algorithm.signal;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+
+/**
+ * Mean, variance and EWMA of the last N samples, updated in O(1) per sample without allocations.
+ * <p>
+ * Samples are converted to fixed point longs (given number of decimal digits) and kept in a primitive ring buffer.
+ * Sum and sum of squares (128 bit) are accumulated exactly, so rolling window does not drift the way floating point
+ * running sums do. Variance and standard deviation are rounded once, when requested.
+ * Min and max are not maintained per sample (unpredictable branches of monotonic queues dominated the update cost),
+ * they scan the window when requested.
+ * <p>
+ * Fixed point sum must fit into long: window * max(|sample|) * 10^scale &lt; 9.2E18.
+ */
+public final class RollingStatistics {
+
+    public static final int DEFAULT_SCALE = 8;
+
+    private final int scale;
+    private final double unit; // 10^scale
+    private final long[] samples; // ring buffer of fixed point samples
+    private long count; // total number of samples ever added
+    private int position; // next ring position to write
+
+    private long sum;
+    private long sumSquaresHigh; // 128 bit sum of squares
+    private long sumSquaresLow;
+
+    @Decimal
+    private final long ewmaAlpha;
+    @Decimal
+    private long ewma = Decimal64Utils.NULL;
+
+    /** Creates statistics of given window, EWMA uses the same horizon: alpha = 2 / (window + 1) */
+    public RollingStatistics(int window) {
+        this(window, DEFAULT_SCALE, Decimal64Utils.fromDouble(2.0 / (window + 1)));
+    }
+
+    public RollingStatistics(int window, int scale, @Decimal long ewmaAlpha) {
+        if (window <= 0)
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        if (scale < 0 || scale > 18)
+            throw new IllegalArgumentException("Scale must be in [0..18] range: " + scale);
+
+        this.scale = scale;
+        this.unit = Math.pow(10, scale);
+        this.samples = new long[window];
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public void add(@Decimal long value) {
+        final long sample = Decimal64Utils.toFixedPoint(value, scale);
+        if (count++ >= samples.length)
+            remove(samples[position]);
+
+        samples[position] = sample;
+        sum += sample;
+        addSquare(sample, 1);
+        position = (position + 1 == samples.length) ? 0 : position + 1;
+
+        ewma = (ewma == Decimal64Utils.NULL) ? value :
+                Decimal64Utils.add(ewma, Decimal64Utils.multiply(ewmaAlpha, Decimal64Utils.subtract(value, ewma)));
+    }
+
+    private void remove(long sample) {
+        sum -= sample;
+        addSquare(sample, -1);
+    }
+
+    /** Adds (sign = 1) or subtracts (sign = -1) square of given sample to 128 bit sum of squares */
+    private void addSquare(long sample, int sign) {
+        final long high = Math.multiplyHigh(sample, sample);
+        final long low = sample * sample;
+        if (sign > 0) {
+            final long result = sumSquaresLow + low;
+            sumSquaresHigh += high + ((Long.compareUnsigned(result, sumSquaresLow) < 0) ? 1 : 0);
+            sumSquaresLow = result;
+        } else {
+            final long result = sumSquaresLow - low;
+            sumSquaresHigh -= high + ((Long.compareUnsigned(sumSquaresLow, low) < 0) ? 1 : 0);
+            sumSquaresLow = result;
+        }
+    }
+
+    public void clear() {
+        count = 0;
+        sum = 0;
+        sumSquaresHigh = 0;
+        sumSquaresLow = 0;
+        position = 0;
+        ewma = Decimal64Utils.NULL;
+    }
+
+    /** @return number of samples in the window */
+    public int size() {
+        return (int) Math.min(count, samples.length);
+    }
+
+    public int getWindow() {
+        return samples.length;
+    }
+
+    public boolean isFull() {
+        return count >= samples.length;
+    }
+
+    /** @return exact mean of the window (rounded to decimal precision), or NULL if empty */
+    @Decimal
+    public long getMean() {
+        final int size = size();
+        if (size == 0)
+            return Decimal64Utils.NULL;
+        return Decimal64Utils.divide(Decimal64Utils.fromFixedPoint(sum, scale), Decimal64Utils.fromLong(size));
+    }
+
+    /** @return population variance of the window, or NULL if empty */
+    @Decimal
+    public long getVariance() {
+        final int size = size();
+        return (size == 0) ? Decimal64Utils.NULL : Decimal64Utils.fromDouble(getScaledVariance(size) / (unit * unit));
+    }
+
+    /** @return population standard deviation of the window, or NULL if empty */
+    @Decimal
+    public long getStdDev() {
+        final int size = size();
+        return (size == 0) ? Decimal64Utils.NULL : Decimal64Utils.fromDouble(Math.sqrt(getScaledVariance(size)) / unit);
+    }
+
+    /** @return variance in fixed point units squared: (n * sum(x^2) - sum(x)^2) / n^2 computed in 128 bit integers */
+    private double getScaledVariance(int size) {
+        // n * sum(x^2)
+        long high = sumSquaresHigh * size + Math.multiplyHigh(sumSquaresLow, size) + ((sumSquaresLow < 0) ? size : 0);
+        long low = sumSquaresLow * size;
+
+        // - sum(x)^2
+        final long squareHigh = Math.multiplyHigh(sum, sum);
+        final long squareLow = sum * sum;
+        high -= squareHigh + ((Long.compareUnsigned(low, squareLow) < 0) ? 1 : 0);
+        low -= squareLow;
+
+        if (high < 0)
+            return 0; // can't happen with exact arithmetic, guards against sum overflow
+
+        final double numerator = high * 0x1p64 + unsignedToDouble(low);
+        return numerator / ((double) size * size);
+    }
+
+    private static double unsignedToDouble(long value) {
+        return (value >= 0) ? value : (value >>> 1) * 2.0 + (value & 1);
+    }
+
+    /** @return smallest sample of the window, or NULL if empty. O(window) */
+    @Decimal
+    public long getMin() {
+        final int size = size();
+        if (size == 0)
+            return Decimal64Utils.NULL;
+
+        long result = samples[0];
+        for (int i = 1; i < size; i++)
+            result = Math.min(result, samples[i]);
+        return Decimal64Utils.fromFixedPoint(result, scale);
+    }
+
+    /** @return largest sample of the window, or NULL if empty. O(window) */
+    @Decimal
+    public long getMax() {
+        final int size = size();
+        if (size == 0)
+            return Decimal64Utils.NULL;
+
+        long result = samples[0];
+        for (int i = 1; i < size; i++)
+            result = Math.max(result, samples[i]);
+        return Decimal64Utils.fromFixedPoint(result, scale);
+    }
+
+    /** @return exponentially weighted moving average of all samples, or NULL if there were none */
+    @Decimal
+    public long getEwma() {
+        return ewma;
+    }
+}
@@ -4,16 +4,24 @@ import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
 import deltix.ember.message.smd.InstrumentType;
 import deltix.ember.message.trade.Side;
+import deltix.ember.samples.algorithm.signal.BarAggregator;
+import deltix.ember.samples.algorithm.signal.RollingStatistics;
 import deltix.ember.service.algorithm.v2.AbstractL1TradingAlgorithm;
 import com.epam.deltix.gflog.api.AppendableEntry;
 import com.epam.deltix.gflog.api.Loggable;
-import deltix.util.finmath.SMAV;
 
 /** Instrument state such as  position size, cost and P&L */
 class InstrumentState extends AbstractL1TradingAlgorithm.L1InstrumentState implements Loggable {
 
-    /** Simple Moving Average (NB: Uses double data type) */
-    final SMAV smav;
+    /** Trades aggregated into bars, signal is evaluated when bar completes */
+    final BarAggregator bars;
+
+    /** Moving average and standard deviation of bar close prices */
+    final RollingStatistics statistics;
+
+    /** Pool of order groups, active groups first */
+    private final OrderGroup[] orderGroups;
+    private int activeOrderGroups;
 
     /** Actual position (negative if short) */
     private @Decimal long positionSize = Decimal64Utils.ZERO;
@@ -22,7 +30,43 @@ class InstrumentState extends AbstractL1TradingAlgorithm.L1InstrumentState imple
 
     InstrumentState(CharSequence symbol, InstrumentType instrumentType, SignalTraderSettings settings) {
         super(symbol, instrumentType);
-        smav = new SMAV(settings.getNumPeriods());
+        bars = new BarAggregator(settings.getBarType(), settings.getBarSize(), settings.getNumPeriods());
+        statistics = new RollingStatistics(settings.getNumPeriods());
+
+        orderGroups = new OrderGroup[Math.max(1, settings.getMaxGroupsPerInstrument())];
+        for (int i = 0; i < orderGroups.length; i++)
+            orderGroups[i] = new OrderGroup(getSymbol());
+    }
+
+    boolean hasFreeOrderGroup() {
+        return activeOrderGroups < orderGroups.length;
+    }
+
+    OrderGroup acquireOrderGroup() {
+        assert hasFreeOrderGroup();
+        return orderGroups[activeOrderGroups++];
+    }
+
+    /** Resets given group and returns it to the pool (swaps it with the last active group) */
+    void releaseOrderGroup(OrderGroup orderGroup) {
+        orderGroup.reset();
+        for (int i = 0; i < activeOrderGroups; i++) {
+            if (orderGroups[i] == orderGroup) {
+                orderGroups[i] = orderGroups[--activeOrderGroups];
+                orderGroups[activeOrderGroups] = orderGroup;
+                return;
+            }
+        }
+        assert false : "Unknown order group";
+    }
+
+    int getActiveOrderGroups() {
+        return activeOrderGroups;
+    }
+
+    OrderGroup getOrderGroup(int index) {
+        assert index < activeOrderGroups;
+        return orderGroups[index];
     }
 
     @Decimal
@@ -22,46 +22,97 @@ import javax.annotation.Nonnull;
 //TODO: Align prices to tick size
 //TODO: Some guard against systematic problem with closing positions (somehow EXIT/STOP orders never fill completely)
 
+/**
+ * ENTER order with EXIT and STOP orders that close its position. Groups are pooled by {@link InstrumentState}.
+ * Orders are recycled to object pool after they reach final state: group drops final order (see {@link #onOrderFinal})
+ * and keeps only what it needs afterwards.
+ */
 class OrderGroup {
-    SignalOrder enterOrder;
+    final CharSequence symbol;
 
-    // The Exit Order, whose contracts match the # of Entry Order contracts filled (AKA Take Profit order)
+    SignalOrder enterOrder; // null once final
+
+    // The Exit Order, whose contracts match the # of Entry Order contracts filled (AKA Take Profit order), null once final
     SignalOrder exitOrder;
 
-    // The Stop Order, whose contracts match the # of Entry Order contracts filled
+    // The Stop Order, whose contracts match the # of Entry Order contracts filled, null once final
     SignalOrder stopOrder;
 
+    // ENTER order parameters (overfill fix order copies them after ENTER order is final)
+    Side enterSide;
+    @Alphanumeric long enterExchangeId;
+    @Decimal long enterQuantity;
+
+    boolean exitSubmitted;
+    boolean stopSubmitted;
+
+    // Executed quantities of group orders that reached final state
+    private @Decimal long enterExecutedQuantity = Decimal64Utils.ZERO;
+    private @Decimal long exitExecutedQuantity = Decimal64Utils.ZERO;
+    private @Decimal long stopExecutedQuantity = Decimal64Utils.ZERO;
+
+    OrderGroup(CharSequence symbol) {
+        this.symbol = symbol;
+    }
+
+    /** @return true until ENTER order is final and position it opened is closed (or being closed by orders outside of the group) */
     boolean isActive() {
-        return enterOrder != null && (enterOrder.isActive() || enterOrder.getState() == OrderState.COMPLETELY_FILLED) ||
-               exitOrder != null && exitOrder.isActive() ||
-               stopOrder != null && stopOrder.isActive();
+        return isActive(enterOrder) ||
+               enterSide != null && Decimal64Utils.isPositive(getEnterExecutedQuantity()) && (! exitSubmitted || ! stopSubmitted) ||
+               isActive(exitOrder) ||
+               isActive(stopOrder);
+    }
+
+    private static boolean isActive(SignalOrder order) {
+        return order != null && order.isActive();
     }
 
     void onEnterOrder(SignalOrder order) {
         assert ! isActive();
-        assert enterOrder == null : "enter";
-        assert exitOrder == null : "exit";
-        assert stopOrder == null : "stop";
+        assert enterSide == null : "enter";
+        assert ! exitSubmitted : "exit";
+        assert ! stopSubmitted : "stop";
 
         enterOrder = order;
+        enterSide = order.getSide();
+        enterExchangeId = order.getExchangeId();
+        enterQuantity = order.getWorkingQuantity();
+        order.group = this;
     }
 
     void onStopOrder(SignalOrder order) {
-//        assert ! isActive();
-        assert enterOrder != null : "enter";
-        assert stopOrder == null : "stop";
+        assert enterSide != null : "enter";
+        assert ! stopSubmitted : "stop";
 
         stopOrder = order;
+        stopSubmitted = true;
+        order.group = this;
     }
 
     void onExitOrder(SignalOrder order) {
-//        assert ! isActive();
-        assert enterOrder != null : "enter";
-        assert exitOrder == null : "exit";
+        assert enterSide != null : "enter";
+        assert ! exitSubmitted : "exit";
 
         exitOrder = order;
+        exitSubmitted = true;
+        order.group = this;
     }
 
+    /** Drops reference to given order that just reached final state (it is about to be recycled) */
+    void onOrderFinal(SignalOrder order) {
+        assert order.group == this;
+        if (order == enterOrder) {
+            enterExecutedQuantity = order.getTotalExecutedQuantity();
+            enterOrder = null;
+        } else if (order == exitOrder) {
+            exitExecutedQuantity = order.getTotalExecutedQuantity();
+            exitOrder = null;
+        } else if (order == stopOrder) {
+            stopExecutedQuantity = order.getTotalExecutedQuantity();
+            stopOrder = null;
+        }
+        order.group = null;
+    }
 
     boolean isEnterOrder(SignalOrder order) {
         return enterOrder == order;
@@ -75,20 +126,38 @@ class OrderGroup {
         return stopOrder == order;
     }
 
+    @Decimal long getEnterExecutedQuantity() {
+        return (enterOrder != null) ? enterOrder.getTotalExecutedQuantity() : enterExecutedQuantity;
+    }
+
     void reset() {
+        if (enterOrder != null)
+            enterOrder.group = null;
+        if (exitOrder != null)
+            exitOrder.group = null;
+        if (stopOrder != null)
+            stopOrder.group = null;
+
         enterOrder = null;
         exitOrder = null;
         stopOrder = null;
+        enterSide = null;
+        enterExchangeId = 0;
+        enterQuantity = Decimal64Utils.ZERO;
+        exitSubmitted = false;
+        stopSubmitted = false;
+        enterExecutedQuantity = Decimal64Utils.ZERO;
+        exitExecutedQuantity = Decimal64Utils.ZERO;
+        stopExecutedQuantity = Decimal64Utils.ZERO;
     }
 
     @Decimal long computeOverfill() {
-        assert isActive();
-        assert enterOrder != null;
+        assert enterSide != null;
 
-        @Decimal long enterSize = enterOrder.getTotalExecutedQuantity();
+        @Decimal long enterSize = getEnterExecutedQuantity();
         @Decimal long closeSize = Decimal64Utils.add(
-                (exitOrder != null) ? exitOrder.getTotalExecutedQuantity() : Decimal64Utils.ZERO,
-                (stopOrder != null) ? stopOrder.getTotalExecutedQuantity() : Decimal64Utils.ZERO);
+                (exitOrder != null) ? exitOrder.getTotalExecutedQuantity() : exitExecutedQuantity,
+                (stopOrder != null) ? stopOrder.getTotalExecutedQuantity() : stopExecutedQuantity);
 
         @Decimal long overfill = Decimal64Utils.subtract(closeSize, enterSize);
         return Decimal64Utils.max(Decimal64Utils.ZERO, overfill);
@@ -96,43 +165,39 @@ class OrderGroup {
 }
 
 class SignalOrder extends OutboundOrder {
-//    OrderGroup group;
-//
-//    @Override
-//    public void onEvict() {
-//        if (group != null) {
-//            group.onEvict(this);
-//            group = null;
-//        }
-//        super.onEvict();
-//    }
-
+    OrderGroup group; // group this order belongs to, or null (cleared once order is final, see OrderGroup.onOrderFinal)
 }
 
 
 public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<InstrumentState, SignalOrder> {
     private static final long MAX_ORDER_SIZE = Decimal64Utils.fromLong(10);
     private final SignalTraderSettings settings;
+    @Decimal
+    private final long numStdDevs;
     private final AsciiStringBuilder orderReason = new AsciiStringBuilder(64);
 
-    // Per spec only one order group will be processed at a time
-    private OrderGroup orderGroup = new OrderGroup();
+    // Order groups are owned by instruments, number of groups processed at a time is limited globally
+    private final int maxActiveGroups;
+    private int activeGroups;
     private String abortReason;
 
-    private int maximumNumberOfSignals = 3;
+    private int maximumNumberOfSignals;
 
     SignalTraderAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, SignalTraderSettings settings) {
         super(context, cacheSettings);
         this.settings = settings;
+        this.numStdDevs = Decimal64Utils.fromDouble(settings.getNumStdDevs());
+        this.maxActiveGroups = settings.getMaxActiveGroups();
+        this.maximumNumberOfSignals = settings.getMaxSignals();
     }
 
 
-    private boolean canEnterTrading() {
+    private boolean canEnterTrading(InstrumentState instrument) {
         if (abortReason != null)
             return false;
 
-        assert ! orderGroup.isActive();
-
+        if (activeGroups >= maxActiveGroups || ! instrument.hasFreeOrderGroup())
+            return false;
 
         return true; //TODO: We only allow our system to trade during specific hours of the day
     }
@@ -148,7 +213,7 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
 
         if (maximumNumberOfSignals > 0) {
             maximumNumberOfSignals--;
-        } else {
+        } else if (maximumNumberOfSignals == 0) {
             abortReason = "Maximum number of signals processed";
             return false;
         }
@@ -167,21 +232,24 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
             protected void onTradeMessage(TradeEntry message) {
                 super.onTradeMessage(message);
 
-                smav.register(Decimal64Utils.toDouble(message.getPrice())); // sample only
+                final boolean barCompleted = bars.onTrade(currentTime(), message.getPrice(), message.getSize());
+                if (barCompleted)
+                    statistics.add(bars.getClose(0)); // sample only
 
-                if (orderGroup.isActive()) {
-                    checkEnterOrderPrice (message.getPrice());
-                } else {
-                    if (canEnterTrading()) {
-                        assert !orderGroup.isActive();
+                for (int i = 0; i < getActiveOrderGroups(); i++)
+                    checkEnterOrderPrice (getOrderGroup(i), message.getPrice());
 
+                if (barCompleted) { // signal is evaluated once per bar
+                    if (canEnterTrading(this)) {
                         orderReason.clear(); //Just a sample of recording order reason, can also be set into order's UserData field or custom order attribute
 
-                        @Decimal long orderSize = checkSignal(message, orderReason);
+                        @Decimal long orderSize = checkSignal(message, bars.getClose(0), orderReason);
                         if ( ! Decimal64Utils.isZero(orderSize) && checkSafety(orderSize)) { //TODO: Check order size is too small
 
                             SignalOrder enterOrder = submitNewEnterOrderRequest(getSymbol(), orderSize, message.getPrice(), message.getExchangeId());
+                            OrderGroup orderGroup = acquireOrderGroup();
                             orderGroup.onEnterOrder(enterOrder);
+                            activeGroups++;
                             LOGGER.info("Sent %s %s %s @ %s Reason:%s")
                                     .with(enterOrder.getSide())
                                     .with(enterOrder.getSymbol())
@@ -195,25 +263,23 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
                 }
             }
 
-            /** @return ENTER order size (positive for BUY, negative for SELL), or zero if signal condition is not met */
+            /** @return ENTER order size (positive for BUY, negative for SELL), or zero if signal condition is not met by given bar close price */
             @Decimal
-            private long checkSignal(TradeEntry trade, AsciiStringBuilder reason) {
-                assert ! orderGroup.isActive();
+            private long checkSignal(TradeEntry trade, @Decimal long price, AsciiStringBuilder reason) {
                 @Decimal long result = Decimal64Utils.ZERO;
-                if (smav.isFull()) { // Customize this: math below are for sample purpose only (bollinger band):
-                    final double mp = smav.getAverage();
-                    final double sqrtVariance = smav.getStdDev();
-                    final double upperBand = mp + settings.getNumStdDevs() * sqrtVariance;
-                    final double bottomBand = mp - settings.getNumStdDevs() * sqrtVariance;
+                if (statistics.isFull()) { // Customize this: math below are for sample purpose only (bollinger band):
+                    @Decimal final long mp = statistics.getMean();
+                    @Decimal final long bandWidth = Decimal64Utils.multiply(numStdDevs, statistics.getStdDev());
+                    @Decimal final long upperBand = Decimal64Utils.add(mp, bandWidth);
+                    @Decimal final long bottomBand = Decimal64Utils.subtract(mp, bandWidth);
 
                     // rules for position opening
-                    double price = Decimal64Utils.toDouble(trade.getPrice());
-                    if (price > upperBand) {
-                        reason.append("Above ").append(upperBand).append(" band");
+                    if (Decimal64Utils.isGreater(price, upperBand)) {
+                        reason.append("Above ").append(Decimal64Utils.toDouble(upperBand)).append(" band");
                         result = Decimal64Utils.negate(Decimal64Utils.multiply(trade.getSize(), settings.getEnterOrderSizeCoefficient()));
                     } else
-                    if (price < bottomBand) {
-                        reason.append("Below ").append(bottomBand).append(" band");
+                    if (Decimal64Utils.isLess(price, bottomBand)) {
+                        reason.append("Below ").append(Decimal64Utils.toDouble(bottomBand)).append(" band");
                         result = Decimal64Utils.multiply(trade.getSize(), settings.getEnterOrderSizeCoefficient());
                     }
                 }
@@ -252,12 +318,16 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
             if (instrumentInfo != null) {
                 instrumentInfo.updateInstrument(event.getSide(), event.getTradePrice(), event.getTradeQuantity());
                 LOGGER.info("Position changed: %s").with(instrumentInfo);
-                if (orderGroup.isActive()) { // should always be true unless we see echo of external trades
+                final OrderGroup orderGroup = order.group;
+                if (orderGroup != null) { // should always be true unless we see echo of external trades (or fills of overfill fix orders)
                     if (orderGroup.isEnterOrder(order)) {
-                        increaseExitAndStopOrders();
+                        increaseExitAndStopOrders(orderGroup);
                     } else {
-                        decreaseExitOrStopOrders(order, event.getTradeQuantity());
+                        decreaseExitOrStopOrders(orderGroup, order, event.getTradeQuantity());
                     }
+                    if (order.isFinal())
+                        orderGroup.onOrderFinal(order);
+                    releaseIfInactive(instrumentInfo, orderGroup);
                 } else {
                     LOGGER.warn("Fill %s for inactive order group").with(order);
                 }
@@ -270,30 +340,41 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
         public void onOrderReject(SignalOrder order, OrderRejectEvent event) {
             super.onOrderReject(order, event);
 
-            if (orderGroup.isActive()) { // should always be true unless we see echo of external trades
+            final OrderGroup orderGroup = order.group;
+            if (orderGroup != null && orderGroup.isActive()) { // should always be true unless we see echo of external trades
                 LOGGER.warn("Reject for order %s - suspending algo: %s [%s:%s]").with(order).with(event.getReason()).with(event.getDeltixRejectCode()).with(event.getVendorRejectCode());
-                abortOrderGroup("Unexpected order reject");
+                abortOrderGroup(orderGroup, "Unexpected order reject");
             } else {
                 LOGGER.warn("Reject %s for inactive order group").with(order);
             }
+            if (orderGroup != null)
+                orderGroup.onOrderFinal(order);
+            releaseIfInactive(get(order.getSymbol()), orderGroup);
         }
 
         @Override
         public void onOrderCancel(SignalOrder order, OrderCancelEvent event) {
-            final boolean wasActive = orderGroup.isActive();
-
             super.onOrderCancel(order, event);
 
-            if(wasActive && ! orderGroup.isActive()) {
-                orderGroup.reset();
-            }
+            final OrderGroup orderGroup = order.group;
+            if (orderGroup != null)
+                orderGroup.onOrderFinal(order);
+            releaseIfInactive(get(order.getSymbol()), orderGroup);
         }
 
         //TODO: Cancel Reject
         //TODO: Replace Reject
     }
 
-    private void abortOrderGroup(@Nonnull String reason) {
+    /** Returns completed order group to the pool of its instrument */
+    private void releaseIfInactive(InstrumentState instrument, OrderGroup orderGroup) {
+        if (instrument != null && orderGroup != null && ! orderGroup.isActive()) {
+            instrument.releaseOrderGroup(orderGroup);
+            activeGroups--;
+        }
+    }
+
+    private void abortOrderGroup(OrderGroup orderGroup, @Nonnull String reason) {
         assert orderGroup.isActive();
         abortReason = reason;
         if (orderGroup.enterOrder != null && orderGroup.enterOrder.isActive())
@@ -304,11 +385,10 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
             cancel(orderGroup.stopOrder, reason);
     }
 
-    private void decreaseExitOrStopOrders(SignalOrder order, @Decimal long tradeQuantity) {
-        assert orderGroup.isActive();
+    private void decreaseExitOrStopOrders(OrderGroup orderGroup, SignalOrder order, @Decimal long tradeQuantity) {
         assert ! orderGroup.isEnterOrder(order);
         if (orderGroup.isExitOrder(order)) {
-            if (orderGroup.stopOrder.isActive()) {
+            if (orderGroup.stopOrder != null && orderGroup.stopOrder.isActive()) {
                 @Decimal long newQuantity = Decimal64Utils.subtract(orderGroup.stopOrder.getLastOrder().getQuantity(), tradeQuantity);
                 if (Decimal64Utils.isPositive(newQuantity)) {
 
@@ -320,54 +400,53 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
                     replaceStopOrderRequest(orderGroup.stopOrder, newQuantity);
                 } else {
                     cancel(orderGroup.stopOrder, "Exit");
-                    submitOverfillFixIfNecessary();
+                    submitOverfillFixIfNecessary(orderGroup);
                 }
             } else {
-                submitOverfillFixIfNecessary(); // EXIT order filled while STOP order is already inactive
+                submitOverfillFixIfNecessary(orderGroup); // EXIT order filled while STOP order is already inactive
             }
         } else if (orderGroup.isStopOrder(order)) {
-            @Decimal long newQuantity = Decimal64Utils.subtract(orderGroup.exitOrder.getLastOrder().getQuantity(), tradeQuantity);
-            if (orderGroup.exitOrder.isActive()) {
+            if (orderGroup.exitOrder != null && orderGroup.exitOrder.isActive()) {
+                @Decimal long newQuantity = Decimal64Utils.subtract(orderGroup.exitOrder.getLastOrder().getQuantity(), tradeQuantity);
                 if (Decimal64Utils.isPositive(newQuantity)) {
                     replaceExitOrderRequest(orderGroup.exitOrder, newQuantity);
                 } else {
                     cancel(orderGroup.exitOrder, "Stop");
-                    submitOverfillFixIfNecessary();
+                    submitOverfillFixIfNecessary(orderGroup);
                 }
             } else {
-                submitOverfillFixIfNecessary(); // STOP order filled while EXIT order is already inactive
+                submitOverfillFixIfNecessary(orderGroup); // STOP order filled while EXIT order is already inactive
             }
         } else {
             LOGGER.warn("Fill %s for unexpected order %s (not one of group)").with(order);
         }
     }
 
-    private void submitOverfillFixIfNecessary() {
-        assert orderGroup.isActive();
+    private void submitOverfillFixIfNecessary(OrderGroup orderGroup) {
         @Decimal long overfillQuantity = orderGroup.computeOverfill();
         if (Decimal64Utils.isPositive(overfillQuantity))
-            submitOverfillFixOrderRequest (overfillQuantity);
+            submitOverfillFixOrderRequest (orderGroup, overfillQuantity);
     }
 
-    private void increaseExitAndStopOrders() {
+    private void increaseExitAndStopOrders(OrderGroup orderGroup) {
         @Decimal long newQuantity = orderGroup.enterOrder.getTotalExecutedQuantity();
         assert Decimal64Utils.isLessOrEqual(newQuantity, orderGroup.enterOrder.getWorkingQuantity());
-        if (orderGroup.exitOrder == null) {
-            assert orderGroup.stopOrder == null;
+        if (! orderGroup.exitSubmitted) {
+            assert ! orderGroup.stopSubmitted;
             orderGroup.onExitOrder(submitNewExitOrderRequest(orderGroup.enterOrder, newQuantity));
         } else {
-            assert orderGroup.stopOrder != null;
-            if (orderGroup.exitOrder.isActive()) {
+            assert orderGroup.stopSubmitted;
+            if (orderGroup.exitOrder != null && orderGroup.exitOrder.isActive()) {
                 replaceExitOrderRequest(orderGroup.exitOrder, newQuantity);
             } else {
                 LOGGER.warn("Unexpected fill for ENTER order while EXIT order is INACTIVE").with(orderGroup.exitOrder);
             }
         }
 
-        if (orderGroup.stopOrder == null) {
+        if (! orderGroup.stopSubmitted) {
             orderGroup.onStopOrder(submitNewStopOrderRequest(orderGroup.enterOrder, newQuantity));
         } else {
-            if (orderGroup.stopOrder.isActive()) {
+            if (orderGroup.stopOrder != null && orderGroup.stopOrder.isActive()) {
                 replaceStopOrderRequest(orderGroup.stopOrder, newQuantity);
             } else {
                 //TODO: this is actually possible in fast moving market (STOP may be triggered and filled before ENTER order is completely filled?)
@@ -377,13 +456,12 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
     }
 
     /** if ENTER order is still active and price cross STOP or EXIT price cancel ENTER order */
-    private void checkEnterOrderPrice(@Decimal long marketPrice) {
+    private void checkEnterOrderPrice(OrderGroup orderGroup, @Decimal long marketPrice) {
         // 1. If the Abort price is reached before the Entry Order fills any contracts, the working Entry Order is cancelled
         // 2. Unfilled Entry Order contracts are cancelled when the Exit Price is reached
-        assert orderGroup.isActive();
 
-        SignalOrder enterOrder = orderGroup.enterOrder; assert enterOrder != null;
-        if (enterOrder.isActive()) {
+        SignalOrder enterOrder = orderGroup.enterOrder;
+        if (enterOrder != null && enterOrder.isActive()) {
             boolean cancelEnter;
             if (enterOrder.getSide() == Side.BUY)
                 cancelEnter = Decimal64Utils.isLessOrEqual(marketPrice, getStopPrice(enterOrder)) ||
@@ -412,7 +490,6 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
 
     /** "Enter" Order parameters (Prepare a Limit order at which we "Enter" the market) */
     private SignalOrder submitNewEnterOrderRequest (CharSequence symbol, @Decimal long orderSize, @Decimal long limitPrice, @Alphanumeric long exchangeCode) {
-        assert orderGroup.enterOrder == null;
         MutableOrderNewRequest result = orderProcessor.makeSubmitRequest();
         result.setQuantity(Decimal64Utils.abs(orderSize));
         result.setSide(Decimal64Utils.isPositive(orderSize) ? Side.BUY : Side.SELL);
@@ -426,7 +503,6 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
 
     /** "Exit" Order parameters (Exit Order, which is a Limit Order, intended to offset/flatten the Entry Order and yield positive earnings) */
     private SignalOrder submitNewExitOrderRequest (SignalOrder enterOrder, @Decimal long orderSize) {
-        assert orderGroup.exitOrder == null;
         MutableOrderNewRequest result = orderProcessor.makeSubmitRequest();
         result.setQuantity(Decimal64Utils.abs(orderSize));
         result.setSide((enterOrder.getSide() == Side.BUY) ? Side.SELL: Side.BUY);
@@ -440,7 +516,6 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
 
     /** "Stop" Order parameters (Stop Order, which is a Stop Market order, intended to prevent excessive losses if the prediction is incorrect) */
     private SignalOrder submitNewStopOrderRequest (SignalOrder enterOrder, @Decimal long orderSize) {
-        assert orderGroup.stopOrder == null;
         MutableOrderNewRequest result = orderProcessor.makeSubmitRequest();
         result.setQuantity(Decimal64Utils.abs(orderSize));
         result.setSide((enterOrder.getSide() == Side.BUY) ? Side.SELL: Side.BUY);
@@ -480,15 +555,14 @@ public class SignalTraderAlgorithm extends AbstractL1TradingAlgorithm<Instrument
         replace(exitOrder, result);
     }
 
-    private SignalOrder submitOverfillFixOrderRequest (@Decimal long overfillAmount) {
-        assert orderGroup.isActive();
-        assert Decimal64Utils.isLessOrEqual(overfillAmount, orderGroup.enterOrder.getWorkingQuantity());
+    private SignalOrder submitOverfillFixOrderRequest (OrderGroup orderGroup, @Decimal long overfillAmount) {
+        assert Decimal64Utils.isLessOrEqual(overfillAmount, orderGroup.enterQuantity);
         MutableOrderNewRequest result = orderProcessor.makeSubmitRequest();
         result.setQuantity(overfillAmount);
-        result.setSide(orderGroup.enterOrder.getSide());
-        result.setSymbol(orderGroup.enterOrder.getSymbol());
+        result.setSide(orderGroup.enterSide);
+        result.setSymbol(orderGroup.symbol);
         result.setOrderType(OrderType.MARKET);
-        result.setExchangeId(orderGroup.enterOrder.getExchangeId());
+        result.setExchangeId(orderGroup.enterExchangeId);
         //result.setDestinationId(destinationId);
         return submit(result);
     }
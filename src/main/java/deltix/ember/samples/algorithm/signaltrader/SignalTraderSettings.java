@@ -3,6 +3,7 @@ package deltix.ember.samples.algorithm.signaltrader;
 import deltix.anvil.util.annotation.Optional;
 import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.samples.algorithm.signal.BarType;
 
 public class SignalTraderSettings {
     /** Sample only: used to compute Bollinger band */
@@ -13,6 +14,26 @@ public class SignalTraderSettings {
     @Optional
     private int numPeriods = 300;
 
+    /** Trades are aggregated into bars of this type, signal is evaluated once per bar */
+    @Optional
+    private BarType barType = BarType.TICK;
+
+    /** Number of trades (TICK), interval in milliseconds (TIME) or traded volume (VOLUME) of each bar */
+    @Optional
+    private double barSize = 1;
+
+    /** Maximum number of order groups (ENTER order with its EXIT and STOP orders) each instrument can run at a time */
+    @Optional
+    private int maxGroupsPerInstrument = 1;
+
+    /** Maximum number of order groups all instruments can run at a time */
+    @Optional
+    private int maxActiveGroups = 1;
+
+    /** Safety limit: algorithm stops trading after given number of signals (negative for unlimited) */
+    @Optional
+    private int maxSignals = 3;
+
     /** Sample only: used to compute size of ENTER order */
     @Optional
     @Decimal
@@ -72,4 +93,44 @@ public class SignalTraderSettings {
     public void setStopOrderPriceCoefficient(@Decimal long stopOrderPriceCoefficient) {
         this.stopOrderPriceCoefficient = stopOrderPriceCoefficient;
     }
+
+    public BarType getBarType() {
+        return barType;
+    }
+
+    public void setBarType(BarType barType) {
+        this.barType = barType;
+    }
+
+    public double getBarSize() {
+        return barSize;
+    }
+
+    public void setBarSize(double barSize) {
+        this.barSize = barSize;
+    }
+
+    public int getMaxGroupsPerInstrument() {
+        return maxGroupsPerInstrument;
+    }
+
+    public void setMaxGroupsPerInstrument(int maxGroupsPerInstrument) {
+        this.maxGroupsPerInstrument = maxGroupsPerInstrument;
+    }
+
+    public int getMaxActiveGroups() {
+        return maxActiveGroups;
+    }
+
+    public void setMaxActiveGroups(int maxActiveGroups) {
+        this.maxActiveGroups = maxActiveGroups;
+    }
+
+    public int getMaxSignals() {
+        return maxSignals;
+    }
+
+    public void setMaxSignals(int maxSignals) {
+        this.maxSignals = maxSignals;
+    }
 }
@@ -3,6 +3,8 @@ package deltix.ember.samples.algorithm.t2o;
 import deltix.anvil.util.codec.AlphanumericCodec;
 import com.epam.deltix.dfp.Decimal64Utils;
 import deltix.ember.message.trade.MutableOrderNewRequest;
+import deltix.ember.message.trade.OrderNewEvent;
+import deltix.ember.message.trade.OrderTradeReportEvent;
 import deltix.ember.message.trade.Side;
 import deltix.ember.message.trade.TimeInForce;
 import deltix.ember.service.algorithm.AlgorithmContext;
@@ -29,12 +31,23 @@ public class TickToOrderAlgorithm extends SimpleAlgorithm {
     private boolean startSubmission;
     private final long destinationConnectorId;
     private final long destinationExchangeId;
+    private final TickToTradeLatencyTracker latencyTracker;
+    private long messageReceiveTimeNs; // local clock
+    private long messageTimeNs; // timestamp of market message, 0 if not set
 
-    TickToOrderAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, int inOutRatio, Duration submissionDelay, String destinationConnectorName, String destinationExchange) {
+    TickToOrderAlgorithm(AlgorithmContext context, OrdersCacheSettings cacheSettings, int inOutRatio, Duration submissionDelay, String destinationConnectorName, String destinationExchange, Duration latencyStatPeriod, int latencyTrackingCapacity) {
         super(context, cacheSettings);
         this.inOutRatio = inOutRatio;
         this.destinationConnectorId = AlphanumericCodec.encode(destinationConnectorName);
         this.destinationExchangeId = AlphanumericCodec.encode(destinationExchange);
+        this.latencyTracker = new TickToTradeLatencyTracker(
+                context.getName(), // prefix that will be used for telemetry counters
+                context.getClock(),
+                context.getCounterFactory(),
+                latencyStatPeriod,
+                Duration.ofMillis(50), // unreasonable max
+                latencyTrackingCapacity);
+        latencyTracker.schedule(getTimer());
 
         LOGGER.info("Tick to order algorithm will use in/out ratio %s").with(inOutRatio);
 
@@ -47,6 +60,8 @@ public class TickToOrderAlgorithm extends SimpleAlgorithm {
 
     @Override
     public void onMarketMessage(final InstrumentMessage message) {
+        messageReceiveTimeNs = currentTimeNs(); // submit, ack and fill times are taken from the same clock
+        messageTimeNs = message.getNanoTime();
         super.onMarketMessage(message);
         if (message instanceof PackageHeader) {
             onPackageHeader(((PackageHeader) message));
@@ -96,7 +111,23 @@ public class TickToOrderAlgorithm extends SimpleAlgorithm {
                 order.setQuoteId(quoteId); // Tick-to-Order Correlation ID
 
                 submit(order);
+                final long submitTimeNs = currentTimeNs();
+                latencyTracker.onSubmit(order.getOrderId(), messageReceiveTimeNs, submitTimeNs);
+                if (messageTimeNs > 0)
+                    latencyTracker.onMessageToOrder(messageTimeNs, submitTimeNs);
             }
         }
     }
+
+    @Override
+    public void onOrderNewEvent(OrderNewEvent event) {
+        latencyTracker.onAck(event.getOrderId(), currentTimeNs());
+        super.onOrderNewEvent(event);
+    }
+
+    @Override
+    public void onOrderTradeReportEvent(OrderTradeReportEvent event) {
+        latencyTracker.onFill(event.getOrderId(), currentTimeNs());
+        super.onOrderTradeReportEvent(event);
+    }
 }
@@ -12,6 +12,8 @@ public class TickToOrderAlgorithmFactory extends AbstractAlgorithmFactory {
     private Duration submissionDelay = Duration.ofSeconds(15);
     private String destinationConnector = "cfh";
     private String destinationExchange = "CANCEL";
+    private Duration latencyStatPeriod = Duration.ofSeconds(10);
+    private int latencyTrackingCapacity = 1024;
 
     public void setInOutRatio(int inOutRatio) {
         this.inOutRatio = inOutRatio;
@@ -29,8 +31,17 @@ public class TickToOrderAlgorithmFactory extends AbstractAlgorithmFactory {
         this.destinationExchange = destinationExchange;
     }
 
+    public void setLatencyStatPeriod(Duration latencyStatPeriod) {
+        this.latencyStatPeriod = latencyStatPeriod;
+    }
+
+    /** Number of recently submitted orders for which tick-to-ack and tick-to-fill latency is tracked */
+    public void setLatencyTrackingCapacity(int latencyTrackingCapacity) {
+        this.latencyTrackingCapacity = latencyTrackingCapacity;
+    }
+
     @Override
     public TickToOrderAlgorithm create(AlgorithmContext context) {
-        return new TickToOrderAlgorithm(context, getCacheSettings(), inOutRatio, submissionDelay, destinationConnector, destinationExchange);
+        return new TickToOrderAlgorithm(context, getCacheSettings(), inOutRatio, submissionDelay, destinationConnector, destinationExchange, latencyStatPeriod, latencyTrackingCapacity);
     }
 }
@@ -0,0 +1,159 @@
+package deltix.ember.samples.algorithm.t2o;
+
+import deltix.anvil.util.AsciiStringBuilder;
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.anvil.util.clock.EpochClock;
+import deltix.anvil.util.counter.CounterFactory;
+import deltix.anvil.util.timer.Timer;
+import deltix.ember.samples.algorithm.latency.MultiStageLatencyTracer;
+
+import java.time.Duration;
+
+/**
+ * Measures tick-to-trade path of {@link TickToOrderAlgorithm}: time between receipt of market message that triggered the order
+ * and order submission, order acknowledgement (OrderNewEvent) and first fill (OrderTradeReportEvent).
+ * All these times are taken from local clock of algorithm. Optional "MessageToOrder" stage measures time from market message
+ * timestamp (assigned upstream by exchange or market data connector, i.e. by another clock) to order submission.
+ * <p>
+ * Keeps a fixed ring of recently submitted orders indexed by hash of order ID (open addressing, no allocations).
+ * Events of orders that were pushed out of the ring are ignored.
+ * Stages are published as Ember telemetry counters "{id}TickToOrderLat*", "{id}TickToAckLat*", "{id}TickToFillLat*", "{id}MessageToOrderLat*".
+ */
+final class TickToTradeLatencyTracker {
+
+    private static final String TICK_TO_ORDER = "TickToOrder";
+    private static final String TICK_TO_ACK = "TickToAck";
+    private static final String TICK_TO_FILL = "TickToFill";
+    private static final String MESSAGE_TO_ORDER = "MessageToOrder";
+
+    private final MultiStageLatencyTracer tracer;
+    private final int tickToOrderStage;
+    private final int tickToAckStage;
+    private final int tickToFillStage;
+    private final int messageToOrderStage;
+
+    private final InFlightOrder[] orders;
+    private int lastIndex;
+
+    /** Hash table over ring: ring position + 1 (0 for empty cell), linear probing, load factor <= 0.5 */
+    private final int[] index;
+    private final int mask;
+
+    TickToTradeLatencyTracker(String id, EpochClock clock, CounterFactory counterFactory, Duration statPeriod, Duration maxExpectedLatency, int capacity) {
+        tracer = new MultiStageLatencyTracer(id, clock, counterFactory, statPeriod, maxExpectedLatency, 100, 10, TICK_TO_ORDER, TICK_TO_ACK, TICK_TO_FILL, MESSAGE_TO_ORDER);
+        tickToOrderStage = tracer.getStageIndex(TICK_TO_ORDER);
+        tickToAckStage = tracer.getStageIndex(TICK_TO_ACK);
+        tickToFillStage = tracer.getStageIndex(TICK_TO_FILL);
+        messageToOrderStage = tracer.getStageIndex(MESSAGE_TO_ORDER);
+
+        orders = new InFlightOrder[capacity];
+        for (int i = 0; i < capacity; i++)
+            orders[i] = new InFlightOrder();
+
+        index = new int[Integer.highestOneBit(capacity) << 2];
+        mask = index.length - 1;
+    }
+
+    void schedule(Timer timer) {
+        tracer.schedule(timer);
+    }
+
+    /** Called when order triggered by market message received at given time is submitted */
+    void onSubmit(CharSequence orderId, long tickReceiveTimeNs, long submitTimeNs) {
+        tracer.addRecord(tickToOrderStage, tickReceiveTimeNs, submitTimeNs);
+
+        lastIndex = (lastIndex + 1) % orders.length;
+        final InFlightOrder order = orders[lastIndex];
+        if (order.tracked)
+            remove(lastIndex); // oldest order is pushed out of the ring
+
+        order.orderId.clear().append(orderId);
+        order.hash = hash(orderId);
+        order.tickReceiveTimeNs = tickReceiveTimeNs;
+        order.acknowledged = false;
+        order.filled = false;
+        order.tracked = true;
+        insert(lastIndex);
+    }
+
+    /** Called when order is submitted for market message with given timestamp (clock of message source, may be skewed against local one) */
+    void onMessageToOrder(long messageTimeNs, long submitTimeNs) {
+        tracer.addRecord(messageToOrderStage, messageTimeNs, submitTimeNs);
+    }
+
+    /** @return true if events of given order are still tracked */
+    boolean isTracked(CharSequence orderId) {
+        return find(orderId) != null;
+    }
+
+    void onAck(CharSequence orderId, long timeNs) {
+        final InFlightOrder order = find(orderId);
+        if (order != null && !order.acknowledged) {
+            order.acknowledged = true;
+            tracer.addRecord(tickToAckStage, order.tickReceiveTimeNs, timeNs);
+        }
+    }
+
+    void onFill(CharSequence orderId, long timeNs) {
+        final InFlightOrder order = find(orderId);
+        if (order != null && !order.filled) {
+            order.filled = true;
+            tracer.addRecord(tickToFillStage, order.tickReceiveTimeNs, timeNs);
+        }
+    }
+
+    private InFlightOrder find(CharSequence orderId) {
+        final int hash = hash(orderId);
+        for (int cell = hash & mask; index[cell] != 0; cell = (cell + 1) & mask) {
+            final InFlightOrder order = orders[index[cell] - 1];
+            if (order.hash == hash && CharSequenceUtil.equals(order.orderId, orderId))
+                return order;
+        }
+        return null;
+    }
+
+    private void insert(int position) {
+        int cell = orders[position].hash & mask;
+        while (index[cell] != 0)
+            cell = (cell + 1) & mask;
+        index[cell] = position + 1;
+    }
+
+    /** Removes given ring position from the hash table shifting back cells of the same probe chain */
+    private void remove(int position) {
+        int cell = orders[position].hash & mask;
+        while (index[cell] != position + 1)
+            cell = (cell + 1) & mask;
+
+        int next = cell;
+        while (true) {
+            next = (next + 1) & mask;
+            if (index[next] == 0)
+                break;
+
+            final int home = orders[index[next] - 1].hash & mask;
+            final boolean movable = (cell <= next) ? (home <= cell || home > next) : (home <= cell && home > next);
+            if (movable) {
+                index[cell] = index[next];
+                cell = next;
+            }
+        }
+        index[cell] = 0;
+    }
+
+    private static int hash(CharSequence orderId) {
+        int hash = 0;
+        for (int i = 0, length = orderId.length(); i < length; i++)
+            hash = 31 * hash + orderId.charAt(i);
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class InFlightOrder {
+        final AsciiStringBuilder orderId = new AsciiStringBuilder();
+        int hash;
+        boolean tracked;
+        long tickReceiveTimeNs;
+        boolean acknowledged;
+        boolean filled;
+    }
+}
@@ -65,6 +65,49 @@ public class Test_ArbitrageAlgorithm extends SingleLegExecutionAlgoUnitTest<Arbi
         verifyNewOrderRequest("orderId:Child#2", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
     }
 
+    // Entry order sweeps all entry levels that are cheaper than the last exit trade
+    @Test
+    public void testEntryOrderSweepsProfitableLevels() {
+        simulateOrderBook(symbol, ENTRY_EXCHANGE,
+                "20 @ 1.82",
+                "30 @ 1.81",
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, EXIT_EXCHANGE, "1.815", "150");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:130", "limitPrice:1.81", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
+    }
+
+    // Last exit trade is not unlimited liquidity: entry size is limited by traded size
+    @Test
+    public void testEntryOrderLimitedByTradeSize() {
+        simulateOrderBook(symbol, ENTRY_EXCHANGE,
+                "30 @ 1.81",
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, EXIT_EXCHANGE, "1.815", "60");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:60", "limitPrice:1.8", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
+    }
+
+    // Trades of exchanges that are not exit exchange of any pair are ignored
+    @Test
+    public void testUninvolvedExchangeTradeIgnored() {
+        simulateOrderBook(symbol, ENTRY_EXCHANGE,
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, AlphanumericCodec.encode("OKEX"), "1.9", "100");
+        simulateMarketFeedTrade(symbol, ENTRY_EXCHANGE, "1.9", "100");
+        verifyNoMessagesFromAlgorithm();
+
+        simulateMarketFeedTrade(symbol, EXIT_EXCHANGE, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
+    }
+
     // When entry order is rejected algorithm goes back to monitoring
     @Test
     public void testEntryOrderReject() {
@@ -0,0 +1,123 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.service.algorithm.SingleLegExecutionAlgoUnitTest;
+import org.junit.Test;
+
+import java.time.Duration;
+
+public class Test_ConcurrentArbitrageLegs extends SingleLegExecutionAlgoUnitTest<ArbitrageAlgorithm> {
+
+    private static final long JUMP = AlphanumericCodec.encode("JUMP");
+    private static final long CME = AlphanumericCodec.encode("CME");
+
+    public Test_ConcurrentArbitrageLegs() {
+        super("BTCUSD", InstrumentType.FX);
+    }
+
+    @Override
+    protected ArbitrageAlgorithm createAlgorithm() {
+        ArbitrageAlgorithmFactory factory = new ArbitrageAlgorithmFactory();
+        factory.setEntryExchange(JUMP);
+        factory.setExitExchange(CME);
+        factory.setMaxLegs(2);
+        factory.setMaxExposure(150);
+
+        ArbitrageAlgorithm algorithm = factory.create(getAlgorithmContext());
+        defineFutureInstrument(symbol, algorithm);
+        return algorithm;
+    }
+
+    // New position is opened while previous one is exiting, limited by remaining exposure and by number of legs
+    @Test
+    public void testEntryWhileExiting() {
+        simulateOrderBook(symbol, JUMP,
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNoMessagesFromAlgorithm(); // entry order is still in flight
+
+        simulateTradeEvent("Child#1", "1.8", "100");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:100", "limitPrice:1.9", "side:SELL", "destinationId:CME", "timeInForce:GOOD_TILL_CANCEL");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#3", "quantity:50", "limitPrice:1.8", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
+
+        simulateTradeEvent("Child#3", "1.8", "50");
+        verifyNewOrderRequest("orderId:Child#4", "quantity:50", "limitPrice:1.9", "side:SELL", "destinationId:CME", "timeInForce:GOOD_TILL_CANCEL");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNoMessagesFromAlgorithm(); // all legs are busy
+
+        simulateTradeEvent("Child#2", "1.9", "100");
+        verifyNoMessagesFromAlgorithm();
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#5", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:JUMP", "timeInForce:IMMEDIATE_OR_CANCEL");
+    }
+
+    // Leg whose exit order was canceled is released, but its unhedged quantity still counts against exposure limit
+    @Test
+    public void testStrandedExposureAfterExitCanceled() {
+        simulateOrderBook(symbol, JUMP,
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:100", "limitPrice:1.8", "side:BUY");
+        simulateTradeEvent("Child#1", "1.8", "100");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:100", "limitPrice:1.9", "side:SELL");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#3", "quantity:50", "limitPrice:1.8", "side:BUY");
+        simulateTradeEvent("Child#3", "1.8", "50");
+        verifyNewOrderRequest("orderId:Child#4", "quantity:50", "limitPrice:1.9", "side:SELL");
+
+        simulateOrderCancelEvent("Child#2");
+        verifyNoMessagesFromAlgorithm();
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#5", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:JUMP");
+    }
+
+    // Each exiting leg chases exit exchange market on its own
+    @Test
+    public void testExitOrdersChaseMarket() {
+        simulateOrderBook(symbol, JUMP,
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:100", "limitPrice:1.8", "side:BUY");
+        simulateTradeEvent("Child#1", "1.8", "100");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:100", "limitPrice:1.9", "side:SELL");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.9", "100");
+        verifyNewOrderRequest("orderId:Child#3", "quantity:50", "limitPrice:1.8", "side:BUY");
+        simulateTradeEvent("Child#3", "1.8", "50");
+        verifyNewOrderRequest("orderId:Child#4", "quantity:50", "limitPrice:1.9", "side:SELL");
+
+        simulateTimeAdvance(Duration.ofMillis(200));
+        simulateOrderBook(symbol, CME,
+                "100 @ 1.85",
+                "---------------",
+                "100 @ 1.55");
+        verifyReplaceOrderRequest("orderId:Child#5", "originalOrderId:Child#2", "limitPrice:1.85", "quantity:100");
+        verifyReplaceOrderRequest("orderId:Child#6", "originalOrderId:Child#4", "limitPrice:1.85", "quantity:50");
+    }
+}
@@ -0,0 +1,87 @@
+package deltix.ember.samples.algorithm.arbitrage;
+
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.service.algorithm.SingleLegExecutionAlgoUnitTest;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class Test_MultiPairArbitrageAlgorithm extends SingleLegExecutionAlgoUnitTest<ArbitrageAlgorithm> {
+
+    private static final long JUMP = AlphanumericCodec.encode("JUMP");
+    private static final long OKEX = AlphanumericCodec.encode("OKEX");
+    private static final long CME = AlphanumericCodec.encode("CME");
+
+    public Test_MultiPairArbitrageAlgorithm() {
+        super("BTCUSD", InstrumentType.FX);
+    }
+
+    @Override
+    protected ArbitrageAlgorithm createAlgorithm() {
+        ArbitrageAlgorithmFactory factory = new ArbitrageAlgorithmFactory();
+        factory.setEntryExchange(JUMP);
+        factory.setExitExchange(CME);
+        factory.setExchangePairs(Collections.singletonList("OKEX:CME"));
+        factory.setExchangeFees(Arrays.asList("JUMP:0.01", "CME:0.001"));
+        factory.setMaxEntrySize(150);
+
+        ArbitrageAlgorithm algorithm = factory.create(getAlgorithmContext());
+        defineFutureInstrument(symbol, algorithm);
+        return algorithm;
+    }
+
+    // JUMP is cheaper but its fee makes OKEX the better entry exchange
+    @Test
+    public void testFeesSelectEntryExchange() {
+        simulateOrderBook(symbol, JUMP,
+                "100 @ 1.79",
+                "---------------",
+                "100 @ 1.5");
+        simulateOrderBook(symbol, OKEX,
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.82", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:OKEX");
+    }
+
+    // Exit exchange bids above the last trade are consumed first, entry size is limited by maxEntrySize
+    @Test
+    public void testEntrySizeLimit() {
+        simulateOrderBook(symbol, OKEX,
+                "100 @ 1.81",
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateOrderBook(symbol, CME,
+                "100 @ 1.95",
+                "---------------",
+                "50 @ 1.9");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.85", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:150", "limitPrice:1.81", "side:BUY", "destinationId:OKEX");
+    }
+
+    // Exit order goes to exit exchange of the pair that was entered
+    @Test
+    public void testExitOnPairExchange() {
+        simulateOrderBook(symbol, OKEX,
+                "100 @ 1.8",
+                "---------------",
+                "100 @ 1.5");
+        simulateOrderBook(symbol, CME,
+                "100 @ 1.86",
+                "---------------",
+                "100 @ 1.55");
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateMarketFeedTrade(symbol, CME, "1.85", "100");
+        verifyNewOrderRequest("orderId:Child#1", "quantity:100", "limitPrice:1.8", "side:BUY", "destinationId:OKEX");
+
+        simulateTradeEvent("Child#1", "1.8", "100");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:100", "limitPrice:1.86", "side:SELL", "destinationId:CME");
+    }
+}
@@ -0,0 +1,51 @@
+package deltix.ember.samples.algorithm.bollinger;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.AsciiStringBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_BollingerBandPipeline {
+
+    private final BollingerBandPipeline pipeline = createPipeline();
+
+    private static BollingerBandPipeline createPipeline() {
+        BollingerBandSettings settings = new BollingerBandSettings();
+        settings.setNumPeriods(10);
+        return new BollingerBandPipeline(settings);
+    }
+
+    @Test
+    public void signalReasonAndPosition() {
+        for (int i = 0; i < 10; i++)
+            assertTrue(Decimal64Utils.isZero(trade(i, 2.0)));
+
+        final long buySize = trade(10, 1.0);
+        assertEquals(3000, Decimal64Utils.toDouble(buySize), 0);
+        assertTrue(reason().startsWith("Below "));
+
+        pipeline.onOrderSent(buySize);
+        assertTrue(Decimal64Utils.isZero(trade(11, 2.0))); // order is still pending
+
+        assertFalse(pipeline.isPositionChanged());
+        pipeline.onOrderTrade(true, buySize, Decimal64Utils.fromLong(1));
+        pipeline.onOrderFinal();
+        assertTrue(pipeline.isPositionChanged());
+        pipeline.clearPositionChanged();
+        assertFalse(pipeline.isPositionChanged());
+
+        assertEquals(-3000, Decimal64Utils.toDouble(trade(12, 2.0)), 0);
+        assertTrue(reason().startsWith("Profit Taking: 100"));
+    }
+
+    private long trade(long time, double price) {
+        return pipeline.onMarketTrade(time, Decimal64Utils.fromDouble(price), Decimal64Utils.fromLong(3));
+    }
+
+    private String reason() {
+        return pipeline.appendReason(new AsciiStringBuilder(64)).toString();
+    }
+}
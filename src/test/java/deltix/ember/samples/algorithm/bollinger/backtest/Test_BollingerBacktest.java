@@ -0,0 +1,109 @@
+package deltix.ember.samples.algorithm.bollinger.backtest;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class Test_BollingerBacktest {
+
+    @Test
+    public void profitTaking() {
+        final TradeHistory.Builder builder = new TradeHistory.Builder(16);
+        for (int i = 0; i < 10; i++)
+            trade(builder, i, 2.0);
+        trade(builder, 10, 1.0); // below the band: BUY 3000 @ 1
+        trade(builder, 11, 2.0); // +100%: SELL 3000 @ 2
+
+        final BollingerBandSettings settings = new BollingerBandSettings();
+        settings.setNumPeriods(10);
+        final BacktestResult result = new BollingerBacktest(builder.build()).run(settings);
+
+        assertEquals(2, result.getOrderCount());
+        assertEquals(0, Decimal64Utils.toDouble(result.getFinalPosition()), 0);
+        assertEquals(3000, Decimal64Utils.toDouble(result.getProfitAndLoss()), 1e-9);
+    }
+
+    @Test
+    public void parallelSweepMatchesSequentialRuns() throws IOException {
+        final TradeHistory.Builder builder = new TradeHistory.Builder(16);
+        final Random random = new Random(7);
+        double price = 100;
+        for (int i = 0; i < 5000; i++) {
+            price = Math.max(1, price + (random.nextInt(201) - 100) / 100.0);
+            trade(builder, i, price);
+        }
+
+        final Path file = Files.createTempFile("trades", ".bin");
+        try {
+            builder.build().write(file);
+            final TradeHistory history = TradeHistory.map(file);
+            assertEquals(5000, history.size());
+
+            final List<BollingerBandSettings> combinations = BollingerBacktest.combine(new BollingerBandSettings(),
+                    new int[]{20, 50}, new double[]{1.5, 2, 2.5}, new double[]{1, 5}, new double[]{1, 5});
+            assertEquals(24, combinations.size());
+
+            final BollingerBacktest backtest = new BollingerBacktest(history);
+            final ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                final BacktestResult[] results = backtest.run(combinations, pool);
+                for (int i = 0; i < results.length; i++) {
+                    final BacktestResult expected = backtest.run(combinations.get(i));
+                    assertEquals(combinations.get(i), results[i].getSettings());
+                    assertEquals(expected.getOrderCount(), results[i].getOrderCount());
+                    assertEquals(expected.getProfitAndLoss(), results[i].getProfitAndLoss());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void writerStreamsHistoryIntoMappedFile() throws IOException {
+        final TradeHistory.Builder builder = new TradeHistory.Builder(16);
+        final Path file = Files.createTempFile("trades", ".bin");
+        try {
+            try (TradeHistory.Writer writer = new TradeHistory.Writer(file)) {
+                for (int i = 0; i < 20000; i++) { // spans several write buffers
+                    final long price = Decimal64Utils.fromDouble(100 + i % 7);
+                    final long size = Decimal64Utils.fromLong(1 + i % 3);
+                    builder.add(i, price, size);
+                    writer.add(i, price, size);
+                }
+                final TradeHistory history = writer.finish();
+                assertEquals(20000, history.size());
+                assertHistoryEquals(builder.build(), history);
+            }
+            assertHistoryEquals(builder.build(), TradeHistory.map(file));
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".prices")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertHistoryEquals(TradeHistory expected, TradeHistory actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTime(i), actual.getTime(i));
+            assertEquals(expected.getPrice(i), actual.getPrice(i));
+            assertEquals(expected.getSize(i), actual.getSize(i));
+        }
+    }
+
+    private static void trade(TradeHistory.Builder builder, long time, double price) {
+        builder.add(time, Decimal64Utils.fromDouble(price), Decimal64Utils.fromLong(3));
+    }
+}
@@ -0,0 +1,47 @@
+package deltix.ember.samples.algorithm.bollinger.v2;
+
+import deltix.ember.samples.algorithm.bollinger.BollingerBandSettings;
+import deltix.ember.service.algorithm.SingleLegExecutionAlgoUnitTest;
+import org.junit.Test;
+
+public class Test_BollingerBandAlgorithm extends SingleLegExecutionAlgoUnitTest<BollingerBandAlgorithm> {
+
+    private static final int NUM_PERIODS = 10;
+
+    @Override
+    protected BollingerBandAlgorithm createAlgorithm() {
+        BollingerBandSettings settings = new BollingerBandSettings();
+        settings.setNumPeriods(NUM_PERIODS);
+
+        BollingerBandAlgorithm algorithm = new BollingerBandAlgorithm(getAlgorithmContext(), settings);
+        defineFutureInstrument(symbol, algorithm);
+        return algorithm;
+    }
+
+    /** Rejected order no longer blocks the next signal */
+    @Test
+    public void testSignalAfterReject() {
+        triggerBuySignal();
+        simulateOrderRejectEvent("Child#1");
+
+        simulateMarketFeedTrade(0.5, 3);
+        verifyNewOrderRequest("orderId:Child#2", "limitPrice:0.5", "side:BUY");
+    }
+
+    /** Canceled order no longer blocks the next signal */
+    @Test
+    public void testSignalAfterCancel() {
+        triggerBuySignal();
+        simulateOrderCancelEvent("Child#1");
+
+        simulateMarketFeedTrade(0.5, 3);
+        verifyNewOrderRequest("orderId:Child#2", "limitPrice:0.5", "side:BUY");
+    }
+
+    private void triggerBuySignal() {
+        for (int i = 0; i < NUM_PERIODS; i++)
+            simulateMarketFeedTrade(2.0, 3);
+        simulateMarketFeedTrade(1.0, 3);
+        verifyNewOrderRequest("orderId:Child#1", "quantity:3000", "limitPrice:1", "side:BUY");
+    }
+}
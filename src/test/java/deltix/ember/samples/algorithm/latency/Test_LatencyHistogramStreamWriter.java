@@ -0,0 +1,38 @@
+package deltix.ember.samples.algorithm.latency;
+
+import deltix.util.collections.generated.ByteArrayList;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class Test_LatencyHistogramStreamWriter {
+
+    @Test
+    public void encodedHistogramIsDecoded() throws DataFormatException {
+        Histogram histogram = new Histogram(50_000_000, 3);
+        for (int i = 1; i <= 10_000; i++)
+            histogram.recordValue(i * 1000L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        ByteArrayList encoded = new ByteArrayList();
+        encoded.add((byte) 42); // previous content is replaced
+        ByteBuffer grown = LatencyHistogramStreamWriter.encode(histogram, buffer, encoded);
+        assertNotSame(buffer, grown);
+        assertSame(grown, LatencyHistogramStreamWriter.encode(histogram, grown, encoded)); // reused
+
+        byte[] bytes = new byte[encoded.size()];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = encoded.getByte(i);
+
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+        assertEquals(histogram.getTotalCount(), decoded.getTotalCount());
+        assertEquals(histogram.getValueAtPercentile(50), decoded.getValueAtPercentile(50));
+        assertEquals(histogram.getMaxValue(), decoded.getMaxValue());
+    }
+}
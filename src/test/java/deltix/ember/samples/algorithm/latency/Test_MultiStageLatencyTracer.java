@@ -0,0 +1,80 @@
+package deltix.ember.samples.algorithm.latency;
+
+import deltix.anvil.util.clock.EpochClock;
+import deltix.anvil.util.counter.CounterFactory;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+
+public class Test_MultiStageLatencyTracer {
+
+    private final MultiStageLatencyTracer tracer = new MultiStageLatencyTracer("test", mock(EpochClock.class), mock(CounterFactory.class, RETURNS_MOCKS),
+            Duration.ofSeconds(1), Duration.ofMillis(1), 10, 0, "TickIn", "Decision", "Submit");
+
+    @Test
+    public void stagesAreIndexedInDeclarationOrder() {
+        assertEquals(3, tracer.getStageCount());
+        assertEquals(0, tracer.getStageIndex("TickIn"));
+        assertEquals(1, tracer.getStageIndex("Decision"));
+        assertEquals(2, tracer.getStageIndex("Submit"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStage() {
+        tracer.getStageIndex("Fill");
+    }
+
+    @Test
+    public void eachStageHasOwnHistogram() {
+        final int tickIn = tracer.getStageIndex("TickIn");
+        final int decision = tracer.getStageIndex("Decision");
+        for (int i = 1; i <= 100; i++) {
+            tracer.addRecord(tickIn, 1000, 1000 + i * 10); // 10..1000 ns
+            tracer.addRecord(decision, 1000, 1000 + 50_000);
+        }
+        tracer.publishStats(1);
+
+        Histogram tickInHistogram = tracer.getPublishedHistogram(tickIn);
+        assertEquals(100, tickInHistogram.getTotalCount());
+        assertEquals(500, tickInHistogram.getValueAtPercentile(50), 1);
+        assertEquals(1000, tickInHistogram.getMaxValue(), 1);
+
+        Histogram decisionHistogram = tracer.getPublishedHistogram(decision);
+        assertEquals(100, decisionHistogram.getTotalCount());
+        assertEquals(50_000, decisionHistogram.getValueAtPercentile(50), 50);
+
+        assertEquals(0, tracer.getPublishedHistogram(tracer.getStageIndex("Submit")).getTotalCount());
+    }
+
+    @Test
+    public void publicationStartsNewInterval() {
+        final int submit = tracer.getStageIndex("Submit");
+        tracer.addRecord(submit, 0, 100);
+        tracer.publishStats(1);
+        assertEquals(1, tracer.getPublishedHistogram(submit).getTotalCount());
+
+        tracer.addRecord(submit, 0, 200);
+        tracer.addRecord(submit, 0, 300);
+        tracer.publishStats(2);
+        assertEquals(2, tracer.getPublishedHistogram(submit).getTotalCount()); // previous interval is not included
+        assertEquals(200, tracer.getPublishedHistogram(submit).getMinValue());
+    }
+
+    @Test
+    public void stageOutOfOrderIsError() {
+        final int decision = tracer.getStageIndex("Decision");
+        tracer.addRecord(decision, 2000, 1000); // stage signal precedes its origin
+        tracer.addRecord(decision, 0, 5_000_000); // exceeds max expected latency: clamped
+        tracer.publishStats(1);
+
+        assertEquals(2, tracer.getErrorCount(decision));
+        Histogram histogram = tracer.getPublishedHistogram(decision);
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(1_000_000, histogram.getMaxValue(), 1000);
+    }
+}
@@ -0,0 +1,59 @@
+package deltix.ember.samples.algorithm.latency;
+
+import deltix.anvil.util.clock.EpochClock;
+import deltix.anvil.util.counter.CounterFactory;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+
+public class Test_SimpleLatencyTracer {
+
+    private static final long MAX_LATENCY_NS = 1_000_000;
+
+    private static SimpleLatencyTracer create(Duration expectedInterval) {
+        return new SimpleLatencyTracer("test", mock(EpochClock.class), mock(CounterFactory.class, RETURNS_MOCKS),
+                Duration.ofSeconds(1), Duration.ofNanos(MAX_LATENCY_NS), expectedInterval, 0, 0);
+    }
+
+    @Test
+    public void singleSamplePerEventWithoutExpectedInterval() {
+        SimpleLatencyTracer tracer = create(Duration.ZERO);
+        tracer.addRecord(0, 5_000_000);
+        tracer.addRecord(0, 100_000);
+
+        Histogram histogram = tracer.getHistogram();
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(1, tracer.getClampedCount());
+        assertEquals(MAX_LATENCY_NS, histogram.getMaxValue(), MAX_LATENCY_NS / 1000);
+    }
+
+    @Test
+    public void correctionUsesUnclampedLatency() {
+        SimpleLatencyTracer tracer = create(Duration.ofNanos(100_000));
+        tracer.addRecord(0, 5_000_000); // 5 ms stall: 50 samples of 5.0, 4.9 ... 0.1 ms
+
+        Histogram histogram = tracer.getHistogram();
+        assertEquals(50, histogram.getTotalCount());
+        assertEquals(40, tracer.getClampedCount()); // 5.0 .. 1.1 ms
+        assertEquals(41, histogram.getCountAtValue(MAX_LATENCY_NS)); // and genuine 1.0 ms sample
+        assertEquals(MAX_LATENCY_NS, histogram.getValueAtPercentile(50), MAX_LATENCY_NS / 1000);
+        assertEquals(100_000, histogram.getMinValue(), 100);
+    }
+
+    @Test
+    public void correctionBelowMaximum() {
+        SimpleLatencyTracer tracer = create(Duration.ofNanos(100_000));
+        tracer.addRecord(0, 450_000); // 450, 350, 250, 150 us
+
+        Histogram histogram = tracer.getHistogram();
+        assertEquals(4, histogram.getTotalCount());
+        assertEquals(0, tracer.getClampedCount());
+        assertEquals(150_000, histogram.getMinValue(), 150);
+        assertEquals(450_000, histogram.getMaxValue(), 450);
+    }
+}
@@ -0,0 +1,10 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+/** Runs market maker scenarios with incremental base price computation enabled: results must be identical */
+public class Test_IncrementalMarketMakerAlgorithm extends Test_MarketMakerAlgorithm {
+
+    @Override
+    protected void configure(MarketMakerAlgorithmFactory factory) {
+        factory.setIncrementalPricing(true);
+    }
+}
@@ -47,12 +47,17 @@ public class Test_MarketMakerAlgorithm extends SingleLegExecutionAlgoUnitTest<Ma
         factory.setMaxShortExposure(MAX_SHORT_EXPOSURE);
 
         factory.setRateLimit(RATE_LIMIT);
+        configure(factory);
 
         MarketMakerAlgorithm algorithm = factory.create(getAlgorithmContext());
         defineFutureInstrument(symbol, algorithm);
         return algorithm;
     }
 
+    /** Allows subclasses to run the same scenarios with different algorithm modes */
+    protected void configure(MarketMakerAlgorithmFactory factory) {
+    }
+
     // Verify that algorithm does not process inbound orders
     @Test
     public void testOrderRequestRejected() {
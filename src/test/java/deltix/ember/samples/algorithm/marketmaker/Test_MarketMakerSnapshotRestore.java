@@ -0,0 +1,130 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.algorithm.v2.order.OutboundOrder;
+import deltix.ember.service.data.OrderState;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Re-adoption of quoting orders that survived restart (see {@link MarketMakerHandler#onLeaderState}) */
+public class Test_MarketMakerSnapshotRestore {
+
+    private static final String SYMBOL = "BTCUSD";
+
+    @Test
+    public void adoptedSnapshotStillRequestsPosition() throws Exception {
+        File file = Files.createTempFile("quotes", ".snapshot").toFile();
+        file.deleteOnExit();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) { // previous run
+            MarketMakerStateStore.Snapshot snapshot = store.open(SYMBOL);
+            snapshot.reset();
+            snapshot.setLayer(Side.BUY, 0, "Q-1", Decimal64Utils.parse("99.5"));
+            snapshot.setLayer(Side.SELL, 0, "Q-2", Decimal64Utils.parse("100.5"));
+            snapshot.setPosition(Decimal64Utils.fromLong(7), Decimal64Utils.parse("99.8"), Decimal64Utils.ZERO);
+        }
+
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerContext context = createContext(store);
+            MarketMakerHandler handler = new MarketMakerHandler(SYMBOL, InstrumentType.FX, context, LogFactory.getLog(Test_MarketMakerSnapshotRestore.class));
+
+            OutboundOrder bid = createQuotingOrder("Q-1", Side.BUY, "1", "99.5");
+            OutboundOrder ask = createQuotingOrder("Q-2", Side.SELL, "1", "100.5");
+            handler.onLeaderState(bid);
+            handler.onLeaderState(ask);
+
+            verify(context, never()).cancelOrder(bid);
+            verify(context, never()).cancelOrder(ask);
+            verify(context, times(1)).submitPositionRequest(); // nothing to cancel, but position may have changed after snapshot
+        }
+    }
+
+    @Test
+    public void orderMissingFromSnapshotIsCanceled() throws Exception {
+        File file = Files.createTempFile("quotes", ".snapshot").toFile();
+        file.deleteOnExit();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot snapshot = store.open(SYMBOL);
+            snapshot.reset();
+            snapshot.setLayer(Side.BUY, 0, "Q-1", Decimal64Utils.parse("99.5"));
+        }
+
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerContext context = createContext(store);
+            MarketMakerHandler handler = new MarketMakerHandler(SYMBOL, InstrumentType.FX, context, LogFactory.getLog(Test_MarketMakerSnapshotRestore.class));
+
+            OutboundOrder unknown = createQuotingOrder("Q-9", Side.BUY, "1", "99.5");
+            handler.onLeaderState(unknown);
+
+            verify(context).cancelOrder(unknown);
+            verify(context, never()).submitPositionRequest(); // requested once cancel is confirmed
+        }
+    }
+
+    @Test
+    public void positionIsRequestedOnceWhenAdoptedAndCanceledOrdersMix() throws Exception {
+        File file = Files.createTempFile("quotes", ".snapshot").toFile();
+        file.deleteOnExit();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot snapshot = store.open(SYMBOL);
+            snapshot.reset();
+            snapshot.setLayer(Side.BUY, 0, "Q-1", Decimal64Utils.parse("99.5"));
+        }
+
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerContext context = createContext(store);
+            MarketMakerHandler handler = new MarketMakerHandler(SYMBOL, InstrumentType.FX, context, LogFactory.getLog(Test_MarketMakerSnapshotRestore.class));
+
+            OutboundOrder unknown = createQuotingOrder("Q-9", Side.SELL, "1", "100.5");
+            handler.onLeaderState(createQuotingOrder("Q-1", Side.BUY, "1", "99.5"));
+            handler.onLeaderState(unknown);
+            when(unknown.getState()).thenReturn(OrderState.CANCELED);
+            handler.onCanceled(unknown, null);
+
+            verify(context, times(1)).submitPositionRequest(); // adopted order requested it, cancel confirmation does not repeat
+        }
+    }
+
+    private static MarketMakerContext createContext(MarketMakerStateStore store) {
+        MarketMakerSettings settings = new MarketMakerSettings();
+        settings.setExchange(AlphanumericCodec.encode("JUMP"));
+        settings.setSourceExchange(AlphanumericCodec.encode("CME"));
+        settings.setBuyQuoteSizes(new double[]{1, 2});
+        settings.setSellQuoteSizes(new double[]{1, 2});
+        settings.setBuyMargins(new double[]{5, 10});
+        settings.setSellMargins(new double[]{5, 10});
+        settings.setMaxLongExposure(100);
+        settings.setMaxShortExposure(100);
+
+        MarketMakerContext context = mock(MarketMakerContext.class);
+        when(context.getSettings()).thenReturn(settings);
+        when(context.getRiskAggregator()).thenReturn(new PortfolioRiskAggregator(0, 0, false));
+        when(context.getStateStore()).thenReturn(store);
+        when(context.isLeaderNode()).thenReturn(true);
+        when(context.isIteratingActiveOrders()).thenReturn(true);
+        return context;
+    }
+
+    private static OutboundOrder createQuotingOrder(String orderId, Side side, String quantity, String price) {
+        OutboundOrder order = mock(OutboundOrder.class, RETURNS_DEEP_STUBS);
+        when(order.getOrderId()).thenReturn(orderId);
+        when(order.getSide()).thenReturn(side);
+        when(order.getUserData()).thenReturn(MarketMakerAlgorithm.QUOTER_USER_DATA);
+        when(order.getWorkingQuantity()).thenReturn(Decimal64Utils.parse(quantity));
+        when(order.getTotalExecutedQuantity()).thenReturn(Decimal64Utils.ZERO);
+        when(order.getWorkingOrder().getLimitPrice()).thenReturn(Decimal64Utils.parse(price));
+        return order;
+    }
+}
@@ -0,0 +1,104 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.Side;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class Test_MarketMakerStateStore {
+
+    @Test
+    public void ladderAndPositionSurviveRestart() throws Exception {
+        File file = createTempFile();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot btc = store.open("BTCUSD");
+            assertFalse(btc.isValid());
+            btc.reset();
+            btc.setLayer(Side.BUY, 0, "MM-1", Decimal64Utils.parse("99.9"));
+            btc.setLayer(Side.SELL, 1, "MM-2", Decimal64Utils.parse("100.2"));
+            btc.setLayerPrice(Side.SELL, 1, Decimal64Utils.parse("100.3"));
+            btc.setPosition(Decimal64Utils.fromLong(3), Decimal64Utils.parse("99.5"), Decimal64Utils.parse("1.25"));
+
+            store.open("ETHUSD").reset();
+        }
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot btc = store.open("BTCUSD");
+            assertTrue(btc.isValid());
+            assertEquals(0, btc.findLayer(Side.BUY, "MM-1"));
+            assertEquals(1, btc.findLayer(Side.SELL, "MM-2"));
+            assertEquals(-1, btc.findLayer(Side.SELL, "MM-1"));
+            assertEquals(Decimal64Utils.fromLong(3), btc.getPosition());
+            assertTrue(Decimal64Utils.isEqual(Decimal64Utils.parse("1.25"), btc.getRealizedPnL()));
+
+            btc.clearLayer(Side.BUY, 0);
+            assertEquals(-1, btc.findLayer(Side.BUY, "MM-1"));
+            assertTrue(store.open("ETHUSD").isValid());
+        }
+    }
+
+    @Test
+    public void reconfiguredLadderDiscardsSnapshot() throws Exception {
+        File file = createTempFile();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot snapshot = store.open("BTCUSD");
+            snapshot.reset();
+            snapshot.setLayer(Side.BUY, 0, "MM-1", Decimal64Utils.parse("99.9"));
+        }
+        long length = file.length();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 3, 4)) {
+            assertFalse(store.open("BTCUSD").isValid());
+        }
+        File backup = new File(file.getPath() + ".bak");
+        backup.deleteOnExit();
+        assertEquals(length, backup.length()); // previous content is kept
+        try (MarketMakerStateStore store = new MarketMakerStateStore(backup, 2, 4)) {
+            assertEquals(0, store.open("BTCUSD").findLayer(Side.BUY, "MM-1"));
+        }
+    }
+
+    @Test
+    public void tornSlotIsIgnored() throws Exception {
+        File file = createTempFile();
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot snapshot = store.open("BTCUSD");
+            snapshot.reset();
+            snapshot.setLayer(Side.BUY, 0, "MM-1", Decimal64Utils.parse("99.9"));
+            assertTrue(snapshot.isValid());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(64 + 32); // sequence of the first slot (right after the header)
+            raf.writeLong(3); // odd: process died in the middle of update
+        }
+        try (MarketMakerStateStore store = new MarketMakerStateStore(file, 2, 4)) {
+            MarketMakerStateStore.Snapshot snapshot = store.open("BTCUSD");
+            assertFalse(snapshot.isValid());
+            snapshot.reset(); // handler starts from scratch
+            assertTrue(snapshot.isValid());
+            assertEquals(-1, snapshot.findLayer(Side.BUY, "MM-1"));
+        }
+    }
+
+    @Test
+    public void fullStore() throws Exception {
+        try (MarketMakerStateStore store = new MarketMakerStateStore(createTempFile(), 1, 1)) {
+            store.open("BTCUSD");
+            assertNull(store.open("ETHUSD"));
+            assertNull(store.open("SYMBOL-THAT-DOES-NOT-FIT-INTO-SLOT"));
+        }
+    }
+
+    private static File createTempFile() throws IOException {
+        File result = Files.createTempFile("quotes", ".snapshot").toFile();
+        result.deleteOnExit();
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.algorithm.v2.order.OutboundOrder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class Test_OrderRoleRegistry {
+
+    private final OrderRoleRegistry registry = new OrderRoleRegistry(2, 3, 1); // 2 BUY layers, 3 SELL layers, 1 hedging order
+
+    @Test
+    public void layerSlots() {
+        OutboundOrder buy1 = new OutboundOrder();
+        OutboundOrder sell2 = new OutboundOrder();
+        registry.setLayer(Side.BUY, 1, buy1);
+        registry.setLayer(Side.SELL, 2, sell2);
+
+        assertEquals(1, registry.indexOf(buy1));
+        assertEquals(4, registry.indexOf(sell2));
+        assertEquals(1, registry.getLayer(registry.indexOf(buy1)));
+        assertEquals(2, registry.getLayer(registry.indexOf(sell2)));
+        assertEquals(OrderRoleRegistry.QUOTER, registry.getRole(sell2));
+
+        assertEquals(OrderRoleRegistry.QUOTER, registry.remove(registry.indexOf(sell2)));
+        assertEquals(-1, registry.indexOf(sell2));
+        assertEquals(OrderRoleRegistry.UNKNOWN, registry.getRole(sell2));
+        assertSame(buy1, registry.getOrder(1)); // other slots are not shifted
+    }
+
+    @Test
+    public void hedgingOrdersUseOtherSlots() {
+        assertNull(registry.first(OrderRoleRegistry.HEDGER));
+
+        OutboundOrder hedger1 = new OutboundOrder();
+        OutboundOrder hedger2 = new OutboundOrder();
+        OutboundOrder leftover = new OutboundOrder();
+        registry.add(hedger1, OrderRoleRegistry.HEDGER);
+        registry.add(hedger2, OrderRoleRegistry.HEDGER); // grows beyond expected capacity
+        registry.add(leftover, OrderRoleRegistry.QUOTER); // quoting order of previous run that is being canceled
+
+        assertEquals(2, registry.getHedgerCount());
+        assertEquals(5, registry.indexOf(hedger1));
+        assertEquals(-1, registry.getLayer(registry.indexOf(leftover)));
+        assertSame(hedger1, registry.first(OrderRoleRegistry.HEDGER));
+
+        assertEquals(OrderRoleRegistry.HEDGER, registry.remove(registry.indexOf(hedger1)));
+        assertEquals(1, registry.getHedgerCount());
+        assertSame(hedger2, registry.first(OrderRoleRegistry.HEDGER));
+
+        OutboundOrder hedger3 = new OutboundOrder();
+        registry.add(hedger3, OrderRoleRegistry.HEDGER);
+        assertEquals(5, registry.indexOf(hedger3)); // free slot is reused
+
+        assertEquals(OrderRoleRegistry.UNKNOWN, registry.remove(-1));
+        assertEquals(2, registry.getHedgerCount());
+    }
+
+    @Test
+    public void rolesOfOrdersSentBeforeRestart() {
+        assertEquals(OrderRoleRegistry.HEDGER, OrderRoleRegistry.fromUserData(MarketMakerAlgorithm.HEDGER_USER_DATA));
+        assertEquals(OrderRoleRegistry.QUOTER, OrderRoleRegistry.fromUserData(MarketMakerAlgorithm.QUOTER_USER_DATA));
+        assertEquals(OrderRoleRegistry.UNKNOWN, OrderRoleRegistry.fromUserData(null));
+    }
+}
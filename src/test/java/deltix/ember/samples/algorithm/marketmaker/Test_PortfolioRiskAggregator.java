@@ -0,0 +1,70 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.Side;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_PortfolioRiskAggregator {
+
+    private static final long PRICE = Decimal64Utils.fromLong(100);
+
+    @Test
+    public void openOrdersOfOtherInstrumentsCountAgainstNetLimit() {
+        PortfolioRiskAggregator aggregator = new PortfolioRiskAggregator(10, 0, false);
+
+        long openBuyA = aggregator.updateOpen(Side.BUY, Decimal64Utils.ZERO, qty(8), PRICE); // instrument A quotes 8 on bid
+        assertEquals(8, Decimal64Utils.toDouble(aggregator.getOpenBuyExposure()), 0);
+
+        assertTrue(aggregator.canIncrease(Decimal64Utils.ZERO, Decimal64Utils.ZERO, Side.BUY, qty(2), PRICE)); // B: 8 + 2 is within limit
+        assertFalse(aggregator.canIncrease(Decimal64Utils.ZERO, Decimal64Utils.ZERO, Side.BUY, qty(3), PRICE)); // B: 8 + 3 is over limit
+        assertTrue(aggregator.canIncrease(Decimal64Utils.ZERO, Decimal64Utils.ZERO, Side.SELL, qty(10), PRICE)); // resting bids do not limit offers
+
+        aggregator.updateOpen(Side.BUY, openBuyA, Decimal64Utils.ZERO, PRICE); // A canceled its bid
+        assertTrue(aggregator.canIncrease(Decimal64Utils.ZERO, Decimal64Utils.ZERO, Side.BUY, qty(10), PRICE));
+    }
+
+    @Test
+    public void openOrdersCountAgainstGrossLimit() {
+        PortfolioRiskAggregator aggregator = new PortfolioRiskAggregator(0, 20, false);
+
+        long positionA = aggregator.update(Decimal64Utils.ZERO, qty(5), PRICE);
+        aggregator.updateOpen(Side.SELL, Decimal64Utils.ZERO, qty(10), PRICE); // instrument B quotes 10 on offer
+        long openBuyA = aggregator.updateOpen(Side.BUY, Decimal64Utils.ZERO, qty(3), PRICE);
+
+        assertTrue(aggregator.canIncrease(positionA, openBuyA, Side.BUY, qty(2), PRICE)); // 5 + 10 + 3 + 2
+        assertFalse(aggregator.canIncrease(positionA, openBuyA, Side.BUY, qty(3), PRICE));
+        assertTrue(aggregator.canIncrease(positionA, Decimal64Utils.ZERO, Side.SELL, qty(5), PRICE)); // reduces position of A
+    }
+
+    @Test
+    public void fillMovesExposureFromOpenOrdersToPosition() {
+        PortfolioRiskAggregator aggregator = new PortfolioRiskAggregator(10, 0, true);
+
+        long openBuy = aggregator.updateOpen(Side.BUY, Decimal64Utils.ZERO, qty(0.05), PRICE); // notional 5
+        aggregator.updateOpen(Side.BUY, openBuy, qty(0.02), PRICE);
+        aggregator.update(Decimal64Utils.ZERO, qty(0.03), PRICE);
+
+        assertEquals(3, Decimal64Utils.toDouble(aggregator.getNetExposure()), 1e-9);
+        assertEquals(2, Decimal64Utils.toDouble(aggregator.getOpenBuyExposure()), 1e-9);
+        assertTrue(aggregator.canIncrease(Decimal64Utils.ZERO, Decimal64Utils.ZERO, Side.BUY, qty(0.05), PRICE));
+        assertFalse(aggregator.canIncrease(Decimal64Utils.ZERO, Decimal64Utils.ZERO, Side.BUY, qty(0.06), PRICE));
+    }
+
+    @Test
+    public void replaceCountsOnlyPriceChangeOfOpenOrder() {
+        PortfolioRiskAggregator aggregator = new PortfolioRiskAggregator(1000, 0, true);
+        long openSell = aggregator.updateOpen(Side.SELL, Decimal64Utils.ZERO, qty(9), PRICE); // notional 900 at mark price
+
+        assertTrue(aggregator.canReplace(Decimal64Utils.ZERO, openSell, Side.SELL, qty(9), qty(110), PRICE)); // 990
+        assertFalse(aggregator.canReplace(Decimal64Utils.ZERO, openSell, Side.SELL, qty(9), qty(112), PRICE)); // 1008
+        assertFalse(aggregator.canIncrease(Decimal64Utils.ZERO, openSell, Side.SELL, qty(9), qty(110))); // as new order it would double count
+    }
+
+    private static long qty(double value) {
+        return Decimal64Utils.fromDouble(value);
+    }
+}
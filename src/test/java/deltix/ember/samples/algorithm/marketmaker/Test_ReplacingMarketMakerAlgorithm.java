@@ -0,0 +1,72 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+/** Runs market maker scenarios with replace-based re-quoting: quote layers are moved without leaving the market */
+public class Test_ReplacingMarketMakerAlgorithm extends Test_MarketMakerAlgorithm {
+
+    @Override
+    protected void configure(MarketMakerAlgorithmFactory factory) {
+        factory.setReplaceQuotes(true);
+    }
+
+    @Test
+    @Override
+    public void testMarketPricesChanged() {
+        simulateOrderBook(symbol, SOURCE_EXCHANGE,
+                "3 @ 9000",
+                "---------------",
+                "1 @ 7500");
+
+        verifyNewOrderRequest("orderId:Child#1", "quantity:150", "limitPrice:9080", "side:SELL", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:20", "limitPrice:7470", "side:BUY", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+        verifyNewOrderRequest("orderId:Child#3", "quantity:30", "limitPrice:7450", "side:BUY", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+        verifyNewOrderRequest("orderId:Child#4", "quantity:100", "limitPrice:7400", "side:BUY", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+
+        simulateTimeAdvance(Duration.ofMillis(1000));
+        simulateOrderBook(symbol, SOURCE_EXCHANGE,
+                "3 @ 9080",
+                "---------------",
+                "1 @ 7600");
+
+        verifyReplaceOrderRequest("orderId:Child#5", "originalOrderId:Child#1", "limitPrice:9160", "quantity:150");
+        verifyReplaceOrderRequest("orderId:Child#6", "originalOrderId:Child#2", "limitPrice:7570", "quantity:20");
+        verifyReplaceOrderRequest("orderId:Child#7", "originalOrderId:Child#3", "limitPrice:7550", "quantity:30");
+        verifyReplaceOrderRequest("orderId:Child#8", "originalOrderId:Child#4", "limitPrice:7500", "quantity:100");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateOrderReplaceEvent("Child#1", "Child#5");
+        simulateOrderReplaceEvent("Child#2", "Child#6");
+        simulateOrderReplaceEvent("Child#3", "Child#7");
+        simulateOrderReplaceEvent("Child#4", "Child#8");
+
+        // layers were moved in place, nothing has to be re-submitted
+        verifyNoMessagesFromAlgorithm();
+    }
+
+    @Test
+    @Override
+    public void testRateLimit() {
+        simulateOrderBook(symbol, SOURCE_EXCHANGE,
+                "3 @ 9000",
+                "---------------",
+                "1 @ 7500");
+
+        verifyNewOrderRequest("orderId:Child#1", "quantity:150", "limitPrice:9080", "side:SELL", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:20", "limitPrice:7470", "side:BUY", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+        verifyNewOrderRequest("orderId:Child#3", "quantity:30", "limitPrice:7450", "side:BUY", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+        verifyNewOrderRequest("orderId:Child#4", "quantity:100", "limitPrice:7400", "side:BUY", "destinationId:JUMP", "timeInForce:GOOD_TILL_CANCEL");
+
+        simulateTimeAdvance(Duration.ofMillis(1));
+        simulateOrderBook(symbol, SOURCE_EXCHANGE,
+                "3 @ 9080",
+                "---------------",
+                "1 @ 7600");
+
+        verifyReplaceOrderRequest("orderId:Child#5", "originalOrderId:Child#1", "limitPrice:9160", "quantity:150");
+        // now we have 5 requests submitted and cannot proceed with price chasing
+        verifyNoMessagesFromAlgorithm();
+    }
+}
@@ -0,0 +1,105 @@
+package deltix.ember.samples.algorithm.marketmaker;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.Side;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Test_SkewedVolatilityPricingModel {
+
+    private static final long MARGIN = Decimal64Utils.parse("0.1");
+
+    @Test
+    public void quietMarketKeepsStaticMargins() {
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(0, 2, 1000, 0.05);
+        for (int i = 0; i < 100; i++)
+            model.onBasePrice(i, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.ZERO);
+
+        assertEquals(0, model.getRevision());
+        assertDecimal("99.9", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN));
+        assertDecimal("100.1", model.getQuotePrice(Side.SELL, Decimal64Utils.parse("100"), MARGIN));
+    }
+
+    @Test
+    public void burstWidensQuotesAndIdleMarketDecays() {
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(0, 2, 1000, 0.05);
+        for (int i = 0; i < 20; i++) {
+            long mid = (i % 2 == 0) ? 100 : 101;
+            model.onBasePrice(i, Decimal64Utils.fromLong(mid - 1), Decimal64Utils.fromLong(mid + 1), Decimal64Utils.ZERO);
+        }
+
+        int revision = model.getRevision();
+        assertTrue(revision > 0);
+        assertTrue(Decimal64Utils.isLess(model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN), Decimal64Utils.parse("99")));
+
+        model.onBasePrice(60_000, Decimal64Utils.fromLong(100), Decimal64Utils.fromLong(102), Decimal64Utils.ZERO); // same mid price a minute later
+        assertTrue(model.getRevision() > revision);
+        assertDecimal("99.9", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN));
+    }
+
+    @Test
+    public void longInventoryLowersQuotes() {
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(0.01, 0, 1000, 0.05);
+        model.onBasePrice(0, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.fromLong(10));
+
+        assertEquals(1, model.getRevision());
+        assertDecimal("99.8", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN));
+        assertDecimal("100", model.getQuotePrice(Side.SELL, Decimal64Utils.parse("100"), MARGIN));
+
+        model.onBasePrice(1, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.fromLong(-3)); // within one step
+        assertDecimal("99.9", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN));
+    }
+
+    @Test
+    public void fillShiftsQuotesBeforeNextBasePrice() {
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(0.01, 0, 1000, 0.05);
+        model.onBasePrice(0, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.ZERO);
+        assertEquals(0, model.getRevision());
+
+        model.onPosition(Decimal64Utils.fromLong(10));
+        assertEquals(1, model.getRevision());
+        assertDecimal("99.8", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN));
+        assertDecimal("100", model.getQuotePrice(Side.SELL, Decimal64Utils.parse("100"), MARGIN));
+    }
+
+    @Test
+    public void unchangedMidPriceDoesNotDiluteVolatility() {
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(0, 2, 1000, 0.05);
+        model.onBasePrice(0, Decimal64Utils.fromLong(99), Decimal64Utils.fromLong(101), Decimal64Utils.ZERO);
+        model.onBasePrice(0, Decimal64Utils.fromLong(100), Decimal64Utils.fromLong(102), Decimal64Utils.ZERO);
+        double volatility = model.getVolatility();
+
+        for (int i = 0; i < 100; i++) // e.g. size updates at the same time
+            model.onBasePrice(0, Decimal64Utils.fromLong(100), Decimal64Utils.fromLong(102), Decimal64Utils.ZERO);
+        assertEquals(volatility, model.getVolatility(), 0);
+    }
+
+    @Test
+    public void singleStepExceedsRequotingThreshold() {
+        double minPriceChange = 0.05;
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(0.01, 0, 1000, minPriceChange);
+        model.onBasePrice(0, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.fromLong(10));
+
+        long skewed = model.getQuotePrice(Side.BUY, Decimal64Utils.parse("100"), MARGIN);
+        long shift = Decimal64Utils.subtract(Decimal64Utils.parse("99.9"), skewed);
+        assertTrue(Decimal64Utils.isGreater(shift, Decimal64Utils.fromDouble(minPriceChange))); // see MarketMakerHandler.processOrders()
+    }
+
+    @Test
+    public void skewDoesNotCrossOppositeSide() {
+        SkewedVolatilityPricingModel model = new SkewedVolatilityPricingModel(1, 0, 1000, 0.05);
+        model.onBasePrice(0, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.fromLong(-10)); // short: quotes move up by 10
+        assertDecimal("100.95", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("99"), MARGIN));
+        assertDecimal("111.1", model.getQuotePrice(Side.SELL, Decimal64Utils.parse("101"), MARGIN));
+
+        model.onBasePrice(1, Decimal64Utils.parse("99"), Decimal64Utils.parse("101"), Decimal64Utils.fromLong(10)); // long: quotes move down by 10
+        assertDecimal("88.9", model.getQuotePrice(Side.BUY, Decimal64Utils.parse("99"), MARGIN));
+        assertDecimal("99.05", model.getQuotePrice(Side.SELL, Decimal64Utils.parse("101"), MARGIN));
+    }
+
+    private static void assertDecimal(String expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + Decimal64Utils.toString(actual), Decimal64Utils.isEqual(Decimal64Utils.parse(expected), actual));
+    }
+}
@@ -0,0 +1,48 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_FailoverIdentifierReset {
+
+    @Test
+    public void firstPromotionDoesNotReset() {
+        CountingGenerator generator = new CountingGenerator();
+        assertFalse(FailoverIdentifierReset.onNodeStatus(generator, true));
+        assertFalse(FailoverIdentifierReset.onNodeStatus(generator, true)); // another algorithm sharing the generator
+        assertEquals(0, generator.resets);
+    }
+
+    @Test
+    public void sharedGeneratorIsResetOncePerFailover() {
+        CountingGenerator generator = new CountingGenerator();
+        for (int algorithm = 0; algorithm < 3; algorithm++)
+            FailoverIdentifierReset.onNodeStatus(generator, false);
+
+        assertTrue(FailoverIdentifierReset.onNodeStatus(generator, true));
+        assertFalse(FailoverIdentifierReset.onNodeStatus(generator, true));
+        assertFalse(FailoverIdentifierReset.onNodeStatus(generator, true));
+        assertEquals(1, generator.resets);
+
+        FailoverIdentifierReset.onNodeStatus(generator, false); // demoted and promoted again
+        assertTrue(FailoverIdentifierReset.onNodeStatus(generator, true));
+        assertEquals(2, generator.resets);
+    }
+
+    private static final class CountingGenerator implements IdentifierGenerator {
+        private int resets;
+
+        @Override
+        public long next() {
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            resets++;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class Test_MappedFileHiLowIdentifierGenerator {
+
+    private static final int BLOCK_SIZE = 10;
+
+    static {
+        try {
+            System.setProperty("ember.work", Files.createTempDirectory("ember-work").toString());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void persistedAcrossRestart() throws Exception {
+        String key = "mapped-restart";
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            for (int i = 0; i < 25; i++)
+                assertEquals(1 + i, generator.next());
+        }
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            assertEquals(31, generator.next()); // unused tail of previous block is skipped
+        }
+    }
+
+    @Test
+    public void tornSlotIsIgnored() throws Exception {
+        String key = "mapped-torn";
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            for (int i = 0; i < 15; i++)
+                assertEquals(1 + i, generator.next()); // acquires two blocks, issues IDs up to 15
+        }
+        File file = FileBasedHiLowIdentifierGenerator.getSequenceFile(key);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(16); // second slot
+            raf.writeLong(12345); // damage slot that holds latest block, checksum no longer matches
+        }
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            assertEquals(21, generator.next()); // falls back to previous slot (11) and skips block that may be in use
+        }
+    }
+
+    @Test
+    public void resetToGivenBlockIsPersisted() throws Exception {
+        String key = "mapped-reset";
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            assertEquals(1, generator.next());
+            generator.reset(5000);
+            assertEquals(5000, generator.next());
+            generator.reset(); // drops remainder of current block
+            assertEquals(5010, generator.next());
+        }
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            assertEquals(5020, generator.next());
+        }
+    }
+
+    @Test
+    public void legacyTextFileIsConverted() throws Exception {
+        String key = "mapped-legacy";
+        File file = FileBasedHiLowIdentifierGenerator.getSequenceFile(key);
+        Files.write(file.toPath(), "1001".getBytes());
+
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            assertEquals(1001, generator.next());
+        }
+        assertEquals(32, file.length());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        try (MappedFileHiLowIdentifierGenerator generator = create(key)) {
+            assertEquals(1011, generator.next());
+        }
+    }
+
+    private static MappedFileHiLowIdentifierGenerator create(String key) throws IOException {
+        return new MappedFileHiLowIdentifierGenerator(key, BLOCK_SIZE, 1, MappedFileHiLowIdentifierGenerator.ForcePolicy.NEVER);
+    }
+}
@@ -0,0 +1,90 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class Test_MappedIdentifierGeneratorRegistry {
+
+    private static final int BLOCK_SIZE = 10;
+
+    @Test
+    public void independentKeysSurviveRestart() throws Exception {
+        File file = createTempFile();
+        try (MappedIdentifierGeneratorRegistry registry = create(file, 4)) {
+            IdentifierGenerator a = registry.get("algo-a");
+            IdentifierGenerator b = registry.get("algo-b");
+            assertSame(a, registry.get("algo-a"));
+
+            for (int i = 0; i < 15; i++)
+                assertEquals(1 + i, a.next());
+            assertEquals(1, b.next());
+        }
+        try (MappedIdentifierGeneratorRegistry registry = create(file, 4)) {
+            assertEquals(21, registry.get("algo-a").next());
+            assertEquals(11, registry.get("algo-b").next());
+            assertEquals(1, registry.get("algo-c").next());
+        }
+    }
+
+    @Test
+    public void capacityGrowsOnReopen() throws Exception {
+        File file = createTempFile();
+        try (MappedIdentifierGeneratorRegistry registry = create(file, 1)) {
+            registry.get("first").next();
+        }
+        try (MappedIdentifierGeneratorRegistry registry = create(file, 2)) {
+            assertEquals(2, registry.getCapacity());
+            assertEquals(11, registry.get("first").next());
+            assertEquals(1, registry.get("second").next());
+        }
+    }
+
+    @Test
+    public void tornPairIsIgnored() throws Exception {
+        File file = createTempFile();
+        try (MappedIdentifierGeneratorRegistry registry = create(file, 1)) {
+            IdentifierGenerator generator = registry.get("torn");
+            for (int i = 0; i < 15; i++)
+                assertEquals(1 + i, generator.next()); // acquires two blocks, issues IDs up to 15
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(64 + 16); // second value pair of the first slot
+            raf.writeLong(12345); // damage pair that holds latest block, checksum no longer matches
+        }
+        try (MappedIdentifierGeneratorRegistry registry = create(file, 1)) {
+            assertEquals(21, registry.get("torn").next()); // falls back to previous pair (11) and skips block that may be in use
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void registryIsFull() throws Exception {
+        try (MappedIdentifierGeneratorRegistry registry = create(createTempFile(), 1)) {
+            registry.get("first");
+            registry.get("second");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyIsTooLong() throws Exception {
+        try (MappedIdentifierGeneratorRegistry registry = create(createTempFile(), 1)) {
+            registry.get("0123456789012345678901234567890123456789");
+        }
+    }
+
+    private static File createTempFile() throws IOException {
+        File result = Files.createTempFile("sequences", ".id").toFile();
+        result.deleteOnExit();
+        return result;
+    }
+
+    private static MappedIdentifierGeneratorRegistry create(File file, int capacity) throws IOException {
+        return new MappedIdentifierGeneratorRegistry(file, capacity, BLOCK_SIZE, 1, MappedFileHiLowIdentifierGenerator.ForcePolicy.NEVER);
+    }
+}
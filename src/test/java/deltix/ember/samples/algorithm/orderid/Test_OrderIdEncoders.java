@@ -0,0 +1,45 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Test_OrderIdEncoders {
+
+    @Test
+    public void prefixedCounterMatchesDecimal() {
+        OrderIdEncoder encoder = new PrefixedCounterOrderIdEncoder("A-");
+        for (long id = 0; id < 12_000; id++)
+            assertEquals("A-" + id, encoder.encode(id).toString());
+
+        // non-consecutive identifiers (next block)
+        assertEquals("A-99", encoder.encode(99).toString());
+        assertEquals("A-100", encoder.encode(100).toString());
+        assertEquals("A-9223372036854775807", encoder.encode(Long.MAX_VALUE).toString());
+        assertEquals("A-5", encoder.encode(5).toString());
+    }
+
+    @Test
+    public void base32IsFixedWidthAndOrdered() {
+        OrderIdEncoder encoder = new Base32OrderIdEncoder("X");
+        String previous = encoder.encode(0).toString();
+        assertEquals("X0000000000000", previous);
+        for (long id = 1; id < 100_000; id += 7) {
+            String current = encoder.encode(id).toString();
+            assertEquals(14, current.length());
+            assertTrue(previous + " < " + current, previous.compareTo(current) < 0);
+            assertEquals(id, decodeCrockford(current.substring(1)));
+            previous = current;
+        }
+        assertEquals("X7ZZZZZZZZZZZZ", encoder.encode(Long.MAX_VALUE).toString());
+    }
+
+    private static long decodeCrockford(String text) {
+        final String alphabet = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+        long result = 0;
+        for (int i = 0; i < text.length(); i++)
+            result = (result << 5) | alphabet.indexOf(text.charAt(i));
+        return result;
+    }
+}
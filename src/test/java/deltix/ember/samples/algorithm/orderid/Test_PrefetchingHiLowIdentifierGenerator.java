@@ -0,0 +1,112 @@
+package deltix.ember.samples.algorithm.orderid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Test_PrefetchingHiLowIdentifierGenerator {
+
+    private static final int BLOCK_SIZE = 100;
+    private static final String PREFETCH_THREAD = "test-prefetch";
+
+    @Test
+    public void singleThreadSequence() throws Exception {
+        try (PrefetchingHiLowIdentifierGenerator generator = new PrefetchingHiLowIdentifierGenerator(new InMemoryGenerator(), BLOCK_SIZE / 2)) {
+            for (int i = 0; i < 10 * BLOCK_SIZE; i++) {
+                long id = generator.next();
+                assertTrue("Positive id " + id, id > 0);
+            }
+        }
+    }
+
+    @Test
+    public void uniqueAcrossThreads() throws Exception {
+        final int numThreads = 4;
+        final int idsPerThread = 50_000;
+        final ConcurrentHashMap<Long, Boolean> issued = new ConcurrentHashMap<>();
+
+        try (PrefetchingHiLowIdentifierGenerator generator = new PrefetchingHiLowIdentifierGenerator(new InMemoryGenerator(), BLOCK_SIZE - 10)) {
+            Thread[] threads = new Thread[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < idsPerThread; i++)
+                        assertTrue(issued.put(generator.next(), Boolean.TRUE) == null);
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+        }
+        assertEquals(numThreads * idsPerThread, issued.size());
+    }
+
+    @Test
+    public void resetSkipsRemainderOfBlock() throws Exception {
+        InMemoryGenerator source = new InMemoryGenerator();
+        try (PrefetchingHiLowIdentifierGenerator generator = new PrefetchingHiLowIdentifierGenerator(source, BLOCK_SIZE / 2)) {
+            long first = generator.next();
+            generator.reset();
+            long afterReset = generator.next();
+            assertTrue(afterReset >= first + BLOCK_SIZE);
+            assertEquals(afterReset + 1, generator.next());
+        }
+    }
+
+    @Test
+    public void blocksAreAcquiredByBackgroundThread() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, PREFETCH_THREAD));
+        final InMemoryGenerator source = new InMemoryGenerator();
+        try (PrefetchingHiLowIdentifierGenerator generator = new PrefetchingHiLowIdentifierGenerator(source, BLOCK_SIZE / 2, executor)) {
+            for (int i = 0; i < 10 * BLOCK_SIZE; i++) {
+                executor.submit(() -> {}).get(); // let prefetch scheduled by previous call complete
+                generator.next();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(11, source.acquiringThreads.size()); // first block, 9 more and one reserved at the end
+        for (String thread : source.acquiringThreads)
+            assertEquals(PREFETCH_THREAD, thread);
+    }
+
+    @Test
+    public void resetAcquiresBlockInCallerThread() throws Exception {
+        final InMemoryGenerator source = new InMemoryGenerator();
+        try (PrefetchingHiLowIdentifierGenerator generator = new PrefetchingHiLowIdentifierGenerator(source, BLOCK_SIZE / 2)) {
+            generator.next();
+            source.acquiringThreads.clear();
+            generator.reset();
+            assertTrue(source.acquiringThreads.contains(Thread.currentThread().getName()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWatermark() {
+        new PrefetchingHiLowIdentifierGenerator(new InMemoryGenerator(), BLOCK_SIZE);
+    }
+
+    private static final class InMemoryGenerator extends HiLowIdentifierGenerator {
+        private final AtomicLong lastBlock = new AtomicLong(1 - BLOCK_SIZE);
+        final List<String> acquiringThreads = Collections.synchronizedList(new ArrayList<>());
+
+        InMemoryGenerator() {
+            super("test", BLOCK_SIZE, 1);
+        }
+
+        @Override
+        protected long acquireNextBlock(long resetNextBlock) {
+            acquiringThreads.add(Thread.currentThread().getName());
+            return (resetNextBlock != 0) ? resetNextBlock : lastBlock.addAndGet(blockSize);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package deltix.ember.samples.algorithm.ratelimit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_RateLimiter {
+
+    private static final int[] UNIT_WEIGHTS = {1, 1, 1};
+
+    @Test
+    public void slidingWindow() {
+        RateLimiter limiter = new RateLimiter(new RateLimitWindow[]{RateLimitWindow.parse("3/1s")}, UNIT_WEIGHTS);
+
+        assertTrue(limiter.tryAcquire(1000, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(1100, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(1200, RequestType.CANCEL));
+        assertFalse(limiter.tryAcquire(1999, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(2000, RequestType.NEW)); // first request expired
+        assertFalse(limiter.tryAcquire(2050, RequestType.NEW));
+    }
+
+    @Test
+    public void weightedRequests() {
+        int[] weights = {2, 1, 1}; // NEW costs twice as much as CANCEL
+        RateLimiter limiter = new RateLimiter(new RateLimitWindow[]{RateLimitWindow.parse("5/1s")}, weights);
+
+        assertTrue(limiter.tryAcquire(0, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(0, RequestType.NEW));
+        assertFalse(limiter.tryAcquire(0, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(0, RequestType.CANCEL));
+        assertFalse(limiter.tryAcquire(0, RequestType.CANCEL));
+    }
+
+    @Test
+    public void allWindowsMustAdmit() {
+        RateLimiter limiter = new RateLimiter(new RateLimitWindow[]{RateLimitWindow.parse("2/1s"), RateLimitWindow.parse("3/10s")}, UNIT_WEIGHTS);
+
+        assertTrue(limiter.tryAcquire(0, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(0, RequestType.NEW));
+        assertFalse(limiter.tryAcquire(500, RequestType.NEW)); // per-second
+        assertTrue(limiter.tryAcquire(1000, RequestType.NEW));
+        assertFalse(limiter.tryAcquire(2000, RequestType.NEW)); // per-10-seconds, rejected request did not consume per-second budget
+        assertTrue(limiter.tryAcquire(10000, RequestType.NEW));
+    }
+
+    @Test
+    public void largeWindowUsesBuckets() {
+        RateLimitWindow window = RateLimitWindow.parse("100000/1d");
+        assertTrue(window instanceof SlidingCounterWindow);
+        assertEquals(24 * 60 * 60 * 1000L, window.getDurationMillis());
+
+        RateLimiter limiter = new RateLimiter(new RateLimitWindow[]{window}, new int[]{50000, 1, 1});
+        assertTrue(limiter.tryAcquire(0, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(1000, RequestType.NEW));
+        assertFalse(limiter.tryAcquire(2000, RequestType.CANCEL));
+        long bucketMillis = window.getDurationMillis() / RateLimitWindow.NUMBER_OF_BUCKETS;
+        assertFalse(limiter.tryAcquire(window.getDurationMillis() + 1000, RequestType.NEW)); // first bucket is still in the window
+        assertTrue(limiter.tryAcquire(window.getDurationMillis() + bucketMillis, RequestType.NEW));
+    }
+
+    @Test
+    public void bucketedWindowHoldsLimitAtBucketBoundary() {
+        SlidingCounterWindow window = new SlidingCounterWindow(3, 1000, 10); // 100ms buckets
+
+        window.acquire(99, 3); // at the end of the first bucket
+        assertFalse(window.canAcquire(1000, 1)); // exact window still holds units consumed at 99
+        assertFalse(window.canAcquire(1099, 1));
+        assertTrue(window.canAcquire(1100, 1)); // expired with the whole bucket
+    }
+
+    @Test
+    public void tokenBucketRefills() {
+        RateLimiter limiter = new RateLimiter(new RateLimitWindow[]{RateLimitWindow.parse("10/1s token")}, UNIT_WEIGHTS);
+
+        for (int i = 0; i < 10; i++)
+            assertTrue(limiter.tryAcquire(0, RequestType.NEW));
+        assertFalse(limiter.tryAcquire(0, RequestType.NEW));
+        assertFalse(limiter.tryAcquire(99, RequestType.NEW));
+        assertTrue(limiter.tryAcquire(100, RequestType.NEW)); // one token per 100ms
+        assertFalse(limiter.tryAcquire(150, RequestType.NEW));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDurationUnit() {
+        RateLimitWindow.parse("10/1w");
+    }
+}
@@ -0,0 +1,78 @@
+package deltix.ember.samples.algorithm.signal;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_BarAggregator {
+
+    @Test
+    public void tickBars() {
+        BarAggregator bars = new BarAggregator(BarType.TICK, 3, 2);
+        assertFalse(trade(bars, 1, "10", "1"));
+        assertFalse(trade(bars, 2, "12", "1"));
+        assertTrue(trade(bars, 3, "11", "2"));
+        assertBar(bars, 0, "10", "12", "10", "11", "4");
+        assertEquals(1, bars.getStartTime(0));
+
+        assertFalse(trade(bars, 4, "9", "1"));
+        assertFalse(trade(bars, 5, "9", "1"));
+        assertTrue(trade(bars, 6, "8", "1"));
+        assertBar(bars, 0, "9", "9", "8", "8", "3");
+        assertBar(bars, 1, "10", "12", "10", "11", "4");
+        assertEquals(2, bars.getBarCount());
+    }
+
+    @Test
+    public void timeBarIsClosedByTradeOfNextInterval() {
+        BarAggregator bars = new BarAggregator(BarType.TIME, 1000, 4);
+        assertFalse(trade(bars, 1500, "10", "1"));
+        assertFalse(trade(bars, 1999, "11", "1"));
+        assertTrue(trade(bars, 3100, "12", "5")); // interval 2000-3000 had no trades
+        assertEquals(1, bars.getBarCount());
+        assertEquals(1000, bars.getStartTime(0));
+        assertBar(bars, 0, "10", "11", "10", "11", "2");
+
+        assertTrue(trade(bars, 4000, "13", "1"));
+        assertEquals(3000, bars.getStartTime(0));
+        assertBar(bars, 0, "12", "12", "12", "12", "5");
+    }
+
+    @Test
+    public void volumeBars() {
+        BarAggregator bars = new BarAggregator(BarType.VOLUME, 10, 1);
+        assertFalse(trade(bars, 1, "10", "4"));
+        assertTrue(trade(bars, 2, "11", "7"));
+        assertBar(bars, 0, "10", "11", "10", "11", "11");
+
+        assertTrue(trade(bars, 3, "9", "25"));
+        assertBar(bars, 0, "9", "9", "9", "9", "25");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void evictedBar() {
+        BarAggregator bars = new BarAggregator(BarType.TICK, 1, 2);
+        for (int i = 0; i < 5; i++)
+            trade(bars, i, "10", "1");
+        bars.getClose(2);
+    }
+
+    private static boolean trade(BarAggregator bars, long time, String price, String size) {
+        return bars.onTrade(time, Decimal64Utils.parse(price), Decimal64Utils.parse(size));
+    }
+
+    private static void assertBar(BarAggregator bars, int barsAgo, String open, String high, String low, String close, String volume) {
+        assertDecimal(open, bars.getOpen(barsAgo));
+        assertDecimal(high, bars.getHigh(barsAgo));
+        assertDecimal(low, bars.getLow(barsAgo));
+        assertDecimal(close, bars.getClose(barsAgo));
+        assertDecimal(volume, bars.getVolume(barsAgo));
+    }
+
+    private static void assertDecimal(String expected, long actual) {
+        assertTrue(expected + " != " + Decimal64Utils.toString(actual), Decimal64Utils.isEqual(Decimal64Utils.parse(expected), actual));
+    }
+}
@@ -0,0 +1,77 @@
+package deltix.ember.samples.algorithm.signal;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_RollingStatistics {
+
+    @Test
+    public void matchesBruteForce() {
+        final int window = 7;
+        final RollingStatistics statistics = new RollingStatistics(window);
+        final double[] values = new double[500];
+        final Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + random.nextInt(2000) / 100.0; // two decimal digits
+            statistics.add(Decimal64Utils.fromDouble(values[i]));
+            assertEquals(i + 1 >= window, statistics.isFull());
+
+            final int from = Math.max(0, i - window + 1);
+            double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int j = from; j <= i; j++) {
+                sum += values[j];
+                min = Math.min(min, values[j]);
+                max = Math.max(max, values[j]);
+            }
+            final int size = i - from + 1;
+            final double mean = sum / size;
+            double variance = 0;
+            for (int j = from; j <= i; j++)
+                variance += (values[j] - mean) * (values[j] - mean);
+            variance /= size;
+
+            assertEquals(size, statistics.size());
+            assertEquals(mean, Decimal64Utils.toDouble(statistics.getMean()), 1e-9);
+            assertEquals(variance, Decimal64Utils.toDouble(statistics.getVariance()), 1e-9);
+            assertEquals(Math.sqrt(variance), Decimal64Utils.toDouble(statistics.getStdDev()), 1e-9);
+            assertEquals(min, Decimal64Utils.toDouble(statistics.getMin()), 1e-9);
+            assertEquals(max, Decimal64Utils.toDouble(statistics.getMax()), 1e-9);
+        }
+    }
+
+    @Test
+    public void constantSeriesHasNoVariance() {
+        final RollingStatistics statistics = new RollingStatistics(300);
+        final long price = Decimal64Utils.parse("0.1");
+        for (int i = 0; i < 100_000; i++)
+            statistics.add(price);
+
+        assertTrue(Decimal64Utils.isEqual(price, statistics.getMean()));
+        assertTrue(Decimal64Utils.isZero(statistics.getVariance()));
+        assertTrue(Decimal64Utils.isEqual(price, statistics.getMin()));
+        assertTrue(Decimal64Utils.isEqual(price, statistics.getMax()));
+    }
+
+    @Test
+    public void ewma() {
+        final RollingStatistics statistics = new RollingStatistics(3); // alpha = 0.5
+        statistics.add(Decimal64Utils.fromLong(10));
+        assertEquals(10, Decimal64Utils.toDouble(statistics.getEwma()), 1e-12);
+        statistics.add(Decimal64Utils.fromLong(20));
+        assertEquals(15, Decimal64Utils.toDouble(statistics.getEwma()), 1e-12);
+        statistics.add(Decimal64Utils.fromLong(20));
+        assertEquals(17.5, Decimal64Utils.toDouble(statistics.getEwma()), 1e-12);
+
+        statistics.clear();
+        assertFalse(statistics.isFull());
+        assertEquals(0, statistics.size());
+        assertEquals(Decimal64Utils.NULL, statistics.getEwma());
+        assertEquals(Decimal64Utils.NULL, statistics.getMean());
+    }
+}
@@ -0,0 +1,117 @@
+package deltix.ember.samples.algorithm.signaltrader;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.algorithm.SingleLegExecutionAlgoUnitTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class Test_ConcurrentOrderGroups extends SingleLegExecutionAlgoUnitTest<SignalTraderAlgorithm> {
+
+    private static final int NUM_PERIODS = 10;
+
+    @Override
+    protected SignalTraderAlgorithm createAlgorithm() {
+        SignalTraderSettings settings = new SignalTraderSettings();
+        settings.setNumStdDevs(2.0);
+        settings.setNumPeriods(NUM_PERIODS);
+        settings.setEnterOrderSizeCoefficient(Decimal64Utils.fromLong(2));
+        settings.setExitOrderPriceCoefficient(Decimal64Utils.fromDouble(0.05));
+        settings.setStopOrderPriceCoefficient(Decimal64Utils.fromDouble(0.05));
+        settings.setMaxGroupsPerInstrument(2);
+        settings.setMaxActiveGroups(2);
+        settings.setMaxSignals(-1);
+
+        SignalTraderAlgorithmFactory factory = new SignalTraderAlgorithmFactory();
+        factory.setSignalSettings(settings);
+        factory.setMaxInactiveOrdersCacheSize(1); // final orders are recycled and reused soon
+
+        SignalTraderAlgorithm algorithm = (SignalTraderAlgorithm) factory.create(getAlgorithmContext());
+        defineFutureInstrument(symbol, algorithm);
+        return algorithm;
+    }
+
+    /** Second signal is traded while the first order group is still exiting, third one waits for a free group */
+    @Test
+    public void testSecondGroupWhileFirstIsActive() {
+        for (int i = 0; i < NUM_PERIODS; i++)
+            simulateMarketFeedTrade(2.0, 3);
+        simulateMarketFeedTrade(1.0, 3);
+        verifyNewOrderRequest("orderId:Child#1", "quantity:6", "limitPrice:1", "side:BUY"); // Enter order
+        simulateTradeEvent("Child#1", "1", "6");
+        verifyNewOrderRequest("orderId:Child#2", "quantity:6", "limitPrice:1.05", "side:SELL"); // Exit order
+        verifyNewOrderRequest("orderId:Child#3", "quantity:6", "limitPrice:0.95", "side:SELL"); // Stop order
+
+        simulateMarketFeedTrade(0.5, 3);
+        verifyNewOrderRequest("orderId:Child#4", "quantity:6", "limitPrice:0.5", "side:BUY"); // Enter order of the second group
+        simulateTradeEvent("Child#4", "0.5", "6");
+        verifyNewOrderRequest("orderId:Child#5", "quantity:6", "limitPrice:0.525", "side:SELL");
+        verifyNewOrderRequest("orderId:Child#6", "quantity:6", "limitPrice:0.475", "side:SELL");
+
+        simulateMarketFeedTrade(0.1, 3); // below the band again
+        verifyNoMessagesFromAlgorithm(); // both groups are busy
+
+        // first group completes: EXIT order fills, STOP order is canceled
+        simulateTradeEvent("Child#2", "1.05", "6");
+        verifyCancelOrderRequest("orderId:Child#3");
+        simulateOrderCancelEvent("Child#3");
+
+        simulateMarketFeedTrade(5.0, 3);
+        verifyNewOrderRequest("orderId:Child#7", "quantity:6", "limitPrice:5", "side:SELL");
+    }
+
+    /** ENTER order of the first group is final (and recycled) while the group is still exiting: its reused instance belongs to the second group only */
+    @Test
+    public void testRecycledOrderOfActiveGroup() {
+        for (int i = 0; i < NUM_PERIODS; i++)
+            simulateMarketFeedTrade(2.0, 3);
+        simulateMarketFeedTrade(1.0, 3);
+        verifyNewOrderRequest("orderId:Child#1", "quantity:6", "limitPrice:1", "side:BUY");
+        simulateTradeEvent("Child#1", "1", "6"); // ENTER order of the first group is final
+        verifyNewOrderRequest("orderId:Child#2", "quantity:6", "limitPrice:1.05", "side:SELL");
+        verifyNewOrderRequest("orderId:Child#3", "quantity:6", "limitPrice:0.95", "side:SELL");
+
+        simulateMarketFeedTrade(0.5, 3);
+        verifyNewOrderRequest("orderId:Child#4", "quantity:6", "limitPrice:0.5", "side:BUY"); // with small cache of inactive orders may reuse instance of Child#1
+        simulateTradeEvent("Child#4", "0.5", "2");
+        verifyNewOrderRequest("orderId:Child#5", "quantity:2", "limitPrice:0.525", "side:SELL");
+        verifyNewOrderRequest("orderId:Child#6", "quantity:2", "limitPrice:0.475", "side:SELL");
+
+        // first group completes and returns to the pool
+        simulateTradeEvent("Child#2", "1.05", "6");
+        verifyCancelOrderRequest("orderId:Child#3");
+        simulateOrderCancelEvent("Child#3");
+
+        // event of the reused instance is still processed by the second group
+        simulateTradeEvent("Child#4", "0.5", "4");
+        verifyReplaceOrderRequest("originalOrderId:Child#5", "orderId:Child#7", "quantity:6");
+        verifyReplaceOrderRequest("originalOrderId:Child#6", "orderId:Child#8", "quantity:6");
+    }
+
+    /** Order recycled after it was final in one group and reused by another group is not detached by the first group */
+    @Test
+    public void testReusedOrderInstanceIsNotDetachedByPreviousGroup() {
+        SignalOrder order = mock(SignalOrder.class);
+        when(order.getSide()).thenReturn(Side.BUY);
+        when(order.getWorkingQuantity()).thenReturn(Decimal64Utils.fromLong(6));
+        when(order.getTotalExecutedQuantity()).thenReturn(Decimal64Utils.fromLong(6));
+
+        OrderGroup first = new OrderGroup(symbol);
+        first.onEnterOrder(order);
+        first.onOrderFinal(order); // ENTER order is completely filled
+        assertNull(order.group);
+
+        OrderGroup second = new OrderGroup(symbol);
+        second.onEnterOrder(order); // the same instance reused for the next ENTER order
+        first.reset();
+        assertSame(second, order.group);
+        assertTrue(second.isEnterOrder(order));
+        assertFalse(first.isEnterOrder(order));
+    }
+}
@@ -0,0 +1,61 @@
+package deltix.ember.samples.algorithm.t2o;
+
+import deltix.anvil.util.clock.EpochClock;
+import deltix.anvil.util.counter.CounterFactory;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+
+public class Test_TickToTradeLatencyTracker {
+
+    private static TickToTradeLatencyTracker create(int capacity) {
+        return new TickToTradeLatencyTracker("test", mock(EpochClock.class), mock(CounterFactory.class, RETURNS_MOCKS), Duration.ofSeconds(1), Duration.ofMillis(50), capacity);
+    }
+
+    @Test
+    public void oldestOrdersArePushedOut() {
+        TickToTradeLatencyTracker tracker = create(4);
+        for (int i = 1; i <= 6; i++)
+            tracker.onSubmit("Child#" + i, 1000, 2000);
+
+        assertFalse(tracker.isTracked("Child#1"));
+        assertFalse(tracker.isTracked("Child#2"));
+        for (int i = 3; i <= 6; i++)
+            assertTrue(tracker.isTracked("Child#" + i));
+        assertFalse(tracker.isTracked("Child#7"));
+
+        tracker.onAck("Child#1", 3000); // ignored
+        tracker.onFill("Child#6", 3000);
+    }
+
+    @Test
+    public void collidingOrderIds() {
+        // "Aa" and "BB" (as well as their concatenations) have the same hash
+        String[] ids = {"AaAa", "AaBB", "BBAa", "BBBB", "AaAaAa"};
+        TickToTradeLatencyTracker tracker = create(3);
+        for (String id : ids)
+            tracker.onSubmit(id, 1000, 2000);
+
+        assertFalse(tracker.isTracked("AaAa"));
+        assertFalse(tracker.isTracked("AaBB"));
+        assertTrue(tracker.isTracked("BBAa"));
+        assertTrue(tracker.isTracked("BBBB"));
+        assertTrue(tracker.isTracked("AaAaAa"));
+    }
+
+    @Test
+    public void manyOrdersThroughSmallRing() {
+        TickToTradeLatencyTracker tracker = create(5);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.onSubmit(Integer.toString(i), 1000, 2000);
+            assertTrue(tracker.isTracked(Integer.toString(i)));
+            if (i >= 5)
+                assertFalse(tracker.isTracked(Integer.toString(i - 5)));
+        }
+    }
+}